@@ -38,21 +38,44 @@
 
 package org.dcm4che3.io;
 
-import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.stream.StreamSource;
 
 
 /**
+ * Thread-safe cache of compiled style sheets by URI.
+ * 
+ * {@link #getTransformer(String)} also keeps one {@link Transformer} per
+ * style sheet and thread, which is reset for each use, to avoid the setup
+ * of a new {@link Transformer} or
+ * {@link javax.xml.transform.sax.TransformerHandler} for each
+ * transformation.
+ * 
  * @author Gunter Zeilinger <gunterze@gmail.com>
  */
 public class TemplatesCache {
 
     private static TemplatesCache defaultCache;
 
-    private final HashMap<String, Templates> map = new HashMap<String, Templates>();
+    private final ConcurrentHashMap<String, Templates> map =
+            new ConcurrentHashMap<String, Templates>();
+    private final ThreadLocal<Map<Templates, Transformer>> transformers =
+            new ThreadLocal<Map<Templates, Transformer>>() {
+
+                @Override
+                protected Map<Templates, Transformer> initialValue() {
+                    return new WeakHashMap<Templates, Transformer>();
+                }
+            };
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
 
     public static synchronized TemplatesCache getDefault() {
         if (defaultCache == null) {
@@ -68,14 +91,57 @@ public class TemplatesCache {
         defaultCache = cache;
     }
 
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        return map.size();
+    }
+
     public void clear() {
         map.clear();
     }
 
     public Templates get(String uri) throws TransformerConfigurationException {
         Templates tpl = map.get(uri);
-        if (tpl == null)
-            map.put(uri, tpl = SAXTransformer.newTemplates(new StreamSource(uri)));
-        return tpl;
+        if (tpl != null) {
+            hits.incrementAndGet();
+            return tpl;
+        }
+        misses.incrementAndGet();
+        tpl = SAXTransformer.newTemplates(new StreamSource(uri));
+        Templates prev = map.putIfAbsent(uri, tpl);
+        return prev != null ? prev : tpl;
+    }
+
+    /**
+     * Returns the {@link Transformer} of the calling thread for the style
+     * sheet with the specified URI, with all parameters and output
+     * properties reset. The returned {@link Transformer} must not be used
+     * by other threads.
+     */
+    public Transformer getTransformer(String uri)
+            throws TransformerConfigurationException {
+        Templates tpl = get(uri);
+        Map<Templates, Transformer> cache = transformers.get();
+        Transformer t = cache.get(tpl);
+        if (t == null) {
+            cache.put(tpl, t = tpl.newTransformer());
+        } else {
+            t.reset();
+            t.clearParameters();
+        }
+        return t;
+    }
+
+    @Override
+    public String toString() {
+        return "TemplatesCache[size=" + map.size()
+                + ", hits=" + hits + ", misses=" + misses + "]";
     }
 }
@@ -39,21 +39,41 @@
 package org.dcm4che3.filecache;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -71,6 +91,7 @@ public class FileCache {
     private Path journalRootDirectory;
     private String journalFileName = "journal";
     private String orphanedFileName = "orphaned";
+    private String progressFileName = "progress";
     private String journalDirectoryName = "journal.d";
     private SimpleDateFormat journalFileNamePattern =
             new SimpleDateFormat("yyyyMMdd/HHmmss.SSS");
@@ -78,6 +99,52 @@ public class FileCache {
     private boolean leastRecentlyUsed;
     private int currentJournalNumEntries = -1;
     private final AtomicBoolean freeIsRunning = new AtomicBoolean();
+    private boolean inMemoryIndex;
+    private String indexFileName = "index";
+    private long indexCheckpointInterval = 300000L;
+    private volatile FileCacheIndex index;
+    private ScheduledFuture<?> indexCheckpointer;
+    private long highWaterMark;
+    private long lowWaterMark;
+    private long evictionCheckInterval = 60000L;
+    private int maxDeletesPerSecond;
+    private volatile RateLimiter deleteRateLimiter;
+    private volatile ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> evictionChecker;
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    private final AtomicLong evictedBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile long evictionRate;
+    private int deletionBatchSize = 100;
+    private Executor deletionExecutor;
+    private int deletionParallelism = 1;
+    private final Object orphanedLock = new Object();
+    private final Object checkpointLock = new Object();
+
+    private static final Comparator<Path> DEEPEST_FIRST = new Comparator<Path>() {
+
+        @Override
+        public int compare(Path o1, Path o2) {
+            int diff = o2.getNameCount() - o1.getNameCount();
+            return diff != 0 ? diff : o1.compareTo(o2);
+        }
+    };
+
+    private final Runnable evictor = new Runnable() {
+
+        @Override
+        public void run() {
+            try {
+                evict();
+            } catch (IOException e) {
+                LOG.warn("{}: eviction failed", FileCache.this, e);
+            } finally {
+                evictionScheduled.set(false);
+            }
+        }
+    };
 
     public Path getFileCacheRootDirectory() {
         return fileCacheRootDirectory;
@@ -147,6 +214,59 @@ public class FileCache {
         return journalRootDirectory.resolve(orphanedFileName);
     }
 
+    public String getProgressFileName() {
+        return progressFileName;
+    }
+
+    public void setProgressFileName(String progressFileName) {
+        this.progressFileName = progressFileName;
+    }
+
+    /**
+     * Returns the file which records how many entries of the journal file
+     * currently processed by {@link #free(long)} were already deleted, so an
+     * interrupted {@code free} resumes with the next entry.
+     */
+    public Path getProgressFile() {
+        return journalRootDirectory.resolve(progressFileName);
+    }
+
+    public int getDeletionBatchSize() {
+        return deletionBatchSize;
+    }
+
+    /**
+     * Number of files deleted - concurrently, if configured by
+     * {@link #setParallelDeletion} - before the progress is recorded.
+     */
+    public void setDeletionBatchSize(int deletionBatchSize) {
+        if (deletionBatchSize <= 0)
+            throw new IllegalArgumentException(
+                    "deletionBatchSize: " + deletionBatchSize);
+        this.deletionBatchSize = deletionBatchSize;
+    }
+
+    /**
+     * Delete files by up to {@code parallelism} threads of the specified
+     * executor concurrently, including the thread invoking
+     * {@link #free(long)}. Empty directories are purged once for all files
+     * of a journal. {@code parallelism = 1} (= default) deletes files one
+     * after another. The total rate of deletions is still limited by
+     * {@link #setMaxDeletesPerSecond}.
+     */
+    public void setParallelDeletion(Executor executor, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        if (parallelism > 1 && executor == null)
+            throw new NullPointerException("executor");
+        this.deletionExecutor = executor;
+        this.deletionParallelism = parallelism;
+    }
+
+    public int getDeletionParallelism() {
+        return deletionParallelism;
+    }
+
     public Collection<Path> getOrphanedFiles() throws IOException {
         Path orphanFile = getOrphanedFile();
         if (Files.notExists(orphanFile))
@@ -171,13 +291,417 @@ public class FileCache {
         this.leastRecentlyUsed = leastRecentlyUsed;
     }
 
+    public boolean isInMemoryIndex() {
+        return inMemoryIndex;
+    }
+
+    /**
+     * Keep the cached files in a {@link FileCacheIndex}, so {@link #access}
+     * of an indexed file neither appends to the journal nor touches the
+     * file system, and {@link #free(long)} evicts the least recently used
+     * (or - if not {@link #isLeastRecentlyUsed()} - the eldest) files
+     * without reading journal files. The index is rebuilt from the last
+     * checkpoint and the journal files on first use; checkpointed files,
+     * which no longer exist, are skipped.
+     */
+    public void setInMemoryIndex(boolean inMemoryIndex) {
+        this.inMemoryIndex = inMemoryIndex;
+    }
+
+    public String getIndexFileName() {
+        return indexFileName;
+    }
+
+    public void setIndexFileName(String indexFileName) {
+        this.indexFileName = indexFileName;
+    }
+
+    public Path getIndexFile() {
+        return journalRootDirectory.resolve(indexFileName);
+    }
+
+    public long getIndexCheckpointInterval() {
+        return indexCheckpointInterval;
+    }
+
+    /**
+     * Interval in ms in which the in-memory index is written to
+     * {@link #getIndexFile()} after {@link #start}; 0 disables periodic
+     * checkpoints. Independent of this interval, {@link #free(long)} writes
+     * a checkpoint after it evicted files, so journal files do not
+     * accumulate without periodic checkpoints.
+     */
+    public void setIndexCheckpointInterval(long indexCheckpointInterval) {
+        if (indexCheckpointInterval < 0)
+            throw new IllegalArgumentException(
+                    "indexCheckpointInterval: " + indexCheckpointInterval);
+        this.indexCheckpointInterval = indexCheckpointInterval;
+    }
+
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * Total size of cached files in bytes, above which files are evicted in
+     * background after {@link #start}, until the cached bytes drop below the
+     * {@link #getLowWaterMark()}; 0 disables background eviction.
+     */
+    public void setHighWaterMark(long highWaterMark) {
+        if (highWaterMark < 0)
+            throw new IllegalArgumentException(
+                    "highWaterMark: " + highWaterMark);
+        this.highWaterMark = highWaterMark;
+    }
+
+    public long getLowWaterMark() {
+        return lowWaterMark;
+    }
+
+    public void setLowWaterMark(long lowWaterMark) {
+        if (lowWaterMark < 0)
+            throw new IllegalArgumentException(
+                    "lowWaterMark: " + lowWaterMark);
+        this.lowWaterMark = lowWaterMark;
+    }
+
+    public long getEvictionCheckInterval() {
+        return evictionCheckInterval;
+    }
+
+    /**
+     * Interval in ms in which the cached bytes are compared with the
+     * {@link #getHighWaterMark()}, in addition to the check after each
+     * registration of a file.
+     */
+    public void setEvictionCheckInterval(long evictionCheckInterval) {
+        if (evictionCheckInterval <= 0)
+            throw new IllegalArgumentException(
+                    "evictionCheckInterval: " + evictionCheckInterval);
+        this.evictionCheckInterval = evictionCheckInterval;
+    }
+
+    public int getMaxDeletesPerSecond() {
+        return maxDeletesPerSecond;
+    }
+
+    /**
+     * Limits the number of files deleted per second by {@link #free(long)};
+     * 0 (= default) deletes files as fast as possible.
+     */
+    public void setMaxDeletesPerSecond(int maxDeletesPerSecond) {
+        if (maxDeletesPerSecond < 0)
+            throw new IllegalArgumentException(
+                    "maxDeletesPerSecond: " + maxDeletesPerSecond);
+        this.maxDeletesPerSecond = maxDeletesPerSecond;
+        this.deleteRateLimiter = maxDeletesPerSecond > 0
+                ? new RateLimiter(maxDeletesPerSecond)
+                : null;
+    }
+
+    /**
+     * Returns the total size of the cached files in bytes. Without
+     * {@link #isInMemoryIndex()}, only files registered or found by
+     * {@link #start} are accounted.
+     */
+    public long getCachedBytes() {
+        FileCacheIndex index = this.index;
+        return index != null ? index.getTotalSize() : cachedBytes.get();
+    }
+
+    /**
+     * Returns the total size of files deleted by {@link #free(long)}.
+     */
+    public long getEvictedBytes() {
+        return evictedBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes evicted per second by the last invocation
+     * of {@link #free(long)}.
+     */
+    public long getEvictionRate() {
+        return evictionRate;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the fraction of {@link #access} invocations, which found the
+     * file in the cache.
+     */
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total > 0 ? (double) h / total : 0.;
+    }
+
     @Override 
     public String toString() {
         return "FileCache[cacheDir=" + fileCacheRootDirectory
                 + ", journalDir=" + journalRootDirectory + "]";
     }
 
-    public synchronized void register(Path path) throws IOException {
+    /**
+     * Loads the in-memory index - if enabled - and schedules its periodic
+     * checkpoints and - if a {@link #getHighWaterMark()} is configured - the
+     * background eviction on the specified executor.
+     */
+    public synchronized void start(ScheduledExecutorService scheduler)
+            throws IOException {
+        if (highWaterMark > 0 && lowWaterMark > highWaterMark)
+            throw new IllegalStateException("lowWaterMark: " + lowWaterMark
+                    + " > highWaterMark: " + highWaterMark);
+
+        this.scheduler = scheduler;
+        if (inMemoryIndex) {
+            getIndex();
+            if (indexCheckpointer == null && indexCheckpointInterval > 0)
+                indexCheckpointer = scheduler.scheduleWithFixedDelay(
+                        new Runnable() {
+
+                            @Override
+                            public void run() {
+                                try {
+                                    checkpointIndex();
+                                } catch (IOException e) {
+                                    LOG.warn("{}: failed to checkpoint index",
+                                            FileCache.this, e);
+                                }
+                            }
+                        },
+                        indexCheckpointInterval,
+                        indexCheckpointInterval,
+                        TimeUnit.MILLISECONDS);
+        } else if (highWaterMark > 0) {
+            cachedBytes.set(sizeOfFiles(fileCacheRootDirectory));
+            LOG.info("{}: {} bytes cached", this, cachedBytes);
+        }
+        if (evictionChecker == null && highWaterMark > 0)
+            evictionChecker = scheduler.scheduleWithFixedDelay(
+                    new Runnable() {
+
+                        @Override
+                        public void run() {
+                            checkHighWaterMark();
+                        }
+                    },
+                    0,
+                    evictionCheckInterval,
+                    TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels periodic checkpoints and background eviction, and writes a
+     * final checkpoint of the in-memory index.
+     */
+    public void stop() throws IOException {
+        synchronized (this) {
+            if (indexCheckpointer != null) {
+                indexCheckpointer.cancel(false);
+                indexCheckpointer = null;
+            }
+            if (evictionChecker != null) {
+                evictionChecker.cancel(false);
+                evictionChecker = null;
+            }
+            scheduler = null;
+        }
+        checkpointIndex();
+    }
+
+    private static long sizeOfFiles(Path dir) throws IOException {
+        if (!Files.isDirectory(dir))
+            return 0L;
+
+        final long[] size = { 0L };
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+
+            @Override
+            public FileVisitResult visitFile(Path file,
+                    BasicFileAttributes attrs) {
+                size[0] += attrs.size();
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return size[0];
+    }
+
+    private void checkHighWaterMark() {
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler != null && highWaterMark > 0
+                && getCachedBytes() > highWaterMark
+                && evictionScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(evictor);
+            } catch (RuntimeException e) {
+                evictionScheduled.set(false);
+                LOG.warn("{}: failed to schedule eviction", this, e);
+            }
+        }
+    }
+
+    private void evict() throws IOException {
+        long cached;
+        while ((cached = getCachedBytes()) > lowWaterMark
+                && highWaterMark > 0 && scheduler != null) {
+            LOG.info("{}: {} bytes cached exceeds high water mark {}"
+                    + " - evict files until low water mark {}",
+                    this, cached, highWaterMark, lowWaterMark);
+            if (free(cached - lowWaterMark) <= 0)
+                break;
+        }
+    }
+
+    private FileCacheIndex getIndex() throws IOException {
+        FileCacheIndex index = this.index;
+        if (index == null) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null)
+                    this.index = index = loadIndex();
+            }
+        }
+        return index;
+    }
+
+    private FileCacheIndex loadIndex() throws IOException {
+        LOG.info("{}: loading index", this);
+        FileCacheIndex index = new FileCacheIndex();
+        Path indexFile = getIndexFile();
+        if (Files.exists(indexFile)) {
+            try (BufferedReader r = Files.newBufferedReader(indexFile, UTF_8)) {
+                String line;
+                while ((line = r.readLine()) != null) {
+                    int delim = line.indexOf(' ');
+                    String fileName = line.substring(delim + 1);
+                    // evicted after the checkpoint, before a crash
+                    if (Files.exists(fileCacheRootDirectory.resolve(fileName)))
+                        index.put(fileName,
+                                Long.parseLong(line.substring(0, delim)));
+                    else
+                        LOG.debug("{}: {} already deleted", this, fileName);
+                }
+            }
+        }
+        Path journalDir = getJournalDirectory();
+        if (Files.isDirectory(journalDir))
+            replayJournals(index, journalDir);
+        Path journalFile = getJournalFile();
+        if (Files.exists(journalFile))
+            replayJournal(index, journalFile);
+        LOG.info("{}: loaded {}", this, index);
+        return index;
+    }
+
+    private void replayJournals(FileCacheIndex index, Path dir)
+            throws IOException {
+        for (Path file : listFiles(dir)) {
+            if (Files.isDirectory(file))
+                replayJournals(index, file);
+            else
+                replayJournal(index, file);
+        }
+    }
+
+    private void replayJournal(FileCacheIndex index, Path journalFile)
+            throws IOException {
+        try (BufferedReader r = Files.newBufferedReader(journalFile, UTF_8)) {
+            String fileName;
+            while ((fileName = r.readLine()) != null) {
+                if (leastRecentlyUsed ? index.access(fileName)
+                        : index.contains(fileName))
+                    continue;
+                try {
+                    index.put(fileName, Files.size(
+                            fileCacheRootDirectory.resolve(fileName)));
+                } catch (NoSuchFileException e) {
+                    LOG.debug("{}: {} already deleted", this, fileName);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the in-memory index to {@link #getIndexFile()} and deletes the
+     * journal files covered by it.
+     */
+    public void checkpointIndex() throws IOException {
+        FileCacheIndex index = this.index;
+        if (index == null)
+            return;
+
+        synchronized (checkpointLock) {
+            checkpointIndex(index);
+        }
+    }
+
+    private void checkpointIndex(FileCacheIndex index) throws IOException {
+        Collection<Path> journalFiles = new ArrayList<Path>();
+        synchronized (this) {
+            Path journalFile = getJournalFile();
+            if (Files.exists(journalFile)) {
+                moveJournalFile(journalFile);
+                currentJournalNumEntries = 0;
+            }
+            Path journalDir = getJournalDirectory();
+            if (Files.isDirectory(journalDir))
+                collectFiles(journalDir, journalFiles);
+        }
+        LOG.debug("{}: checkpoint {}", this, index);
+        Path indexFile = getIndexFile();
+        Path tmpFile = indexFile.resolveSibling(indexFileName + ".tmp");
+        Files.createDirectories(journalRootDirectory);
+        try (BufferedWriter w = Files.newBufferedWriter(tmpFile, UTF_8)) {
+            for (FileCacheIndex.Entry entry : index.snapshot()) {
+                w.write(Long.toString(entry.getSize()));
+                w.write(' ');
+                w.write(entry.getName());
+                w.newLine();
+            }
+        }
+        Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        for (Path journalFile : journalFiles) {
+            try {
+                Files.delete(journalFile);
+                purgeEmptyDirectories(journalFile.getParent(),
+                        getJournalDirectory());
+            } catch (IOException e) {
+                LOG.warn("{}: failed to delete journal - {}", this,
+                        journalFile, e);
+            }
+        }
+    }
+
+    private void collectFiles(Path dir, Collection<Path> files)
+            throws IOException {
+        for (Path file : listFiles(dir)) {
+            if (Files.isDirectory(file))
+                collectFiles(file, files);
+            else
+                files.add(file);
+        }
+    }
+
+    public void register(Path path) throws IOException {
+        register(path, true);
+        checkHighWaterMark();
+    }
+
+    private synchronized void register(Path path, boolean add)
+            throws IOException {
         LOG.debug("{}: registering - {}", this, path);
         Files.createDirectories(journalRootDirectory);
         Path journalFile = getJournalFile();
@@ -192,12 +716,19 @@ public class FileCache {
         Files.write(journalFile, Collections.singleton(entry), UTF_8,
                 StandardOpenOption.CREATE, StandardOpenOption.APPEND);
         currentJournalNumEntries = numEntries + 1;
-        if (leastRecentlyUsed) {
-            try {
-                LOG.debug("{}: update modification time of - {}", this, path);
-                Files.setLastModifiedTime(path, Files.getLastModifiedTime(journalFile));
-            } catch (IOException e) {
-                LOG.info("{}: failed to update modification time of - {}", this, path, e);
+        if (inMemoryIndex) {
+            if (!getIndex().put(entry, Files.size(path)))
+                LOG.debug("{}: {} is being evicted", this, path);
+        } else {
+            if (add)
+                cachedBytes.addAndGet(Files.size(path));
+            if (leastRecentlyUsed) {
+                try {
+                    LOG.debug("{}: update modification time of - {}", this, path);
+                    Files.setLastModifiedTime(path, Files.getLastModifiedTime(journalFile));
+                } catch (IOException e) {
+                    LOG.info("{}: failed to update modification time of - {}", this, path, e);
+                }
             }
         }
         LOG.debug("{}: registered - {}", this, path);
@@ -213,11 +744,40 @@ public class FileCache {
     }
 
     public boolean access(Path path) throws IOException {
-        if (!Files.exists(path))
+        if (inMemoryIndex) {
+            String entry = fileCacheRootDirectory.relativize(path).toString();
+            FileCacheIndex index = getIndex();
+            if (leastRecentlyUsed ? index.access(entry) : index.contains(entry)) {
+                hits.incrementAndGet();
+                return true;
+            }
+            if (Files.exists(path)) {
+                try {
+                    register(path);
+                    // not registered, if it was evicted concurrently
+                    if (index.contains(entry)) {
+                        if (Files.exists(path)) {
+                            hits.incrementAndGet();
+                            return true;
+                        }
+                        index.remove(entry);
+                    }
+                } catch (NoSuchFileException e) {
+                    LOG.debug("{}: {} already deleted", this, path);
+                }
+            }
+            misses.incrementAndGet();
+            return false;
+        }
+
+        if (!Files.exists(path)) {
+            misses.incrementAndGet();
             return false;
+        }
 
+        hits.incrementAndGet();
         if (leastRecentlyUsed)
-            register(path);
+            register(path, false);
 
         return true;
     }
@@ -230,14 +790,199 @@ public class FileCache {
         }
 
         try {
-            long freed = free(getJournalDirectory(), size);
-            LOG.info("{}: freed {} bytes", this, freed);
+            long start = System.currentTimeMillis();
+            long freed = inMemoryIndex
+                    ? freeIndexed(size)
+                    : free(getJournalDirectory(), size);
+            long time = Math.max(1L, System.currentTimeMillis() - start);
+            if (!inMemoryIndex)
+                cachedBytes.addAndGet(-freed);
+            evictedBytes.addAndGet(freed);
+            evictionRate = freed * 1000L / time;
+            LOG.info("{}: freed {} bytes in {} ms", this, freed, time);
+            if (inMemoryIndex && freed > 0)
+                try {
+                    checkpointIndex();
+                } catch (IOException e) {
+                    LOG.warn("{}: failed to checkpoint index", this, e);
+                }
             return freed;
         } finally {
             freeIsRunning.set(false);
         }
     }
 
+    private long freeIndexed(long size) throws IOException {
+        FileCacheIndex index = getIndex();
+        Set<Path> dirs = newConcurrentSet();
+        ArrayList<String> fileNames = new ArrayList<String>(deletionBatchSize);
+        long[] fileSizes = new long[deletionBatchSize];
+        long freed = 0L;
+        try {
+            while (freed < size) {
+                fileNames.clear();
+                long selected = 0L;
+                FileCacheIndex.Entry entry;
+                while (fileNames.size() < fileSizes.length
+                        && freed + selected < size
+                        && (entry = index.pollEldest()) != null) {
+                    fileSizes[fileNames.size()] = entry.getSize();
+                    fileNames.add(entry.getName());
+                    selected += entry.getSize();
+                }
+                if (fileNames.isEmpty())
+                    break;
+                try {
+                    freed += delete(fileNames, fileSizes, null, dirs);
+                } finally {
+                    for (String fileName : fileNames)
+                        index.evicted(fileName);
+                }
+            }
+        } finally {
+            purgeEmptyDirectories(dirs, fileCacheRootDirectory);
+        }
+        return freed;
+    }
+
+    private static Set<Path> newConcurrentSet() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<Path, Boolean>());
+    }
+
+    /**
+     * Deletes the specified files by up to {@link #getDeletionParallelism()}
+     * threads, and collects the parent directories of deleted files.
+     */
+    private long delete(final List<String> fileNames, final long[] fileSizes,
+            final FileTime lastModifiedTime, final Set<Path> dirs)
+            throws IOException {
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicLong freed = new AtomicLong();
+        Callable<Object> worker = new Callable<Object>() {
+
+            @Override
+            public Object call() throws IOException {
+                int i;
+                while ((i = next.getAndIncrement()) < fileNames.size())
+                    freed.addAndGet(delete(fileNames.get(i),
+                            fileSizes != null ? fileSizes[i] : -1L,
+                            lastModifiedTime, dirs));
+                return null;
+            }
+        };
+        int tasks = Math.min(deletionParallelism, fileNames.size());
+        if (deletionExecutor == null || tasks < 2) {
+            try {
+                worker.call();
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return freed.get();
+        }
+        ArrayList<FutureTask<Object>> submitted =
+                new ArrayList<FutureTask<Object>>(tasks - 1);
+        for (int i = 1; i < tasks; i++) {
+            FutureTask<Object> task = new FutureTask<Object>(worker);
+            submitted.add(task);
+            deletionExecutor.execute(task);
+        }
+        IOException ex = null;
+        try {
+            worker.call();
+        } catch (IOException e) {
+            ex = e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        boolean interrupted = false;
+        try {
+            for (FutureTask<Object> task : submitted) {
+                while (true) {
+                    try {
+                        task.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof IOException) {
+                            if (ex == null)
+                                ex = (IOException) cause;
+                            break;
+                        }
+                        if (cause instanceof RuntimeException)
+                            throw (RuntimeException) cause;
+                        if (cause instanceof Error)
+                            throw (Error) cause;
+                        throw new RuntimeException(cause);
+                    }
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+        if (ex != null)
+            throw ex;
+        return freed.get();
+    }
+
+    private long delete(String fileName, long fileSize,
+            FileTime lastModifiedTime, Set<Path> dirs) throws IOException {
+        Path path = fileCacheRootDirectory.resolve(fileName);
+        acquireDeletePermit();
+        try {
+            if (lastModifiedTime != null) {
+                try {
+                    if (Files.getLastModifiedTime(path)
+                            .compareTo(lastModifiedTime) > 0)  {
+                        LOG.debug("{}: {} recently accessed - do not delete",
+                                this, path);
+                        return 0L;
+                    }
+                } catch (NoSuchFileException e) {
+                    throw e;
+                } catch (IOException e) {
+                    LOG.info("{}: failed to get modification time of - {}",
+                            this, path, e);
+                }
+            }
+            if (fileSize < 0)
+                fileSize = Files.size(path);
+            LOG.debug("{}: delete - {}", this, path);
+            Files.delete(path);
+            dirs.add(path.getParent());
+            return fileSize;
+        } catch (NoSuchFileException e) {
+            LOG.debug("{}: {} already deleted", this, path);
+        } catch (IOException e) {
+            LOG.warn("{}: failed to delete - {}", this, path, e);
+            recordOrphaned(fileName, path);
+        }
+        return 0L;
+    }
+
+    private void acquireDeletePermit() throws IOException {
+        RateLimiter rateLimiter = deleteRateLimiter;
+        if (rateLimiter != null)
+            rateLimiter.acquire();
+    }
+
+    private void recordOrphaned(String fileName, Path path) {
+        synchronized (orphanedLock) {
+            try {
+                Path orphanedFile = getOrphanedFile();
+                Files.write(orphanedFile, Collections.singleton(fileName), UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e2) {
+                LOG.warn("{}: failed to record orphaned file - {}",
+                        this, path, e2);
+            }
+        }
+    }
+
     private long free(Path dir, long size) throws IOException {
         long remaining = size;
         for (Path file : listFiles(dir)) {
@@ -263,6 +1008,10 @@ public class FileCache {
 
     public void clear() throws IOException {
         LOG.info("{}: clearing", this);
+        FileCacheIndex index = this.index;
+        if (index != null)
+            index.clear();
+        cachedBytes.set(0L);
         deleteDirContent(fileCacheRootDirectory);
         deleteDirContent(journalRootDirectory);
         LOG.info("{}: cleared", this);
@@ -294,52 +1043,29 @@ public class FileCache {
         LOG.debug("{}: deleting files referenced by journal - {}",
                 this, journalFile);
         long freed = 0L;
-        FileTime lastModifiedTime = Files.getLastModifiedTime(journalFile);
-        try (BufferedReader r = Files.newBufferedReader(
-                journalFile, UTF_8)) {
-            String fileName;
-            while ((fileName = r.readLine()) != null) {
-                Path path = fileCacheRootDirectory.resolve(fileName);
-                if (Files.notExists(path)) {
-                    LOG.debug("{}: {} already deleted");
-                    continue;
-                }
-                if (leastRecentlyUsed) {
-                    try {
-                        if (Files.getLastModifiedTime(path)
-                                .compareTo(lastModifiedTime) > 0)  {
-                            LOG.debug("{}: {} recently accessed - do not delete",
-                                    this, path);
-                            continue;
-                        }
-                    } catch (IOException e) {
-                        LOG.info("{}: failed to get modification time of - {}",
-                                this, path, e);
-                    }
-                }
-                try {
-                    LOG.debug("{}: delete - {}", this, path);
-                    long fileSize = Files.size(path);
-                    Files.delete(path);
-                    freed += fileSize;
-                    purgeEmptyDirectories(path.getParent(), fileCacheRootDirectory);
-                } catch (IOException e) {
-                    LOG.warn("{}: failed to delete - {}", this, path, e);
-                    try {
-                        Path orphanedFile = getOrphanedFile();
-                        Files.write(orphanedFile, Collections.singleton(fileName), UTF_8,
-                                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-                    } catch (IOException e2) {
-                        LOG.warn("{}: failed to record orphaned file - {}",
-                                this, path, e2);
-                    }
-                }
+        FileTime lastModifiedTime = leastRecentlyUsed
+                ? Files.getLastModifiedTime(journalFile)
+                : null;
+        List<String> fileNames = Files.readAllLines(journalFile, UTF_8);
+        int off = resumePosition(journalFile);
+        Set<Path> dirs = newConcurrentSet();
+        try {
+            while (off < fileNames.size()) {
+                int end = Math.min(off + deletionBatchSize, fileNames.size());
+                freed += delete(fileNames.subList(off, end), null,
+                        lastModifiedTime, dirs);
+                off = end;
+                if (off < fileNames.size())
+                    recordProgress(journalFile, off);
             }
+        } finally {
+            purgeEmptyDirectories(dirs, fileCacheRootDirectory);
         }
         try {
             LOG.debug("{}: delete journal - {}", this, journalFile);
             Files.delete(journalFile);
             purgeEmptyDirectories(journalFile.getParent(), getJournalDirectory());
+            Files.deleteIfExists(getProgressFile());
         } catch (IOException e) {
             LOG.warn("{}: failed to delete journal - {}", this, journalFile, e);
         }
@@ -348,6 +1074,55 @@ public class FileCache {
         return freed;
     }
 
+    private int resumePosition(Path journalFile) {
+        Path progressFile = getProgressFile();
+        if (Files.notExists(progressFile))
+            return 0;
+
+        try {
+            List<String> lines = Files.readAllLines(progressFile, UTF_8);
+            if (lines.size() == 2 && journalFile.equals(
+                    journalRootDirectory.resolve(lines.get(0)))) {
+                int off = Integer.parseInt(lines.get(1));
+                LOG.info("{}: resume deleting files referenced by journal"
+                        + " - {} with entry #{}", this, journalFile, off + 1);
+                return off;
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOG.warn("{}: failed to read progress - {}", this, progressFile, e);
+        }
+        return 0;
+    }
+
+    private void recordProgress(Path journalFile, int off) throws IOException {
+        Files.write(getProgressFile(), Arrays.asList(
+                journalRootDirectory.relativize(journalFile).toString(),
+                Integer.toString(off)), UTF_8);
+    }
+
+    /**
+     * Purges the specified directories - if empty - and their then empty
+     * parents up to {@code root}, trying each directory only once.
+     */
+    private void purgeEmptyDirectories(Set<Path> dirs, Path root) {
+        TreeSet<Path> pending = new TreeSet<Path>(DEEPEST_FIRST);
+        pending.addAll(dirs);
+        Path dir;
+        while ((dir = pending.pollFirst()) != null) {
+            if (dir.equals(root) || !dir.startsWith(root))
+                continue;
+            try {
+                Files.delete(dir);
+                LOG.debug("{}: purged empty directory - {}", this, dir);
+                pending.add(dir.getParent());
+            } catch (DirectoryNotEmptyException | NoSuchFileException e) {
+                // still in use or already purged
+            } catch (IOException e) {
+                LOG.warn("{}: failed to purge empty directory {}", this, dir, e);
+            }
+        }
+    }
+
     private void purgeEmptyDirectories(Path dir, Path root) {
         while (!dir.equals(root))
             try {
@@ -0,0 +1,304 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2014
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.filecache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent in-memory index of the files in a {@link FileCache}, ordered
+ * by last access, with accounting of the total size of the indexed files.
+ * 
+ * Entries are distributed over stripes, each ordered by access and guarded
+ * by its own lock, so concurrent accesses of different files rarely contend.
+ * Each access is stamped by a global counter, and the least recently used
+ * entry is found by comparing the eldest entries of all stripes; therefore
+ * evicting {@code n} entries takes {@code O(n)} steps, independent of the
+ * number of indexed files.
+ * 
+ * Entries returned by {@link #pollEldest()} stay marked as being evicted
+ * until {@link #evicted(String)} is invoked after the file was deleted, so
+ * a concurrent access of the file cannot register it again meanwhile.
+ * 
+ * @author agent <agent@local>
+ */
+public class FileCacheIndex {
+
+    public static final int DEFAULT_STRIPES = 16;
+
+    private final Stripe[] stripes;
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong totalSize = new AtomicLong();
+    private final AtomicInteger count = new AtomicInteger();
+
+    public static final class Entry {
+        private final String name;
+        private final long size;
+        private volatile long lastAccess;
+
+        Entry(String name, long size, long lastAccess) {
+            this.name = name;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+
+        /**
+         * Returns the path of the file relative to the cache root directory.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return name + " [" + size + " bytes]";
+        }
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        final HashSet<String> evicting = new HashSet<String>();
+
+        Stripe() {
+            super(16, 0.75f, true);
+        }
+
+        FileCacheIndex.Entry eldest() {
+            Iterator<FileCacheIndex.Entry> iter = values().iterator();
+            return iter.hasNext() ? iter.next() : null;
+        }
+    }
+
+    private static final Comparator<Entry> BY_LAST_ACCESS =
+            new Comparator<Entry>() {
+
+                @Override
+                public int compare(Entry o1, Entry o2) {
+                    return Long.compare(o1.lastAccess, o2.lastAccess);
+                }
+            };
+
+    public FileCacheIndex() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public FileCacheIndex(int numStripes) {
+        if (numStripes <= 0)
+            throw new IllegalArgumentException("numStripes: " + numStripes);
+        stripes = new Stripe[numStripes];
+        for (int i = 0; i < numStripes; i++)
+            stripes[i] = new Stripe();
+    }
+
+    private Stripe stripeOf(String name) {
+        int h = name.hashCode();
+        h ^= (h >>> 16);
+        return stripes[(h & 0x7fffffff) % stripes.length];
+    }
+
+    /**
+     * Returns the total size of all indexed files in bytes.
+     */
+    public long getTotalSize() {
+        return totalSize.get();
+    }
+
+    /**
+     * Returns the number of indexed files.
+     */
+    public int size() {
+        return count.get();
+    }
+
+    /**
+     * Adds the file with the specified name and size as most recently used
+     * entry, replacing a previous entry for that file. Returns {@code false}
+     * without adding an entry, if the file is being evicted.
+     */
+    public boolean put(String name, long size) {
+        Entry entry = new Entry(name, size, clock.incrementAndGet());
+        Entry prev;
+        Stripe stripe = stripeOf(name);
+        synchronized (stripe) {
+            if (stripe.evicting.contains(name))
+                return false;
+            prev = stripe.put(name, entry);
+        }
+        totalSize.addAndGet(prev != null ? size - prev.size : size);
+        if (prev == null)
+            count.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns {@code true} if the file with the specified name is indexed.
+     * Does not affect the order of the entries.
+     */
+    public boolean contains(String name) {
+        Stripe stripe = stripeOf(name);
+        synchronized (stripe) {
+            return stripe.containsKey(name);
+        }
+    }
+
+    /**
+     * Marks the entry for the file with the specified name as most recently
+     * used. Returns {@code false} if there is no such entry.
+     */
+    public boolean access(String name) {
+        Stripe stripe = stripeOf(name);
+        synchronized (stripe) {
+            Entry entry = stripe.get(name);
+            if (entry == null)
+                return false;
+
+            entry.lastAccess = clock.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Removes the entry for the file with the specified name. Returns the
+     * removed entry or {@code null} if there was no such entry.
+     */
+    public Entry remove(String name) {
+        Entry entry;
+        Stripe stripe = stripeOf(name);
+        synchronized (stripe) {
+            entry = stripe.remove(name);
+        }
+        if (entry != null)
+            removed(entry);
+        return entry;
+    }
+
+    private void removed(Entry entry) {
+        totalSize.addAndGet(-entry.size);
+        count.decrementAndGet();
+    }
+
+    /**
+     * Removes and returns the least recently used entry, or returns
+     * {@code null} if the index is empty. The file of the returned entry is
+     * marked as being evicted, until {@link #evicted(String)} is invoked.
+     */
+    public Entry pollEldest() {
+        while (true) {
+            Stripe eldestStripe = null;
+            Entry eldest = null;
+            for (Stripe stripe : stripes) {
+                Entry entry;
+                synchronized (stripe) {
+                    entry = stripe.eldest();
+                }
+                if (entry != null && (eldest == null
+                        || entry.lastAccess < eldest.lastAccess)) {
+                    eldest = entry;
+                    eldestStripe = stripe;
+                }
+            }
+            if (eldest == null)
+                return null;
+
+            synchronized (eldestStripe) {
+                // retry if accessed or removed concurrently
+                if (eldestStripe.eldest() != eldest)
+                    continue;
+                eldestStripe.remove(eldest.name);
+                eldestStripe.evicting.add(eldest.name);
+            }
+            removed(eldest);
+            return eldest;
+        }
+    }
+
+    /**
+     * Clears the mark of a file returned by {@link #pollEldest()}, after it
+     * was deleted.
+     */
+    public void evicted(String name) {
+        Stripe stripe = stripeOf(name);
+        synchronized (stripe) {
+            stripe.evicting.remove(name);
+        }
+    }
+
+    /**
+     * Returns all entries, ordered from the least to the most recently used.
+     */
+    public List<Entry> snapshot() {
+        ArrayList<Entry> entries = new ArrayList<Entry>(count.get());
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                entries.addAll(stripe.values());
+            }
+        }
+        Collections.sort(entries, BY_LAST_ACCESS);
+        return entries;
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Entry entry : stripe.values())
+                    removed(entry);
+                stripe.clear();
+                stripe.evicting.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FileCacheIndex[files=" + count + ", bytes=" + totalSize + "]";
+    }
+}
@@ -50,6 +50,9 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -68,6 +71,8 @@ public class FileCacheTest {
     private static final String[] DELETED_LRU = { b_c, "b", "d", "e" };
     private static final String[] NOT_DELETED = { "d", "e", "f" };
     private static final String[] NOT_DELETED_LRU = FILES3;
+    private static final String[] DELETED_INDEX = { b_c, "b", "e" };
+    private static final String[] NOT_DELETED_INDEX = { "a", "d", "f" };
     private static final Path CACHE_ROOT_DIR = Paths.get("target", "filecache");
     private static final Path JOURNAL_ROOT_DIR = Paths.get("target", "journaldir");
     private static final String JOURNAL_FILE_NAME_PATTERN = "HHmmss.SSS";
@@ -152,6 +157,135 @@ public class FileCacheTest {
         assertExists(NOT_DELETED_LRU);
     }
 
+    @Test
+    public void testFreeIndex() throws Exception {
+        fileCache.setLeastRecentlyUsed(true);
+        fileCache.setInMemoryIndex(true);
+        registerFiles(DELAY);
+        assertTrue(fileCache.access(toPath("d")));
+        assertEquals(FREED, fileCache.free(FREED));
+        assertNotExists(DELETED_INDEX);
+        assertExists(NOT_DELETED_INDEX);
+    }
+
+    @Test
+    public void testNoRegisterWhileEvicting() throws Exception {
+        FileCacheIndex index = new FileCacheIndex();
+        index.put("a", FILE_SIZE);
+        assertEquals("a", index.pollEldest().getName());
+        assertFalse(index.put("a", FILE_SIZE));
+        assertFalse(index.contains("a"));
+        index.evicted("a");
+        assertTrue(index.put("a", FILE_SIZE));
+        assertEquals(FILE_SIZE, index.getTotalSize());
+    }
+
+    @Test
+    public void testCheckpointIndex() throws Exception {
+        fileCache.setLeastRecentlyUsed(true);
+        fileCache.setInMemoryIndex(true);
+        registerFiles(DELAY);
+        fileCache.checkpointIndex();
+        assertTrue(Files.exists(fileCache.getIndexFile()));
+        assertTrue(Files.notExists(fileCache.getJournalFile()));
+        assertTrue(fileCache.access(toPath("d")));
+        fileCache.checkpointIndex();
+        FileCache reloaded = new FileCache();
+        reloaded.setFileCacheRootDirectory(CACHE_ROOT_DIR);
+        reloaded.setJournalRootDirectory(JOURNAL_ROOT_DIR);
+        reloaded.setLeastRecentlyUsed(true);
+        reloaded.setInMemoryIndex(true);
+        assertEquals(FREED, reloaded.free(FREED));
+        assertNotExists(DELETED_INDEX);
+        assertExists(NOT_DELETED_INDEX);
+    }
+
+    @Test
+    public void testLoadIndexSkipsDeletedFiles() throws Exception {
+        fileCache.setInMemoryIndex(true);
+        registerFiles(DELAY);
+        fileCache.checkpointIndex();
+        Files.delete(toPath("d"));
+        FileCache reloaded = new FileCache();
+        reloaded.setFileCacheRootDirectory(CACHE_ROOT_DIR);
+        reloaded.setJournalRootDirectory(JOURNAL_ROOT_DIR);
+        reloaded.setInMemoryIndex(true);
+        assertFalse(reloaded.access(toPath("d")));
+        assertTrue(reloaded.access(toPath("e")));
+    }
+
+    @Test
+    public void testFreeIndexDeletesJournals() throws Exception {
+        fileCache.setInMemoryIndex(true);
+        fileCache.setIndexCheckpointInterval(0);
+        registerFiles(DELAY);
+        assertEquals(FREED, fileCache.free(FREED));
+        assertTrue(Files.notExists(fileCache.getJournalFile()));
+        try (DirectoryStream<Path> dir =
+                Files.newDirectoryStream(fileCache.getJournalDirectory())) {
+            assertFalse(dir.iterator().hasNext());
+        }
+        assertTrue(Files.exists(fileCache.getIndexFile()));
+    }
+
+    @Test
+    public void testEvictAboveHighWaterMark() throws Exception {
+        fileCache.setLeastRecentlyUsed(true);
+        fileCache.setInMemoryIndex(true);
+        fileCache.setHighWaterMark(FILE_SIZE * 4);
+        fileCache.setLowWaterMark(FILE_SIZE * 3);
+        ScheduledExecutorService scheduler =
+                Executors.newSingleThreadScheduledExecutor();
+        try {
+            registerFiles(DELAY);
+            fileCache.start(scheduler);
+            for (int i = 0; i < 50 && fileCache.getCachedBytes() > FILE_SIZE * 3; i++)
+                Thread.sleep(100);
+            fileCache.stop();
+        } finally {
+            scheduler.shutdown();
+        }
+        assertEquals(FILE_SIZE * 3, fileCache.getCachedBytes());
+        assertEquals(FREED, fileCache.getEvictedBytes());
+        assertNotExists(new String[] { b_c, "d" });
+        assertExists(new String[] { "a", "e", "f" });
+    }
+
+    @Test
+    public void testFreeParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            fileCache.setParallelDeletion(executor, 4);
+            registerFiles(DELAY);
+            assertEquals(FREED, fileCache.free(FREED));
+        } finally {
+            executor.shutdown();
+        }
+        assertNotExists(DELETED);
+        assertExists(NOT_DELETED);
+    }
+
+    @Test
+    public void testResumeFree() throws Exception {
+        fileCache.setDeletionBatchSize(1);
+        registerFiles(DELAY);
+        Path journalFile;
+        try (DirectoryStream<Path> dir =
+                Files.newDirectoryStream(fileCache.getJournalDirectory())) {
+            journalFile = null;
+            for (Path path : dir)
+                if (journalFile == null || path.compareTo(journalFile) < 0)
+                    journalFile = path;
+        }
+        Files.write(fileCache.getProgressFile(), Arrays.asList(
+                JOURNAL_ROOT_DIR.relativize(journalFile).toString(), "1"),
+                StandardCharsets.UTF_8);
+        assertEquals(FILE_SIZE * 3, fileCache.free(FREED));
+        assertTrue(Files.notExists(fileCache.getProgressFile()));
+        assertNotExists(new String[] { b_c, "b", "d", "e" });
+        assertExists(new String[] { "a", "f" });
+    }
+
     private void assertNotExists(String[] files) {
         for (String file : files)
             assertTrue(Files.notExists(toPath(file)));
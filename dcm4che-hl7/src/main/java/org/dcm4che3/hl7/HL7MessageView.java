@@ -0,0 +1,253 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.hl7;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * Read-only view of a HL7 message, which only indexes the positions of
+ * segments and fields in the message bytes and decodes fields on demand.
+ * Field indices correspond to {@link HL7Segment#getField}, so index 1 of the
+ * MSH segment refers to the encoding characters.
+ * 
+ * Requires that field separators and segment terminators are encoded in
+ * single bytes, as by all character sets supported by {@link HL7Charset}.
+ * 
+ * @author agent <agent@local>
+ */
+public class HL7MessageView {
+
+    private final byte[] b;
+    private final char fieldSeparator;
+    private final String encodingCharacters;
+    private final String charsetName;
+    private int segmentCount;
+    private int[] segStart = new int[16];
+    private int[] segEnd = new int[16];
+    private int[] segDelims = new int[17];
+    private int[] delims = new int[256];
+    private int delimCount;
+
+    public HL7MessageView(byte[] b, String defCharset) {
+        this(b, b.length, defCharset);
+    }
+
+    public HL7MessageView(byte[] b, int size, String defCharset) {
+        if (size < 8 || b[0] != 'M' || b[1] != 'S' || b[2] != 'H')
+            throw new IllegalArgumentException("Invalid MSH Segment: "
+                    + new String(b, 0, Math.min(size, 80)));
+        this.b = b;
+        this.fieldSeparator = (char) (b[3] & 0xff);
+        this.encodingCharacters = new String(b, 4, 4);
+        index(size);
+        this.charsetName = HL7Charset.toCharsetName(
+                getField(0, 17, defCharset));
+    }
+
+    private void index(int size) {
+        byte fs = b[3];
+        int off = 0;
+        while (off < size) {
+            int end = off;
+            byte c;
+            while (end < size && (c = b[end]) != '\r' && c != '\n') {
+                if (c == fs)
+                    addDelim(end);
+                end++;
+            }
+            if (end == off)
+                break;
+
+            addSegment(off, end);
+            if (++end < size && (b[end] == '\r' || b[end] == '\n'))
+                end++;
+            off = end;
+        }
+    }
+
+    private void addDelim(int pos) {
+        if (delimCount == delims.length)
+            delims = Arrays.copyOf(delims, delimCount << 1);
+        delims[delimCount++] = pos;
+    }
+
+    private void addSegment(int start, int end) {
+        if (segmentCount == segStart.length) {
+            int n = segmentCount << 1;
+            segStart = Arrays.copyOf(segStart, n);
+            segEnd = Arrays.copyOf(segEnd, n);
+            segDelims = Arrays.copyOf(segDelims, n + 1);
+        }
+        segStart[segmentCount] = start;
+        segEnd[segmentCount] = end;
+        segDelims[++segmentCount] = delimCount;
+    }
+
+    public final char getFieldSeparator() {
+        return fieldSeparator;
+    }
+
+    public final String getEncodingCharacters() {
+        return encodingCharacters;
+    }
+
+    public final String getCharsetName() {
+        return charsetName;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Returns the number of fields of the segment with the specified index,
+     * including the segment name.
+     */
+    public int getFieldCount(int seg) {
+        checkSegment(seg);
+        return segDelims[seg + 1] - segDelims[seg] + 1;
+    }
+
+    public String getSegmentName(int seg) {
+        return getField(seg, 0, null);
+    }
+
+    /**
+     * Returns the index of the first segment with the specified name,
+     * starting the search at segment index {@code fromSeg}, or -1 if there
+     * is no such segment.
+     */
+    public int indexOf(String name, int fromSeg) {
+        int len = name.length();
+        for (int seg = Math.max(fromSeg, 0); seg < segmentCount; seg++) {
+            int start = segStart[seg];
+            int end = fieldEnd(seg, 0);
+            if (end - start == len && regionMatches(start, name))
+                return seg;
+        }
+        return -1;
+    }
+
+    public int indexOf(String name) {
+        return indexOf(name, 0);
+    }
+
+    private boolean regionMatches(int start, String name) {
+        for (int i = 0, n = name.length(); i < n; i++)
+            if (b[start + i] != name.charAt(i))
+                return false;
+        return true;
+    }
+
+    public String getField(int seg, int field, String defVal) {
+        checkSegment(seg);
+        if (field < 0 || field > segDelims[seg + 1] - segDelims[seg])
+            return defVal;
+
+        int start = fieldStart(seg, field);
+        int len = fieldEnd(seg, field) - start;
+        return len > 0 ? decode(start, len) : defVal;
+    }
+
+    /**
+     * Returns the field of the first segment with the specified name, or
+     * {@code defVal} if there is no such segment or field.
+     */
+    public String getField(String segName, int field, String defVal) {
+        int seg = indexOf(segName);
+        return seg >= 0 ? getField(seg, field, defVal) : defVal;
+    }
+
+    public String getMessageType() {
+        String s = getField(0, 8, "").replace(
+                encodingCharacters.charAt(0), '^');
+        int end = s.indexOf('^', s.indexOf('^') + 1);
+        return end > 0 ? s.substring(0, end) : s;
+    }
+
+    public HL7Segment getSegment(int seg) {
+        checkSegment(seg);
+        int start = segStart[seg];
+        return new HL7Segment(decode(start, segEnd[seg] - start),
+                fieldSeparator, encodingCharacters);
+    }
+
+    public HL7Segment getMSH() {
+        return getSegment(0);
+    }
+
+    public HL7Message toHL7Message() {
+        HL7Message msg = new HL7Message(segmentCount);
+        for (int seg = 0; seg < segmentCount; seg++)
+            msg.add(getSegment(seg));
+        return msg;
+    }
+
+    private void checkSegment(int seg) {
+        if (seg < 0 || seg >= segmentCount)
+            throw new IndexOutOfBoundsException("seg: " + seg
+                    + ", segmentCount: " + segmentCount);
+    }
+
+    private int fieldStart(int seg, int field) {
+        return field == 0 ? segStart[seg] : delims[segDelims[seg] + field - 1] + 1;
+    }
+
+    private int fieldEnd(int seg, int field) {
+        int i = segDelims[seg] + field;
+        return i < segDelims[seg + 1] ? delims[i] : segEnd[seg];
+    }
+
+    private String decode(int off, int len) {
+        try {
+            return charsetName != null
+                    ? new String(b, off, len, charsetName)
+                    : new String(b, off, len);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalArgumentException("charsetName: " + charsetName);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HL7MessageView[segments=" + segmentCount
+                + ", type=" + getMessageType() + "]";
+    }
+}
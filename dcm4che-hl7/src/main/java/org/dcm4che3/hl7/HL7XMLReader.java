@@ -0,0 +1,101 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.hl7;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * {@link org.xml.sax.XMLReader} which parses HL7 messages by
+ * {@link HL7Parser}, to use HL7 messages as
+ * {@link javax.xml.transform.sax.SAXSource} of a reusable
+ * {@link javax.xml.transform.Transformer}.
+ * 
+ * @author agent <agent@local>
+ */
+public class HL7XMLReader extends XMLFilterImpl {
+
+    private boolean includeNamespaceDeclaration;
+
+    public final boolean isIncludeNamespaceDeclaration() {
+        return includeNamespaceDeclaration;
+    }
+
+    public final void setIncludeNamespaceDeclaration(boolean includeNamespaceDeclaration) {
+        this.includeNamespaceDeclaration = includeNamespaceDeclaration;
+    }
+
+    @Override
+    public void parse(InputSource input) throws SAXException, IOException {
+        HL7Parser parser = new HL7Parser(getContentHandler());
+        parser.setIncludeNamespaceDeclaration(includeNamespaceDeclaration);
+        parser.parse(toReader(input));
+    }
+
+    @Override
+    public void parse(String systemId) throws SAXException, IOException {
+        parse(new InputSource(systemId));
+    }
+
+    private static Reader toReader(InputSource input) throws IOException {
+        Reader reader = input.getCharacterStream();
+        if (reader != null)
+            return reader;
+
+        InputStream in = input.getByteStream();
+        if (in == null) {
+            String systemId = input.getSystemId();
+            if (systemId == null)
+                throw new IOException("Empty InputSource");
+            in = new URL(systemId).openStream();
+        }
+
+        String encoding = input.getEncoding();
+        return encoding != null
+                ? new InputStreamReader(in, encoding)
+                : new InputStreamReader(in);
+    }
+}
@@ -0,0 +1,164 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.hl7;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Incremental decoder of MLLP framed messages from {@link ByteBuffer}s, for
+ * use with non-blocking channels. Bytes of an incomplete message are kept
+ * until the following buffers complete it.
+ * 
+ * @author agent <agent@local>
+ */
+public class MLLPDecoder {
+
+    private static final int SOM = 0x0b; // Start of Message
+    private static final int EOM1 = 0x1c; // End of Message Byte 1
+    private static final int EOM2 = 0x0d; // End of Message Byte 2
+
+    private static final int EXPECT_SOM = 0;
+    private static final int EXPECT_EOM1 = 1;
+    private static final int EXPECT_EOM2 = 2;
+
+    private byte[] buf;
+    private int count;
+    private int state = EXPECT_SOM;
+
+    public MLLPDecoder() {
+        this(1024);
+    }
+
+    public MLLPDecoder(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size: " + size);
+        buf = new byte[size];
+    }
+
+    /**
+     * Returns {@code true} if a message was started but not yet completed.
+     */
+    public boolean isPartial() {
+        return state != EXPECT_SOM;
+    }
+
+    /**
+     * Consumes bytes from {@code src} up to the end of the next message.
+     * 
+     * @return the next complete message without MLLP frame, or {@code null}
+     *         if {@code src} was exhausted before
+     * @throws IOException if the bytes violate the MLLP framing
+     */
+    public byte[] decode(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            switch (state) {
+            case EXPECT_SOM:
+                if (src.get() != SOM)
+                    throw new IOException("Missing Start Block character");
+                count = 0;
+                state = EXPECT_EOM1;
+                break;
+            case EXPECT_EOM1:
+                int pos = src.position();
+                int end = indexOfEOM1(src, pos, src.limit());
+                append(src, (end < 0 ? src.limit() : end) - pos);
+                if (end >= 0) {
+                    src.get();
+                    state = EXPECT_EOM2;
+                }
+                break;
+            case EXPECT_EOM2:
+                int b = src.get();
+                if (b != EOM2)
+                    throw new IOException("1CH followed by "
+                            + Integer.toHexString(b & 0xff) + "H instead by 0DH");
+                state = EXPECT_SOM;
+                return Arrays.copyOf(buf, count);
+            }
+        }
+        return null;
+    }
+
+    private static int indexOfEOM1(ByteBuffer src, int from, int to) {
+        if (src.hasArray()) {
+            byte[] a = src.array();
+            int off = src.arrayOffset();
+            for (int i = from + off, end = to + off; i < end; i++)
+                if (a[i] == EOM1)
+                    return i - off;
+        } else {
+            for (int i = from; i < to; i++)
+                if (src.get(i) == EOM1)
+                    return i;
+        }
+        return -1;
+    }
+
+    private void append(ByteBuffer src, int len) {
+        if (count + len > buf.length)
+            buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + len));
+        src.get(buf, count, len);
+        count += len;
+    }
+
+    /**
+     * Returns a buffer containing the specified message with MLLP frame.
+     */
+    public static ByteBuffer encode(byte[] msg) {
+        ByteBuffer dst = ByteBuffer.allocate(msg.length + 3);
+        encode(msg, dst);
+        dst.flip();
+        return dst;
+    }
+
+    /**
+     * Puts the specified message with MLLP frame into {@code dst}.
+     * 
+     * @return {@code false}, if the remaining space of {@code dst} was not
+     *         sufficient
+     */
+    public static boolean encode(byte[] msg, ByteBuffer dst) {
+        if (dst.remaining() < msg.length + 3)
+            return false;
+        dst.put((byte) SOM).put(msg).put((byte) EOM1).put((byte) EOM2);
+        return true;
+    }
+}
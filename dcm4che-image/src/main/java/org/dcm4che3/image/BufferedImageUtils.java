@@ -65,6 +65,9 @@ public class BufferedImageUtils {
             return ((PaletteColorModel) cm).convertToIntDiscrete(raster);
 
         BufferedImage intRGB = new BufferedImage(bi.getWidth(), bi.getHeight(), BufferedImage.TYPE_INT_RGB);
+        if (convertYBRToIntRGB(cm, raster, intRGB))
+            return intRGB;
+
         Graphics graphics = intRGB.getGraphics();
         try {
             graphics.drawImage(bi, 0, 0, null);
@@ -74,4 +77,74 @@ public class BufferedImageUtils {
         return intRGB;
     }
 
+    /**
+     * Converts 8-bit YBR images by {@link YBR} integer arithmetic scanline by
+     * scanline, instead of pixel by pixel by the Java 2D color conversion.
+     * Returns {@code false}, if the image is not supported.
+     */
+    private static boolean convertYBRToIntRGB(ColorModel cm,
+            WritableRaster raster, BufferedImage intRGB) {
+        ColorSpace cs = cm.getColorSpace();
+        if (!(cs instanceof YBRColorSpace)
+                || !((YBRColorSpace) cs).getRGBColorSpace().isCS_sRGB()
+                || raster.getMinX() != 0 || raster.getMinY() != 0
+                || raster.getDataBuffer().getOffset() != 0
+                || raster.getDataBuffer().getDataType() != DataBuffer.TYPE_BYTE)
+            return false;
+
+        YBR ybr = ((YBRColorSpace) cs).getYBR();
+        SampleModel sm = raster.getSampleModel();
+        DataBufferByte src = (DataBufferByte) raster.getDataBuffer();
+        int[] rgb = ((DataBufferInt) intRGB.getRaster().getDataBuffer()).getData();
+        int w = raster.getWidth();
+        int h = raster.getHeight();
+        if (sm instanceof SampledComponentSampleModel) {
+            ColorSubsampling subsampling =
+                    ((SampledComponentSampleModel) sm).getSubsampling();
+            byte[] ybrData = src.getData();
+            if (subsampling == ColorSubsampling.YBR_XXX_422) {
+                for (int y = 0; y < h; y++)
+                    ybr.toRGB422(ybrData, subsampling.indexOfY(0, y, w),
+                            rgb, y * w, w);
+            } else {
+                for (int y = 0, j = 0; y < h; y++)
+                    for (int x = 0; x < w; x++) {
+                        int ibr = subsampling.indexOfBR(x, y, w);
+                        rgb[j++] = ybr.toRGB(
+                                ybrData[subsampling.indexOfY(x, y, w)],
+                                ybrData[ibr], ybrData[ibr + 1]);
+                    }
+            }
+            return true;
+        }
+        if (!(sm instanceof ComponentSampleModel))
+            return false;
+
+        ComponentSampleModel csm = (ComponentSampleModel) sm;
+        int[] bankIndices = csm.getBankIndices();
+        int[] bandOffsets = csm.getBandOffsets();
+        int stride = csm.getScanlineStride();
+        if (csm.getPixelStride() == 3
+                && bankIndices[0] == 0 && bankIndices[1] == 0 && bankIndices[2] == 0
+                && bandOffsets[1] == bandOffsets[0] + 1
+                && bandOffsets[2] == bandOffsets[0] + 2) {
+            byte[] ybrData = src.getData(0);
+            for (int y = 0; y < h; y++)
+                ybr.toRGB(ybrData, y * stride + bandOffsets[0], rgb, y * w, w);
+            return true;
+        }
+        if (csm.getPixelStride() == 1
+                && bandOffsets[0] == bandOffsets[1]
+                && bandOffsets[0] == bandOffsets[2]) {
+            byte[] yData = src.getData(bankIndices[0]);
+            byte[] cbData = src.getData(bankIndices[1]);
+            byte[] crData = src.getData(bankIndices[2]);
+            for (int y = 0; y < h; y++)
+                ybr.toRGB(yData, cbData, crData,
+                        y * stride + bandOffsets[0], rgb, y * w, w);
+            return true;
+        }
+        return false;
+    }
+
 }
@@ -29,6 +29,13 @@ public class ByteLookupTable extends LookupTable {
 
     @Override
     public void lookup(byte[] src, int srcPos, byte[] dest, int destPos, int length) {
+        if (isFullRange()) {
+            int mask = lut.length - 1;
+            int flip = -offset;
+            for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
+                dest[j++] = lut[(src[i++] & mask) ^ flip];
+            return;
+        }
         for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
             dest[j++] = lut[index(src[i++])];
     }
@@ -40,22 +47,56 @@ public class ByteLookupTable extends LookupTable {
 
     @Override
     public void lookup(short[] src, int srcPos, byte[] dest, int destPos, int length) {
+        if (isFullRange()) {
+            int mask = lut.length - 1;
+            int flip = -offset;
+            for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
+                dest[j++] = lut[(src[i++] & mask) ^ flip];
+            return;
+        }
         for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
             dest[j++] = lut[index(src[i++])];
     }
 
     @Override
     public void lookup(byte[] src, int srcPos, short[] dest, int destPos, int length) {
+        if (isFullRange()) {
+            int mask = lut.length - 1;
+            int flip = -offset;
+            for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
+                dest[j++] = (short) (lut[(src[i++] & mask) ^ flip] & 0xff);
+            return;
+        }
         for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
             dest[j++] = (short) (lut[index(src[i++])] & 0xff);
     }
 
     @Override
     public void lookup(short[] src, int srcPos, short[] dest, int destPos, int length) {
+        if (isFullRange()) {
+            int mask = lut.length - 1;
+            int flip = -offset;
+            for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
+                dest[j++] = (short) (lut[(src[i++] & mask) ^ flip] & 0xff);
+            return;
+        }
         for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
             dest[j++] = (short) (lut[index(src[i++])] & 0xff);
     }
 
+    @Override
+    public LookupTable toFullRange() {
+        int min = inBits.minValue();
+        int size = inBits.maxValue() - min + 1;
+        if (size > MAX_FULL_RANGE_LENGTH || isFullRange())
+            return this;
+
+        byte[] full = new byte[size];
+        for (int i = 0; i < size; i++)
+            full[i] = lut[index(min + i)];
+        return new ByteLookupTable(inBits, outBits, min, full);
+    }
+
     @Override
     public LookupTable adjustOutBits(int outBits) {
         int diff = outBits - this.outBits;
@@ -44,6 +44,10 @@ import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferShort;
 import java.awt.image.DataBufferUShort;
 import java.awt.image.Raster;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -51,6 +55,17 @@ import java.awt.image.Raster;
  */
 public abstract class LookupTable {
 
+    /**
+     * Maximal length of a table returned by {@link #toFullRange()}.
+     */
+    public static final int MAX_FULL_RANGE_LENGTH = 0x10000;
+
+    /**
+     * Minimal number of pixels processed by one task of
+     * {@link #lookup(Raster, Raster, Executor, int)}.
+     */
+    public static final int MIN_PIXELS_PER_TASK = 0x10000;
+
     protected StoredValue inBits;
     protected int outBits;
     protected int offset;
@@ -63,7 +78,86 @@ public abstract class LookupTable {
 
     public abstract int length();
 
+    /**
+     * Returns {@code true}, if the table contains one entry for each
+     * possible stored value, so the entry can be selected by the bits of the
+     * stored value directly, without range check.
+     */
+    protected boolean isFullRange() {
+        return offset == inBits.minValue()
+                && length() == inBits.maxValue() - offset + 1;
+    }
+
+    /**
+     * Returns a table which contains one entry for each possible stored
+     * value, which is faster to apply, but larger than this table. Returns
+     * this table, if it already covers the full range or if the range exceeds
+     * {@link #MAX_FULL_RANGE_LENGTH}.
+     */
+    public abstract LookupTable toFullRange();
+
     public void lookup(Raster srcRaster, Raster destRaster) {
+        lookup(srcRaster, destRaster, 0, srcRaster.getHeight());
+    }
+
+    /**
+     * Applies the table on bands of rows of the raster concurrently by up to
+     * {@code parallelism} threads of the specified executor, including the
+     * calling thread. Rasters with less than 2 x {@link #MIN_PIXELS_PER_TASK}
+     * pixels are processed by the calling thread.
+     */
+    public void lookup(final Raster srcRaster, final Raster destRaster,
+            Executor executor, int parallelism) {
+        int w = srcRaster.getWidth();
+        int h = srcRaster.getHeight();
+        int tasks = Math.min(Math.min(parallelism, h),
+                (int) ((long) w * h / MIN_PIXELS_PER_TASK));
+        if (executor == null || tasks < 2) {
+            lookup(srcRaster, destRaster, 0, h);
+            return;
+        }
+        ArrayList<FutureTask<Object>> submitted =
+                new ArrayList<FutureTask<Object>>(tasks - 1);
+        int y = 0;
+        for (int i = 1; i < tasks; i++) {
+            final int y0 = y;
+            final int y1 = y = h * i / tasks;
+            FutureTask<Object> task = new FutureTask<Object>(new Runnable() {
+                @Override
+                public void run() {
+                    lookup(srcRaster, destRaster, y0, y1);
+                }
+            }, null);
+            submitted.add(task);
+            executor.execute(task);
+        }
+        lookup(srcRaster, destRaster, y, h);
+        boolean interrupted = false;
+        try {
+            for (FutureTask<Object> task : submitted) {
+                while (true) {
+                    try {
+                        task.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException)
+                            throw (RuntimeException) cause;
+                        if (cause instanceof Error)
+                            throw (Error) cause;
+                        throw new RuntimeException(cause);
+                    }
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private void lookup(Raster srcRaster, Raster destRaster, int y0, int y1) {
         ComponentSampleModel sm =
                 (ComponentSampleModel) srcRaster.getSampleModel();
         ComponentSampleModel destsm =
@@ -75,11 +169,11 @@ public abstract class LookupTable {
             switch (dest.getDataType()) {
             case DataBuffer.TYPE_BYTE:
                 lookup(sm, ((DataBufferByte) src).getData(),
-                        destsm, ((DataBufferByte) dest).getData());
+                        destsm, ((DataBufferByte) dest).getData(), y0, y1);
                 return;
             case DataBuffer.TYPE_USHORT:
                 lookup(sm, ((DataBufferByte) src).getData(),
-                        destsm, ((DataBufferUShort) dest).getData());
+                        destsm, ((DataBufferUShort) dest).getData(), y0, y1);
                 return;
             }
             break;
@@ -87,11 +181,11 @@ public abstract class LookupTable {
             switch (dest.getDataType()) {
             case DataBuffer.TYPE_BYTE:
                 lookup(sm, ((DataBufferUShort) src).getData(),
-                        destsm, ((DataBufferByte) dest).getData());
+                        destsm, ((DataBufferByte) dest).getData(), y0, y1);
                 return;
             case DataBuffer.TYPE_USHORT:
                 lookup(sm, ((DataBufferUShort) src).getData(),
-                        destsm, ((DataBufferUShort) dest).getData());
+                        destsm, ((DataBufferUShort) dest).getData(), y0, y1);
                 return;
             }
             break;
@@ -99,11 +193,11 @@ public abstract class LookupTable {
             switch (dest.getDataType()) {
             case DataBuffer.TYPE_BYTE:
                 lookup(sm, ((DataBufferShort) src).getData(),
-                        destsm, ((DataBufferByte) dest).getData());
+                        destsm, ((DataBufferByte) dest).getData(), y0, y1);
                 return;
             case DataBuffer.TYPE_USHORT:
                 lookup(sm, ((DataBufferShort) src).getData(),
-                        destsm, ((DataBufferUShort) dest).getData());
+                        destsm, ((DataBufferUShort) dest).getData(), y0, y1);
                 return;
             }
             break;
@@ -115,42 +209,42 @@ public abstract class LookupTable {
    }
 
     private void lookup(ComponentSampleModel sm, byte[] src,
-            ComponentSampleModel destsm, byte[] dest) {
+            ComponentSampleModel destsm, byte[] dest,
+            int y0, int y1) {
         int w = sm.getWidth();
-        int h = sm.getHeight();
         int stride = sm.getScanlineStride();
         int destStride = destsm.getScanlineStride();
-        for (int y = 0; y < h; y++)
+        for (int y = y0; y < y1; y++)
             lookup(src, y * stride, dest, y * destStride, w);
     }
 
     private void lookup(ComponentSampleModel sm, short[] src,
-            ComponentSampleModel destsm, byte[] dest) {
+            ComponentSampleModel destsm, byte[] dest,
+            int y0, int y1) {
         int w = sm.getWidth();
-        int h = sm.getHeight();
         int stride = sm.getScanlineStride();
         int destStride = destsm.getScanlineStride();
-        for (int y = 0; y < h; y++)
+        for (int y = y0; y < y1; y++)
             lookup(src, y * stride, dest, y * destStride, w);
     }
 
     private void lookup(ComponentSampleModel sm, byte[] src,
-            ComponentSampleModel destsm, short[] dest) {
+            ComponentSampleModel destsm, short[] dest,
+            int y0, int y1) {
         int w = sm.getWidth();
-        int h = sm.getHeight();
         int stride = sm.getScanlineStride();
         int destStride = destsm.getScanlineStride();
-        for (int y = 0; y < h; y++)
+        for (int y = y0; y < y1; y++)
             lookup(src, y * stride, dest, y * destStride, w);
     }
 
     private void lookup(ComponentSampleModel sm, short[] src,
-            ComponentSampleModel destsm, short[] dest) {
+            ComponentSampleModel destsm, short[] dest,
+            int y0, int y1) {
         int w = sm.getWidth();
-        int h = sm.getHeight();
         int stride = sm.getScanlineStride();
         int destStride = destsm.getScanlineStride();
-        for (int y = 0; y < h; y++)
+        for (int y = y0; y < y1; y++)
             lookup(src, y * stride, dest, y * destStride, w);
     }
 
@@ -0,0 +1,144 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.image;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe cache of the combined Modality, VOI and Presentation LUTs
+ * created by {@link LookupTableFactory}, so that rendering subsequent frames
+ * or images with the same pixel value transformation, window and output bit
+ * depth reuses the table of the previous one. Cached tables are expanded to
+ * the full range of stored values by {@link LookupTable#toFullRange()}.
+ * 
+ * Up to {@link #getMaxSize()} tables are kept; the least recently used one
+ * is evicted first.
+ * 
+ * @author agent <agent@local>
+ */
+public class LookupTableCache {
+
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private static final LookupTableCache DEFAULT = new LookupTableCache();
+
+    private final LinkedHashMap<Object, LookupTable> cache =
+            new LinkedHashMap<Object, LookupTable>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<Object, LookupTable> eldest) {
+                    return size() > maxSize;
+                }
+            };
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    public static LookupTableCache getDefault() {
+        return DEFAULT;
+    }
+
+    public final int getMaxSize() {
+        return maxSize;
+    }
+
+    public final void setMaxSize(int maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        this.maxSize = maxSize;
+        synchronized (cache) {
+            while (cache.size() > maxSize)
+                cache.remove(cache.keySet().iterator().next());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the cached table for the current state of the specified
+     * factory, or creates and caches a new one. The returned table is shared
+     * and must not be modified.
+     */
+    public LookupTable getLUT(LookupTableFactory factory, int outBits) {
+        Object key = factory.createLUTKey(outBits);
+        LookupTable lut;
+        synchronized (cache) {
+            lut = cache.get(key);
+        }
+        if (lut != null) {
+            hits.incrementAndGet();
+            return lut;
+        }
+        misses.incrementAndGet();
+        lut = factory.createLUT(outBits).toFullRange();
+        synchronized (cache) {
+            cache.put(key, lut);
+        }
+        return lut;
+    }
+
+    @Override
+    public String toString() {
+        return "LookupTableCache[size=" + size() + ", hits=" + hits
+                + ", misses=" + misses + "]";
+    }
+}
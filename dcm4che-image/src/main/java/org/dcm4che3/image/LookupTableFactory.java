@@ -44,6 +44,7 @@ import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferShort;
 import java.awt.image.DataBufferUShort;
 import java.awt.image.Raster;
+import java.util.Arrays;
 
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.Attributes;
@@ -59,11 +60,14 @@ public class LookupTableFactory {
     private float rescaleSlope = 1;
     private float rescaleIntercept = 0;
     private LookupTable modalityLUT;
+    private LUTKey modalityLUTKey;
     private float windowCenter;
     private float windowWidth;
     private String voiLUTFunction; // not yet implemented
     private LookupTable voiLUT;
+    private LUTKey voiLUTKey;
     private LookupTable presentationLUT;
+    private LUTKey presentationLUTKey;
     private boolean inverse;
 
     public LookupTableFactory(StoredValue storedValue) {
@@ -73,8 +77,9 @@ public class LookupTableFactory {
     public void setModalityLUT(Attributes attrs) {
         rescaleIntercept = attrs.getFloat(Tag.RescaleIntercept, 0);
         rescaleSlope = attrs.getFloat(Tag.RescaleSlope, 1);
-        modalityLUT = createLUT(storedValue,
-                attrs.getNestedDataset(Tag.ModalityLUTSequence));
+        Attributes mLUT = attrs.getNestedDataset(Tag.ModalityLUTSequence);
+        modalityLUT = createLUT(storedValue, mLUT);
+        modalityLUTKey = LUTKey.valueOf(mLUT);
     }
 
     public void setPresentationLUT(Attributes attrs) {
@@ -86,6 +91,7 @@ public class LookupTableFactory {
                 presentationLUT = createLUT(new StoredValue.Unsigned(log2(len)), 
                         resetOffset(desc), 
                         pLUT.getSafeBytes(Tag.LUTData), pLUT.bigEndian());
+                presentationLUTKey = LUTKey.valueOf(pLUT);
             }
         } else {
             String pShape = attrs.getString(Tag.PresentationLUTShape);
@@ -132,11 +138,13 @@ public class LookupTableFactory {
                 return;
             }
         }
-        if (vLUT != null)
+        if (vLUT != null) {
             voiLUT = createLUT(modalityLUT != null
                           ? new StoredValue.Unsigned(modalityLUT.outBits)
                           : storedValue,
                       vLUT);
+            voiLUTKey = LUTKey.valueOf(vLUT);
+        }
     }
 
     private LookupTable createLUT(StoredValue inBits, Attributes attrs) {
@@ -208,6 +216,122 @@ public class LookupTableFactory {
         return lut;
     }
 
+    /**
+     * Returns a key for the table returned by {@link #createLUT(int)}, which
+     * equals the key of another factory, if both would return equal tables.
+     */
+    public Object createLUTKey(int outBits) {
+        return new Key(this, outBits);
+    }
+
+    private static final class Key {
+        private final StoredValue storedValue;
+        private final float rescaleSlope;
+        private final float rescaleIntercept;
+        private final LUTKey modalityLUT;
+        private final float windowCenter;
+        private final float windowWidth;
+        private final LUTKey voiLUT;
+        private final LUTKey presentationLUT;
+        private final boolean inverse;
+        private final int outBits;
+        private final int hash;
+
+        Key(LookupTableFactory f, int outBits) {
+            this.storedValue = f.storedValue;
+            this.rescaleSlope = f.rescaleSlope;
+            this.rescaleIntercept = f.rescaleIntercept;
+            this.modalityLUT = f.modalityLUTKey;
+            this.windowCenter = f.windowCenter;
+            this.windowWidth = f.windowWidth;
+            this.voiLUT = f.voiLUTKey;
+            this.presentationLUT = f.presentationLUTKey;
+            this.inverse = f.inverse;
+            this.outBits = outBits;
+            int h = storedValue.hashCode();
+            h = 31 * h + Float.floatToIntBits(rescaleSlope);
+            h = 31 * h + Float.floatToIntBits(rescaleIntercept);
+            h = 31 * h + (modalityLUT != null ? modalityLUT.hashCode() : 0);
+            h = 31 * h + Float.floatToIntBits(windowCenter);
+            h = 31 * h + Float.floatToIntBits(windowWidth);
+            h = 31 * h + (voiLUT != null ? voiLUT.hashCode() : 0);
+            h = 31 * h + (presentationLUT != null ? presentationLUT.hashCode() : 0);
+            h = 31 * h + (inverse ? 1 : 0);
+            this.hash = 31 * h + outBits;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hash == other.hash
+                    && outBits == other.outBits
+                    && inverse == other.inverse
+                    && Float.floatToIntBits(rescaleSlope)
+                        == Float.floatToIntBits(other.rescaleSlope)
+                    && Float.floatToIntBits(rescaleIntercept)
+                        == Float.floatToIntBits(other.rescaleIntercept)
+                    && Float.floatToIntBits(windowCenter)
+                        == Float.floatToIntBits(other.windowCenter)
+                    && Float.floatToIntBits(windowWidth)
+                        == Float.floatToIntBits(other.windowWidth)
+                    && storedValue.equals(other.storedValue)
+                    && equals(modalityLUT, other.modalityLUT)
+                    && equals(voiLUT, other.voiLUT)
+                    && equals(presentationLUT, other.presentationLUT);
+        }
+
+        private static boolean equals(LUTKey a, LUTKey b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    private static final class LUTKey {
+        private final int[] desc;
+        private final byte[] data;
+        private final boolean bigEndian;
+        private final int hash;
+
+        private LUTKey(int[] desc, byte[] data, boolean bigEndian) {
+            this.desc = desc;
+            this.data = data;
+            this.bigEndian = bigEndian;
+            this.hash = 31 * (31 * Arrays.hashCode(desc) + Arrays.hashCode(data))
+                    + (bigEndian ? 1 : 0);
+        }
+
+        static LUTKey valueOf(Attributes lut) {
+            return lut != null
+                    ? new LUTKey(lut.getInts(Tag.LUTDescriptor),
+                            lut.getSafeBytes(Tag.LUTData), lut.bigEndian())
+                    : null;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LUTKey))
+                return false;
+            LUTKey other = (LUTKey) o;
+            return hash == other.hash
+                    && bigEndian == other.bigEndian
+                    && Arrays.equals(desc, other.desc)
+                    && Arrays.equals(data, other.data);
+        }
+    }
+
     private static int log2(int value) {
         int i = 0;
         while ((value>>>i) != 0)
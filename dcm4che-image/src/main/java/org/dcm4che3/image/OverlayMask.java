@@ -0,0 +1,135 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.image;
+
+/**
+ * Overlay Plane of one frame, unpacked from the Overlay Data into rows of
+ * 64-bit words, so it can be burned into a raster row by row, skipping 64
+ * transparent pixels at once.
+ * 
+ * @author agent <agent@local>
+ */
+public final class OverlayMask {
+
+    private final int rows;
+    private final int columns;
+    private final int x0;
+    private final int y0;
+    private final int wordsPerRow;
+    private final long[] words;
+
+    /**
+     * Unpacks {@code rows} x {@code columns} overlay bits starting at bit
+     * {@code bitOffset} of {@code ovlyData}. Missing bits are treated as 0.
+     * 
+     * @param x0 column of the image, where the overlay starts, 0-based
+     * @param y0 row of the image, where the overlay starts, 0-based
+     */
+    public OverlayMask(byte[] ovlyData, long bitOffset, int rows, int columns,
+            int x0, int y0) {
+        this.rows = rows;
+        this.columns = columns;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.wordsPerRow = (columns + 63) >>> 6;
+        this.words = new long[rows * wordsPerRow];
+        long lastWordMask = (columns & 63) != 0
+                ? (1L << (columns & 63)) - 1
+                : -1L;
+        for (int r = 0, i = 0; r < rows; r++) {
+            long bitIndex = bitOffset + (long) r * columns;
+            for (int w = 0; w < wordsPerRow; w++, i++, bitIndex += 64)
+                words[i] = read64(ovlyData, bitIndex);
+            words[i - 1] &= lastWordMask;
+        }
+    }
+
+    private static long read64(byte[] data, long bitIndex) {
+        long index = bitIndex >>> 3;
+        if (index >= data.length)
+            return 0L;
+
+        int i = (int) index;
+        int shift = (int) (bitIndex & 7);
+        int end = Math.min(i + 8, data.length);
+        long v = 0L;
+        for (int j = i, s = 0; j < end; j++, s += 8)
+            v |= (data[j] & 0xffL) << s;
+        if (shift == 0)
+            return v;
+
+        v >>>= shift;
+        if (end < data.length && end == i + 8)
+            v |= (data[end] & 0xffL) << (64 - shift);
+        return v;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getX0() {
+        return x0;
+    }
+
+    public int getY0() {
+        return y0;
+    }
+
+    /**
+     * Returns the index of the first word of the specified row in
+     * {@link #words()}, or -1 if the overlay does not cover the row.
+     */
+    int rowOffset(int y) {
+        int r = y - y0;
+        return r >= 0 && r < rows ? r * wordsPerRow : -1;
+    }
+
+    int wordsPerRow() {
+        return wordsPerRow;
+    }
+
+    long[] words() {
+        return words;
+    }
+}
@@ -0,0 +1,188 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.image;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+
+/**
+ * Thread-safe cache of the Overlay Planes unpacked by
+ * {@link Overlays#createOverlayMask}, so that rendering subsequent frames or
+ * renditions of an image does not unpack its Overlay Data again.
+ * 
+ * Masks are associated with the identity of the Overlay Data value and the
+ * overlay geometry - Overlay Rows, Columns and Origin, Image Frame Origin and
+ * Number of Frames in Overlay - and are kept as long as that value is
+ * referenced by the data set. Copies of a data set share the Overlay Data
+ * value, but may have coerced geometry attributes.
+ * 
+ * @author agent <agent@local>
+ */
+public class OverlayMaskCache {
+
+    private static final OverlayMaskCache DEFAULT = new OverlayMaskCache();
+
+    private final Map<byte[], Entry> cache = new WeakHashMap<byte[], Entry>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static final class Entry {
+        final int imageFrameOrigin;
+        final int framesInOverlay;
+        final int rows;
+        final int columns;
+        final int originRow;
+        final int originColumn;
+        final Entry next;
+        OverlayMask[] masks = {};
+
+        Entry(int imageFrameOrigin, int framesInOverlay, int rows, int columns,
+                int originRow, int originColumn, Entry next) {
+            this.imageFrameOrigin = imageFrameOrigin;
+            this.framesInOverlay = framesInOverlay;
+            this.rows = rows;
+            this.columns = columns;
+            this.originRow = originRow;
+            this.originColumn = originColumn;
+            this.next = next;
+        }
+
+        boolean matches(int imageFrameOrigin, int framesInOverlay, int rows,
+                int columns, int originRow, int originColumn) {
+            return this.imageFrameOrigin == imageFrameOrigin
+                    && this.framesInOverlay == framesInOverlay
+                    && this.rows == rows
+                    && this.columns == columns
+                    && this.originRow == originRow
+                    && this.originColumn == originColumn;
+        }
+    }
+
+    public static OverlayMaskCache getDefault() {
+        return DEFAULT;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Returns the cached mask of the overlay in group {@code gg0000} of
+     * {@code attrs} for the specified frame, or unpacks and caches a new one.
+     * Returns {@code null} if the overlay does not cover the frame.
+     */
+    public OverlayMask getOverlayMask(int frameIndex, Attributes attrs,
+            int gg0000) {
+        byte[] ovlyData = attrs.getSafeBytes(Tag.OverlayData | gg0000);
+        int[] ovlyOrigin = attrs.getInts(Tag.OverlayOrigin | gg0000);
+        // let Overlays.createOverlayMask report missing or invalid attributes
+        if (ovlyData == null || ovlyOrigin == null || ovlyOrigin.length != 2)
+            return Overlays.createOverlayMask(frameIndex, attrs, gg0000, ovlyData);
+
+        int imageFrameOrigin = attrs.getInt(Tag.ImageFrameOrigin | gg0000, 1);
+        int framesInOverlay = attrs.getInt(Tag.NumberOfFramesInOverlay | gg0000, 1);
+        int ovlyFrameIndex = frameIndex - imageFrameOrigin + 1;
+        if (ovlyFrameIndex < 0 || ovlyFrameIndex >= framesInOverlay)
+            return null;
+
+        int ovlyRows = attrs.getInt(Tag.OverlayRows | gg0000, -1);
+        int ovlyColumns = attrs.getInt(Tag.OverlayColumns | gg0000, -1);
+        Entry entry;
+        synchronized (cache) {
+            Entry first = cache.get(ovlyData);
+            entry = first;
+            while (entry != null && !entry.matches(imageFrameOrigin,
+                    framesInOverlay, ovlyRows, ovlyColumns,
+                    ovlyOrigin[0], ovlyOrigin[1]))
+                entry = entry.next;
+            if (entry == null) {
+                entry = new Entry(imageFrameOrigin, framesInOverlay,
+                        ovlyRows, ovlyColumns, ovlyOrigin[0], ovlyOrigin[1],
+                        first);
+                cache.put(ovlyData, entry);
+            }
+        }
+
+        OverlayMask mask;
+        synchronized (entry) {
+            mask = ovlyFrameIndex < entry.masks.length
+                    ? entry.masks[ovlyFrameIndex]
+                    : null;
+        }
+        if (mask != null) {
+            hits.incrementAndGet();
+            return mask;
+        }
+        misses.incrementAndGet();
+        mask = Overlays.createOverlayMask(frameIndex, attrs, gg0000, ovlyData);
+        synchronized (entry) {
+            if (ovlyFrameIndex >= entry.masks.length)
+                entry.masks = Arrays.copyOf(entry.masks, ovlyFrameIndex + 1);
+            entry.masks[ovlyFrameIndex] = mask;
+        }
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return "OverlayMaskCache[size=" + size() + ", hits=" + hits
+                + ", misses=" + misses + "]";
+    }
+}
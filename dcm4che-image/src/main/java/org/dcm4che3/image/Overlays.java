@@ -44,6 +44,7 @@ import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferShort;
 import java.awt.image.DataBufferUShort;
 import java.awt.image.Raster;
+import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.util.Arrays;
 
@@ -168,12 +169,45 @@ public class Overlays {
 
     public static void applyOverlay(int frameIndex, WritableRaster raster,
             Attributes attrs, int gg0000, int pixelValue, byte[] ovlyData) {
+        applyOverlay(frameIndex, raster, attrs, gg0000, pixelValue, ovlyData,
+                0, 0, 1, 1);
+    }
+
+    /**
+     * Applies the overlay on a raster which only contains every
+     * {@code xSubsampling}th column of every {@code ySubsampling}th row of
+     * the image region starting at column {@code sourceX} and row
+     * {@code sourceY}. If {@code ovlyData} is {@code null}, the Overlay Data
+     * is taken from {@code attrs} and its unpacked masks are cached by
+     * {@link OverlayMaskCache#getDefault()}.
+     */
+    public static void applyOverlay(int frameIndex, WritableRaster raster,
+            Attributes attrs, int gg0000, int pixelValue, byte[] ovlyData,
+            int sourceX, int sourceY, int xSubsampling, int ySubsampling) {
+        OverlayMask mask = ovlyData != null
+                ? createOverlayMask(frameIndex, attrs, gg0000, ovlyData)
+                : OverlayMaskCache.getDefault().getOverlayMask(
+                        frameIndex, attrs, gg0000);
+        if (mask != null)
+            applyOverlays(raster, new OverlayMask[] { mask },
+                    new int[] { pixelValue },
+                    sourceX, sourceY, xSubsampling, ySubsampling);
+    }
+
+    /**
+     * Unpacks the Overlay Plane of the specified frame, or returns
+     * {@code null} if the overlay does not cover that frame. If
+     * {@code ovlyData} is {@code null}, the Overlay Data is taken from
+     * {@code attrs}.
+     */
+    public static OverlayMask createOverlayMask(int frameIndex,
+            Attributes attrs, int gg0000, byte[] ovlyData) {
 
         int imageFrameOrigin = attrs.getInt(Tag.ImageFrameOrigin | gg0000, 1);
         int framesInOverlay = attrs.getInt(Tag.NumberOfFramesInOverlay | gg0000, 1);
         int ovlyFrameIndex = frameIndex - imageFrameOrigin  + 1;
         if (ovlyFrameIndex < 0 || ovlyFrameIndex >= framesInOverlay)
-            return;
+            return null;
         
         int tagOverlayRows = Tag.OverlayRows | gg0000;
         int tagOverlayColumns = Tag.OverlayColumns | gg0000;
@@ -207,27 +241,93 @@ public class Overlays {
                     TagUtils.toString(tagOverlayOrigin)
                     + " Overlay Origin " + Arrays.toString(ovlyOrigin));
 
-        int x0 = ovlyOrigin[1] - 1;
-        int y0 = ovlyOrigin[0] - 1;
+        long ovlyOff = (long) ovlyRows * ovlyColumns * ovlyFrameIndex;
+        return new OverlayMask(ovlyData, ovlyOff, ovlyRows, ovlyColumns,
+                ovlyOrigin[1] - 1, ovlyOrigin[0] - 1);
+    }
 
-        int ovlyLen = ovlyRows * ovlyColumns;
-        int ovlyOff = ovlyLen * ovlyFrameIndex;
-        for (int i = ovlyOff >>> 3,
-               end = (ovlyOff + ovlyLen + 7) >>> 3; i < end; i++) {
-            int ovlyBits = ovlyData[i] & 0xff;
-            for (int j = 0; (ovlyBits>>>j) != 0; j++) {
-                if ((ovlyBits & (1<<j)) == 0)
+    /**
+     * Burns the specified overlay masks with the associated pixel values into
+     * the first band of a raster which only contains every
+     * {@code xSubsampling}th column of every {@code ySubsampling}th row of
+     * the image region starting at column {@code sourceX} and row
+     * {@code sourceY}. All masks are applied on one row, before proceeding
+     * to the next one; pixels are written directly into the data array of
+     * rasters with a {@link ComponentSampleModel}. {@code null} masks are
+     * ignored.
+     */
+    public static void applyOverlays(WritableRaster raster,
+            OverlayMask[] masks, int[] pixelValues, int sourceX, int sourceY,
+            int xSubsampling, int ySubsampling) {
+        int w = raster.getWidth();
+        int h = raster.getHeight();
+        SampleModel sm = raster.getSampleModel();
+        DataBuffer db = raster.getDataBuffer();
+        byte[] bytes = null;
+        short[] shorts = null;
+        int off = 0;
+        int stride = 0;
+        int pixelStride = 0;
+        if (sm instanceof ComponentSampleModel) {
+            ComponentSampleModel csm = (ComponentSampleModel) sm;
+            int bank = csm.getBankIndices()[0];
+            switch (db.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                bytes = ((DataBufferByte) db).getData(bank);
+                break;
+            case DataBuffer.TYPE_USHORT:
+                shorts = ((DataBufferUShort) db).getData(bank);
+                break;
+            case DataBuffer.TYPE_SHORT:
+                shorts = ((DataBufferShort) db).getData(bank);
+                break;
+            }
+            off = db.getOffsets()[bank] + csm.getOffset(
+                    raster.getMinX() - raster.getSampleModelTranslateX(),
+                    raster.getMinY() - raster.getSampleModelTranslateY(), 0);
+            stride = csm.getScanlineStride();
+            pixelStride = csm.getPixelStride();
+        }
+        for (int ry = 0; ry < h; ry++) {
+            int y = sourceY + ry * ySubsampling;
+            for (int m = 0; m < masks.length; m++) {
+                OverlayMask mask = masks[m];
+                int rowOff;
+                if (mask == null || (rowOff = mask.rowOffset(y)) < 0)
                     continue;
 
-                int ovlyIndex = ((i<<3) + j) - ovlyOff;
-                if (ovlyIndex >= ovlyLen)
+                long[] words = mask.words();
+                int dx = mask.getX0() - sourceX;
+                int cmin = Math.max(0, -dx);
+                int cmax = Math.min(mask.getColumns(), w * xSubsampling - dx);
+                if (cmin >= cmax)
                     continue;
 
-                int y = y0 + ovlyIndex / ovlyColumns;
-                int x = x0 + ovlyIndex % ovlyColumns;
-                try {
-                    raster.setSample(x, y, 0, pixelValue);
-                } catch (ArrayIndexOutOfBoundsException ignore) {}
+                int pixelValue = pixelValues[m];
+                for (int i = cmin >>> 6, end = (cmax + 63) >>> 6; i < end; i++) {
+                    long word = words[rowOff + i];
+                    while (word != 0L) {
+                        int c = (i << 6) + Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                        if (c < cmin || c >= cmax)
+                            continue;
+
+                        int x = c + dx;
+                        if (x % xSubsampling != 0)
+                            continue;
+
+                        int rx = x / xSubsampling;
+                        if (bytes != null)
+                            bytes[off + ry * stride + rx * pixelStride] =
+                                    (byte) pixelValue;
+                        else if (shorts != null)
+                            shorts[off + ry * stride + rx * pixelStride] =
+                                    (short) pixelValue;
+                        else
+                            raster.setSample(raster.getMinX() + rx,
+                                    raster.getMinY() + ry, 0, pixelValue);
+                    }
+                }
             }
         }
     }
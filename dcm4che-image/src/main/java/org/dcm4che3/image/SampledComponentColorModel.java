@@ -115,13 +115,17 @@ public class SampledComponentColorModel extends ColorModel {
 
     @Override
     public int getRed(Object inData) {
-        return getRGB(inData) >> 16;
+        return (getRGB(inData) >> 16) & 0xFF;
     }
 
     @Override
     public int getRGB(Object inData) {
         byte[] ba = (byte[]) inData;
         ColorSpace cs = getColorSpace();
+        if (cs instanceof YBRColorSpace)
+            return 0xFF000000
+                    | ((YBRColorSpace) cs).getYBR().toRGB(ba[0], ba[1], ba[2]);
+
         float[] fba = new float[] { (ba[0] & 0xFF) / 255f,
                 (ba[1] & 0xFF) / 255f, (ba[2] & 0xFF) / 255f };
         float[] rgb = cs.toRGB(fba);
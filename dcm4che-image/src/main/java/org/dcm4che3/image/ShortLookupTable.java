@@ -29,6 +29,13 @@ public class ShortLookupTable extends LookupTable {
 
     @Override
     public void lookup(byte[] src, int srcPos, byte[] dest, int destPos, int length) {
+        if (isFullRange()) {
+            int mask = lut.length - 1;
+            int flip = -offset;
+            for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
+                dest[j++] = (byte) lut[(src[i++] & mask) ^ flip];
+            return;
+        }
         for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
             dest[j++] = (byte) lut[index(src[i++] & 0xff)];
     }
@@ -40,22 +47,56 @@ public class ShortLookupTable extends LookupTable {
 
     @Override
     public void lookup(short[] src, int srcPos, byte[] dest, int destPos, int length) {
+        if (isFullRange()) {
+            int mask = lut.length - 1;
+            int flip = -offset;
+            for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
+                dest[j++] = (byte) lut[(src[i++] & mask) ^ flip];
+            return;
+        }
         for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
             dest[j++] = (byte) lut[index(src[i++] & 0xffff)];
     }
 
     @Override
     public void lookup(byte[] src, int srcPos, short[] dest, int destPos, int length) {
+        if (isFullRange()) {
+            int mask = lut.length - 1;
+            int flip = -offset;
+            for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
+                dest[j++] = lut[(src[i++] & mask) ^ flip];
+            return;
+        }
         for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
             dest[j++] = lut[index(src[i++] & 0xff)];
     }
 
     @Override
     public void lookup(short[] src, int srcPos, short[] dest, int destPos, int length) {
+        if (isFullRange()) {
+            int mask = lut.length - 1;
+            int flip = -offset;
+            for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
+                dest[j++] = lut[(src[i++] & mask) ^ flip];
+            return;
+        }
         for (int i = srcPos, endPos = srcPos + length, j = destPos; i < endPos;)
             dest[j++] = lut[index(src[i++] & 0xffff)];
     }
 
+    @Override
+    public LookupTable toFullRange() {
+        int min = inBits.minValue();
+        int size = inBits.maxValue() - min + 1;
+        if (size > MAX_FULL_RANGE_LENGTH || isFullRange())
+            return this;
+
+        short[] full = new short[size];
+        for (int i = 0; i < size; i++)
+            full[i] = lut[index(min + i)];
+        return new ShortLookupTable(inBits, outBits, min, full);
+    }
+
     @Override
     public LookupTable adjustOutBits(int outBits) {
         int diff = outBits - this.outBits;
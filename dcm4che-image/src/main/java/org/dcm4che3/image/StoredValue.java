@@ -73,6 +73,16 @@ public abstract class StoredValue {
         public int maxValue() {
             return mask;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Unsigned && ((Unsigned) o).mask == mask;
+        }
+
+        @Override
+        public int hashCode() {
+            return mask;
+        }
     }
 
     public static class Signed extends StoredValue {
@@ -99,6 +109,16 @@ public abstract class StoredValue {
         public int maxValue() {
             return (1 << (bitsStored-1)) - 1;
         }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Signed && ((Signed) o).bitsStored == bitsStored;
+        }
+
+        @Override
+        public int hashCode() {
+            return -bitsStored;
+        }
     }
 
     public static StoredValue valueOf(Attributes attrs) {
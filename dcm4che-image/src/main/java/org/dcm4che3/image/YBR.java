@@ -90,10 +90,109 @@ public enum YBR {
         1.1644154634373545, 2.017290682233469, -1.3527300480981362E-4, -1.0813536710791642, 
     };
 
+    private static final int FIXED_POINT_BITS = 16;
+
+    static {
+        FULL.toRGB = toFixedPoint(FROM_YBR_FULL);
+        PARTIAL.toRGB = toFixedPoint(FROM_YBR_PARTIAL);
+    }
+
+    /**
+     * Terms of the conversion to RGB in 16-bit fixed point representation
+     * for each 8-bit Y, Cb and Cr value: {@code toRGB[(c * 3 + i) << 8 | v]}
+     * is the contribution of value {@code v} of the {@code i}th YBR component
+     * to RGB component {@code c}. The terms of Y include the constant offset
+     * and the rounding.
+     */
+    private int[] toRGB;
+
+    private static int[] toFixedPoint(double[] a) {
+        int[] terms = new int[9 << 8];
+        double one = 1 << FIXED_POINT_BITS;
+        for (int c = 0; c < 3; c++)
+            for (int i = 0; i < 3; i++)
+                for (int v = 0; v < 256; v++) {
+                    double term = a[c * 4 + i] * v;
+                    if (i == 0)
+                        term += a[c * 4 + 3] * 255 + 0.5;
+                    terms[(c * 3 + i) << 8 | v] = (int) Math.round(term * one);
+                }
+        return terms;
+    }
+
     public abstract float[] toRGB(float[] ybr);
 
     public abstract float[] fromRGB(float[] rgb);
 
+    /**
+     * Converts one 8-bit YBR pixel to a packed 8-bit RGB pixel, using
+     * integer arithmetic only.
+     */
+    public int toRGB(int y, int cb, int cr) {
+        int[] t = toRGB;
+        return rgb(t, y & 0xff, cb & 0xff, cr & 0xff);
+    }
+
+    /**
+     * Converts {@code length} pixel interleaved 8-bit YBR pixels, starting
+     * at {@code srcPos}, to packed 8-bit RGB pixels.
+     */
+    public void toRGB(byte[] ybr, int srcPos, int[] rgb, int destPos,
+            int length) {
+        int[] t = toRGB;
+        for (int i = srcPos, j = destPos, end = destPos + length; j < end;
+                i += 3)
+            rgb[j++] = rgb(t, ybr[i] & 0xff, ybr[i + 1] & 0xff,
+                    ybr[i + 2] & 0xff);
+    }
+
+    /**
+     * Converts {@code length} 8-bit YBR pixels with separate planes for Y,
+     * Cb and Cr, starting at {@code srcPos}, to packed 8-bit RGB pixels.
+     */
+    public void toRGB(byte[] y, byte[] cb, byte[] cr, int srcPos,
+            int[] rgb, int destPos, int length) {
+        int[] t = toRGB;
+        for (int i = srcPos, j = destPos, end = destPos + length; j < end;
+                i++)
+            rgb[j++] = rgb(t, y[i] & 0xff, cb[i] & 0xff, cr[i] & 0xff);
+    }
+
+    /**
+     * Converts {@code length} 8-bit YBR pixels with horizontal subsampled
+     * chroma - encoded as Y1 Y2 Cb Cr for each pair of pixels - starting at
+     * {@code srcPos}, to packed 8-bit RGB pixels, replicating the chroma
+     * values of each pair.
+     */
+    public void toRGB422(byte[] ybr, int srcPos, int[] rgb, int destPos,
+            int length) {
+        int[] t = toRGB;
+        int i = srcPos;
+        int j = destPos;
+        for (int end = destPos + (length & ~1); j < end; i += 4) {
+            int cb = ybr[i + 2] & 0xff;
+            int cr = ybr[i + 3] & 0xff;
+            rgb[j++] = rgb(t, ybr[i] & 0xff, cb, cr);
+            rgb[j++] = rgb(t, ybr[i + 1] & 0xff, cb, cr);
+        }
+        if ((length & 1) != 0)
+            rgb[j] = rgb(t, ybr[i] & 0xff, ybr[i + 2] & 0xff,
+                    ybr[i + 3] & 0xff);
+    }
+
+    private static int rgb(int[] t, int y, int cb, int cr) {
+        int r = (t[y] + t[0x100 | cb] + t[0x200 | cr]) >> FIXED_POINT_BITS;
+        int g = (t[0x300 | y] + t[0x400 | cb] + t[0x500 | cr])
+                >> FIXED_POINT_BITS;
+        int b = (t[0x600 | y] + t[0x700 | cb] + t[0x800 | cr])
+                >> FIXED_POINT_BITS;
+        return clamp(r) << 16 | clamp(g) << 8 | clamp(b);
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : v > 255 ? 255 : v;
+    }
+
     private static float[] convert(float[] in, double[] a) {
         return new float[] {
                 (float) Math.max(0.0, Math.min(1.0,
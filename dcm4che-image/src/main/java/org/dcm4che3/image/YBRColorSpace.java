@@ -56,6 +56,14 @@ public final class YBRColorSpace extends ColorSpace {
         this.ybr = ybr;
     }
 
+    public YBR getYBR() {
+        return ybr;
+    }
+
+    public ColorSpace getRGBColorSpace() {
+        return csRGB;
+    }
+
     @Override
     public float[] toRGB(float[] ybr) {
         return this.ybr.toRGB(ybr);
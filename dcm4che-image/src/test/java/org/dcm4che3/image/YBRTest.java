@@ -0,0 +1,161 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.image;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class YBRTest {
+
+    private static int[] components(int rgb) {
+        return new int[] { (rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff };
+    }
+
+    private static void assertMatchesFloat(YBR ybr) {
+        float[] in = new float[3];
+        for (int y = 0; y < 256; y++)
+            for (int cb = 0; cb < 256; cb += 5)
+                for (int cr = 0; cr < 256; cr += 5) {
+                    in[0] = y / 255f;
+                    in[1] = cb / 255f;
+                    in[2] = cr / 255f;
+                    float[] expected = ybr.toRGB(in);
+                    int[] actual = components(ybr.toRGB(y, cb, cr));
+                    for (int c = 0; c < 3; c++) {
+                        int diff = actual[c] - Math.round(expected[c] * 255);
+                        assertTrue(ybr + "(" + y + "," + cb + "," + cr
+                                + ")[" + c + "] differs by " + diff,
+                                Math.abs(diff) <= 1);
+                    }
+                }
+    }
+
+    @Test
+    public void testFullMatchesFloat() {
+        assertMatchesFloat(YBR.FULL);
+    }
+
+    @Test
+    public void testPartialMatchesFloat() {
+        assertMatchesFloat(YBR.PARTIAL);
+    }
+
+    private static void assertRoundTrip(YBR ybr, int tolerance) {
+        float[] rgb = new float[3];
+        for (int r = 0; r < 256; r += 5)
+            for (int g = 0; g < 256; g += 5)
+                for (int b = 0; b < 256; b += 5) {
+                    rgb[0] = r / 255f;
+                    rgb[1] = g / 255f;
+                    rgb[2] = b / 255f;
+                    float[] f = ybr.fromRGB(rgb);
+                    int[] actual = components(ybr.toRGB(
+                            Math.round(f[0] * 255),
+                            Math.round(f[1] * 255),
+                            Math.round(f[2] * 255)));
+                    int[] expected = { r, g, b };
+                    for (int c = 0; c < 3; c++)
+                        assertTrue(ybr + " round trip of (" + r + "," + g
+                                + "," + b + ")[" + c + "]: " + actual[c],
+                                Math.abs(actual[c] - expected[c]) <= tolerance);
+                }
+    }
+
+    @Test
+    public void testFullRoundTrip() {
+        assertRoundTrip(YBR.FULL, 1);
+    }
+
+    @Test
+    public void testPartialRoundTrip() {
+        assertRoundTrip(YBR.PARTIAL, 2);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] b = new byte[length];
+        new Random(length).nextBytes(b);
+        return b;
+    }
+
+    @Test
+    public void testToRGBInterleavedAndPlanar() {
+        int n = 33;
+        byte[] ybr = randomBytes(3 * n + 3);
+        byte[] y = new byte[n + 1];
+        byte[] cb = new byte[n + 1];
+        byte[] cr = new byte[n + 1];
+        int[] expected = new int[n + 2];
+        for (int i = 0; i < n; i++) {
+            y[i + 1] = ybr[3 + i * 3];
+            cb[i + 1] = ybr[4 + i * 3];
+            cr[i + 1] = ybr[5 + i * 3];
+            expected[i + 1] = YBR.FULL.toRGB(y[i + 1], cb[i + 1], cr[i + 1]);
+        }
+        int[] interleaved = new int[n + 2];
+        YBR.FULL.toRGB(ybr, 3, interleaved, 1, n);
+        assertArrayEquals(expected, interleaved);
+        int[] planar = new int[n + 2];
+        YBR.FULL.toRGB(y, cb, cr, 1, planar, 1, n);
+        assertArrayEquals(expected, planar);
+    }
+
+    @Test
+    public void testToRGB422() {
+        for (int n = 1; n <= 6; n++) {
+            int pairs = (n + 1) / 2;
+            byte[] ybr = randomBytes(4 * pairs + 4);
+            int[] expected = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                int pair = 4 + (i / 2) * 4;
+                expected[i + 1] = YBR.PARTIAL.toRGB(ybr[pair + (i & 1)],
+                        ybr[pair + 2], ybr[pair + 3]);
+            }
+            int[] rgb = new int[n + 1];
+            YBR.PARTIAL.toRGB422(ybr, 4, rgb, 1, n);
+            assertArrayEquals("length: " + n, expected, rgb);
+        }
+    }
+}
@@ -48,7 +48,12 @@ import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
@@ -62,6 +67,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Decodes RLE Lossless compressed frames as specified by DICOM PS3.5 Annex G.
+ * The whole frame is read into memory by one bulk read; literal runs are
+ * copied and replicate runs are filled directly into the destination, so
+ * segments are decoded independently of each other and - if configured by
+ * {@link #setParallelDecoding(Executor, int)} - concurrently.
+ * 
  * @author Gunter Zeilinger <gunterze@gmail.com>
  *
  */
@@ -78,17 +89,25 @@ public class RLEImageReader extends ImageReader {
     private static final String MISMATCH_NUM_RLE_SEGMENTS =
             "Number of RLE Segments does not match image type: ";
 
+    /**
+     * Minimal number of pixels of a frame to decode its segments
+     * concurrently.
+     */
+    public static final int MIN_PIXELS_FOR_PARALLEL_DECODING = 0x10000;
+
+    private static final int MIN_BUFFER_SIZE = 8192;
+
     private final int[] header = new int[16];
 
-    private final byte[] buf = new byte[8192];
+    private byte[] buf = {};
 
-    private long headerPos;
+    private int bufLen;
 
-    private long bufOff;
+    private byte[][] planes = {};
 
-    private int bufPos;
+    private Executor executor;
 
-    private int bufLen;
+    private int parallelism = 1;
 
     private ImageInputStream iis;
 
@@ -100,6 +119,28 @@ public class RLEImageReader extends ImageReader {
         super(originatingProvider);
     }
 
+    /**
+     * Decode the RLE Segments of a frame - one for each byte of each sample -
+     * concurrently by up to {@code parallelism} threads of the specified
+     * executor, including the calling thread. Frames with less than
+     * {@link #MIN_PIXELS_FOR_PARALLEL_DECODING} pixels are decoded by the
+     * calling thread. {@code parallelism = 1} (= default) decodes the
+     * segments one after another by the calling thread. Reset by
+     * {@link #reset()}.
+     */
+    public void setParallelDecoding(Executor executor, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        if (parallelism > 1 && executor == null)
+            throw new NullPointerException("executor");
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
     @Override
     public void setInput(Object input, boolean seekForwardOnly,
             boolean ignoreMetadata) {
@@ -113,6 +154,20 @@ public class RLEImageReader extends ImageReader {
         height = 0;
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        executor = null;
+        parallelism = 1;
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        buf = new byte[0];
+        planes = new byte[0][];
+    }
+
     @Override
     public int getNumImages(boolean allowSearch) throws IOException {
         return 1;
@@ -235,141 +290,142 @@ public class RLEImageReader extends ImageReader {
     }
 
     private void read(byte[][] bands) throws IOException {
-        readRLEHeader(bands.length);
-        for (int i = 0; i < bands.length; i++)
-            unrle(i+1, bands[i]);
+        readRLE(bands.length);
+        decode(bands);
     }
 
     private void read(short[] data) throws IOException {
-        readRLEHeader(2);
-        unrle(1, data);
-        unrle(2, data);
-    }
-
-    private void seekSegment(int seg) throws IOException {
-        long streamPos = headerPos + (header[seg] & 0xffffffffL);
-        int bufPos = (int) (streamPos - bufOff);
-        if (bufPos >= 0 && bufPos <= bufLen)
-            this.bufPos = bufPos;
-        else {
-            iis.seek(streamPos);
-            this.bufPos = bufLen; // force fillBuffer on nextByte()
-        }
+        readRLE(2);
+        int length = data.length;
+        if (planes.length < 2 || planes[0].length < length)
+            planes = new byte[][] { new byte[length], new byte[length] };
+        decode(planes);
+        byte[] hi = planes[0];
+        byte[] lo = planes[1];
+        for (int i = 0; i < length; i++)
+            data[i] = (short) ((hi[i] << 8) | (lo[i] & 0xff));
     }
 
-
-    private void readRLEHeader(int numSegments) throws IOException {
-        fillBuffer();
+    private void readRLE(int numSegments) throws IOException {
+        readFully();
         if (bufLen < 64)
             throw new EOFException();
         for (int i = 0, off = 0; i < header.length; i++, off += 4)
             header[i] = ByteUtils.bytesToIntLE(buf, off);
-        bufPos = 64;
         if (header[0] != numSegments)
             throw new IOException(MISMATCH_NUM_RLE_SEGMENTS + header[0]);
     }
 
-    private void unrle(int seg, byte[] data) throws IOException {
-        seekSegment(seg);
-        int pos = 0;
-        try {
-            int n;
-            int end;
-            byte val;
-            while (pos < data.length) {
-                n = nextByte();
-                if (n >= 0) {
-                    read(data, pos, ++n);
-                    pos += n;
-                } else if (n != -128) {
-                    end = pos + 1 - n;
-                    val = nextByte();
-                    while (pos < end)
-                        data[pos++] = val;
-                }
-            }
-        } catch (EOFException e) {
-            LOG.info("RLE Segment #{} too short, set missing {} bytes to 0",
-                    seg, data.length - pos);
-        } catch (IndexOutOfBoundsException e) {
-            LOG.info("RLE Segment #{} too long, truncate surplus bytes", seg);
-        }
-    }
-
-    private void read(byte[] data, int pos, int len) throws IOException {
-        int remaining = len;
+    private void readFully() throws IOException {
+        bufLen = 0;
         int n;
-        while (remaining > 0) {
-            n = bufLen - bufPos;
-            if (n <= 0) {
-                fillBuffer();
-                n = bufLen - bufPos;
-            }
-            if ((remaining -= n) < 0)
-                n += remaining;
-            System.arraycopy(buf, bufPos, data, pos, n);
-            bufPos += n;
-            pos += n;
+        while (true) {
+            if (bufLen == buf.length)
+                buf = Arrays.copyOf(buf,
+                        Math.max(buf.length << 1, MIN_BUFFER_SIZE));
+            if ((n = iis.read(buf, bufLen, buf.length - bufLen)) < 0)
+                break;
+            bufLen += n;
         }
     }
 
-    private void unrle(int seg, short[] data) throws IOException {
-        seekSegment(seg);
-        int pos = 0;
+    private void decode(final byte[][] dest) {
+        final int numSegments = dest.length;
+        int tasks = Math.min(parallelism, numSegments);
+        if (executor == null || tasks < 2
+                || width * height < MIN_PIXELS_FOR_PARALLEL_DECODING) {
+            for (int i = 0; i < numSegments; i++)
+                unrle(i + 1, dest[i], width * height);
+            return;
+        }
+        final int step = tasks;
+        ArrayList<FutureTask<Object>> submitted =
+                new ArrayList<FutureTask<Object>>(tasks - 1);
+        for (int i = 1; i < tasks; i++) {
+            final int first = i;
+            FutureTask<Object> task = new FutureTask<Object>(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = first; j < numSegments; j += step)
+                        unrle(j + 1, dest[j], width * height);
+                }
+            }, null);
+            submitted.add(task);
+            executor.execute(task);
+        }
+        for (int j = 0; j < numSegments; j += step)
+            unrle(j + 1, dest[j], width * height);
+        boolean interrupted = false;
         try {
-            int shift = seg == 1 ? 8 : 0;
-            int n;
-            int end;
-            int val;
-            while (pos < data.length) {
-                n = nextByte();
-                if (n >= 0) {
-                    read(data, pos, ++n, shift);
-                    pos += n;
-                } else if (n != -128) {
-                    end = pos + 1 - n;
-                    val = (nextByte() & 0xff) << shift;
-                    while (pos < end)
-                        data[pos++] |= val;
+            for (FutureTask<Object> task : submitted) {
+                while (true) {
+                    try {
+                        task.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        if (cause instanceof RuntimeException)
+                            throw (RuntimeException) cause;
+                        if (cause instanceof Error)
+                            throw (Error) cause;
+                        throw new RuntimeException(cause);
+                    }
                 }
             }
-        } catch (EOFException e) {
-            LOG.info("RLE Segment #{} too short, set missing {} bytes to 0",
-                    seg, data.length - pos);
-        } catch (IndexOutOfBoundsException e) {
-            LOG.info("RLE Segment #{} to long, truncate surplus bytes", seg);
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
         }
     }
 
-    private void read(short[] data, int pos, int len, int shift) throws IOException {
-        int remaining = len;
-        int n;
-        while (remaining > 0) {
-            n = bufLen - bufPos;
-            if (n <= 0) {
-                fillBuffer();
-                n = bufLen - bufPos;
-            }
-            if ((remaining -= n) < 0)
-                n += remaining;
-            while (n-- > 0)
-                data[pos++] |= (buf[bufPos++] & 0xff) << shift;
+    private int segmentEnd(int seg) {
+        int start = header[seg];
+        for (int i = seg + 1; i <= header[0]; i++) {
+            int end = header[i];
+            if (end > start && end <= bufLen)
+                return end;
         }
+        return bufLen;
     }
 
-    private void fillBuffer() throws IOException {
-        bufOff = iis.getStreamPosition();
-        bufPos = 0;
-        bufLen = iis.read(buf);
-        if (bufLen <= 0)
-            throw new EOFException();
-    }
-
-    private byte nextByte() throws IOException {
-        if (bufPos >= bufLen)
-            fillBuffer();
-
-        return buf[bufPos++];
+    private void unrle(int seg, byte[] data, int length) {
+        int pos = header[seg];
+        int end = segmentEnd(seg);
+        int off = 0;
+        int n;
+        boolean truncated = false;
+        if (pos < 64 || pos > end)
+            pos = end;
+        while (off < length && pos < end) {
+            n = buf[pos++];
+            if (n >= 0) {
+                n = Math.min(n + 1, end - pos);
+                if (n > length - off) {
+                    n = length - off;
+                    truncated = true;
+                }
+                System.arraycopy(buf, pos, data, off, n);
+                pos += n;
+                off += n;
+            } else if (n != -128 && pos < end) {
+                n = 1 - n;
+                if (n > length - off) {
+                    n = length - off;
+                    truncated = true;
+                }
+                Arrays.fill(data, off, off + n, buf[pos++]);
+                off += n;
+            }
+        }
+        if (off < length) {
+            LOG.info("RLE Segment #{} too short, set missing {} bytes to 0",
+                    seg, length - off);
+            Arrays.fill(data, off, length, (byte) 0);
+        } else if (truncated) {
+            LOG.info("RLE Segment #{} too long, truncate surplus bytes", seg);
+        }
     }
 
 }
@@ -0,0 +1,246 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.plugins.rle;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.dcm4che3.util.ByteUtils;
+
+/**
+ * Encodes images by RLE Lossless compression as specified by DICOM PS3.5
+ * Annex G: one RLE Segment for each byte of each sample, most significant
+ * byte first, each row of a segment encoded separately.
+ * 
+ * @author agent <agent@local>
+ *
+ */
+public class RLEImageWriter extends ImageWriter {
+
+    private static final String UNSUPPORTED_DATA_TYPE =
+            "Unsupported Data Type of Image: ";
+    private static final String TOO_MANY_SEGMENTS =
+            "Too many RLE Segments required for image: ";
+    private static final int MAX_SEGMENTS = 15;
+
+    private final byte[] header = new byte[64];
+
+    private byte[][] segments = {};
+
+    private int[] segmentLengths = {};
+
+    private int[] samples = {};
+
+    private byte[] row = {};
+
+    protected RLEImageWriter(ImageWriterSpi originatingProvider) {
+        super(originatingProvider);
+    }
+
+    @Override
+    public IIOMetadata getDefaultStreamMetadata(ImageWriteParam param) {
+        return null;
+    }
+
+    @Override
+    public IIOMetadata getDefaultImageMetadata(ImageTypeSpecifier imageType,
+            ImageWriteParam param) {
+        return null;
+    }
+
+    @Override
+    public IIOMetadata convertStreamMetadata(IIOMetadata inData,
+            ImageWriteParam param) {
+        return null;
+    }
+
+    @Override
+    public IIOMetadata convertImageMetadata(IIOMetadata inData,
+            ImageTypeSpecifier imageType, ImageWriteParam param) {
+        return null;
+    }
+
+    @Override
+    public boolean canWriteRasters() {
+        return true;
+    }
+
+    @Override
+    public void write(IIOMetadata streamMetadata, IIOImage image,
+            ImageWriteParam param) throws IOException {
+        ImageOutputStream ios = (ImageOutputStream) getOutput();
+        if (ios == null)
+            throw new IllegalStateException("Output not set");
+
+        Raster raster = toRaster(image);
+        int bytesPerSample = bytesPerSample(raster.getSampleModel().getDataType());
+        int numBands = raster.getNumBands();
+        int numSegments = numBands * bytesPerSample;
+        if (numSegments > MAX_SEGMENTS)
+            throw new IllegalArgumentException(TOO_MANY_SEGMENTS + numSegments);
+
+        encode(raster, numBands, bytesPerSample);
+        writeHeader(ios, numSegments);
+        for (int i = 0; i < numSegments; i++) {
+            ios.write(segments[i], 0, segmentLengths[i]);
+            if ((segmentLengths[i] & 1) != 0)
+                ios.write(0);
+        }
+    }
+
+    private static Raster toRaster(IIOImage image) {
+        if (image.hasRaster())
+            return image.getRaster();
+
+        RenderedImage ri = image.getRenderedImage();
+        return ri instanceof BufferedImage
+                ? ((BufferedImage) ri).getRaster()
+                : ri.getData();
+    }
+
+    private static int bytesPerSample(int dataType) {
+        switch (dataType) {
+        case DataBuffer.TYPE_BYTE:
+            return 1;
+        case DataBuffer.TYPE_USHORT:
+        case DataBuffer.TYPE_SHORT:
+            return 2;
+        }
+        throw new IllegalArgumentException(UNSUPPORTED_DATA_TYPE + dataType);
+    }
+
+    private void encode(Raster raster, int numBands, int bytesPerSample) {
+        int w = raster.getWidth();
+        int h = raster.getHeight();
+        int x0 = raster.getMinX();
+        int y0 = raster.getMinY();
+        int numSegments = numBands * bytesPerSample;
+        if (segments.length < numSegments) {
+            segments = Arrays.copyOf(segments, numSegments);
+            segmentLengths = new int[numSegments];
+        }
+        for (int i = 0; i < numSegments; i++) {
+            if (segments[i] == null)
+                segments[i] = new byte[w * h + (w * h >> 6) + 2];
+            segmentLengths[i] = 0;
+        }
+        if (samples.length < w) {
+            samples = new int[w];
+            row = new byte[w];
+        }
+        for (int y = 0; y < h; y++)
+            for (int b = 0; b < numBands; b++) {
+                raster.getSamples(x0, y0 + y, w, 1, b, samples);
+                for (int k = 0, shift = (bytesPerSample - 1) << 3;
+                        k < bytesPerSample; k++, shift -= 8) {
+                    for (int x = 0; x < w; x++)
+                        row[x] = (byte) (samples[x] >> shift);
+                    encodeRow(b * bytesPerSample + k, w);
+                }
+            }
+    }
+
+    private void encodeRow(int seg, int w) {
+        int len = segmentLengths[seg];
+        byte[] dest = ensureCapacity(seg, len + w + (w + 127) / 128);
+        byte[] src = row;
+        int i = 0;
+        while (i < w) {
+            byte val = src[i];
+            int run = 1;
+            while (i + run < w && run < 128 && src[i + run] == val)
+                run++;
+            if (run > 1) {
+                dest[len++] = (byte) (1 - run);
+                dest[len++] = val;
+                i += run;
+            } else {
+                int end = i + 1;
+                while (end < w && end - i < 128
+                        && !(end + 1 < w && src[end] == src[end + 1]))
+                    end++;
+                dest[len++] = (byte) (end - i - 1);
+                System.arraycopy(src, i, dest, len, end - i);
+                len += end - i;
+                i = end;
+            }
+        }
+        segmentLengths[seg] = len;
+    }
+
+    private byte[] ensureCapacity(int seg, int minLength) {
+        byte[] segment = segments[seg];
+        if (segment.length < minLength)
+            segments[seg] = segment = Arrays.copyOf(segment,
+                    Math.max(segment.length << 1, minLength));
+        return segment;
+    }
+
+    private void writeHeader(ImageOutputStream ios, int numSegments)
+            throws IOException {
+        Arrays.fill(header, (byte) 0);
+        ByteUtils.intToBytesLE(numSegments, header, 0);
+        for (int i = 0, off = header.length; i < numSegments; i++) {
+            ByteUtils.intToBytesLE(off, header, (i + 1) << 2);
+            off += (segmentLengths[i] + 1) & ~1;
+        }
+        ios.write(header);
+    }
+
+    @Override
+    public void dispose() {
+        super.dispose();
+        segments = new byte[0][];
+        segmentLengths = new int[0];
+        samples = new int[0];
+        row = new byte[0];
+    }
+}
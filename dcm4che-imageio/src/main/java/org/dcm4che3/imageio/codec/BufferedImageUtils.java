@@ -102,6 +102,11 @@ class BufferedImageUtils {
     }
 
     public static void writeTo(BufferedImage bi, OutputStream out) throws IOException {
+        writeTo(bi, out, false);
+    }
+
+    public static void writeTo(BufferedImage bi, OutputStream out, boolean bigEndian)
+            throws IOException {
         WritableRaster raster = bi.getRaster();
         SampleModel sm = raster.getSampleModel();
         DataBuffer db = raster.getDataBuffer();
@@ -110,10 +115,10 @@ class BufferedImageUtils {
                 writeTo(sm, ((DataBufferByte) db).getBankData(), out);
                 break;
             case DataBuffer.TYPE_USHORT:
-                writeTo(sm, ((DataBufferUShort) db).getData(), out);
+                writeTo(sm, ((DataBufferUShort) db).getData(), out, bigEndian);
                 break;
             case DataBuffer.TYPE_SHORT:
-                writeTo(sm, ((DataBufferShort) db).getData(), out);
+                writeTo(sm, ((DataBufferShort) db).getData(), out, bigEndian);
                 break;
             case DataBuffer.TYPE_INT:
                 writeTo(sm, ((DataBufferInt) db).getData(), out);
@@ -146,18 +151,25 @@ class BufferedImageUtils {
         }
     }
 
-    private static void writeTo(SampleModel sm, short[] data, OutputStream out)
-            throws IOException {
+    private static void writeTo(SampleModel sm, short[] data, OutputStream out,
+            boolean bigEndian) throws IOException {
         int h = sm.getHeight();
         int w = sm.getWidth();
         int stride = ((ComponentSampleModel) sm).getScanlineStride();
         byte[] b = new byte[w * 2];
         for (int y = 0; y < h; ++y) {
-            for (int i = 0, j = y * stride; i < b.length;) {
-                short s = data[j++];
-                b[i++] = (byte) s;
-                b[i++] = (byte) (s >> 8);
-            }
+            if (bigEndian)
+                for (int i = 0, j = y * stride; i < b.length;) {
+                    short s = data[j++];
+                    b[i++] = (byte) (s >> 8);
+                    b[i++] = (byte) s;
+                }
+            else
+                for (int i = 0, j = y * stride; i < b.length;) {
+                    short s = data[j++];
+                    b[i++] = (byte) s;
+                    b[i++] = (byte) (s >> 8);
+                }
             out.write(b);
         }
     }
@@ -0,0 +1,270 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.codec;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread-safe pool of Image Reader or Image Writer instances, keyed by format
+ * name and implementation class, which avoids scanning the ImageIO service
+ * registry and initializing a new codec for each image.
+ * 
+ * Up to {@link #getMaxIdle()} returned instances per key are kept for reuse
+ * after they were reset, further ones are disposed. Instances which are
+ * garbage collected without having been returned are reported as leaked;
+ * with {@link #setLeakDetection(boolean)} enabled, the report includes where
+ * the instance was borrowed.
+ * 
+ * @param <P> codec parameter type
+ * @param <T> codec type
+ * 
+ * @author agent <agent@local>
+ */
+public abstract class CodecPool<P, T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CodecPool.class);
+
+    public static final int DEFAULT_MAX_IDLE = 8;
+
+    private final ConcurrentHashMap<String, Queue<T>> idle =
+            new ConcurrentHashMap<String, Queue<T>>();
+    private final ConcurrentHashMap<String, AtomicInteger> idleCounts =
+            new ConcurrentHashMap<String, AtomicInteger>();
+    private final Map<T, Lease> leaseByCodec =
+            Collections.synchronizedMap(new WeakHashMap<T, Lease>());
+    private final Set<Lease> leases = Collections.newSetFromMap(
+            new ConcurrentHashMap<Lease, Boolean>());
+    private final ReferenceQueue<T> collected = new ReferenceQueue<T>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong discards = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+    private volatile int maxIdle = DEFAULT_MAX_IDLE;
+    private volatile boolean leakDetection;
+
+    private final class Lease extends WeakReference<T> {
+        final String key;
+        final Throwable borrowedAt;
+
+        Lease(T codec, String key, Throwable borrowedAt) {
+            super(codec, collected);
+            this.key = key;
+            this.borrowedAt = borrowedAt;
+        }
+    }
+
+    protected abstract String keyOf(P param);
+
+    protected abstract T create(P param);
+
+    protected abstract void reset(T codec);
+
+    protected abstract void dispose(T codec);
+
+    public final int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public final void setMaxIdle(int maxIdle) {
+        if (maxIdle < 0)
+            throw new IllegalArgumentException("maxIdle: " + maxIdle);
+        this.maxIdle = maxIdle;
+    }
+
+    public final boolean isLeakDetection() {
+        return leakDetection;
+    }
+
+    /**
+     * Record the stack trace of each borrow, to report where leaked
+     * instances were borrowed.
+     */
+    public final void setLeakDetection(boolean leakDetection) {
+        this.leakDetection = leakDetection;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getDiscards() {
+        return discards.get();
+    }
+
+    public long getLeaks() {
+        return leaks.get();
+    }
+
+    public int getBorrowed() {
+        return leases.size();
+    }
+
+    /**
+     * Returns an idle instance for the specified parameter, or a new one if
+     * there is none.
+     */
+    public T borrow(P param) {
+        expungeLeaks();
+        String key = keyOf(param);
+        T codec = null;
+        Queue<T> queue = idle.get(key);
+        if (queue != null && (codec = queue.poll()) != null) {
+            idleCounts.get(key).decrementAndGet();
+            hits.incrementAndGet();
+        } else {
+            codec = create(param);
+            misses.incrementAndGet();
+        }
+        Lease lease = new Lease(codec, key,
+                leakDetection ? new Throwable("Borrowed at") : null);
+        leases.add(lease);
+        leaseByCodec.put(codec, lease);
+        return codec;
+    }
+
+    /**
+     * Resets the instance and keeps it for reuse, or disposes it, if there
+     * are already {@link #getMaxIdle()} idle instances for its key. An
+     * instance which was not borrowed from this pool is only disposed; an
+     * instance which was already returned is ignored.
+     */
+    public void release(T codec) {
+        if (codec == null)
+            return;
+
+        expungeLeaks();
+        Lease lease = leaseByCodec.remove(codec);
+        if (lease == null) {
+            if (isIdle(codec)) {
+                LOG.warn("{} was already returned to the pool", codec);
+                return;
+            }
+            LOG.debug("Dispose {} not borrowed from pool", codec);
+            dispose(codec);
+            return;
+        }
+        leases.remove(lease);
+        lease.clear();
+        AtomicInteger count = idleCounts.get(lease.key);
+        if (count == null) {
+            idle.putIfAbsent(lease.key, new ConcurrentLinkedQueue<T>());
+            idleCounts.putIfAbsent(lease.key, new AtomicInteger());
+            count = idleCounts.get(lease.key);
+        }
+        if (count.incrementAndGet() > maxIdle) {
+            count.decrementAndGet();
+            discards.incrementAndGet();
+            dispose(codec);
+            return;
+        }
+        try {
+            reset(codec);
+        } catch (RuntimeException e) {
+            count.decrementAndGet();
+            discards.incrementAndGet();
+            LOG.info("Failed to reset {} - dispose it", codec, e);
+            dispose(codec);
+            return;
+        }
+        idle.get(lease.key).offer(codec);
+    }
+
+    private boolean isIdle(T codec) {
+        for (Queue<T> queue : idle.values())
+            if (queue.contains(codec))
+                return true;
+        return false;
+    }
+
+    /**
+     * Disposes all idle instances.
+     */
+    public void clear() {
+        for (Map.Entry<String, Queue<T>> entry : idle.entrySet()) {
+            AtomicInteger count = idleCounts.get(entry.getKey());
+            T codec;
+            while ((codec = entry.getValue().poll()) != null) {
+                count.decrementAndGet();
+                dispose(codec);
+            }
+        }
+    }
+
+    private void expungeLeaks() {
+        Reference<? extends T> ref;
+        while ((ref = collected.poll()) != null) {
+            @SuppressWarnings("unchecked")
+            Lease lease = (Lease) ref;
+            if (leases.remove(lease)) {
+                leaks.incrementAndGet();
+                if (lease.borrowedAt != null)
+                    LOG.warn("Codec for {} was not returned to the pool",
+                            lease.key, lease.borrowedAt);
+                else
+                    LOG.warn("Codec for {} was not returned to the pool",
+                            lease.key);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CodecPool[hits=" + hits + ", misses=" + misses
+                + ", discards=" + discards + ", leaks=" + leaks
+                + ", borrowed=" + leases.size() + "]";
+    }
+}
@@ -73,8 +73,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.nio.ByteOrder;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 /**
  * Compresses the pixel data of DICOM images to a lossless or lossy encapsulated transfer syntax format.
@@ -108,6 +114,16 @@ public class Compressor implements Closeable {
     private BufferedImage uncompressedImage;
 
     private ImageReadParam verifyParam;
+    private ImageWriterFactory.ImageWriterParam writerParam;
+    private ImageReaderFactory.ImageReaderParam verifierParam;
+    private Property[] writeProperties;
+    private Executor executor;
+    private int parallelism = 1;
+    private FutureTask<byte[]>[] compressedFrames;
+    private int nextFrameToSubmit;
+    private volatile boolean disposed;
+    private final ConcurrentLinkedQueue<FrameCompressor> frameCompressors =
+            new ConcurrentLinkedQueue<FrameCompressor>();
 
     public Compressor(Attributes dataset, String tsuid, String compressTsuid, Property... compressParams) {
         if (compressTsuid == null)
@@ -144,28 +160,19 @@ public class Compressor implements Closeable {
             throw new UnsupportedOperationException(
                     "Unsupported Transfer Syntax: " + compressTsuid);
 
-        this.compressor = ImageWriterFactory.getImageWriter(param);
+        this.compressor = ImageWriterFactory.borrowImageWriter(param);
         LOG.debug("Compressor: {}", compressor.getClass().getName());
         this.compressPatchJPEGLS = param.patchJPEGLS;
-
-        this.compressParam = compressor.getDefaultWriteParam();
-        int count = 0;
-        for (Property property : cat(param.getImageWriteParams(), compressParams)) {
+        this.writerParam = param;
+        this.writeProperties = cat(param.getImageWriteParams(), compressParams);
+        for (Property property : writeProperties) {
             String name = property.getName();
-            if (name.equals("maxPixelValueError")) {
+            if (name.equals("maxPixelValueError"))
                 maxPixelValueError = ((Number) property.getValue()).intValue();
-            } else if (name.equals("avgPixelValueBlockSize")) {
+            else if (name.equals("avgPixelValueBlockSize"))
                 avgPixelValueBlockSize = ((Number) property.getValue()).intValue();
-            } else if(name.equals("compressionType")) {
-                compressParam.setCompressionType((String)property.getValue());
-            } else {
-                if (count++ == 0) {
-                    compressParam.setCompressionMode(
-                            ImageWriteParam.MODE_EXPLICIT);
-                }
-                property.setAt(compressParam);
-            }
         }
+        this.compressParam = createWriteParam(compressor);
 
         if (maxPixelValueError >= 0) {
             ImageReaderFactory.ImageReaderParam readerParam =
@@ -174,12 +181,60 @@ public class Compressor implements Closeable {
                 throw new UnsupportedOperationException(
                         "Unsupported Transfer Syntax: " + compressTsuid);
 
-            this.verifier = ImageReaderFactory.getImageReader(readerParam);
+            this.verifierParam = readerParam;
+            this.verifier = ImageReaderFactory.borrowImageReader(readerParam);
             this.verifyParam = verifier.getDefaultReadParam();
             LOG.debug("Verifier: {}", verifier.getClass().getName());
         }
     }
 
+    private ImageWriteParam createWriteParam(ImageWriter writer) {
+        ImageWriteParam writeParam = writer.getDefaultWriteParam();
+        int count = 0;
+        for (Property property : writeProperties) {
+            String name = property.getName();
+            if (name.equals("maxPixelValueError")
+                    || name.equals("avgPixelValueBlockSize")) {
+                // applied by the constructor
+            } else if(name.equals("compressionType")) {
+                writeParam.setCompressionType((String)property.getValue());
+            } else {
+                if (count++ == 0) {
+                    writeParam.setCompressionMode(
+                            ImageWriteParam.MODE_EXPLICIT);
+                }
+                property.setAt(writeParam);
+            }
+        }
+        return writeParam;
+    }
+
+    /**
+     * Compress - and verify - up to {@code parallelism} frames of multi-frame
+     * images concurrently by threads of the specified executor, each using
+     * its own {@link ImageWriter}. The compressed frames are still written
+     * in order. Frames of images with embedded overlays are always
+     * compressed one after another. {@code parallelism = 1} (= default)
+     * compresses frames one after another by the writing thread.
+     */
+    public void setParallelCompression(Executor executor, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        if (parallelism > 1 && executor == null)
+            throw new NullPointerException("executor");
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    private boolean isParallel() {
+        return parallelism > 1 && imageParams.getFrames() > 1
+                && !needToExtractEmbeddedOverlays();
+    }
+
     public boolean compress() throws IOException {
 
         if (pixels == null)
@@ -190,6 +245,11 @@ public class Compressor implements Closeable {
             uncompressedImage = BufferedImageUtils.createBufferedImage(imageParams, compressTsType);
         imageParams.compress(dataset, compressTsType);
         int frames = imageParams.getFrames();
+        if (isParallel()) {
+            @SuppressWarnings("unchecked")
+            FutureTask<byte[]>[] futures = new FutureTask[frames];
+            compressedFrames = futures;
+        }
         Fragments compressedPixeldata =
                 dataset.newFragments(Tag.PixelData, VR.OB, frames + 1);
         compressedPixeldata.add(Value.NULL);
@@ -228,14 +288,26 @@ public class Compressor implements Closeable {
     }
 
     public void dispose() {
+        // let pending tasks return immediately, but wait for running ones,
+        // which offer their FrameCompressor back when done
+        disposed = true;
+        if (compressedFrames != null)
+            for (FutureTask<byte[]> frame : compressedFrames)
+                if (frame != null)
+                    awaitTermination(frame);
+
+        FrameCompressor frameCompressor;
+        while ((frameCompressor = frameCompressors.poll()) != null)
+            frameCompressor.dispose();
+
         if (compressor != null)
-            compressor.dispose();
+            ImageWriterFactory.releaseImageWriter(compressor);
 
         if (decompressor != null)
             decompressor.dispose();
 
         if (verifier != null)
-            verifier.dispose();
+            ImageReaderFactory.releaseImageReader(verifier);
 
         compressor = null;
         verifier = null;
@@ -247,6 +319,8 @@ public class Compressor implements Closeable {
         private int streamLength;
         private CacheOutputStream cacheout = new CacheOutputStream();
         private MemoryCacheImageOutputStream cache;
+        private byte[] compressed;
+        private boolean written;
 
         public CompressedFrame(int frameIndex) throws IOException {
             this.frameIndex = frameIndex;
@@ -286,6 +360,17 @@ public class Compressor implements Closeable {
         
         private void writeTo(OutputStream out) throws IOException {
             compress();
+            if (compressedFrames != null) {
+                if (written)
+                    throw new IllegalStateException(
+                            "Compressed frame #" + (frameIndex + 1) + " already written");
+                out.write(compressed);
+                if ((streamLength & 1) != 0)
+                    out.write(0);
+                compressed = null;
+                written = true;
+                return;
+            }
             cacheout.set(out);
             long start = System.currentTimeMillis();
             cache.close();
@@ -296,12 +381,23 @@ public class Compressor implements Closeable {
         }
 
         private void compress() throws IOException {
-            if (cache != null)
+            if (cache != null || compressed != null || written)
                 return;
 
             if (ex != null)
                 throw ex;
 
+            if (compressedFrames != null) {
+                try {
+                    compressed = Compressor.this.awaitCompressedFrame(frameIndex);
+                } catch (IOException ex) {
+                    Compressor.this.ex = ex;
+                    throw ex;
+                }
+                streamLength = compressed.length;
+                return;
+            }
+
             try {
                 BufferedImage imageToCompress = Compressor.this.readFrame(frameIndex);
                 Compressor.this.extractEmbeddedOverlays(frameIndex, imageToCompress);
@@ -349,6 +445,163 @@ public class Compressor implements Closeable {
         }
     }
 
+    private static void awaitTermination(FutureTask<byte[]> frame) {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    frame.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException ignore) {
+                    return;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] awaitCompressedFrame(int frameIndex) throws IOException {
+        int end = Math.min(compressedFrames.length, frameIndex + parallelism);
+        while (nextFrameToSubmit < end)
+            submit(nextFrameToSubmit++);
+
+        FutureTask<byte[]> frame = compressedFrames[frameIndex];
+        compressedFrames[frameIndex] = null;
+        try {
+            return frame.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    private void submit(final int frameIndex) {
+        FutureTask<byte[]> task = new FutureTask<byte[]>(
+                new Callable<byte[]>() {
+
+            @Override
+            public byte[] call() throws Exception {
+                if (disposed)
+                    return null;
+
+                FrameCompressor frameCompressor = frameCompressors.poll();
+                if (frameCompressor == null)
+                    frameCompressor = new FrameCompressor();
+                try {
+                    return frameCompressor.compress(frameIndex);
+                } finally {
+                    frameCompressors.offer(frameCompressor);
+                }
+            }
+        });
+        compressedFrames[frameIndex] = task;
+        executor.execute(task);
+    }
+
+    /**
+     * Holds the codec instances and image buffers used by one thread in
+     * parallel mode.
+     */
+    private final class FrameCompressor {
+        final ImageWriter writer;
+        final ImageWriteParam writeParam;
+        final ImageReader reader;
+        final ImageReadParam readParam;
+        final ImageReader verifier;
+        final ImageReadParam verifyParam;
+        BufferedImage uncompressedImage;
+        BufferedImage decompressedImageForVerification;
+
+        FrameCompressor() {
+            writer = ImageWriterFactory.borrowImageWriter(writerParam);
+            writeParam = createWriteParam(writer);
+            reader = decompressor != null ? decompressor.createImageReader() : null;
+            readParam = reader != null ? reader.getDefaultReadParam() : null;
+            verifier = verifierParam != null
+                    ? ImageReaderFactory.borrowImageReader(verifierParam)
+                    : null;
+            verifyParam = verifier != null ? verifier.getDefaultReadParam() : null;
+            // created by compress() before the Photometric Interpretation and
+            // Planar Configuration were adjusted to the compressed format
+            BufferedImage template = Compressor.this.uncompressedImage;
+            if (template != null)
+                uncompressedImage = new BufferedImage(template.getColorModel(),
+                        template.getRaster().createCompatibleWritableRaster(),
+                        template.isAlphaPremultiplied(), null);
+        }
+
+        byte[] compress(int frameIndex) throws IOException {
+            BufferedImage imageToCompress = readFrame(frameIndex);
+            if (imageParams.getBitsStored() < imageParams.getBitsAllocated())
+                BufferedImageUtils.nullifyUnusedBits(imageParams.getBitsStored(),
+                        imageToCompress.getRaster().getDataBuffer());
+            ByteArrayOutputStream out = new ByteArrayOutputStream(
+                    imageParams.getFrameLength() >> 1);
+            MemoryCacheImageOutputStream cache = new MemoryCacheImageOutputStream(out) {
+
+                @Override
+                public void flush() throws IOException {
+                    // keep compressed data available for verification
+                }
+            };
+            writer.setOutput(compressPatchJPEGLS != null
+                    ? new PatchJPEGLSImageOutputStream(cache, compressPatchJPEGLS)
+                    : cache);
+            long start = System.currentTimeMillis();
+            writer.write(null, new IIOImage(imageToCompress, null, null), writeParam);
+            long end = System.currentTimeMillis();
+            int streamLength = (int) cache.getStreamPosition();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Compressed frame #{} {}:1 in {} ms",
+                        frameIndex + 1,
+                        (float) BufferedImageUtils.sizeOf(imageToCompress) / streamLength,
+                        end - start);
+            if (verifier != null) {
+                decompressedImageForVerification = Compressor.this.verify(cache,
+                        frameIndex, verifier, verifyParam,
+                        decompressedImageForVerification, imageToCompress);
+            }
+            cache.close();
+            return out.toByteArray();
+        }
+
+        private BufferedImage readFrame(int frameIndex) throws IOException {
+            if (decompressor != null) {
+                ImageInputStream iis = decompressor.createImageInputStream(frameIndex);
+                try {
+                    return uncompressedImage = decompressor.decompressFrame(iis,
+                            frameIndex, reader, readParam, uncompressedImage);
+                } finally {
+                    iis.close();
+                }
+            }
+            ImageInputStream iis = createImageInputStream(frameIndex);
+            try {
+                return Compressor.this.readFrame(iis, frameIndex, uncompressedImage);
+            } finally {
+                iis.close();
+            }
+        }
+
+        void dispose() {
+            ImageWriterFactory.releaseImageWriter(writer);
+            if (reader != null)
+                ImageReaderFactory.releaseImageReader(reader);
+            if (verifier != null)
+                ImageReaderFactory.releaseImageReader(verifier);
+        }
+    }
+
     public BufferedImage readFrame(int frameIndex) throws IOException {
         if (iis == null)
             iis = createImageInputStream(frameIndex);
@@ -356,6 +609,11 @@ public class Compressor implements Closeable {
         if (decompressor != null)
             return decompressor.decompressFrame(iis, frameIndex);
 
+        return readFrame(iis, frameIndex, uncompressedImage);
+    }
+
+    private BufferedImage readFrame(ImageInputStream iis, int frameIndex,
+            BufferedImage uncompressedImage) throws IOException {
         if (pixels instanceof BulkData) {
             iis.setByteOrder(((BulkData)pixels).bigEndian
                     ? ByteOrder.BIG_ENDIAN
@@ -382,10 +640,10 @@ public class Compressor implements Closeable {
             }
             break;
         case DataBuffer.TYPE_USHORT:
-            readFully(((DataBufferUShort) db).getData());
+            readFully(iis, ((DataBufferUShort) db).getData());
             break;
         case DataBuffer.TYPE_SHORT:
-            readFully(((DataBufferShort) db).getData());
+            readFully(iis, ((DataBufferShort) db).getData());
             break;
         default:
             throw new UnsupportedOperationException(
@@ -399,8 +657,21 @@ public class Compressor implements Closeable {
         if (verifier == null)
             return;
 
+        decompressedImageForVerification = verify(iis, index, verifier,
+                verifyParam, decompressedImageForVerification, uncompressedImage);
+    }
+
+    private BufferedImage verify(ImageInputStream iis, int index,
+            ImageReader verifier, ImageReadParam verifyParam,
+            BufferedImage decompressedImageForVerification,
+            BufferedImage uncompressedImage) throws IOException {
         iis.seek(0);
         verifier.setInput(iis);
+        if (decompressedImageForVerification == null
+                && TransferSyntaxType.forUID(compressTsuid) == TransferSyntaxType.RLE)
+            // RLE Image Reader needs a destination
+            decompressedImageForVerification = BufferedImageUtils.createBufferedImage(
+                    imageParams, TransferSyntaxType.RLE);
         verifyParam.setDestination(decompressedImageForVerification);
         long start = System.currentTimeMillis();
         decompressedImageForVerification = verifier.read(0, verifyParam);
@@ -412,6 +683,7 @@ public class Compressor implements Closeable {
         if (maxDiff > maxPixelValueError)
             throw new CompressionVerificationException(maxDiff);
 
+        return decompressedImageForVerification;
     }
 
      private void extractEmbeddedOverlays(int frameIndex, BufferedImage bi) {
@@ -433,7 +705,8 @@ public class Compressor implements Closeable {
         }
     }
 
-    private void readFully(short[] data) throws IOException {
+    private static void readFully(ImageInputStream iis, short[] data)
+            throws IOException {
         iis.readFully(data, 0, data.length);
     }
 
@@ -482,7 +755,11 @@ public class Compressor implements Closeable {
         // depends on the compression algorithm, properties and the compressor implementation.)
         long compressedFrameLength = uncompressedFrameLength;
 
-        if (!needToExtractEmbeddedOverlays()) {
+        if (isParallel()) {
+            // In parallel mode, each frame in progress needs its own uncompressed, compressed and verification buffer.
+            memoryNeededDuringCompression = (memoryNeededDuringCompression + compressedFrameLength)
+                    * Math.min(parallelism, imageParams.getFrames());
+        } else if (!needToExtractEmbeddedOverlays()) {
             // As the compression happens lazily on demand (when writing to the OutputStream), we just need to keep one
             // frame in memory at one moment in time.
             memoryNeededDuringCompression += compressedFrameLength;
@@ -55,7 +55,15 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Decompresses the pixel data of compressed DICOM images to the native (uncompressed) format.
@@ -76,6 +84,10 @@ public class Decompressor {
     private ImageReader imageReader;
     private ImageReadParam readParam;
     private PatchJPEGLS patchJPEGLS;
+    private ImageReaderFactory.ImageReaderParam readerParam;
+    private Executor executor;
+    private int parallelism = 1;
+    private long maxMemory;
 
     public Decompressor(Attributes dataset, String tsuid) {
         if (tsuid == null)
@@ -112,16 +124,56 @@ public class Decompressor {
                 throw new UnsupportedOperationException(
                         "Unsupported Transfer Syntax: " + tsuid);
 
-            this.imageReader = ImageReaderFactory.getImageReader(param);
+            this.readerParam = param;
+            this.imageReader = ImageReaderFactory.borrowImageReader(param);
             LOG.debug("Decompressor: {}", imageReader.getClass().getName());
             this.readParam = imageReader.getDefaultReadParam();
             this.patchJPEGLS = param.patchJPEGLS;
         }
     }
 
+    /**
+     * Decompress up to {@code parallelism} frames of multi-frame images
+     * concurrently by threads of the specified executor, each using its
+     * own {@link ImageReader}. Frames are still written in order by
+     * {@link #writeTo(OutputStream)}. {@code parallelism = 1} (= default)
+     * decompresses frames one after another by the calling thread, as
+     * do subclasses overriding {@link #decompressFrame(ImageInputStream, int)}
+     * or {@link #writeFrameTo(ImageInputStream, int, OutputStream)}.
+     */
+    public void setParallelDecompression(Executor executor, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        if (parallelism > 1 && executor == null)
+            throw new NullPointerException("executor");
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Limits the number of frames decompressed ahead of the frame currently
+     * written in parallel mode, so that {@link #getEstimatedNeededMemory()}
+     * does not exceed {@code maxMemory} bytes. At least one frame is always
+     * decompressed. {@code maxMemory = 0} (= default) limits the number of
+     * frames in progress only by the parallelism.
+     */
+    public void setMaxMemory(long maxMemory) {
+        if (maxMemory < 0)
+            throw new IllegalArgumentException("maxMemory: " + maxMemory);
+        this.maxMemory = maxMemory;
+    }
+
     public void dispose() {
         if (imageReader != null)
-            imageReader.dispose();
+            ImageReaderFactory.releaseImageReader(imageReader);
 
         imageReader = null;
     }
@@ -170,6 +222,12 @@ public class Decompressor {
 
     public void writeTo(OutputStream out) throws IOException {
         int frames = imageParams.getFrames();
+        if (imageReader == null && readerParam != null)
+            imageReader = ImageReaderFactory.borrowImageReader(readerParam);
+        if (parallelism > 1 && frames > 1 && !overridesFrameDecompression()) {
+            writeParallelTo(out);
+            return;
+        }
         try {
             for (int i = 0; i < frames; ++i) {
                 ImageInputStream iis = createImageInputStream(i);
@@ -179,11 +237,166 @@ public class Decompressor {
             if (imageParams.paddingNull())
                 out.write(0);
         } finally {
+            dispose();
+        }
+    }
+
+    /**
+     * Returns {@code true} if a subclass overrides the decompression of
+     * single frames, which the parallel path would bypass.
+     */
+    private boolean overridesFrameDecompression() {
+        for (Class<?> c = getClass(); c != Decompressor.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("decompressFrame",
+                        ImageInputStream.class, int.class);
+                return true;
+            } catch (NoSuchMethodException ignore) {}
+            try {
+                c.getDeclaredMethod("writeFrameTo",
+                        ImageInputStream.class, int.class, OutputStream.class);
+                return true;
+            } catch (NoSuchMethodException ignore) {}
+        }
+        return false;
+    }
+
+    private void writeParallelTo(OutputStream out) throws IOException {
+        int frames = imageParams.getFrames();
+        int window = framesInProgress();
+        ConcurrentLinkedQueue<FrameReader> readers =
+                new ConcurrentLinkedQueue<FrameReader>();
+        readers.add(new FrameReader(imageReader, readParam));
+        ArrayList<FutureTask<BufferedImage>> reorderBuffer =
+                new ArrayList<FutureTask<BufferedImage>>(frames);
+        ConcurrentLinkedQueue<BufferedImage> images =
+                new ConcurrentLinkedQueue<BufferedImage>();
+        AtomicBoolean aborted = new AtomicBoolean();
+        try {
+            for (int i = 0; i < window; i++)
+                reorderBuffer.add(submit(i, readers, images, aborted));
+            for (int i = 0; i < frames; i++) {
+                FutureTask<BufferedImage> frame = reorderBuffer.get(i);
+                reorderBuffer.set(i, null);
+                BufferedImage bi = getDecompressedFrame(frame);
+                BufferedImageUtils.writeTo(bi, out);
+                images.offer(bi);
+                if (i + window < frames)
+                    reorderBuffer.add(submit(i + window, readers, images, aborted));
+            }
+            if (imageParams.paddingNull())
+                out.write(0);
+        } finally {
+            // let pending tasks return immediately, but wait for running
+            // ones, which still use one of the readers
+            aborted.set(true);
+            for (FutureTask<BufferedImage> frame : reorderBuffer)
+                if (frame != null)
+                    awaitTermination(frame);
+            for (FrameReader reader : readers)
+                if (reader.reader != imageReader)
+                    ImageReaderFactory.releaseImageReader(reader.reader);
+            dispose();
+        }
+    }
+
+    private static void awaitTermination(FutureTask<BufferedImage> frame) {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                try {
+                    frame.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException ignore) {
+                    return;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private int framesInProgress() {
+        int window = Math.min(imageParams.getFrames(), parallelism);
+        if (maxMemory > 0)
+            window = (int) Math.max(1,
+                    Math.min(window, maxMemory / getEstimatedNeededMemoryPerFrame()));
+        return window;
+    }
 
-            imageReader.dispose();
+    private static BufferedImage getDecompressedFrame(
+            FutureTask<BufferedImage> frame) throws IOException {
+        try {
+            return frame.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause);
         }
     }
 
+    private FutureTask<BufferedImage> submit(final int frameIndex,
+            final ConcurrentLinkedQueue<FrameReader> readers,
+            final ConcurrentLinkedQueue<BufferedImage> images,
+            final AtomicBoolean aborted) {
+        FutureTask<BufferedImage> task = new FutureTask<BufferedImage>(
+                new Callable<BufferedImage>() {
+
+            @Override
+            public BufferedImage call() throws Exception {
+                if (aborted.get())
+                    return null;
+
+                FrameReader reader = readers.poll();
+                if (reader == null)
+                    reader = new FrameReader();
+                try {
+                    ImageInputStream iis = createImageInputStream(frameIndex);
+                    try {
+                        return decompressFrame(iis, frameIndex, reader.reader,
+                                reader.param, images.poll());
+                    } finally {
+                        close(iis);
+                    }
+                } finally {
+                    readers.offer(reader);
+                }
+            }
+        });
+        executor.execute(task);
+        return task;
+    }
+
+    private final class FrameReader {
+        final ImageReader reader;
+        final ImageReadParam param;
+
+        FrameReader() {
+            this(createImageReader());
+        }
+
+        private FrameReader(ImageReader reader) {
+            this(reader, reader.getDefaultReadParam());
+        }
+
+        FrameReader(ImageReader reader, ImageReadParam param) {
+            this.reader = reader;
+            this.param = param;
+        }
+    }
+
+    ImageReader createImageReader() {
+        return ImageReaderFactory.borrowImageReader(readerParam);
+    }
+
     private void close (ImageInputStream iis) {
         try { iis.close(); } catch (IOException ignore) {}
     }
@@ -193,29 +406,36 @@ public class Decompressor {
         BufferedImageUtils.writeTo(decompressFrame(iis, frameIndex), out);
     }
 
-    @SuppressWarnings("resource")
     protected BufferedImage decompressFrame(ImageInputStream iis, int index)
             throws IOException {
+        return decompressedImage = decompressFrame(iis, index, imageReader,
+                readParam, decompressedImage);
+    }
+
+    @SuppressWarnings("resource")
+    BufferedImage decompressFrame(ImageInputStream iis, int index,
+            ImageReader reader, ImageReadParam param, BufferedImage destination)
+            throws IOException {
 
         if (pixels instanceof Fragments && ((Fragments) pixels).get(index+1) instanceof BulkData)
             iis = SegmentedImageInputStream.ofFrame(iis, (Fragments) pixels, index, imageParams.getFrames());
 
-        if (decompressedImage == null && tsType == TransferSyntaxType.RLE)
-            decompressedImage = BufferedImageUtils.createBufferedImage(imageParams, tsType);
+        if (destination == null && tsType == TransferSyntaxType.RLE)
+            destination = BufferedImageUtils.createBufferedImage(imageParams, tsType);
 
-        imageReader.setInput(patchJPEGLS != null
+        reader.setInput(patchJPEGLS != null
                 ? new PatchJPEGLSImageInputStream(iis, patchJPEGLS)
                 : iis);
-        readParam.setDestination(decompressedImage);
+        param.setDestination(destination);
         long start = System.currentTimeMillis();
-        decompressedImage = imageReader.read(0, readParam);
+        BufferedImage bi = reader.read(0, param);
         long end = System.currentTimeMillis();
         if (LOG.isDebugEnabled())
             LOG.debug("Decompressed frame #{} 1:{} in {} ms", 
                     new Object[] {index + 1,
-                    (float) BufferedImageUtils.sizeOf(decompressedImage) / iis.getStreamPosition(),
+                    (float) BufferedImageUtils.sizeOf(bi) / iis.getStreamPosition(),
                     end - start });
-        return decompressedImage;
+        return bi;
     }
 
     public ImageInputStream createImageInputStream() throws IOException {
@@ -249,6 +469,15 @@ public class Decompressor {
         if (pixels == null)
             return 0;
 
+        // In parallel mode, several frames are decompressed or waiting to be
+        // written at one moment in time.
+        long perFrame = getEstimatedNeededMemoryPerFrame();
+        return parallelism > 1 && imageParams.getFrames() > 1
+                ? perFrame * framesInProgress()
+                : perFrame;
+    }
+
+    private long getEstimatedNeededMemoryPerFrame() {
         long uncompressedFrameLength = imageParams.getFrameLength();
 
         // Memory needed for reading one compressed frame
@@ -290,6 +290,49 @@ public class ImageReaderFactory implements Serializable {
         return getDefault().containsTransferSyntaxUID(tsuid);
     }
 
+    private static final CodecPool<ImageReaderParam, ImageReader> POOL =
+            new CodecPool<ImageReaderParam, ImageReader>() {
+
+        @Override
+        protected String keyOf(ImageReaderParam param) {
+            return param.formatName + ':' + param.className;
+        }
+
+        @Override
+        protected ImageReader create(ImageReaderParam param) {
+            return getImageReader(param);
+        }
+
+        @Override
+        protected void reset(ImageReader reader) {
+            reader.reset();
+        }
+
+        @Override
+        protected void dispose(ImageReader reader) {
+            reader.dispose();
+        }
+    };
+
+    /**
+     * Returns the pool used by {@link #borrowImageReader(ImageReaderParam)}.
+     */
+    public static CodecPool<ImageReaderParam, ImageReader> getImageReaderPool() {
+        return POOL;
+    }
+
+    /**
+     * Returns a pooled ImageReader for the specified parameter, which shall be
+     * passed to {@link #releaseImageReader(ImageReader)} instead of being disposed.
+     */
+    public static ImageReader borrowImageReader(ImageReaderParam param) {
+        return POOL.borrow(param);
+    }
+
+    public static void releaseImageReader(ImageReader reader) {
+        POOL.release(reader);
+    }
+
     public static ImageReader getImageReader(ImageReaderParam param) {
 
         Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName(param.formatName);
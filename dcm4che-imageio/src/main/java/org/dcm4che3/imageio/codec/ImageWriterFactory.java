@@ -328,6 +328,49 @@ public class ImageWriterFactory implements Serializable {
         return getDefault().getForTransferSyntaxUID(tsuid);
     }
 
+    private static final CodecPool<ImageWriterParam, ImageWriter> POOL =
+            new CodecPool<ImageWriterParam, ImageWriter>() {
+
+        @Override
+        protected String keyOf(ImageWriterParam param) {
+            return param.formatName + ':' + param.className;
+        }
+
+        @Override
+        protected ImageWriter create(ImageWriterParam param) {
+            return getImageWriter(param);
+        }
+
+        @Override
+        protected void reset(ImageWriter writer) {
+            writer.reset();
+        }
+
+        @Override
+        protected void dispose(ImageWriter writer) {
+            writer.dispose();
+        }
+    };
+
+    /**
+     * Returns the pool used by {@link #borrowImageWriter(ImageWriterParam)}.
+     */
+    public static CodecPool<ImageWriterParam, ImageWriter> getImageWriterPool() {
+        return POOL;
+    }
+
+    /**
+     * Returns a pooled ImageWriter for the specified parameter, which shall be
+     * passed to {@link #releaseImageWriter(ImageWriter)} instead of being disposed.
+     */
+    public static ImageWriter borrowImageWriter(ImageWriterParam param) {
+        return POOL.borrow(param);
+    }
+
+    public static void releaseImageWriter(ImageWriter writer) {
+        POOL.release(writer);
+    }
+
     public static ImageWriter getImageWriter(ImageWriterParam param) {
 
         Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(param.formatName);
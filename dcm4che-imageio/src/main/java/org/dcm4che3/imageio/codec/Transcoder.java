@@ -0,0 +1,623 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.codec;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.image.Overlays;
+import org.dcm4che3.image.PhotometricInterpretation;
+import org.dcm4che3.imageio.codec.jpeg.PatchJPEGLS;
+import org.dcm4che3.imageio.codec.jpeg.PatchJPEGLSImageInputStream;
+import org.dcm4che3.imageio.codec.jpeg.PatchJPEGLSImageOutputStream;
+import org.dcm4che3.imageio.stream.SegmentedImageInputStream;
+import org.dcm4che3.io.DicomEncodingOptions;
+import org.dcm4che3.io.DicomInputHandler;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.ByteUtils;
+import org.dcm4che3.util.Property;
+import org.dcm4che3.util.StreamUtils;
+import org.dcm4che3.util.TagUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Transcodes a data set read from a {@link DicomInputStream} to another
+ * Transfer Syntax in a single pass, writing it to the
+ * {@link DicomOutputStream} provided by a {@link Handler}.
+ * 
+ * Encapsulated pixel data is decompressed and native pixel data is compressed
+ * frame by frame, so at most one uncompressed and one compressed frame - and
+ * the decompressed frame, if the compression is verified - are held in
+ * memory, independent of the number of frames. Pixel data with the same
+ * encoding in the source and destination Transfer Syntax is copied
+ * unchanged. The attributes preceding the pixel data are passed to the
+ * {@link CoerceAttributes} hook before they are written.
+ * 
+ * Embedded overlays are extracted in the same pass only from single frame
+ * images.
+ * 
+ * @author agent <agent@local>
+ */
+public class Transcoder implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Transcoder.class);
+
+    public interface Handler {
+
+        /**
+         * Returns the stream to which the transcoded data set is written.
+         * Invoked with the coerced attributes preceding the pixel data, or
+         * with all attributes of a data set without pixel data. The handler
+         * may adjust the destination Transfer Syntax, before it creates the
+         * stream for {@link Transcoder#getDestinationTransferSyntax()} and
+         * writes the File Meta Information, if needed.
+         */
+        DicomOutputStream newDicomOutputStream(Transcoder transcoder,
+                Attributes dataset) throws IOException;
+    }
+
+    private final DicomInputStream dis;
+    private final Attributes fmi;
+    private final String tsuid;
+    private final TransferSyntaxType tsType;
+    private String destTsuid;
+    private TransferSyntaxType destTsType;
+    private Property[] compressParams = {};
+    private CoerceAttributes coerceAttributes;
+    private Handler handler;
+    private DicomOutputStream dos;
+    private boolean pixeldataProcessed;
+    private boolean pixeldataTranscoded;
+
+    private ImageParams imageParams;
+    private ImageReader decompressor;
+    private PatchJPEGLS decompressPatchJPEGLS;
+    private ImageReadParam decompressParam;
+    private ImageWriter compressor;
+    private PatchJPEGLS compressPatchJPEGLS;
+    private ImageWriteParam compressParam;
+    private ImageReader verifier;
+    private ImageReadParam verifyParam;
+    private int maxPixelValueError = -1;
+    private int avgPixelValueBlockSize = 1;
+    private int[] embeddedOverlays = {};
+    private BufferedImage bi;
+    private BufferedImage bi2;
+    private MemoryCacheImageInputStream iis;
+    private long iisStartPos;
+    private byte[] buf;
+    private final byte[] itemHeader = new byte[8];
+    private int frameIndex;
+
+    public Transcoder(DicomInputStream dis) throws IOException {
+        this.dis = dis;
+        this.fmi = dis.readFileMetaInformation();
+        this.tsuid = dis.getTransferSyntax();
+        this.tsType = TransferSyntaxType.forUID(tsuid);
+        if (tsType == null)
+            throw new IllegalArgumentException(
+                    "Unknown Transfer Syntax: " + tsuid);
+        this.destTsuid = tsuid;
+        this.destTsType = tsType;
+    }
+
+    /**
+     * Returns {@code true} if a data set encoded with Transfer Syntax
+     * {@code tsuid} can be transcoded to Transfer Syntax {@code destTsuid}
+     * with the available image readers and writers.
+     */
+    public static boolean isSupported(String tsuid, String destTsuid) {
+        if (tsuid.equals(destTsuid))
+            return true;
+
+        TransferSyntaxType tsType = TransferSyntaxType.forUID(tsuid);
+        TransferSyntaxType destTsType = TransferSyntaxType.forUID(destTsuid);
+        if (tsType == null || destTsType == null)
+            return false;
+
+        if (tsType.isPixeldataEncapsulated()
+                && ImageReaderFactory.getImageReaderParam(tsuid) == null)
+            return false;
+
+        return !destTsType.isPixeldataEncapsulated()
+                || ImageWriterFactory.getImageWriterParam(destTsuid) != null;
+    }
+
+    /**
+     * Returns the File Meta Information of the source, or {@code null} if it
+     * has none.
+     */
+    public final Attributes getFileMetaInformation() {
+        return fmi;
+    }
+
+    public final String getSourceTransferSyntax() {
+        return tsuid;
+    }
+
+    public final String getDestinationTransferSyntax() {
+        return destTsuid;
+    }
+
+    public final void setDestinationTransferSyntax(String destTsuid) {
+        if (pixeldataProcessed)
+            throw new IllegalStateException("Pixel Data already transcoded");
+        TransferSyntaxType destTsType = TransferSyntaxType.forUID(destTsuid);
+        if (destTsType == null)
+            throw new IllegalArgumentException(
+                    "Unknown Transfer Syntax: " + destTsuid);
+        this.destTsuid = destTsuid;
+        this.destTsType = destTsType;
+    }
+
+    public final Property[] getCompressParams() {
+        return compressParams;
+    }
+
+    public final void setCompressParams(Property... compressParams) {
+        this.compressParams = compressParams;
+    }
+
+    public final CoerceAttributes getCoerceAttributes() {
+        return coerceAttributes;
+    }
+
+    public final void setCoerceAttributes(CoerceAttributes coerceAttributes) {
+        this.coerceAttributes = coerceAttributes;
+    }
+
+    /**
+     * Returns {@code true} if the pixel data was decompressed or compressed.
+     */
+    public final boolean isPixeldataTranscoded() {
+        return pixeldataTranscoded;
+    }
+
+    public void transcode(Handler handler) throws IOException {
+        if (handler == null)
+            throw new NullPointerException("handler");
+        if (this.handler != null)
+            throw new IllegalStateException("Already transcoded");
+
+        this.handler = handler;
+        Attributes attrs = new Attributes(dis.bigEndian(), 64);
+        dis.setDicomInputHandler(inputHandler);
+        dis.readAttributes(attrs, -1, -1);
+        writeAttributes(dos == null ? openOutputStream(attrs) : attrs);
+        dos.finish();
+    }
+
+    @Override
+    public void close() {
+        if (decompressor != null)
+            ImageReaderFactory.releaseImageReader(decompressor);
+        if (compressor != null)
+            ImageWriterFactory.releaseImageWriter(compressor);
+        if (verifier != null)
+            ImageReaderFactory.releaseImageReader(verifier);
+        decompressor = null;
+        compressor = null;
+        verifier = null;
+    }
+
+    private Attributes openOutputStream(Attributes attrs) throws IOException {
+        if (coerceAttributes != null)
+            attrs = coerceAttributes.coerce(attrs);
+        dos = handler.newDicomOutputStream(this, attrs);
+        if (tsType.isPixeldataEncapsulated() && !tsuid.equals(destTsuid))
+            removeEncapsulatedIcon(attrs);
+        return attrs;
+    }
+
+    private static void removeEncapsulatedIcon(Attributes attrs) {
+        Attributes icon = attrs.getNestedDataset(Tag.IconImageSequence);
+        if (icon != null && icon.getValue(Tag.PixelData) instanceof Fragments) {
+            attrs.remove(Tag.IconImageSequence);
+            LOG.debug("Removed Icon Image Sequence with encapsulated Pixel Data");
+        }
+    }
+
+    private void writeAttributes(Attributes attrs) throws IOException {
+        DicomEncodingOptions encOpts = dos.getEncodingOptions();
+        if (attrs.bigEndian() != dos.isBigEndian()
+                || encOpts.groupLength
+                || !encOpts.undefSequenceLength
+                || !encOpts.undefItemLength)
+            attrs = new Attributes(attrs, dos.isBigEndian());
+        if (encOpts.groupLength)
+            attrs.calcLength(encOpts, dos.isExplicitVR());
+        attrs.writeTo(dos);
+    }
+
+    private void onPixelData(DicomInputStream dis, Attributes attrs)
+            throws IOException {
+        VR vr = dis.vr();
+        int len = dis.length();
+        if (len == -1) {
+            if (!tsType.isPixeldataEncapsulated())
+                throw new IOException("Unexpected encapsulated Pixel Data");
+        } else {
+            if (tsType.isPixeldataEncapsulated())
+                throw new IOException("Pixel Data not encapsulated");
+        }
+        Attributes dataset = openOutputStream(attrs);
+        if (tsuid.equals(destTsuid)
+                || !tsType.isPixeldataEncapsulated()
+                    && !destTsType.isPixeldataEncapsulated()) {
+            writeAttributes(dataset);
+            attrs.clear();
+            if (len == -1) {
+                dos.writeHeader(Tag.PixelData, VR.OB, -1);
+                copyFragments();
+            } else {
+                dos.writeHeader(Tag.PixelData, vr, len);
+                StreamUtils.copy(dis, dos, len,
+                        dis.bigEndian() != dos.isBigEndian()
+                                ? vr.numEndianBytes() : 1);
+            }
+        } else {
+            initImageCodecs(dataset);
+            if (len != -1 && len < imageParams.getLength())
+                throw new IllegalArgumentException(
+                        "Pixel data too short: " + len + " instead "
+                                + imageParams.getLength() + " bytes");
+            if (embeddedOverlays.length > 0)
+                extractEmbeddedOverlays(dataset, readFrame(vr));
+            writeAttributes(dataset);
+            attrs.clear();
+            if (compressor != null) {
+                dos.writeHeader(Tag.PixelData, VR.OB, -1);
+                dos.writeHeader(Tag.Item, null, 0);
+                for (; frameIndex < imageParams.getFrames(); frameIndex++)
+                    writeCompressedFrame(embeddedOverlays.length > 0
+                            ? bi // single frame already read
+                            : readFrame(vr));
+                dos.writeHeader(Tag.SequenceDelimitationItem, null, 0);
+            } else {
+                dos.writeHeader(Tag.PixelData,
+                        imageParams.getBitsAllocated() > 8 || !dos.isBigEndian()
+                                ? VR.OW : VR.OB,
+                        imageParams.getEncodedLength());
+                for (; frameIndex < imageParams.getFrames(); frameIndex++)
+                    BufferedImageUtils.writeTo(readFrame(vr), dos,
+                            dos.isBigEndian());
+                if (imageParams.paddingNull())
+                    dos.write(0);
+            }
+            finishReadFrames(len);
+            pixeldataTranscoded = true;
+        }
+        pixeldataProcessed = true;
+    }
+
+    private void copyFragments() throws IOException {
+        byte[] b = new byte[8192];
+        while (dis.readHeader() == Tag.Item) {
+            int len = dis.length();
+            dos.writeHeader(Tag.Item, null, len);
+            StreamUtils.copy(dis, dos, len, b);
+        }
+        if (dis.tag() != Tag.SequenceDelimitationItem)
+            throw new IOException("Unexpected attribute "
+                    + TagUtils.toString(dis.tag())
+                    + " in encapsulated Pixel Data");
+        dos.writeHeader(Tag.SequenceDelimitationItem, null, 0);
+    }
+
+    private void initImageCodecs(Attributes attrs) {
+        imageParams = new ImageParams(attrs);
+        if (tsType.isPixeldataEncapsulated()) {
+            ImageReaderFactory.ImageReaderParam param =
+                    ImageReaderFactory.getImageReaderParam(tsuid);
+            if (param == null)
+                throw new UnsupportedOperationException(
+                        "Unsupported Transfer Syntax: " + tsuid);
+            this.decompressor = ImageReaderFactory.borrowImageReader(param);
+            LOG.debug("Decompressor: {}", decompressor.getClass().getName());
+            this.decompressPatchJPEGLS = param.getPatchJPEGLS();
+            this.decompressParam = decompressor.getDefaultReadParam();
+            imageParams.decompress(attrs, tsType);
+        } else {
+            PhotometricInterpretation pmi = imageParams.getPhotometricInterpretation();
+            if (pmi.isSubSambled())
+                throw new UnsupportedOperationException(
+                        "Unsupported Photometric Interpretation: " + pmi);
+        }
+        if (destTsType.isPixeldataEncapsulated()) {
+            initCompressor();
+            embeddedOverlays = Overlays.getEmbeddedOverlayGroupOffsets(attrs);
+            if (embeddedOverlays.length > 0 && imageParams.getFrames() > 1)
+                throw new UnsupportedOperationException(
+                        "Cannot extract embedded overlays from multi-frame image");
+        }
+        if (decompressor == null || tsType == TransferSyntaxType.RLE)
+            bi = BufferedImageUtils.createBufferedImage(imageParams,
+                    compressor != null ? destTsType : null);
+        if (compressor != null)
+            imageParams.compress(attrs, destTsType);
+    }
+
+    private void initCompressor() {
+        ImageWriterFactory.ImageWriterParam param =
+                ImageWriterFactory.getImageWriterParam(destTsuid);
+        if (param == null)
+            throw new UnsupportedOperationException(
+                    "Unsupported Transfer Syntax: " + destTsuid);
+
+        this.compressor = ImageWriterFactory.borrowImageWriter(param);
+        LOG.debug("Compressor: {}", compressor.getClass().getName());
+        this.compressPatchJPEGLS = param.patchJPEGLS;
+        this.compressParam = compressor.getDefaultWriteParam();
+        int count = 0;
+        for (Property property : cat(param.getImageWriteParams(), compressParams)) {
+            String name = property.getName();
+            if (name.equals("maxPixelValueError"))
+                this.maxPixelValueError = ((Number) property.getValue()).intValue();
+            else if (name.equals("avgPixelValueBlockSize"))
+                this.avgPixelValueBlockSize = ((Number) property.getValue()).intValue();
+            else if (name.equals("compressionType"))
+                compressParam.setCompressionType((String) property.getValue());
+            else {
+                if (count++ == 0)
+                    compressParam.setCompressionMode(
+                            ImageWriteParam.MODE_EXPLICIT);
+                property.setAt(compressParam);
+            }
+        }
+
+        if (maxPixelValueError >= 0) {
+            ImageReaderFactory.ImageReaderParam readerParam =
+                    ImageReaderFactory.getImageReaderParam(destTsuid);
+            if (readerParam == null)
+                throw new UnsupportedOperationException(
+                        "Unsupported Transfer Syntax: " + destTsuid);
+
+            this.verifier = ImageReaderFactory.borrowImageReader(readerParam);
+            this.verifyParam = verifier.getDefaultReadParam();
+            LOG.debug("Verifier: {}", verifier.getClass().getName());
+        }
+    }
+
+    private static Property[] cat(Property[] a, Property[] b) {
+        if (a.length == 0)
+            return b;
+        if (b.length == 0)
+            return a;
+        Property[] c = new Property[a.length + b.length];
+        System.arraycopy(a, 0, c, 0, a.length);
+        System.arraycopy(b, 0, c, a.length, b.length);
+        return c;
+    }
+
+    private BufferedImage readFrame(VR vr) throws IOException {
+        if (decompressor != null)
+            return decompressFrame();
+
+        DataBuffer db = bi.getRaster().getDataBuffer();
+        switch (db.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            byte[][] data = ((DataBufferByte) db).getBankData();
+            for (byte[] bs : data)
+                dis.readFully(bs);
+            if (dis.bigEndian() && vr == VR.OW)
+                ByteUtils.swapShorts(data);
+            break;
+        case DataBuffer.TYPE_USHORT:
+            readFully(((DataBufferUShort) db).getData());
+            break;
+        case DataBuffer.TYPE_SHORT:
+            readFully(((DataBufferShort) db).getData());
+            break;
+        default:
+            throw new UnsupportedOperationException(
+                    "Unsupported Datatype: " + db.getDataType());
+        }
+        return bi;
+    }
+
+    private void readFully(short[] data) throws IOException {
+        if (buf == null)
+            buf = new byte[data.length << 1];
+        dis.readFully(buf);
+        ByteUtils.bytesToShorts(buf, 0, data, 0, data.length, dis.bigEndian());
+    }
+
+    private BufferedImage decompressFrame() throws IOException {
+        if (iis == null) {
+            dis.readHeader();
+            dis.skipFully(dis.length());
+            iisStartPos = dis.getPosition();
+            iis = new MemoryCacheImageInputStream(dis);
+        }
+        iis.readFully(itemHeader);
+        SegmentedImageInputStream siis = new SegmentedImageInputStream(
+                iis, iis.getStreamPosition(), ByteUtils.bytesToIntLE(itemHeader, 4),
+                imageParams.getFrames() == 1);
+        decompressor.setInput(decompressPatchJPEGLS != null
+                ? new PatchJPEGLSImageInputStream(siis, decompressPatchJPEGLS)
+                : siis);
+        decompressParam.setDestination(bi);
+        long start = System.currentTimeMillis();
+        bi = decompressor.read(0, decompressParam);
+        long lastSegmentEnd = siis.getLastSegmentEnd();
+        iis.seek(lastSegmentEnd);
+        iis.flushBefore(lastSegmentEnd);
+        long end = System.currentTimeMillis();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Decompressed frame #{} 1:{} in {} ms", new Object[] {
+                    frameIndex + 1,
+                    (float) BufferedImageUtils.sizeOf(bi) / siis.getStreamPosition(),
+                    end - start });
+        return bi;
+    }
+
+    private void finishReadFrames(int len) throws IOException {
+        if (iis != null) {
+            iis.readFully(itemHeader); // Sequence Delimitation Item
+            dis.setPosition(iisStartPos + iis.getStreamPosition());
+            iis = null;
+        } else if (len != -1) {
+            dis.skipFully(len - imageParams.getLength());
+        }
+    }
+
+    private void extractEmbeddedOverlays(Attributes attrs, BufferedImage bi) {
+        for (int gg0000 : embeddedOverlays) {
+            int ovlyRows = attrs.getInt(Tag.OverlayRows | gg0000, 0);
+            int ovlyColumns = attrs.getInt(Tag.OverlayColumns | gg0000, 0);
+            int ovlyBitPosition = attrs.getInt(Tag.OverlayBitPosition | gg0000, 0);
+            int ovlyLength = ovlyRows * ovlyColumns;
+            byte[] ovlyData = new byte[(((ovlyLength + 7) >>> 3) + 1) & (~1)];
+            Overlays.extractFromPixeldata(bi.getRaster(), 1 << ovlyBitPosition,
+                    ovlyData, 0, ovlyLength);
+            attrs.setBytes(Tag.OverlayData | gg0000, VR.OB, ovlyData);
+            attrs.setInt(Tag.OverlayBitsAllocated | gg0000, VR.US, 1);
+            attrs.setInt(Tag.OverlayBitPosition | gg0000, VR.US, 0);
+            LOG.debug("Extracted embedded overlay #{} from bit #{}",
+                    (gg0000 >>> 17) + 1, ovlyBitPosition);
+        }
+    }
+
+    private void writeCompressedFrame(BufferedImage bi) throws IOException {
+        if (imageParams.getBitsStored() < imageParams.getBitsAllocated())
+            BufferedImageUtils.nullifyUnusedBits(imageParams.getBitsStored(),
+                    bi.getRaster().getDataBuffer());
+
+        MemoryCacheImageOutputStream compressedFrame =
+                new MemoryCacheImageOutputStream(dos) {
+
+            @Override
+            public void flush() throws IOException {
+                // defer flush to close()
+            }
+        };
+        compressor.setOutput(compressPatchJPEGLS != null
+                ? new PatchJPEGLSImageOutputStream(compressedFrame, compressPatchJPEGLS)
+                : compressedFrame);
+        long start = System.currentTimeMillis();
+        compressor.write(null, new IIOImage(bi, null, null), compressParam);
+        long end = System.currentTimeMillis();
+        int streamLength = (int) compressedFrame.getStreamPosition();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Compressed frame #{} {}:1 in {} ms", new Object[] {
+                    frameIndex + 1,
+                    (float) BufferedImageUtils.sizeOf(bi) / streamLength,
+                    end - start });
+        verify(compressedFrame, bi);
+        dos.writeHeader(Tag.Item, null, (streamLength + 1) & ~1);
+        compressedFrame.close();
+        if ((streamLength & 1) != 0)
+            dos.write(0);
+    }
+
+    private void verify(ImageInputStream iis, BufferedImage bi) throws IOException {
+        if (verifier == null)
+            return;
+
+        iis.seek(0);
+        verifier.setInput(iis);
+        if (bi2 == null && destTsType == TransferSyntaxType.RLE)
+            // RLE Image Reader needs a destination
+            bi2 = BufferedImageUtils.createBufferedImage(imageParams, destTsType);
+        verifyParam.setDestination(bi2);
+        long start = System.currentTimeMillis();
+        bi2 = verifier.read(0, verifyParam);
+        int maxDiff = BufferedImageUtils.maxDiff(bi.getRaster(), bi2.getRaster(),
+                avgPixelValueBlockSize);
+        long end = System.currentTimeMillis();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Verified compressed frame #{} in {} ms - max pixel value error: {}",
+                    new Object[] { frameIndex + 1, end - start, maxDiff });
+        if (maxDiff > maxPixelValueError)
+            throw new CompressionVerificationException(maxDiff);
+    }
+
+    private final DicomInputHandler inputHandler = new DicomInputHandler() {
+
+        @Override
+        public void readValue(DicomInputStream dis, Attributes attrs)
+                throws IOException {
+            if (dis.tag() == Tag.PixelData && dis.level() == 0
+                    && !pixeldataProcessed)
+                onPixelData(dis, attrs);
+            else
+                dis.readValue(dis, attrs);
+        }
+
+        @Override
+        public void readValue(DicomInputStream dis, Sequence seq)
+                throws IOException {
+            dis.readValue(dis, seq);
+        }
+
+        @Override
+        public void readValue(DicomInputStream dis, Fragments frags)
+                throws IOException {
+            dis.readValue(dis, frags);
+        }
+
+        @Override
+        public void startDataset(DicomInputStream dis) throws IOException {
+        }
+
+        @Override
+        public void endDataset(DicomInputStream dis) throws IOException {
+        }
+    };
+}
@@ -57,6 +57,7 @@ public class DicomImageReadParam extends ImageReadParam {
     private int overlayActivationMask = 0xf;
     private int overlayGrayscaleValue = 0xffff;
     private Attributes presentationState;
+    private boolean memoryMapped;
 
     public float getWindowCenter() {
         return windowCenter;
@@ -130,4 +131,18 @@ public class DicomImageReadParam extends ImageReadParam {
         this.overlayGrayscaleValue = overlayGrayscaleValue;
     }
 
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Read frames of native (uncompressed) Pixel Data from a memory-mapped
+     * region of the file, instead of through the Image Input Stream. Only
+     * effective if the input of the reader is a {@code File} or
+     * {@link DicomMetaData} referencing the Pixel Data in a file.
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
 }
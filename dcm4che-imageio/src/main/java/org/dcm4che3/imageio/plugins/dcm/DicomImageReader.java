@@ -38,8 +38,11 @@
 
 package org.dcm4che3.imageio.plugins.dcm;
 
+import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferUShort;
@@ -49,9 +52,15 @@ import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.Executor;
 
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
@@ -70,9 +79,13 @@ import org.dcm4che3.data.Fragments;
 import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.image.LookupTable;
+import org.dcm4che3.image.LookupTableCache;
+import org.dcm4che3.image.OverlayMask;
+import org.dcm4che3.image.OverlayMaskCache;
 import org.dcm4che3.image.LookupTableFactory;
 import org.dcm4che3.image.Overlays;
 import org.dcm4che3.image.PhotometricInterpretation;
+import org.dcm4che3.image.SampledComponentSampleModel;
 import org.dcm4che3.image.StoredValue;
 import org.dcm4che3.imageio.codec.ImageReaderFactory;
 import org.dcm4che3.imageio.codec.ImageReaderFactory.ImageReaderParam;
@@ -84,6 +97,7 @@ import org.dcm4che3.io.BulkDataDescriptor;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
 import org.dcm4che3.util.ByteUtils;
+import org.dcm4che3.util.SafeClose;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -96,6 +110,8 @@ public class DicomImageReader extends ImageReader {
 
     private static final Logger LOG = LoggerFactory.getLogger(DicomImageReader.class);
 
+    private static final int MAX_POOLED_RASTERS = 4;
+
     private ImageInputStream iis;
 
     private Attributes ds;
@@ -136,10 +152,75 @@ public class DicomImageReader extends ImageReader {
 
     private PhotometricInterpretation pmi;
 
+    private SampleModel sampleModel;
+
+    private MappedByteBuffer mappedPixeldata;
+
+    private ShortBuffer mappedShorts;
+
+    private int mappedFirstFrame;
+
+    private int mappedFrames;
+
+    private final ArrayDeque<WritableRaster> rasterPool =
+            new ArrayDeque<WritableRaster>(MAX_POOLED_RASTERS);
+
+    private LookupTableCache lutCache = LookupTableCache.getDefault();
+
+    private OverlayMaskCache overlayMaskCache = OverlayMaskCache.getDefault();
+
+    private Executor executor;
+
+    private int parallelism = 1;
+
     public DicomImageReader(ImageReaderSpi originatingProvider) {
         super(originatingProvider);
     }
 
+    public LookupTableCache getLookupTableCache() {
+        return lutCache;
+    }
+
+    /**
+     * Sets the cache of LUTs applied on monochrome images, shared by all
+     * readers by default. {@code null} creates the LUT for each read image.
+     */
+    public void setLookupTableCache(LookupTableCache lutCache) {
+        this.lutCache = lutCache;
+    }
+
+    public OverlayMaskCache getOverlayMaskCache() {
+        return overlayMaskCache;
+    }
+
+    /**
+     * Sets the cache of unpacked Overlay Planes burned into monochrome
+     * images, shared by all readers by default. {@code null} unpacks the
+     * Overlay Data for each read image.
+     */
+    public void setOverlayMaskCache(OverlayMaskCache overlayMaskCache) {
+        this.overlayMaskCache = overlayMaskCache;
+    }
+
+    /**
+     * Apply LUTs on monochrome images by up to {@code parallelism} threads
+     * concurrently, using threads of the specified executor in addition to
+     * the calling thread. {@code parallelism = 1} (= default) applies LUTs by
+     * the calling thread only.
+     */
+    public void setParallelRendering(Executor executor, int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism: " + parallelism);
+        if (parallelism > 1 && executor == null)
+            throw new NullPointerException("executor");
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
     @Override
     public void setInput(Object input, boolean seekForwardOnly,
             boolean ignoreMetadata) {
@@ -151,6 +232,9 @@ public class DicomImageReader extends ImageReader {
                 pixeldataFile = pixeldata.getFile();
             else if (pixeldataFragments != null && pixeldataFragments.size() > 1)
                 pixeldataFile = ((BulkData) pixeldataFragments.get(1)).getFile();
+        } else if (input instanceof File) {
+            iis = null;
+            pixeldataFile = (File) input;
         } else {
             iis = (ImageInputStream) input;
         }
@@ -257,38 +341,95 @@ public class DicomImageReader extends ImageReader {
         return true;
     }
 
+    /**
+     * Returns a raster returned by {@link #readRaster} or {@link #read} to the
+     * reader, which will fill it with the samples of a subsequent read frame
+     * of the same size and type instead of allocating a new one. The caller
+     * must not access the raster after its release.
+     */
+    public void releaseRaster(Raster raster) {
+        if (raster instanceof WritableRaster
+                && rasterPool.size() < MAX_POOLED_RASTERS
+                && !rasterPool.contains(raster))
+            rasterPool.offer((WritableRaster) raster);
+    }
+
+    private WritableRaster borrowRaster() {
+        if (sampleModel == null)
+            sampleModel = createSampleModel(dataType, banded);
+        WritableRaster raster;
+        while ((raster = rasterPool.poll()) != null)
+            if (isCompatible(raster.getSampleModel(), sampleModel))
+                return raster;
+        return Raster.createWritableRaster(sampleModel, null);
+    }
+
+    private static boolean isCompatible(SampleModel sm1, SampleModel sm2) {
+        return sm1.getClass() == sm2.getClass()
+                && sm1.getWidth() == sm2.getWidth()
+                && sm1.getHeight() == sm2.getHeight()
+                && sm1.getDataType() == sm2.getDataType()
+                && sm1.getNumBands() == sm2.getNumBands();
+    }
+
     @Override
     public Raster readRaster(int frameIndex, ImageReadParam param)
             throws IOException {
         readMetadata();
         checkIndex(frameIndex);
 
+        Rectangle region = getSourceRegion(param, width, height);
+        int xs = param != null ? param.getSourceXSubsampling() : 1;
+        int ys = param != null ? param.getSourceYSubsampling() : 1;
+        if (decompressor == null) {
+            boolean mapped = isMemoryMapped(param);
+            if (!isSubsampled(region, xs, ys))
+                return readNativeRaster(frameIndex, mapped);
+
+            if (!pmi.isSubSambled() && !swapBytes())
+                return readSubsampledRaster(frameIndex, region, xs, ys, mapped);
+
+            WritableRaster wr = readNativeRaster(frameIndex, mapped);
+            Raster subsampled = subsample(wr, region, xs, ys);
+            releaseRaster(wr);
+            return subsampled;
+        }
+
+        openiis();
+        try {
+            decompressor.setInput(iisOfFrame(frameIndex));
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Start decompressing frame #" + (frameIndex + 1));
+            Raster wr = pmi.decompress() == pmi && decompressor.canReadRaster()
+                    ? decompressor.readRaster(0, decompressParam(param))
+                    : decompressor.read(0, decompressParam(param)).getRaster();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Finished decompressing frame #" + (frameIndex + 1));
+            return subsample(wr, region, xs, ys);
+        } finally {
+            closeiis();
+        }
+    }
+
+    private WritableRaster readNativeRaster(int frameIndex, boolean mapped)
+            throws IOException {
+        if (mapped)
+            return readMappedRaster(frameIndex);
+
         openiis();
         try {
-            if (decompressor != null) {
-                decompressor.setInput(iisOfFrame(frameIndex));
-    
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Start decompressing frame #" + (frameIndex + 1));
-                Raster wr = pmi.decompress() == pmi && decompressor.canReadRaster()
-                        ? decompressor.readRaster(0, decompressParam(param))
-                        : decompressor.read(0, decompressParam(param)).getRaster();
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Finished decompressing frame #" + (frameIndex + 1));
-                return wr;
-            }
             iis.setByteOrder(ds.bigEndian()
                     ? ByteOrder.BIG_ENDIAN
                     : ByteOrder.LITTLE_ENDIAN);
-            iis.seek(pixeldata.offset() + frameIndex * frameLength);
-            WritableRaster wr = Raster.createWritableRaster(
-                    createSampleModel(dataType, banded), null);
+            iis.seek(pixeldata.offset() + (long) frameIndex * frameLength);
+            WritableRaster wr = borrowRaster();
             DataBuffer buf = wr.getDataBuffer();
             if (buf instanceof DataBufferByte) {
                 byte[][] data = ((DataBufferByte) buf).getBankData();
                 for (byte[] bs : data)
                     iis.readFully(bs);
-                if (pixeldata.bigEndian && pixeldataVR.vr == VR.OW)
+                if (swapBytes())
                     ByteUtils.swapShorts(data);
             } else {
                 short[] data = ((DataBufferUShort) buf).getData();
@@ -300,6 +441,201 @@ public class DicomImageReader extends ImageReader {
         }
     }
 
+    private boolean swapBytes() {
+        return dataType == DataBuffer.TYPE_BYTE
+                && pixeldata.bigEndian && pixeldataVR.vr == VR.OW;
+    }
+
+    private boolean isSubsampled(Rectangle region, int xs, int ys) {
+        return xs != 1 || ys != 1
+                || region.width != width || region.height != height;
+    }
+
+    /**
+     * Reads only the rows and samples of native Pixel Data contained in the
+     * subsampled source region.
+     */
+    private WritableRaster readSubsampledRaster(int frameIndex,
+            Rectangle region, int xs, int ys, boolean mapped)
+            throws IOException {
+        int w = (region.width + xs - 1) / xs;
+        int h = (region.height + ys - 1) / ys;
+        WritableRaster wr = Raster.createWritableRaster(
+                pmi.createSampleModel(dataType, w, h, samples, banded), null);
+        DataBuffer buf = wr.getDataBuffer();
+        int banks = buf.getNumBanks();
+        int spp = samples / banks;
+        int bytesPerSample = dataType == DataBuffer.TYPE_BYTE ? 1 : 2;
+        long bankLength = (long) width * height * spp * bytesPerSample;
+        int span = ((w - 1) * xs + 1) * spp;
+        byte[] rowBytes = null;
+        short[] rowShorts = null;
+        if (mapped)
+            mapFrame(frameIndex);
+        else {
+            openiis();
+            iis.setByteOrder(ds.bigEndian()
+                    ? ByteOrder.BIG_ENDIAN
+                    : ByteOrder.LITTLE_ENDIAN);
+        }
+        try {
+            for (int b = 0; b < banks; b++) {
+                for (int y = 0; y < h; y++) {
+                    long pos = b * bankLength + ((long) (region.y + y * ys)
+                            * width + region.x) * spp * bytesPerSample;
+                    int off = y * w * spp;
+                    if (buf instanceof DataBufferByte) {
+                        byte[] data = ((DataBufferByte) buf).getData(b);
+                        if (xs == 1) {
+                            readFully(frameIndex, pos, data, off, span, mapped);
+                            continue;
+                        }
+                        if (rowBytes == null)
+                            rowBytes = new byte[span];
+                        readFully(frameIndex, pos, rowBytes, 0, span, mapped);
+                        for (int x = 0, i = 0; x < w; x++, i += xs * spp)
+                            for (int s = 0; s < spp; s++)
+                                data[off++] = rowBytes[i + s];
+                    } else {
+                        short[] data = ((DataBufferUShort) buf).getData(b);
+                        if (xs == 1) {
+                            readFully(frameIndex, pos, data, off, span, mapped);
+                            continue;
+                        }
+                        if (rowShorts == null)
+                            rowShorts = new short[span];
+                        readFully(frameIndex, pos, rowShorts, 0, span, mapped);
+                        for (int x = 0, i = 0; x < w; x++, i += xs * spp)
+                            for (int s = 0; s < spp; s++)
+                                data[off++] = rowShorts[i + s];
+                    }
+                }
+            }
+        } finally {
+            if (!mapped)
+                closeiis();
+        }
+        return wr;
+    }
+
+    private void readFully(int frameIndex, long pos, byte[] b, int off,
+            int len, boolean mapped) throws IOException {
+        if (mapped) {
+            mappedPixeldata.position(
+                    (frameIndex - mappedFirstFrame) * frameLength + (int) pos);
+            mappedPixeldata.get(b, off, len);
+        } else {
+            iis.seek(pixeldata.offset() + (long) frameIndex * frameLength + pos);
+            iis.readFully(b, off, len);
+        }
+    }
+
+    private void readFully(int frameIndex, long pos, short[] s, int off,
+            int len, boolean mapped) throws IOException {
+        if (mapped) {
+            mappedShorts.position(
+                    ((frameIndex - mappedFirstFrame) * frameLength + (int) pos) >> 1);
+            mappedShorts.get(s, off, len);
+        } else {
+            iis.seek(pixeldata.offset() + (long) frameIndex * frameLength + pos);
+            iis.readFully(s, off, len);
+        }
+    }
+
+    /**
+     * Returns a raster with the samples of the subsampled source region, if
+     * the decoder did not already apply the source region and subsampling
+     * itself. A raster, which has the size of the source region, is assumed
+     * to contain the source region only. Samples of a raster with subsampled
+     * chrominance are returned pixel-interleaved.
+     */
+    private static Raster subsample(Raster raster, Rectangle region,
+            int xs, int ys) {
+        int w = (region.width + xs - 1) / xs;
+        int h = (region.height + ys - 1) / ys;
+        if (raster.getWidth() == w && raster.getHeight() == h)
+            return raster;
+
+        int x0 = raster.getMinX();
+        int y0 = raster.getMinY();
+        if (raster.getWidth() != region.width
+                || raster.getHeight() != region.height) {
+            x0 += region.x;
+            y0 += region.y;
+        }
+        WritableRaster wr =
+                raster.getSampleModel() instanceof SampledComponentSampleModel
+                ? Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE, w, h, 3,
+                        null)
+                : raster.createCompatibleWritableRaster(w, h);
+        Object pixel = null;
+        for (int y = 0; y < h; y++)
+            for (int x = 0; x < w; x++) {
+                pixel = raster.getDataElements(x0 + x * xs, y0 + y * ys, pixel);
+                wr.setDataElements(x, y, pixel);
+            }
+        return wr;
+    }
+
+    private boolean isMemoryMapped(ImageReadParam param) {
+        return param instanceof DicomImageReadParam
+                && ((DicomImageReadParam) param).isMemoryMapped()
+                && pixeldataFile != null;
+    }
+
+    private WritableRaster readMappedRaster(int frameIndex) throws IOException {
+        mapFrame(frameIndex);
+        int pos = (frameIndex - mappedFirstFrame) * frameLength;
+        WritableRaster wr = borrowRaster();
+        DataBuffer buf = wr.getDataBuffer();
+        if (buf instanceof DataBufferByte) {
+            byte[][] data = ((DataBufferByte) buf).getBankData();
+            mappedPixeldata.position(pos);
+            for (byte[] bs : data)
+                mappedPixeldata.get(bs);
+            if (swapBytes())
+                ByteUtils.swapShorts(data);
+        } else {
+            short[] data = ((DataBufferUShort) buf).getData();
+            mappedShorts.position(pos >> 1);
+            mappedShorts.get(data);
+        }
+        return wr;
+    }
+
+    /**
+     * Maps the region of the file containing the specified frame. The region
+     * covers as many subsequent frames as fit into one mapping, so further
+     * frames are read without remapping.
+     */
+    private void mapFrame(int frameIndex) throws IOException {
+        if (mappedPixeldata != null
+                && frameIndex >= mappedFirstFrame
+                && frameIndex < mappedFirstFrame + mappedFrames)
+            return;
+
+        int n = Math.min(frames - frameIndex, Integer.MAX_VALUE / frameLength);
+        RandomAccessFile raf = new RandomAccessFile(pixeldataFile, "r");
+        try {
+            mappedPixeldata = raf.getChannel().map(MapMode.READ_ONLY,
+                    pixeldata.offset() + (long) frameIndex * frameLength,
+                    (long) n * frameLength);
+        } finally {
+            SafeClose.close(raf);
+        }
+        mappedPixeldata.order(ds.bigEndian()
+                ? ByteOrder.BIG_ENDIAN
+                : ByteOrder.LITTLE_ENDIAN);
+        mappedShorts = dataType == DataBuffer.TYPE_USHORT
+                ? mappedPixeldata.asShortBuffer()
+                : null;
+        mappedFirstFrame = frameIndex;
+        mappedFrames = n;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Mapped frames #{}-{} of {}", new Object[] {
+                    frameIndex + 1, frameIndex + n, pixeldataFile });
+    }
+
     private ImageReadParam decompressParam(ImageReadParam param) {
         ImageReadParam decompressParam = decompressor.getDefaultReadParam();
         ImageTypeSpecifier imageType = null;
@@ -312,6 +648,14 @@ public class DicomImageReader extends ImageReader {
             imageType = createImageType(bitsStored, dataType, true);
         decompressParam.setDestinationType(imageType);
         decompressParam.setDestination(dest);
+        if (param != null && !rle) {
+            decompressParam.setSourceRegion(param.getSourceRegion());
+            decompressParam.setSourceSubsampling(
+                    param.getSourceXSubsampling(),
+                    param.getSourceYSubsampling(),
+                    param.getSubsamplingXOffset(),
+                    param.getSubsamplingYOffset());
+        }
         return decompressParam;
     }
 
@@ -321,6 +665,9 @@ public class DicomImageReader extends ImageReader {
         readMetadata();
         checkIndex(frameIndex);
 
+        Rectangle region = getSourceRegion(param, width, height);
+        int xs = param != null ? param.getSourceXSubsampling() : 1;
+        int ys = param != null ? param.getSourceYSubsampling() : 1;
         WritableRaster raster;
         if (decompressor != null) {
             openiis();
@@ -331,10 +678,12 @@ public class DicomImageReader extends ImageReader {
                 BufferedImage bi = decompressor.read(0, decompressParam(param));
                 if (LOG.isDebugEnabled())
                     LOG.debug("Finished decompressing frame #" + (frameIndex + 1));
+                raster = (WritableRaster) subsample(bi.getRaster(), region, xs, ys);
                 if (samples > 1)
-                    return bi;
-                
-                raster = bi.getRaster();
+                    return raster == bi.getRaster() ? bi
+                            : new BufferedImage(bi.getColorModel(), raster,
+                                    bi.isAlphaPremultiplied(), null);
+
             } finally {
                 closeiis();
             }
@@ -343,25 +692,35 @@ public class DicomImageReader extends ImageReader {
 
         ColorModel cm;
         if (pmi.isMonochrome()) {
+            boolean subsampled = raster.getWidth() != width
+                    || raster.getHeight() != height;
             int[] overlayGroupOffsets = getActiveOverlayGroupOffsets(param);
             byte[][] overlayData = new byte[overlayGroupOffsets.length][];
             for (int i = 0; i < overlayGroupOffsets.length; i++) {
-                overlayData[i] = extractOverlay(overlayGroupOffsets[i], raster);
+                overlayData[i] = extractOverlay(overlayGroupOffsets[i], raster,
+                        subsampled);
             }
             cm = createColorModel(8, DataBuffer.TYPE_BYTE);
-            SampleModel sm = createSampleModel(DataBuffer.TYPE_BYTE, false);
+            SampleModel sm = pmi.createSampleModel(DataBuffer.TYPE_BYTE,
+                    raster.getWidth(), raster.getHeight(), samples, false);
+            WritableRaster storedValues = raster;
             raster = applyLUTs(raster, frameIndex, param, sm, 8);
-            for (int i = 0; i < overlayGroupOffsets.length; i++) {
-                applyOverlay(overlayGroupOffsets[i], 
-                        raster, frameIndex, param, 8, overlayData[i]);
-            }
+            if (decompressor == null && raster != storedValues)
+                releaseRaster(storedValues);
+            applyOverlays(overlayGroupOffsets, raster, frameIndex, param, 8,
+                    overlayData, region, xs, ys, subsampled);
         } else {
             cm = createColorModel(bitsStored, dataType);
+            if (pmi.isSubSambled() && !(raster.getSampleModel()
+                    instanceof SampledComponentSampleModel))
+                cm = new ComponentColorModel(cm.getColorSpace(), false, false,
+                        Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
         }
         return new BufferedImage(cm, raster , false, null);
     }
 
-    private byte[] extractOverlay(int gg0000, WritableRaster raster) {
+    private byte[] extractOverlay(int gg0000, WritableRaster raster,
+            boolean subsampled) {
         Attributes attrs = metadata.getAttributes();
 
         if (attrs.getInt(Tag.OverlayBitsAllocated | gg0000, 1) == 1)
@@ -372,7 +731,9 @@ public class DicomImageReader extends ImageReader {
         int bitPosition = attrs.getInt(Tag.OverlayBitPosition | gg0000, 0);
 
         int mask = 1<<bitPosition;
-        int length = ovlyRows * ovlyColumns;
+        int length = subsampled
+                ? raster.getWidth() * raster.getHeight()
+                : ovlyRows * ovlyColumns;
 
         byte[] ovlyData = new byte[(((length+7)>>>3)+1)&(~1)] ;
         Overlays.extractFromPixeldata(raster, mask, ovlyData, 0, length);
@@ -389,23 +750,55 @@ public class DicomImageReader extends ImageReader {
                 : siis;
     }
 
-    private void applyOverlay(int gg0000, WritableRaster raster,
-            int frameIndex, ImageReadParam param, int outBits, byte[] ovlyData) {
-        Attributes ovlyAttrs = metadata.getAttributes();
-        int grayscaleValue = 0xffff;
-        if (param instanceof DicomImageReadParam) {
-            DicomImageReadParam dParam = (DicomImageReadParam) param;
-            Attributes psAttrs = dParam.getPresentationState();
-            if (psAttrs != null) {
-                if (psAttrs.containsValue(Tag.OverlayData | gg0000))
-                    ovlyAttrs = psAttrs;
-                grayscaleValue = Overlays.getRecommendedDisplayGrayscaleValue(
-                        psAttrs, gg0000);
+    private void applyOverlays(int[] overlayGroupOffsets,
+            WritableRaster raster, int frameIndex, ImageReadParam param,
+            int outBits, byte[][] overlayData, Rectangle region, int xs, int ys,
+            boolean subsampled) {
+        int n = overlayGroupOffsets.length;
+        if (n == 0)
+            return;
+
+        OverlayMask[] masks = new OverlayMask[n];
+        // embedded overlays extracted from the subsampled raster itself
+        OverlayMask[] embeddedMasks = new OverlayMask[n];
+        int[] pixelValues = new int[n];
+        boolean embedded = false;
+        for (int i = 0; i < n; i++) {
+            int gg0000 = overlayGroupOffsets[i];
+            byte[] ovlyData = overlayData[i];
+            Attributes ovlyAttrs = metadata.getAttributes();
+            int grayscaleValue = 0xffff;
+            if (param instanceof DicomImageReadParam) {
+                DicomImageReadParam dParam = (DicomImageReadParam) param;
+                Attributes psAttrs = dParam.getPresentationState();
+                if (psAttrs != null) {
+                    if (psAttrs.containsValue(Tag.OverlayData | gg0000))
+                        ovlyAttrs = psAttrs;
+                    grayscaleValue = Overlays.getRecommendedDisplayGrayscaleValue(
+                            psAttrs, gg0000);
+                } else
+                    grayscaleValue = dParam.getOverlayGrayscaleValue();
+            }
+            pixelValues[i] = grayscaleValue >>> (16-outBits);
+            if (ovlyData == null)
+                masks[i] = overlayMaskCache != null
+                        ? overlayMaskCache.getOverlayMask(frameIndex, ovlyAttrs,
+                                gg0000)
+                        : Overlays.createOverlayMask(frameIndex, ovlyAttrs,
+                                gg0000, null);
+            else if (subsampled) {
+                embeddedMasks[i] = new OverlayMask(ovlyData, 0,
+                        raster.getHeight(), raster.getWidth(), 0, 0);
+                embedded = true;
             } else
-                grayscaleValue = dParam.getOverlayGrayscaleValue();
+                masks[i] = Overlays.createOverlayMask(0, ovlyAttrs, gg0000,
+                        ovlyData);
         }
-        Overlays.applyOverlay(ovlyData != null ? 0 : frameIndex, raster,
-                ovlyAttrs, gg0000, grayscaleValue >>> (16-outBits), ovlyData);
+        Overlays.applyOverlays(raster, masks, pixelValues,
+                region.x, region.y, xs, ys);
+        if (embedded)
+            Overlays.applyOverlays(raster, embeddedMasks, pixelValues,
+                    0, 0, 1, 1);
     }
 
     private int[] getActiveOverlayGroupOffsets(ImageReadParam param) {
@@ -467,8 +860,10 @@ public class DicomImageReader extends ImageReader {
                 lutParam.autoWindowing(imgAttrs, raster);
             lutParam.setPresentationLUT(imgAttrs);
         }
-        LookupTable lut = lutParam.createLUT(outBits);
-        lut.lookup(raster, destRaster);
+        LookupTable lut = lutCache != null
+                ? lutCache.getLUT(lutParam, outBits)
+                : lutParam.createLUT(outBits);
+        lut.lookup(raster, destRaster, executor, parallelism);
         return destRaster;
     }
 
@@ -512,17 +907,22 @@ public class DicomImageReader extends ImageReader {
         if (metadata != null)
             return;
 
-        if (iis == null)
+        if (iis == null && pixeldataFile == null)
             throw new IllegalStateException("Input not set");
 
-        @SuppressWarnings("resource")
-        DicomInputStream dis = new DicomInputStream(new ImageInputStreamAdapter(iis));
-        dis.setIncludeBulkData(IncludeBulkData.URI);
-        dis.setBulkDataDescriptor(BulkDataDescriptor.PIXELDATA);
-        dis.setURI("java:iis"); // avoid copy of pixeldata to temporary file
-        Attributes fmi = dis.readFileMetaInformation();
-        Attributes ds = dis.readDataset(-1, -1);
-        setMetadata(new DicomMetaData(fmi, ds));
+        openiis();
+        try {
+            @SuppressWarnings("resource")
+            DicomInputStream dis = new DicomInputStream(new ImageInputStreamAdapter(iis));
+            dis.setIncludeBulkData(IncludeBulkData.URI);
+            dis.setBulkDataDescriptor(BulkDataDescriptor.PIXELDATA);
+            dis.setURI("java:iis"); // avoid copy of pixeldata to temporary file
+            Attributes fmi = dis.readFileMetaInformation();
+            Attributes ds = dis.readDataset(-1, -1);
+            setMetadata(new DicomMetaData(fmi, ds));
+        } finally {
+            closeiis();
+        }
     }
 
     private void setMetadata(DicomMetaData metadata) {
@@ -555,7 +955,7 @@ public class DicomImageReader extends ImageReader {
                 if (param == null)
                     throw new UnsupportedOperationException("Unsupported Transfer Syntax: " + tsuid);
                 this.rle = tsuid.equals(UID.RLELossless);
-                this.decompressor = ImageReaderFactory.getImageReader(param);
+                this.decompressor = ImageReaderFactory.borrowImageReader(param);
                 this.patchJpegLS = param.patchJPEGLS;
                 this.pixeldataFragments = (Fragments) pixeldata;
             }
@@ -586,11 +986,16 @@ public class DicomImageReader extends ImageReader {
         pixeldata = null;
         pixeldataFragments = null;
         if (decompressor != null) {
-            decompressor.dispose();
+            ImageReaderFactory.releaseImageReader(decompressor);
             decompressor = null;
         }
         patchJpegLS = null;
         pmi = null;
+        sampleModel = null;
+        mappedPixeldata = null;
+        mappedShorts = null;
+        mappedFirstFrame = 0;
+        mappedFrames = 0;
     }
 
     private void checkIndex(int frameIndex) {
@@ -604,6 +1009,7 @@ public class DicomImageReader extends ImageReader {
     @Override
     public void dispose() {
         resetInternalState();
+        rasterPool.clear();
     }
 
 }
@@ -38,11 +38,13 @@
 
 package org.dcm4che3.imageio.plugins.dcm;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Locale;
 
 import javax.imageio.ImageReader;
 import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.stream.FileImageInputStream;
 import javax.imageio.stream.ImageInputStream;
 
 import org.dcm4che3.data.Implementation;
@@ -58,7 +60,7 @@ public class DicomImageReaderSpi extends ImageReaderSpi {
     private static final String[] formatNames = { "dicom", "DICOM" };
     private static final String[] suffixes = { "dcm", "dic", "dicm", "dicom" };
     private static final String[] MIMETypes = { "application/dicom" };
-    private static final Class<?>[] inputTypes = { ImageInputStream.class, DicomMetaData.class };
+    private static final Class<?>[] inputTypes = { ImageInputStream.class, DicomMetaData.class, File.class };
 
     public DicomImageReaderSpi() {
         super(vendorName, version, formatNames, suffixes, MIMETypes, 
@@ -83,7 +85,22 @@ public class DicomImageReaderSpi extends ImageReaderSpi {
 
     @Override
     public boolean canDecodeInput(Object source) throws IOException {
-        ImageInputStream iis = (ImageInputStream) source;
+        if (source instanceof File) {
+            File file = (File) source;
+            if (!file.isFile())
+                return false;
+            ImageInputStream iis = new FileImageInputStream(file);
+            try {
+                return canDecodeInput(iis);
+            } finally {
+                iis.close();
+            }
+        }
+        return source instanceof ImageInputStream
+                && canDecodeInput((ImageInputStream) source);
+    }
+
+    private static boolean canDecodeInput(ImageInputStream iis) throws IOException {
         iis.mark();
         try {
             int tag = iis.read()
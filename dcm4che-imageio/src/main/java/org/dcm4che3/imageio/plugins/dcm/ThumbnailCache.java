@@ -0,0 +1,237 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.plugins.dcm;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageReader;
+
+/**
+ * Thread-safe cache of thumbnails rendered by {@link DicomImageReader},
+ * keyed by SOP Instance UID, frame number, size and window.
+ * 
+ * Thumbnails are read with a source subsampling which fits the image into
+ * the requested size, so the reader only reads resp. decodes the samples
+ * contained in the thumbnail, where supported by the decoder. The cache is
+ * limited by the total size of the pixel data of the cached thumbnails; the
+ * least recently used ones are evicted first.
+ * 
+ * @author agent <agent@local>
+ */
+public class ThumbnailCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private final LinkedHashMap<Key, BufferedImage> cache =
+            new LinkedHashMap<Key, BufferedImage>(64, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long bytes;
+
+    private static final class Key {
+        final String iuid;
+        final int frame;
+        final int size;
+        final float windowCenter;
+        final float windowWidth;
+
+        Key(String iuid, int frame, int size, float windowCenter,
+                float windowWidth) {
+            this.iuid = iuid;
+            this.frame = frame;
+            this.size = size;
+            this.windowCenter = windowCenter;
+            this.windowWidth = windowWidth;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = iuid.hashCode();
+            h = 31 * h + frame;
+            h = 31 * h + size;
+            h = 31 * h + Float.floatToIntBits(windowCenter);
+            return 31 * h + Float.floatToIntBits(windowWidth);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return frame == other.frame
+                    && size == other.size
+                    && Float.floatToIntBits(windowCenter)
+                        == Float.floatToIntBits(other.windowCenter)
+                    && Float.floatToIntBits(windowWidth)
+                        == Float.floatToIntBits(other.windowWidth)
+                    && iuid.equals(other.iuid);
+        }
+    }
+
+    public ThumbnailCache() {
+    }
+
+    public ThumbnailCache(long maxBytes) {
+        setMaxBytes(maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("maxBytes: " + maxBytes);
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Returns the cached thumbnail, or {@code null}.
+     */
+    public BufferedImage get(String iuid, int frame, int size,
+            float windowCenter, float windowWidth) {
+        Key key = new Key(iuid, frame, size, windowCenter, windowWidth);
+        BufferedImage bi;
+        synchronized (this) {
+            bi = cache.get(key);
+        }
+        (bi != null ? hits : misses).incrementAndGet();
+        return bi;
+    }
+
+    public void put(String iuid, int frame, int size,
+            float windowCenter, float windowWidth, BufferedImage bi) {
+        Key key = new Key(iuid, frame, size, windowCenter, windowWidth);
+        long length = bytesOf(bi);
+        synchronized (this) {
+            BufferedImage prev = cache.put(key, bi);
+            if (prev != null)
+                bytes -= bytesOf(prev);
+            bytes += length;
+            evict();
+        }
+    }
+
+    /**
+     * Returns the cached thumbnail of the specified frame of the current
+     * input of the reader, or reads and caches it. The thumbnail is read with
+     * the least source subsampling, for which neither its width nor its
+     * height exceeds {@code size}. Source region and subsampling of
+     * {@code param} are overwritten.
+     * 
+     * @param reader
+     *            DICOM Image Reader with the image as input
+     * @param iuid
+     *            SOP Instance UID of the image
+     * @param frame
+     *            frame number, starting with 1
+     * @param size
+     *            maximal width and height of the thumbnail
+     * @param param
+     *            read parameter specifying the window, or {@code null}
+     */
+    public BufferedImage getThumbnail(ImageReader reader, String iuid,
+            int frame, int size, DicomImageReadParam param)
+            throws IOException {
+        if (size <= 0)
+            throw new IllegalArgumentException("size: " + size);
+
+        float windowCenter = param != null ? param.getWindowCenter() : 0;
+        float windowWidth = param != null ? param.getWindowWidth() : 0;
+        BufferedImage bi = get(iuid, frame, size, windowCenter, windowWidth);
+        if (bi != null)
+            return bi;
+
+        if (param == null)
+            param = (DicomImageReadParam) reader.getDefaultReadParam();
+        int frameIndex = frame - 1;
+        int max = Math.max(reader.getWidth(frameIndex),
+                reader.getHeight(frameIndex));
+        int subsampling = (max + size - 1) / size;
+        param.setSourceRegion(null);
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        bi = reader.read(frameIndex, param);
+        put(iuid, frame, size, windowCenter, windowWidth, bi);
+        return bi;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, BufferedImage>> iter =
+                cache.entrySet().iterator();
+        while (bytes > maxBytes && iter.hasNext()) {
+            bytes -= bytesOf(iter.next().getValue());
+            iter.remove();
+        }
+    }
+
+    private static long bytesOf(BufferedImage bi) {
+        DataBuffer db = bi.getRaster().getDataBuffer();
+        return (long) db.getSize() * db.getNumBanks()
+                * (DataBuffer.getDataTypeSize(db.getDataType()) >> 3);
+    }
+}
@@ -0,0 +1,183 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class CodecPoolTest {
+
+    private static final class Codec {
+        final String key;
+        int resets;
+        boolean disposed;
+        boolean failReset;
+
+        Codec(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Pool extends CodecPool<String, Codec> {
+
+        int created;
+
+        @Override
+        protected String keyOf(String param) {
+            return param;
+        }
+
+        @Override
+        protected Codec create(String param) {
+            created++;
+            return new Codec(param);
+        }
+
+        @Override
+        protected void reset(Codec codec) {
+            if (codec.failReset)
+                throw new IllegalStateException();
+            codec.resets++;
+        }
+
+        @Override
+        protected void dispose(Codec codec) {
+            assertFalse(codec.disposed);
+            codec.disposed = true;
+        }
+    }
+
+    private final Pool pool = new Pool();
+
+    @Test
+    public void testReuseReturned() {
+        Codec codec = pool.borrow("jpeg");
+        assertEquals(1, pool.getBorrowed());
+        pool.release(codec);
+        assertEquals(0, pool.getBorrowed());
+        assertEquals(1, codec.resets);
+        assertSame(codec, pool.borrow("jpeg"));
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(1, pool.created);
+    }
+
+    @Test
+    public void testKeyedByParameter() {
+        pool.release(pool.borrow("jpeg"));
+        Codec codec = pool.borrow("jpeg-ls");
+        assertEquals("jpeg-ls", codec.key);
+        assertEquals(2, pool.getMisses());
+        assertEquals(0, pool.getHits());
+    }
+
+    @Test
+    public void testDisposeExceedingMaxIdle() {
+        pool.setMaxIdle(1);
+        Codec codec1 = pool.borrow("jpeg");
+        Codec codec2 = pool.borrow("jpeg");
+        assertNotSame(codec1, codec2);
+        pool.release(codec1);
+        pool.release(codec2);
+        assertFalse(codec1.disposed);
+        assertTrue(codec2.disposed);
+        assertEquals(1, pool.getDiscards());
+        assertSame(codec1, pool.borrow("jpeg"));
+        assertNotSame(codec1, pool.borrow("jpeg"));
+    }
+
+    @Test
+    public void testIgnoreReleasedTwice() {
+        Codec codec = pool.borrow("jpeg");
+        pool.release(codec);
+        pool.release(codec);
+        assertFalse(codec.disposed);
+        assertEquals(1, codec.resets);
+        assertSame(codec, pool.borrow("jpeg"));
+        assertNotSame(codec, pool.borrow("jpeg"));
+    }
+
+    @Test
+    public void testDisposeNotBorrowed() {
+        Codec codec = new Codec("jpeg");
+        pool.release(codec);
+        assertTrue(codec.disposed);
+        assertNotSame(codec, pool.borrow("jpeg"));
+    }
+
+    @Test
+    public void testDisposeOnFailedReset() {
+        Codec codec = pool.borrow("jpeg");
+        codec.failReset = true;
+        pool.release(codec);
+        assertTrue(codec.disposed);
+        assertEquals(1, pool.getDiscards());
+        assertNotSame(codec, pool.borrow("jpeg"));
+    }
+
+    @Test
+    public void testClear() {
+        Codec codec = pool.borrow("jpeg");
+        pool.release(codec);
+        pool.clear();
+        assertTrue(codec.disposed);
+        assertNotSame(codec, pool.borrow("jpeg"));
+    }
+
+    @Test
+    public void testDetectLeak() throws Exception {
+        pool.setLeakDetection(true);
+        pool.borrow("jpeg");
+        for (int i = 0; i < 50 && pool.getLeaks() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            pool.release(pool.borrow("jpeg-ls"));
+        }
+        assertEquals(1, pool.getLeaks());
+        assertEquals(0, pool.getBorrowed());
+    }
+}
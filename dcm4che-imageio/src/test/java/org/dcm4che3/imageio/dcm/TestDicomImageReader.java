@@ -38,16 +38,34 @@
 
 package org.dcm4che3.imageio.dcm;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
 import java.io.File;
 import java.io.IOException;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
+import javax.imageio.spi.ImageReaderSpi;
 import javax.imageio.stream.FileImageInputStream;
 
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.image.OverlayMask;
+import org.dcm4che3.image.OverlayMaskCache;
+import org.dcm4che3.imageio.plugins.dcm.DicomImageReadParam;
+import org.dcm4che3.imageio.plugins.dcm.DicomImageReader;
 import org.dcm4che3.imageio.plugins.dcm.DicomMetaData;
 import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
 import org.dcm4che3.util.SafeClose;
 import org.junit.After;
 import org.junit.Before;
@@ -96,6 +114,193 @@ public class TestDicomImageReader {
         testReadRasterFromAttributes(US_MF_RLE, 5);
     }
 
+    @Test
+    public void testReadMemoryMappedRasterFromFile() throws IOException {
+        File file = new File(NM_MF);
+        FileImageInputStream iis = new FileImageInputStream(file);
+        Raster expected;
+        try {
+            reader.setInput(iis);
+            expected = reader.readRaster(5, null);
+        } finally {
+            SafeClose.close(iis);
+        }
+        DicomImageReadParam param = new DicomImageReadParam();
+        param.setMemoryMapped(true);
+        reader.setInput(file);
+        Raster raster = reader.readRaster(5, param);
+        assertArrayEquals(data(expected), data(raster));
+        ((DicomImageReader) reader).releaseRaster(raster);
+        Raster next = reader.readRaster(6, param);
+        assertSame(raster, next);
+    }
+
+    @Test
+    public void testCanDecodeFile() throws IOException {
+        ImageReaderSpi spi = reader.getOriginatingProvider();
+        assertTrue(spi.canDecodeInput(new File(NM_MF)));
+        assertFalse(spi.canDecodeInput(new File("src/test/resources/log4j.properties")));
+        assertFalse(spi.canDecodeInput(new File("src/test/data")));
+        assertTrue(ImageIO.getImageReaders(new File(NM_MF)).hasNext());
+    }
+
+    @Test
+    public void testReadSubsampledRaster() throws IOException {
+        testReadSubsampledRaster(NM_MF);
+    }
+
+    @Test
+    public void testReadSubsampledCompressedRaster() throws IOException {
+        testReadSubsampledRaster(US_MF_RLE);
+    }
+
+    private void testReadSubsampledRaster(String pathname) throws IOException {
+        reader.setInput(new File(pathname));
+        Raster raster = reader.readRaster(5, null);
+        DicomImageReadParam param = new DicomImageReadParam();
+        param.setSourceSubsampling(3, 2, 0, 0);
+        Raster subsampled = reader.readRaster(5, param);
+        assertEquals((raster.getWidth() + 2) / 3, subsampled.getWidth());
+        assertEquals((raster.getHeight() + 1) / 2, subsampled.getHeight());
+        for (int y = 0; y < subsampled.getHeight(); y++)
+            for (int x = 0; x < subsampled.getWidth(); x++)
+                assertEquals(raster.getSample(x * 3, y * 2, 0),
+                        subsampled.getSample(x, y, 0));
+    }
+
+    @Test
+    public void testReadSubsampledYBR422() throws IOException {
+        Attributes attrs = createImage(4, 6, 1);
+        attrs.setInt(Tag.SamplesPerPixel, VR.US, 3);
+        attrs.setString(Tag.PhotometricInterpretation, VR.CS, "YBR_FULL_422");
+        attrs.setInt(Tag.PlanarConfiguration, VR.US, 0);
+        byte[] data = new byte[4 * 6 * 2];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte) (i * 37);
+        attrs.setBytes(Tag.PixelData, VR.OB, data);
+        DicomImageReadParam param = new DicomImageReadParam();
+        param.setSourceSubsampling(2, 2, 0, 0);
+        BufferedImage bi = read(attrs, 0, null);
+        BufferedImage subsampled = read(attrs, 0, param);
+        assertEquals(3, subsampled.getWidth());
+        assertEquals(2, subsampled.getHeight());
+        for (int y = 0; y < 2; y++)
+            for (int x = 0; x < 3; x++)
+                assertEquals(bi.getRGB(x * 2, y * 2), subsampled.getRGB(x, y));
+    }
+
+    @Test
+    public void testOverlayClippedAtRightEdge() throws IOException {
+        // 4 x 8 overlay starting at column 3 of a 4 x 8 image
+        Attributes attrs = createImage(4, 8, 1);
+        addOverlay(attrs, 4, 8, 1, 3, new byte[] { -1, -1, -1, -1 });
+        BufferedImage bi = read(attrs, 0);
+        for (int y = 0; y < 4; y++)
+            for (int x = 0; x < 8; x++)
+                assertEquals("pixel[" + x + ',' + y + ']', x < 2 ? 0 : 255,
+                        bi.getRaster().getSample(x, y, 0));
+    }
+
+    @Test
+    public void testOverlayOfFrameStartingInSharedByte() throws IOException {
+        // 9 bits per frame, so the last bit of frame #1 and the bits of
+        // frame #2 share the second byte of the Overlay Data
+        Attributes attrs = createImage(3, 3, 2);
+        addOverlay(attrs, 3, 3, 1, 1, new byte[] { -1, 1 });
+        attrs.setInt(Tag.NumberOfFramesInOverlay, VR.IS, 2);
+        BufferedImage frame1 = read(attrs, 0);
+        BufferedImage frame2 = read(attrs, 1);
+        for (int y = 0; y < 3; y++)
+            for (int x = 0; x < 3; x++) {
+                assertEquals(255, frame1.getRaster().getSample(x, y, 0));
+                assertEquals(0, frame2.getRaster().getSample(x, y, 0));
+            }
+    }
+
+    @Test
+    public void testOverlayMaskOfCopyWithCoercedOrigin() {
+        Attributes attrs = createImage(4, 8, 1);
+        addOverlay(attrs, 4, 8, 1, 1, new byte[] { -1, -1, -1, -1 });
+        Attributes copy = new Attributes(attrs);
+        copy.setInt(Tag.OverlayOrigin, VR.SS, 2, 3);
+        assertSame(attrs.getSafeBytes(Tag.OverlayData),
+                copy.getSafeBytes(Tag.OverlayData));
+        OverlayMaskCache cache = new OverlayMaskCache();
+        OverlayMask mask = cache.getOverlayMask(0, attrs, 0);
+        OverlayMask coerced = cache.getOverlayMask(0, copy, 0);
+        assertEquals(0, mask.getX0());
+        assertEquals(0, mask.getY0());
+        assertEquals(2, coerced.getX0());
+        assertEquals(1, coerced.getY0());
+        assertSame(mask, cache.getOverlayMask(0, attrs, 0));
+        assertSame(coerced, cache.getOverlayMask(0, copy, 0));
+        assertEquals(2, cache.getHits());
+    }
+
+    private static Attributes createImage(int rows, int columns, int frames) {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPClassUID, VR.UI,
+                UID.SecondaryCaptureImageStorage);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3.4");
+        attrs.setInt(Tag.SamplesPerPixel, VR.US, 1);
+        attrs.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2");
+        attrs.setInt(Tag.NumberOfFrames, VR.IS, frames);
+        attrs.setInt(Tag.Rows, VR.US, rows);
+        attrs.setInt(Tag.Columns, VR.US, columns);
+        attrs.setInt(Tag.BitsAllocated, VR.US, 8);
+        attrs.setInt(Tag.BitsStored, VR.US, 8);
+        attrs.setInt(Tag.HighBit, VR.US, 7);
+        attrs.setInt(Tag.PixelRepresentation, VR.US, 0);
+        attrs.setString(Tag.WindowCenter, VR.DS, "128");
+        attrs.setString(Tag.WindowWidth, VR.DS, "256");
+        attrs.setBytes(Tag.PixelData, VR.OB,
+                new byte[(rows * columns * frames + 1) & ~1]);
+        return attrs;
+    }
+
+    private static void addOverlay(Attributes attrs, int rows, int columns,
+            int originRow, int originColumn, byte[] data) {
+        attrs.setInt(Tag.OverlayRows, VR.US, rows);
+        attrs.setInt(Tag.OverlayColumns, VR.US, columns);
+        attrs.setString(Tag.OverlayType, VR.CS, "G");
+        attrs.setInt(Tag.OverlayOrigin, VR.SS, originRow, originColumn);
+        attrs.setInt(Tag.OverlayBitsAllocated, VR.US, 1);
+        attrs.setInt(Tag.OverlayBitPosition, VR.US, 0);
+        attrs.setBytes(Tag.OverlayData, VR.OW, data);
+    }
+
+    private BufferedImage read(Attributes attrs, int frameIndex)
+            throws IOException {
+        return read(attrs, frameIndex, null);
+    }
+
+    private BufferedImage read(Attributes attrs, int frameIndex,
+            DicomImageReadParam param) throws IOException {
+        File file = File.createTempFile("overlay", ".dcm");
+        try {
+            DicomOutputStream out = new DicomOutputStream(file);
+            try {
+                out.writeDataset(attrs.createFileMetaInformation(
+                        UID.ExplicitVRLittleEndian), attrs);
+            } finally {
+                SafeClose.close(out);
+            }
+            FileImageInputStream iis = new FileImageInputStream(file);
+            try {
+                reader.setInput(iis);
+                return reader.read(frameIndex, param);
+            } finally {
+                SafeClose.close(iis);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static short[] data(Raster raster) {
+        return ((DataBufferUShort) raster.getDataBuffer()).getData().clone();
+    }
+
     private void testReadRasterFromImageInputStream(String pathname, int imageIndex)
             throws IOException {
         FileImageInputStream iis = new FileImageInputStream(new File(pathname));
@@ -65,9 +65,11 @@ import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 import java.util.*;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -81,12 +83,30 @@ public class AuditLogger extends DeviceExtension {
 
     private static final String DEVICE_NAME_IN_FILENAME_SEPARATOR = "-._";
 
-    private static Disruptor<AuditMessageEvent> disruptor;
-
     public enum SendStatus {
         SENT, QUEUED, SUPPRESSED
     }
 
+    /**
+     * Behavior of {@link #writeAsync(Calendar, AuditMessage)} if the
+     * asynchronous send queue is full.
+     */
+    public enum AsyncOverflowPolicy {
+        /** wait until the sender made room */
+        BLOCK,
+        /** discard the message */
+        DROP,
+        /** spool the message for later send, like a failed send attempt */
+        SPOOL
+    }
+
+    public static final int DEFAULT_ASYNC_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_ASYNC_MAX_BATCH_SIZE = 64;
+    public static final int DEFAULT_SPOOL_SEGMENT_SIZE = 4 << 20;
+
+    private static final long ASYNC_IDLE_TIMEOUT = 1000L;
+    private static final long ASYNC_STOP_TIMEOUT = 10000L;
+
     private static final long serialVersionUID = 1595714214186063103L;
 
     private static final int MSG_PROMPT_LEN = 8192;
@@ -285,9 +305,26 @@ public class AuditLogger extends DeviceExtension {
     private transient final FilenameFilter FILENAME_FILTER = new FilenameFilter() {
         @Override
         public boolean accept(File dir, String name) {
-            return name.startsWith(spoolFileNamePrefix) && name.endsWith(spoolFileNameSuffix);
+            return name.startsWith(spoolFileNamePrefix) && name.endsWith(AuditSpool.SEGMENT_SUFFIX);
         }
     };
+    private transient int spoolSegmentSize = DEFAULT_SPOOL_SEGMENT_SIZE;
+    private transient final Map<String, AuditSpool> spools = new HashMap<String, AuditSpool>();
+    private transient int asyncQueueCapacity = DEFAULT_ASYNC_QUEUE_CAPACITY;
+    private transient int asyncMaxBatchSize = DEFAULT_ASYNC_MAX_BATCH_SIZE;
+    private transient AsyncOverflowPolicy asyncOverflowPolicy = AsyncOverflowPolicy.BLOCK;
+    private transient volatile Disruptor<AuditMessageEvent> asyncSender;
+    private transient final ReadWriteLock asyncSenderLock = new ReentrantReadWriteLock();
+    private transient final Object sendQueuedLock = new Object();
+    private transient volatile boolean spoolPending;
+    private transient final AtomicLong asyncSent = new AtomicLong();
+    private transient final AtomicLong asyncFailed = new AtomicLong();
+    private transient final AtomicLong asyncDropped = new AtomicLong();
+    private transient final AtomicLong asyncSpilled = new AtomicLong();
+    private transient final AtomicLong asyncBatches = new AtomicLong();
+    private transient final AtomicLong totalAsyncLatency = new AtomicLong();
+    private transient final AtomicLong asyncLatencyCount = new AtomicLong();
+    private transient final AtomicLong maxAsyncLatency = new AtomicLong();
 
 
     public List<AuditSuppressCriteria> getSuppressAuditMessageFilters() {
@@ -598,6 +635,7 @@ public class AuditLogger extends DeviceExtension {
      *                  directory is to be used
      */
     public void setSpoolDirectory(File directory) {
+        closeSpools();
         this.spoolDirectory = directory;
     }
 
@@ -606,7 +644,7 @@ public class AuditLogger extends DeviceExtension {
     }
 
     public void setSpoolDirectoryURI(String uri) {
-        this.spoolDirectory = uri != null ? new File(URI.create(uri)) : null;
+        setSpoolDirectory(uri != null ? new File(URI.create(uri)) : null);
     }
 
     public String getSpoolNameFilePrefix() {
@@ -616,6 +654,7 @@ public class AuditLogger extends DeviceExtension {
     public void setSpoolFileNamePrefix(String prefix) {
         if (prefix.length() < 3)
             throw new IllegalArgumentException("Spool file name prefix too short");
+        closeSpools();
         this.spoolFileNamePrefix = prefix;
     }
 
@@ -653,6 +692,67 @@ public class AuditLogger extends DeviceExtension {
         this.retryInterval = interval;
     }
 
+    public final int getSpoolSegmentSize() {
+        return spoolSegmentSize;
+    }
+
+    /**
+     * Set the size in bytes at which a new spool segment is started. Takes
+     * effect on the next opening of the spool.
+     *
+     * @param size spool segment size in bytes
+     */
+    public final void setSpoolSegmentSize(int size) {
+        if (size <= 0)
+            throw new IllegalArgumentException("spoolSegmentSize: " + size);
+        this.spoolSegmentSize = size;
+    }
+
+    public final int getAsyncQueueCapacity() {
+        return asyncQueueCapacity;
+    }
+
+    /**
+     * Set the number of messages which can be queued by
+     * {@link #writeAsync(Calendar, AuditMessage)} before the
+     * {@link #getAsyncOverflowPolicy()} applies. Takes effect on the next
+     * start of the asynchronous sender.
+     *
+     * @param capacity queue capacity, must be a power of 2
+     */
+    public final void setAsyncQueueCapacity(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("asyncQueueCapacity: " + capacity);
+        this.asyncQueueCapacity = capacity;
+    }
+
+    public final int getAsyncMaxBatchSize() {
+        return asyncMaxBatchSize;
+    }
+
+    /**
+     * Set the maximal number of queued messages which are sent together
+     * by one write to the Audit Record Repository. Takes effect on the next
+     * start of the asynchronous sender.
+     *
+     * @param batchSize maximal number of messages per write
+     */
+    public final void setAsyncMaxBatchSize(int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("asyncMaxBatchSize: " + batchSize);
+        this.asyncMaxBatchSize = batchSize;
+    }
+
+    public final AsyncOverflowPolicy getAsyncOverflowPolicy() {
+        return asyncOverflowPolicy;
+    }
+
+    public final void setAsyncOverflowPolicy(AsyncOverflowPolicy policy) {
+        if (policy == null)
+            throw new NullPointerException();
+        this.asyncOverflowPolicy = policy;
+    }
+
     public void addConnection(Connection conn) {
         if (!conn.getProtocol().isSyslog())
             throw new IllegalArgumentException(
@@ -755,6 +855,8 @@ public class AuditLogger extends DeviceExtension {
         setAuditSuppressCriteriaList(from.suppressAuditMessageFilters);
         device.reconfigureConnections(connections, from.connections);
 
+        // restarted on next writeAsync() with the new configuration
+        stopAsyncSender(ASYNC_STOP_TIMEOUT, TimeUnit.MILLISECONDS);
         closeActiveConnection();
     }
 
@@ -799,25 +901,57 @@ public class AuditLogger extends DeviceExtension {
         return sendMessage(builder().createMessage(timeStamp, msg));
     }
 
+    /**
+     * Queue Audit Message for sending by Syslog Protocol to Audit Record
+     * Repository by a dedicated sender thread, if the message does not match
+     * any configured {@code AuditSuppressCriteria}. The sender encodes
+     * queued messages and writes up to {@link #getAsyncMaxBatchSize()} of
+     * them by one write to the {@code AuditRecordRepository}. If the queue is
+     * full, the message is handled according the configured
+     * {@link #getAsyncOverflowPolicy()}.
+     *
+     * @param timeStamp included in Syslog Header
+     * @param msg       Audit Message
+     */
     public void writeAsync(Calendar timeStamp, AuditMessage msg)
             throws IncompatibleConnectionException, GeneralSecurityException, IOException, InsufficientCapacityException {
 
         if (isAuditMessageSuppressed(msg))
             return;
 
-        RingBuffer<AuditMessageEvent> ringBuffer = getDisruptor(this).getRingBuffer();
+        // prevents stopAsyncSender() from shutting down the sender before
+        // the message is published
+        asyncSenderLock.readLock().lock();
+        try {
+            RingBuffer<AuditMessageEvent> ringBuffer = asyncSender().getRingBuffer();
 
-        long sequence = ringBuffer.next();  // Grab the next sequence
-        try
-        {
-            AuditMessageEvent msgenrtry = ringBuffer.get(sequence); // Get the entry in the Disruptor
-            // for the sequence
-            msgenrtry.setLogger(this);  // Fill with data
-            msgenrtry.setMessage(msg);
-        }
-        finally
-        {
-            ringBuffer.publish(sequence);
+            long sequence;
+            if (asyncOverflowPolicy == AsyncOverflowPolicy.BLOCK) {
+                sequence = ringBuffer.next();
+            } else {
+                try {
+                    sequence = ringBuffer.tryNext();
+                } catch (InsufficientCapacityException e) {
+                    if (asyncOverflowPolicy == AsyncOverflowPolicy.SPOOL) {
+                        spoolOverflow(new MessageBuilder().createMessage(timeStamp, msg));
+                    } else {
+                        asyncDropped.incrementAndGet();
+                        LOG.warn("Audit message queue full - drop audit message");
+                    }
+                    return;
+                }
+            }
+            try {
+                AuditMessageEvent event = ringBuffer.get(sequence);
+                event.setLogger(this);
+                event.setMessage(msg);
+                event.setTimeStamp(timeStamp);
+                event.setEnqueueTime(System.nanoTime());
+            } finally {
+                ringBuffer.publish(sequence);
+            }
+        } finally {
+            asyncSenderLock.readLock().unlock();
         }
     }
 
@@ -837,21 +971,28 @@ public class AuditLogger extends DeviceExtension {
 
     private SendStatus sendMessage(DatagramPacket msg) throws IncompatibleConnectionException,
             GeneralSecurityException, IOException {
+        return sendMessages(Collections.singletonList(msg));
+    }
+
+    private SendStatus sendMessages(List<DatagramPacket> msgs) throws IncompatibleConnectionException,
+            GeneralSecurityException, IOException {
         String deviceName;
         SendStatus status = SendStatus.SENT;
         for (Device arrDev : auditRecordRepositoryDevices) {
         	deviceName = arrDev.getDeviceName();
 	        if (getNumberOfQueuedMessages(deviceName) > 0) {
-	            spoolMessage(deviceName, msg);
+	            spoolMessages(deviceName, msgs, true);
+	            scheduleRetry();
+	            status = SendStatus.QUEUED;
 	        } else {
 	            try {
-	                activeConnection(arrDev).sendMessage(msg);
+	                activeConnection(arrDev).sendMessages(msgs);
 	                lastSentTimeInMillis = System.currentTimeMillis();
 	            } catch (IOException e) {
 	                lastException = e;
 	                if (retryInterval > 0) {
 	                    LOG.info("Failed to send audit message:", e);
-	                    spoolMessage(deviceName, msg);
+	                    spoolMessages(deviceName, msgs, true);
 	                    scheduleRetry();
 	                    status = SendStatus.QUEUED;
 	                } else {
@@ -882,83 +1023,113 @@ public class AuditLogger extends DeviceExtension {
                 retryInterval, TimeUnit.SECONDS);
     }
 
-    private void spoolMessage(String deviceName, DatagramPacket msg) throws IOException {
-        if (spoolDirectory != null)
-            spoolDirectory.mkdirs();
-
-        File f = null;
+    private void spoolMessages(String deviceName, List<DatagramPacket> msgs, boolean sync)
+            throws IOException {
         try {
-            f = File.createTempFile(spoolFileNamePrefix+DEVICE_NAME_IN_FILENAME_SEPARATOR+deviceName+DEVICE_NAME_IN_FILENAME_SEPARATOR, spoolFileNameSuffix, spoolDirectory);
-            if (spoolDirectory == null)
-                spoolDirectory = f.getParentFile();
+            AuditSpool spool = spool(deviceName);
+            LOG.info("Spool {} audit messages to {}", msgs.size(), spool);
+            spool.append(msgs, sync);
+        } catch (IOException e) {
+            throw new IOException("Failed to spool audit message for device "+deviceName, e);
+        }
+    }
+
+    private void syncSpools() {
+        synchronized (spools) {
+            for (AuditSpool spool : spools.values())
+                try {
+                    spool.sync();
+                } catch (IOException e) {
+                    LOG.warn("Failed to sync {}:", spool, e);
+                }
+        }
+    }
+
+    private AuditSpool spool(String deviceName) throws IOException {
+        synchronized (spools) {
+            AuditSpool spool = spools.get(deviceName);
+            if (spool == null) {
+                String name = spoolFileNamePrefix + DEVICE_NAME_IN_FILENAME_SEPARATOR
+                        + deviceName + DEVICE_NAME_IN_FILENAME_SEPARATOR;
+                File dir = spoolDirectoryOrTemp();
+                spool = new AuditSpool(dir, name, spoolSegmentSize);
+                importSpoolFiles(dir, name, spool);
+                spools.put(deviceName, spool);
+            }
+            return spool;
+        }
+    }
+
+    private void closeSpools() {
+        synchronized (spools) {
+            for (AuditSpool spool : spools.values())
+                spool.close();
+            spools.clear();
+        }
+    }
+
+    /**
+     * Moves messages spooled into separate files by previous versions into
+     * the spool segments.
+     */
+    private void importSpoolFiles(File dir, final String prefix, AuditSpool spool)
+            throws IOException {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(prefix)
+                        && name.endsWith(spoolFileNameSuffix);
+            }
+        });
+        if (files == null || files.length == 0)
+            return;
 
-            LOG.info("Spool audit message to {}", f);
-            FileOutputStream out = new FileOutputStream(f);
+        LOG.info("Import {} spooled audit messages into {}", files.length, spool);
+        Arrays.sort(files, FILE_COMPARATOR);
+        byte[] b = null;
+        for (File file : files) {
+            int len = (int) file.length();
+            if (b == null || b.length < len)
+                b = new byte[len];
             try {
-                out.write(msg.getData(), msg.getOffset(), msg.getLength());
-            } finally {
-                SafeClose.close(out);
+                FileInputStream in = new FileInputStream(file);
+                try {
+                    StreamUtils.readFully(in, b, 0, len);
+                } finally {
+                    SafeClose.close(in);
+                }
+            } catch (IOException e) {
+                LOG.warn("Failed to read audit message from {}", file, e);
+                File dest = new File(file.getParent(), file.getName() + ".err");
+                file.renameTo(dest);
+                continue;
             }
-            f = null;
-        } catch (IOException e) {
-            throw new IOException("Failed to spool audit message for device "+deviceName, e);
-        } finally {
-            if (f != null)
-                f.delete();
+            spool.append(b, 0, len);
+            if (file.delete())
+                LOG.debug("Delete spool file {}", file);
+            else
+                LOG.warn("Failed to delete spool file {}", file);
         }
     }
 
     public void sendQueuedMessages() {
-        File dir = spoolDirectory;
-        if (dir == null)
-            return;
         boolean failed = false;
-        for (final Device arrDev : this.auditRecordRepositoryDevices) {
-	        try {
-	        	FilenameFilter fnFilter = new FilenameFilter() {
-	        		String prefix = spoolFileNamePrefix+DEVICE_NAME_IN_FILENAME_SEPARATOR+arrDev.getDeviceName()+DEVICE_NAME_IN_FILENAME_SEPARATOR;
-	                @Override
-	                public boolean accept(File dir, String name) {
-	                    return name.startsWith(prefix) 
-	                    		&& name.endsWith(spoolFileNameSuffix);
-	                }
-	            };
-	            File[] queuedMessages = dir.listFiles(fnFilter);
-	            byte[] b = null;
-	            while (queuedMessages != null && queuedMessages.length > 0) {
-	                Arrays.sort(queuedMessages, FILE_COMPARATOR);
-	                for (File file : queuedMessages) {
-	                    LOG.debug("Read audit message from {}", file);
-	                    int len = (int) file.length();
-	                    if (b == null || b.length < len)
-	                        b = new byte[len];
-	                    try {
-	                        FileInputStream in = new FileInputStream(file);
-	                        try {
-	                            StreamUtils.readFully(in, b, 0, len);
-	                        } finally {
-	                            SafeClose.close(in);
-	                        }
-	                    } catch (IOException e) {
-	                        LOG.warn("Failed to read audit message from {}", file, e);
-	                        File dest = new File(file.getParent(), file.getName() + ".err");
-	                        file.renameTo(dest);
-	                        continue;
-	                    }
-                    	activeConnection(arrDev).sendMessage(new DatagramPacket(b, 0, len));
-	                    lastSentTimeInMillis = System.currentTimeMillis();
-	                    if (file.delete())
-	                        LOG.debug("Delete spool file {}", file);
-	                    else
-	                        LOG.warn("Failed to delete spool file {}", file);
-	                }
-	                queuedMessages = dir.listFiles(FILENAME_FILTER);
-	            }
-	        } catch (Exception e) {
-	            lastException = e;
-	            LOG.info("Failed to send audit message:", e);
-	            failed = true;
-	        }
+        synchronized (sendQueuedLock) {
+            for (final Device arrDev : this.auditRecordRepositoryDevices) {
+                try {
+                    AuditSpool spool = spool(arrDev.getDeviceName());
+                    AuditSpool.Batch batch;
+                    while ((batch = spool.peek(asyncMaxBatchSize)) != null) {
+                        activeConnection(arrDev).sendMessages(batch.messages);
+                        lastSentTimeInMillis = System.currentTimeMillis();
+                        spool.remove(batch);
+                    }
+                } catch (Exception e) {
+                    lastException = e;
+                    LOG.info("Failed to send audit message:", e);
+                    failed = true;
+                }
+            }
         }
         if (failed)
         	scheduleRetry();
@@ -982,29 +1153,28 @@ public class AuditLogger extends DeviceExtension {
     	return tot;
     }
     
-    public int getNumberOfQueuedMessages(final String deviceName) {
+    public int getNumberOfQueuedMessages(String deviceName) {
         try {
-        	FilenameFilter fnFilter = new FilenameFilter() {
-        		String prefix = spoolFileNamePrefix+DEVICE_NAME_IN_FILENAME_SEPARATOR+deviceName+DEVICE_NAME_IN_FILENAME_SEPARATOR;
-                @Override
-                public boolean accept(File dir, String name) {
-                    return name.startsWith(prefix) 
-                    		&& name.endsWith(spoolFileNameSuffix);
-                }
-            };
-
-            return spoolDirectory.list(fnFilter).length;
-        } catch (NullPointerException e) {
+            return spool(deviceName).size();
+        } catch (IOException e) {
+            LOG.warn("Failed to open audit message spool for device {}", deviceName, e);
             return 0;
         }
     }
 
+    /**
+     * Returns the spool segment files containing queued messages.
+     * <p/>
+     * Each segment file holds a sequence of length-prefixed messages, and may
+     * also contain messages already sent. Previous versions returned one file
+     * per queued message; use {@link #getNumberOfQueuedMessages()} to get
+     * the number of queued messages.
+     *
+     * @return spool segment files or {@code null} if the spool directory
+     * does not exist
+     */
     public File[] getQueuedMessages() {
-        try {
-            return spoolDirectory.listFiles(FILENAME_FILTER);
-        } catch (NullPointerException e) {
-            return null;
-        }
+        return spoolDirectoryOrTemp().listFiles(FILENAME_FILTER);
     }
 
     public synchronized void waitForNoQueuedMessages(long timeout)
@@ -1109,9 +1279,9 @@ public class AuditLogger extends DeviceExtension {
                 reset();
                 writeHeader(severityOf(msg), timeStamp);
                 if (!supplement95) {
-                    AuditMessages.toXML(msg, builder, formatXML, encoding, schemaURI);
+                    AuditMessages.toXML(msg, this, formatXML, encoding, schemaURI);
                 } else {
-                    AuditMessages.toSupplement95XML(msg, builder, formatXML, encoding, schemaURI);
+                    AuditMessages.toSupplement95XML(msg, this, formatXML, encoding, schemaURI);
                 }
             } catch (IOException e) {
                 throw new RuntimeException(e);
@@ -1236,6 +1406,73 @@ public class AuditLogger extends DeviceExtension {
         }
     }
 
+    /**
+     * Audit messages collected by one asynchronous sender for a single write
+     * to the Audit Record Repositories.
+     */
+    final class AsyncBatch {
+        private final MessageBuilder builder = new MessageBuilder();
+        private final List<DatagramPacket> messages;
+        private final long[] enqueueTimes;
+
+        AsyncBatch(int maxSize) {
+            messages = new ArrayList<DatagramPacket>(maxSize);
+            enqueueTimes = new long[maxSize];
+        }
+
+        boolean isFull() {
+            return messages.size() == enqueueTimes.length;
+        }
+
+        void add(AuditMessageEvent event) {
+            AuditMessage msg = event.getMessage();
+            Calendar timeStamp = event.getTimeStamp();
+            event.setMessage(null);
+            event.setTimeStamp(null);
+            try {
+                DatagramPacket packet = builder.createMessage(
+                        timeStamp != null ? timeStamp : timeStamp(), msg);
+                int len = packet.getLength();
+                enqueueTimes[messages.size()] = event.getEnqueueTime();
+                messages.add(new DatagramPacket(Arrays.copyOf(packet.getData(), len), len));
+            } catch (RuntimeException e) {
+                asyncFailed.incrementAndGet();
+                LOG.warn("Failed to encode audit message:", e);
+            }
+        }
+
+        void flush() {
+            int n = messages.size();
+            if (n == 0)
+                return;
+
+            try {
+                sendMessages(messages);
+                asyncSent.addAndGet(n);
+            } catch (Exception e) {
+                lastException = e;
+                asyncFailed.addAndGet(n);
+                LOG.warn("Failed to send {} audit messages:", n, e);
+            }
+            asyncBatches.incrementAndGet();
+            long now = System.nanoTime();
+            long total = 0L;
+            long max = 0L;
+            for (int i = 0; i < n; i++) {
+                long latency = now - enqueueTimes[i];
+                total += latency;
+                if (latency > max)
+                    max = latency;
+            }
+            totalAsyncLatency.addAndGet(total);
+            asyncLatencyCount.addAndGet(n);
+            long prev;
+            while (max > (prev = maxAsyncLatency.get())
+                    && !maxAsyncLatency.compareAndSet(prev, max));
+            messages.clear();
+        }
+    }
+
     private abstract class ActiveConnection implements Closeable {
         final Connection conn;
         final Connection remoteConn;
@@ -1248,6 +1485,12 @@ public class AuditLogger extends DeviceExtension {
         abstract void sendMessage(DatagramPacket msg) throws IOException,
                 IncompatibleConnectionException, GeneralSecurityException;
 
+        void sendMessages(List<DatagramPacket> msgs) throws IOException,
+                IncompatibleConnectionException, GeneralSecurityException {
+            for (DatagramPacket msg : msgs)
+                sendMessage(msg);
+        }
+
     }
 
     private class UDPConnection extends ActiveConnection {
@@ -1285,6 +1528,7 @@ public class AuditLogger extends DeviceExtension {
         Socket sock;
         OutputStream out;
         ScheduledFuture<?> idleTimer;
+        final ByteArrayOutputStream frames = new ByteArrayOutputStream();
 
         TCPConnection(Connection conn, Connection remoteConn) {
             super(conn, remoteConn);
@@ -1299,29 +1543,49 @@ public class AuditLogger extends DeviceExtension {
         }
 
         @Override
-        synchronized void sendMessage(DatagramPacket packet) throws IOException,
+        void sendMessage(DatagramPacket packet) throws IOException,
+                IncompatibleConnectionException, GeneralSecurityException {
+            sendMessages(Collections.singletonList(packet));
+        }
+
+        @Override
+        synchronized void sendMessages(List<DatagramPacket> packets) throws IOException,
                 IncompatibleConnectionException, GeneralSecurityException {
             stopIdleTimer();
             connect();
             try {
-                trySendMessage(packet);
+                trySendMessages(packets);
             } catch (IOException e) {
                 LOG.info("Failed to send audit message to {} - reconnect",
                         sock, e);
                 close();
                 connect();
-                trySendMessage(packet);
+                trySendMessages(packets);
             }
             startIdleTimer();
         }
 
+        void trySendMessages(List<DatagramPacket> packets) throws IOException {
+            if (packets.size() == 1) {
+                trySendMessage(packets.get(0));
+                return;
+            }
+            LOG.info("Send {} audit messages to {}", packets.size(), sock);
+            frames.reset();
+            for (DatagramPacket packet : packets) {
+                if (LOG.isDebugEnabled())
+                    LOG.debug(AuditLogger.toString(packet));
+                writeFrame(frames, packet);
+            }
+            frames.writeTo(out);
+            out.flush();
+        }
+
         void trySendMessage(DatagramPacket packet) throws IOException {
             LOG.info("Send audit message to {}", sock);
             if (LOG.isDebugEnabled())
                 LOG.debug(AuditLogger.toString(packet));
-            out.write(Integer.toString(packet.getLength()).getBytes(encoding));
-            out.write(' ');
-            out.write(packet.getData(), packet.getOffset(), packet.getLength());
+            writeFrame(out, packet);
             out.flush();
         }
 
@@ -1382,30 +1646,180 @@ public class AuditLogger extends DeviceExtension {
     }
 
     public static Disruptor<AuditMessageEvent> getDisruptor(AuditLogger logger) {
-        if (disruptor == null)
-            disruptor = initializeDisruptor(logger);
+        return logger.asyncSender();
+    }
 
-        return disruptor;
+    private Disruptor<AuditMessageEvent> asyncSender() {
+        Disruptor<AuditMessageEvent> sender = asyncSender;
+        if (sender == null)
+            synchronized (this) {
+                sender = asyncSender;
+                if (sender == null)
+                    asyncSender = sender = startAsyncSender();
+            }
+        return sender;
     }
 
-    private static Disruptor<AuditMessageEvent> initializeDisruptor(AuditLogger logger) {
-        // Executor that will be used to construct new threads for consumers
-        Executor executor = Executors.newCachedThreadPool();
+    private Disruptor<AuditMessageEvent> startAsyncSender() {
+        spoolPending = getNumberOfQueuedMessages() > 0;
+        final String threadName = "AuditLogger-"
+                + (device != null ? device.getDeviceName() : applicationName);
+        Disruptor<AuditMessageEvent> sender = new Disruptor<AuditMessageEvent>(
+                new AuditMessageEventFactory(), asyncQueueCapacity,
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        Thread t = new Thread(command, threadName);
+                        t.setDaemon(true);
+                        t.start();
+                    }
+                },
+                ProducerType.MULTI,
+                new TimeoutBlockingWaitStrategy(ASYNC_IDLE_TIMEOUT, TimeUnit.MILLISECONDS));
+        sender.handleEventsWith(new AuditMessageEventHandler(this));
+        sender.start();
+        LOG.debug("Started asynchronous audit message sender with queue capacity {}",
+                asyncQueueCapacity);
+        return sender;
+    }
 
-        // The factory for the event
-        AuditMessageEventFactory factory = new AuditMessageEventFactory();
+    /**
+     * Stop the asynchronous sender after it has sent all queued messages.
+     * Messages queued after the given timeout elapsed are discarded.
+     * {@link #writeAsync(Calendar, AuditMessage)} blocks until the sender
+     * is stopped, and then starts a new sender.
+     *
+     * @param timeout maximal time to wait for sending queued messages
+     * @param unit    time unit of {@code timeout}
+     */
+    public void stopAsyncSender(long timeout, TimeUnit unit) {
+        asyncSenderLock.writeLock().lock();
+        try {
+            Disruptor<AuditMessageEvent> sender = asyncSender;
+            if (sender == null)
+                return;
+
+            try {
+                sender.shutdown(timeout, unit);
+            } catch (com.lmax.disruptor.TimeoutException e) {
+                LOG.warn("Timeout sending {} queued audit messages - discard them",
+                        sender.getRingBuffer().getBufferSize()
+                                - sender.getRingBuffer().remainingCapacity());
+                sender.halt();
+            }
+            synchronized (this) {
+                asyncSender = null;
+            }
+        } finally {
+            asyncSenderLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a new batch for an asynchronous sender, which must not be shared
+     * with other senders.
+     */
+    AsyncBatch newAsyncBatch() {
+        return new AsyncBatch(asyncMaxBatchSize);
+    }
+
+    void onAsyncEvent(AsyncBatch batch, AuditMessageEvent event, boolean endOfBatch) {
+        batch.add(event);
+        if (endOfBatch || batch.isFull())
+            batch.flush();
+        if (endOfBatch && spoolPending)
+            sendSpooledMessages();
+    }
+
+    void onAsyncTimeout() {
+        if (spoolPending)
+            sendSpooledMessages();
+    }
+
+    private void sendSpooledMessages() {
+        spoolPending = false;
+        syncSpools();
+        sendQueuedMessages();
+        // without retry timer, retry on next idle timeout of the sender
+        if (retryInterval <= 0 && getNumberOfQueuedMessages() > 0)
+            spoolPending = true;
+    }
+
+    private File spoolDirectoryOrTemp() {
+        return spoolDirectory != null
+                ? spoolDirectory
+                : new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    /**
+     * Spools a message which does not fit into the asynchronous queue. The
+     * message is not synced to disk by the caller of
+     * {@link #writeAsync(Calendar, AuditMessage)}, but by the sender.
+     */
+    private void spoolOverflow(DatagramPacket msg) throws IOException {
+        List<DatagramPacket> msgs = Collections.singletonList(msg);
+        for (Device arrDev : auditRecordRepositoryDevices)
+            spoolMessages(arrDev.getDeviceName(), msgs, false);
+        asyncSpilled.incrementAndGet();
+        spoolPending = true;
+    }
 
-        // Specify the size of the ring buffer, must be power of 2.
-        int bufferSize = 8;
+    private void writeFrame(OutputStream out, DatagramPacket packet)
+            throws IOException {
+        out.write(Integer.toString(packet.getLength()).getBytes(encoding));
+        out.write(' ');
+        out.write(packet.getData(), packet.getOffset(), packet.getLength());
+    }
+
+    /**
+     * Returns the number of messages queued by
+     * {@link #writeAsync(Calendar, AuditMessage)} not yet taken by the
+     * asynchronous sender.
+     */
+    public int getAsyncQueueDepth() {
+        Disruptor<AuditMessageEvent> sender = asyncSender;
+        if (sender == null)
+            return 0;
 
-        Disruptor<AuditMessageEvent> disruptorInstance = new Disruptor<AuditMessageEvent>(factory, bufferSize, executor);
+        RingBuffer<AuditMessageEvent> ringBuffer = sender.getRingBuffer();
+        return (int) (ringBuffer.getBufferSize() - ringBuffer.remainingCapacity());
+    }
 
-        // Connect the handler
-        disruptorInstance.handleEventsWith(new AuditMessageEventHandler());
+    /**
+     * Returns the number of asynchronously sent messages, including messages
+     * spooled for later re-send after a failed attempt.
+     */
+    public long getAsyncSent() {
+        return asyncSent.get();
+    }
 
-        // Start the Disruptor, starts all threads running
-        disruptorInstance.start();
+    public long getAsyncFailed() {
+        return asyncFailed.get();
+    }
+
+    public long getAsyncDropped() {
+        return asyncDropped.get();
+    }
+
+    public long getAsyncSpilled() {
+        return asyncSpilled.get();
+    }
+
+    public long getAsyncBatches() {
+        return asyncBatches.get();
+    }
+
+    /**
+     * Returns the average time in ms between queuing a message by
+     * {@link #writeAsync(Calendar, AuditMessage)} and its completed write to
+     * the Audit Record Repository.
+     */
+    public double getAverageAsyncLatency() {
+        long n = asyncLatencyCount.get();
+        return n > 0 ? totalAsyncLatency.get() / (n * 1e6) : 0.;
+    }
 
-        return disruptorInstance;
+    public double getMaxAsyncLatency() {
+        return maxAsyncLatency.get() / 1e6;
     }
 }
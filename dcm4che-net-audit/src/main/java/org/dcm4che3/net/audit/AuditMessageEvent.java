@@ -2,6 +2,8 @@ package org.dcm4che3.net.audit;
 
 import org.dcm4che3.audit.AuditMessage;
 
+import java.util.Calendar;
+
 /**
  * Created by Umberto Cappellini on 3/21/16.
  */
@@ -9,6 +11,8 @@ public class AuditMessageEvent {
 
     private AuditLogger logger;
     private AuditMessage message;
+    private Calendar timeStamp;
+    private long enqueueTime;
 
     public AuditLogger getLogger() {
         return logger;
@@ -25,4 +29,20 @@ public class AuditMessageEvent {
     public void setMessage(AuditMessage message) {
         this.message = message;
     }
+
+    public Calendar getTimeStamp() {
+        return timeStamp;
+    }
+
+    public void setTimeStamp(Calendar timeStamp) {
+        this.timeStamp = timeStamp;
+    }
+
+    public long getEnqueueTime() {
+        return enqueueTime;
+    }
+
+    public void setEnqueueTime(long enqueueTime) {
+        this.enqueueTime = enqueueTime;
+    }
 }
@@ -1,26 +1,63 @@
 package org.dcm4che3.net.audit;
 
 import com.lmax.disruptor.EventHandler;
-import org.dcm4che3.net.IncompatibleConnectionException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.lmax.disruptor.TimeoutHandler;
 
-import java.io.IOException;
-import java.security.GeneralSecurityException;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * Created by Umberto Cappellini on 4/12/16.
  */
-public class AuditMessageEventHandler implements EventHandler<AuditMessageEvent> {
+public class AuditMessageEventHandler implements EventHandler<AuditMessageEvent>, TimeoutHandler {
 
-    private static Logger LOG = LoggerFactory.getLogger(AuditMessageEventHandler.class);
+    private final AuditLogger logger;
+    private final Map<AuditLogger, AuditLogger.AsyncBatch> batches =
+            new IdentityHashMap<AuditLogger, AuditLogger.AsyncBatch>();
+    private AuditLogger lastLogger;
+    private AuditLogger.AsyncBatch lastBatch;
+
+    /**
+     * Creates a handler for events of any {@code AuditLogger}, which is taken
+     * from each event.
+     */
+    public AuditMessageEventHandler() {
+        this(null);
+    }
+
+    /**
+     * Creates a handler for events of the specified {@code AuditLogger}.
+     */
+    public AuditMessageEventHandler(AuditLogger logger) {
+        this.logger = logger;
+        if (logger != null) {
+            lastLogger = logger;
+            lastBatch = batchOf(logger);
+        }
+    }
 
     public void onEvent(AuditMessageEvent event, long sequence, boolean endOfBatch) throws Exception
     {
-        try {
-            event.getLogger().write(event.getLogger().timeStamp(),event.getMessage());
-        } catch (Throwable e) {
-            LOG.warn("could not send audit",e);
+        AuditLogger eventLogger = logger != null ? logger : event.getLogger();
+        if (eventLogger != lastLogger) {
+            if (lastBatch != null)
+                lastBatch.flush();
+            lastLogger = eventLogger;
+            lastBatch = batchOf(eventLogger);
         }
+        eventLogger.onAsyncEvent(lastBatch, event, endOfBatch);
+    }
+
+    public void onTimeout(long sequence) throws Exception
+    {
+        if (lastLogger != null)
+            lastLogger.onAsyncTimeout();
+    }
+
+    private AuditLogger.AsyncBatch batchOf(AuditLogger logger) {
+        AuditLogger.AsyncBatch batch = batches.get(logger);
+        if (batch == null)
+            batches.put(logger, batch = logger.newAsyncBatch());
+        return batch;
     }
 }
@@ -0,0 +1,493 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che3.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.audit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.DatagramPacket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.dcm4che3.util.SafeClose;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only spool of audit messages for one Audit Record Repository,
+ * stored in segment files {@code <name><seq>.seg} of length-prefixed
+ * messages.
+ * <p/>
+ * The spool index {@code <name>index} records the head segment and the offset
+ * of the next message to send, the tail segment and its committed length,
+ * and the number of queued messages. It is written alternately into one of
+ * two check-summed slots, so an interrupted update leaves the previous state
+ * intact. Segments are only deleted after the index was advanced past them.
+ * Appended messages are synced to disk before the index is updated, and
+ * the index is synced before the append returns, once per appended list of
+ * messages. Removing sent messages does not sync the index, so messages may
+ * be sent again after a crash.
+ *
+ * @author agent <agent@local>
+ */
+class AuditSpool implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuditSpool.class);
+
+    static final String SEGMENT_SUFFIX = ".seg";
+    static final String INDEX_SUFFIX = "index";
+
+    private static final int SLOT_LENGTH = 48;
+
+    private final File dir;
+    private final String name;
+    private final int segmentSize;
+    private final File indexFile;
+    private final byte[] slot = new byte[SLOT_LENGTH];
+    private final CRC32 crc = new CRC32();
+    private final FrameBuffer frames = new FrameBuffer();
+    private RandomAccessFile index;
+    private RandomAccessFile head;
+    private RandomAccessFile tail;
+    private long generation;
+    private long headSeq;
+    private long sentOffset;
+    private long tailSeq;
+    private long committed;
+    private int count;
+
+    private static final class FrameBuffer extends ByteArrayOutputStream {
+
+        void writeFrame(DatagramPacket msg) {
+            int len = msg.getLength();
+            write(len >>> 24);
+            write(len >>> 16);
+            write(len >>> 8);
+            write(len);
+            write(msg.getData(), msg.getOffset(), len);
+        }
+
+        void writeTo(RandomAccessFile raf) throws IOException {
+            raf.write(buf, 0, count);
+        }
+    }
+
+    static final class Batch {
+        final List<DatagramPacket> messages;
+        final long offset;
+
+        Batch(List<DatagramPacket> messages, long offset) {
+            this.messages = messages;
+            this.offset = offset;
+        }
+    }
+
+    AuditSpool(File dir, String name, int segmentSize) throws IOException {
+        this.dir = dir;
+        this.name = name;
+        this.segmentSize = segmentSize;
+        this.indexFile = new File(dir, name + INDEX_SUFFIX);
+        recover();
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public File[] getSegments() {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String fname) {
+                return seqOf(fname) >= 0;
+            }
+        });
+        if (files != null)
+            Arrays.sort(files);
+        return files;
+    }
+
+    public void append(byte[] b, int off, int len) throws IOException {
+        append(Collections.singletonList(new DatagramPacket(b, off, len)), true);
+    }
+
+    /**
+     * Appends messages to the tail segment. If {@code sync} is {@code true},
+     * the messages and the index are synced to disk before the method
+     * returns; otherwise they are synced by a later {@link #sync()} or
+     * synced append.
+     */
+    public synchronized void append(List<DatagramPacket> msgs, boolean sync)
+            throws IOException {
+        if (msgs.isEmpty())
+            return;
+
+        if (tail == null) {
+            dir.mkdirs();
+            tail = new RandomAccessFile(segment(tailSeq), "rw");
+            tail.setLength(committed);
+        }
+        int n = 0;
+        for (DatagramPacket msg : msgs) {
+            long length = committed + frames.size();
+            if (length > 0 && length + 4 + msg.getLength() > segmentSize) {
+                commitFrames(n, true);
+                n = 0;
+                nextSegment();
+            }
+            frames.writeFrame(msg);
+            n++;
+        }
+        commitFrames(n, sync);
+    }
+
+    /**
+     * Syncs messages appended without sync and the index to disk.
+     */
+    public synchronized void sync() throws IOException {
+        if (tail != null)
+            tail.getFD().sync();
+        if (index != null)
+            index.getFD().sync();
+    }
+
+    /**
+     * Returns up to {@code maxMessages} queued messages from the head segment
+     * without removing them from the spool, or {@code null} if the spool is
+     * empty.
+     */
+    public synchronized Batch peek(int maxMessages) throws IOException {
+        while (count > 0) {
+            long limit = headSeq == tailSeq ? committed : segment(headSeq).length();
+            if (sentOffset < limit) {
+                if (head == null)
+                    head = new RandomAccessFile(segment(headSeq), "r");
+                List<DatagramPacket> msgs =
+                        new ArrayList<DatagramPacket>(Math.min(maxMessages, count));
+                long offset = sentOffset;
+                head.seek(offset);
+                while (msgs.size() < maxMessages && offset < limit) {
+                    int len = offset + 4 <= limit ? head.readInt() : -1;
+                    if (len < 0 || offset + 4 + len > limit) {
+                        if (msgs.isEmpty())
+                            skipCorruptedSegment();
+                        break;
+                    }
+                    byte[] b = new byte[len];
+                    head.readFully(b);
+                    msgs.add(new DatagramPacket(b, len));
+                    offset += 4 + len;
+                }
+                if (!msgs.isEmpty())
+                    return new Batch(msgs, offset);
+            } else if (headSeq < tailSeq) {
+                advanceHead();
+            } else {
+                LOG.warn("{} queued messages missing in {} - reset spool", count, this);
+                count = 0;
+                writeIndex(true);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes the messages returned by {@link #peek(int)} after they were
+     * sent. If the spool becomes empty, its segment is deleted.
+     */
+    public synchronized void remove(Batch batch) throws IOException {
+        sentOffset = batch.offset;
+        count = Math.max(0, count - batch.messages.size());
+        if (headSeq == tailSeq && sentOffset >= committed)
+            truncate();
+        else if (headSeq < tailSeq && sentOffset >= segment(headSeq).length())
+            advanceHead();
+        else
+            writeIndex(false);
+    }
+
+    @Override
+    public synchronized void close() {
+        SafeClose.close(head);
+        SafeClose.close(tail);
+        SafeClose.close(index);
+        head = null;
+        tail = null;
+        index = null;
+    }
+
+    @Override
+    public String toString() {
+        return "AuditSpool[" + new File(dir, name) + ", queued=" + count + "]";
+    }
+
+    private void commitFrames(int n, boolean sync) throws IOException {
+        try {
+            tail.seek(committed);
+            frames.writeTo(tail);
+        } finally {
+            frames.reset();
+        }
+        committed = tail.getFilePointer();
+        count += n;
+        if (sync)
+            tail.getFD().sync();
+        writeIndex(sync);
+    }
+
+    private void nextSegment() throws IOException {
+        // drop remains of a failed write, which would be read as messages
+        tail.setLength(committed);
+        tail.getFD().sync();
+        SafeClose.close(tail);
+        tail = null;
+        tailSeq++;
+        committed = 0;
+        writeIndex(true);
+        tail = new RandomAccessFile(segment(tailSeq), "rw");
+        tail.setLength(0);
+    }
+
+    private void advanceHead() throws IOException {
+        SafeClose.close(head);
+        head = null;
+        File sent = segment(headSeq);
+        headSeq++;
+        sentOffset = 0;
+        writeIndex(true);
+        delete(sent);
+    }
+
+    private void truncate() throws IOException {
+        SafeClose.close(head);
+        SafeClose.close(tail);
+        head = null;
+        tail = null;
+        File sent = segment(tailSeq);
+        headSeq = ++tailSeq;
+        sentOffset = 0;
+        committed = 0;
+        count = 0;
+        writeIndex(true);
+        delete(sent);
+    }
+
+    private void skipCorruptedSegment() throws IOException {
+        File f = segment(headSeq);
+        LOG.warn("Corrupted audit message in {} at offset {} - skip remaining segment",
+                f, sentOffset);
+        SafeClose.close(head);
+        head = null;
+        if (headSeq == tailSeq) {
+            truncate();
+        } else {
+            headSeq++;
+            sentOffset = 0;
+            count = countMessages();
+            writeIndex(true);
+            delete(f);
+        }
+    }
+
+    private static void delete(File f) {
+        if (f.delete())
+            LOG.debug("Delete spool file {}", f);
+        else if (f.exists())
+            LOG.warn("Failed to delete spool file {}", f);
+    }
+
+    private File segment(long seq) {
+        return new File(dir, name + String.format("%016x", seq) + SEGMENT_SUFFIX);
+    }
+
+    private long seqOf(String fname) {
+        int seqLen = fname.length() - name.length() - SEGMENT_SUFFIX.length();
+        if (seqLen != 16 || !fname.startsWith(name) || !fname.endsWith(SEGMENT_SUFFIX))
+            return -1L;
+        try {
+            return Long.parseLong(fname.substring(name.length(), name.length() + 16), 16);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private void recover() throws IOException {
+        boolean indexed = indexFile.exists() && readIndex();
+        File[] segments = getSegments();
+        if (!indexed) {
+            if (segments == null || segments.length == 0)
+                return;
+            headSeq = seqOf(segments[0].getName());
+            tailSeq = seqOf(segments[segments.length - 1].getName());
+            sentOffset = 0;
+            committed = Long.MAX_VALUE;
+        }
+        if (segments != null)
+            for (File f : segments) {
+                long seq = seqOf(f.getName());
+                if (seq < headSeq || seq > tailSeq)
+                    delete(f);
+            }
+        File tailFile = segment(tailSeq);
+        long tailLength = tailFile.length();
+        if (tailLength != committed) {
+            committed = validLength(tailFile, Math.min(tailLength, committed));
+            if (tailLength > committed) {
+                LOG.info("Truncate {} to committed length {}", tailFile, committed);
+                RandomAccessFile raf = new RandomAccessFile(tailFile, "rw");
+                try {
+                    raf.setLength(committed);
+                } finally {
+                    SafeClose.close(raf);
+                }
+            }
+            if (headSeq == tailSeq && sentOffset > committed)
+                sentOffset = committed;
+            count = countMessages();
+            writeIndex(true);
+        }
+        if (count > 0)
+            LOG.info("{} audit messages queued in {}", count, this);
+    }
+
+    private static long validLength(File f, long length) throws IOException {
+        if (!f.exists())
+            return 0L;
+
+        RandomAccessFile raf = new RandomAccessFile(f, "r");
+        try {
+            long offset = 0;
+            while (offset + 4 <= length) {
+                raf.seek(offset);
+                int len = raf.readInt();
+                if (len < 0 || offset + 4 + len > length)
+                    break;
+                offset += 4 + len;
+            }
+            return offset;
+        } finally {
+            SafeClose.close(raf);
+        }
+    }
+
+    private int countMessages() throws IOException {
+        int n = 0;
+        for (long seq = headSeq; seq <= tailSeq; seq++) {
+            File f = segment(seq);
+            if (!f.exists())
+                continue;
+            long limit = seq == tailSeq ? committed : f.length();
+            RandomAccessFile raf = new RandomAccessFile(f, "r");
+            try {
+                long offset = seq == headSeq ? sentOffset : 0L;
+                while (offset + 4 <= limit) {
+                    raf.seek(offset);
+                    int len = raf.readInt();
+                    if (len < 0 || offset + 4 + len > limit)
+                        break;
+                    offset += 4 + len;
+                    n++;
+                }
+            } finally {
+                SafeClose.close(raf);
+            }
+        }
+        return n;
+    }
+
+    private boolean readIndex() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "r");
+        try {
+            boolean valid = false;
+            for (int i = 0; i < 2; i++) {
+                if (raf.length() < (i + 1) * SLOT_LENGTH)
+                    break;
+                raf.seek(i * SLOT_LENGTH);
+                raf.readFully(slot);
+                crc.reset();
+                crc.update(slot, 0, SLOT_LENGTH - 4);
+                ByteBuffer bb = ByteBuffer.wrap(slot);
+                long gen = bb.getLong();
+                if (bb.getInt(SLOT_LENGTH - 4) != (int) crc.getValue()
+                        || valid && gen <= generation)
+                    continue;
+                generation = gen;
+                headSeq = bb.getLong();
+                sentOffset = bb.getLong();
+                tailSeq = bb.getLong();
+                committed = bb.getLong();
+                count = bb.getInt();
+                valid = true;
+            }
+            if (!valid)
+                LOG.warn("Invalid spool index {} - rebuild it from segments", indexFile);
+            return valid;
+        } finally {
+            SafeClose.close(raf);
+        }
+    }
+
+    private void writeIndex(boolean sync) throws IOException {
+        if (index == null) {
+            dir.mkdirs();
+            index = new RandomAccessFile(indexFile, "rw");
+        }
+        generation++;
+        ByteBuffer bb = ByteBuffer.wrap(slot);
+        bb.putLong(generation)
+          .putLong(headSeq)
+          .putLong(sentOffset)
+          .putLong(tailSeq)
+          .putLong(committed)
+          .putInt(count);
+        crc.reset();
+        crc.update(slot, 0, SLOT_LENGTH - 4);
+        bb.putInt((int) crc.getValue());
+        index.seek((generation & 1) * SLOT_LENGTH);
+        index.write(slot);
+        if (sync)
+            index.getFD().sync();
+    }
+}
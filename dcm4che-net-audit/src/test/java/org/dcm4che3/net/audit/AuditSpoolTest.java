@@ -0,0 +1,253 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.net.DatagramPacket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class AuditSpoolTest {
+
+    private static final File SPOOL_DIR = new File("target/auditspool");
+    private static final String NAME = "test-";
+    // two 20 byte messages per segment
+    private static final int SEGMENT_SIZE = 64;
+
+    private AuditSpool spool;
+
+    @Before
+    public void setUp() {
+        deleteSpoolDir();
+    }
+
+    @After
+    public void tearDown() {
+        if (spool != null)
+            spool.close();
+        deleteSpoolDir();
+    }
+
+    @Test
+    public void testAppendPeekRemoveAcrossSegments() throws Exception {
+        spool = open();
+        spool.append(messages(0, 5), true);
+        spool.append(messages(5, 10), false);
+        assertEquals(10, spool.size());
+        assertEquals(5, spool.getSegments().length);
+
+        List<String> sent = new ArrayList<String>();
+        AuditSpool.Batch batch;
+        while ((batch = spool.peek(3)) != null) {
+            for (DatagramPacket msg : batch.messages)
+                sent.add(toString(msg));
+            spool.remove(batch);
+        }
+        assertEquals(expected(0, 10), sent);
+        assertEquals(0, spool.size());
+        assertEquals(0, spool.getSegments().length);
+
+        spool.append(messages(10, 11), true);
+        assertEquals(expected(10, 11), peekAll());
+    }
+
+    @Test
+    public void testTruncateTornTail() throws Exception {
+        spool = open();
+        spool.append(messages(0, 3), true);
+        spool.close();
+        File tail = lastSegment();
+        long committed = tail.length();
+        RandomAccessFile raf = new RandomAccessFile(tail, "rw");
+        try {
+            raf.seek(committed);
+            raf.write(new byte[] { 0, 0, 0, 16, 'm', 's' });
+        } finally {
+            raf.close();
+        }
+
+        spool = open();
+        assertEquals(3, spool.size());
+        assertEquals(committed, tail.length());
+        spool.append(messages(3, 4), true);
+        assertEquals(expected(0, 4), peekAll());
+    }
+
+    @Test
+    public void testCorruptedIndexSlot() throws Exception {
+        spool = open();
+        spool.append(messages(0, 1), true);
+        spool.append(messages(1, 2), true);
+        spool.close();
+        corruptLatestIndexSlot();
+
+        // the message of the interrupted index update is dropped
+        spool = open();
+        assertEquals(1, spool.size());
+        assertEquals(expected(0, 1), peekAll());
+    }
+
+    @Test
+    public void testRebuildIndex() throws Exception {
+        spool = open();
+        spool.append(messages(0, 5), true);
+        spool.remove(spool.peek(1));
+        spool.close();
+        assertEquals(true, new File(SPOOL_DIR, NAME + AuditSpool.INDEX_SUFFIX).delete());
+
+        // sent messages of the head segment are sent again
+        spool = open();
+        assertEquals(5, spool.size());
+        assertEquals(expected(0, 5), peekAll());
+    }
+
+    @Test
+    public void testSizeAfterRecovery() throws Exception {
+        spool = open();
+        spool.append(messages(0, 7), true);
+        spool.remove(spool.peek(1));
+        spool.close();
+
+        spool = open();
+        assertEquals(6, spool.size());
+        spool.close();
+
+        // size is taken from the index, without reading the segments
+        for (File f : SPOOL_DIR.listFiles())
+            if (!f.equals(lastSegment()) && f.getName().endsWith(AuditSpool.SEGMENT_SUFFIX))
+                f.delete();
+        spool = open();
+        assertEquals(6, spool.size());
+    }
+
+    @Test
+    public void testSkipCorruptedSegment() throws Exception {
+        spool = open();
+        spool.append(messages(0, 4), true);
+        spool.close();
+        RandomAccessFile raf = new RandomAccessFile(spool.getSegments()[0], "rw");
+        try {
+            raf.writeInt(-1);
+        } finally {
+            raf.close();
+        }
+
+        spool = open();
+        assertEquals(expected(2, 4), peekAll());
+        assertEquals(0, spool.size());
+    }
+
+    private AuditSpool open() throws Exception {
+        return new AuditSpool(SPOOL_DIR, NAME, SEGMENT_SIZE);
+    }
+
+    private File lastSegment() {
+        File[] segments = spool.getSegments();
+        return segments[segments.length - 1];
+    }
+
+    private List<String> peekAll() throws Exception {
+        List<String> msgs = new ArrayList<String>();
+        AuditSpool.Batch batch;
+        while ((batch = spool.peek(Integer.MAX_VALUE)) != null) {
+            for (DatagramPacket msg : batch.messages)
+                msgs.add(toString(msg));
+            spool.remove(batch);
+        }
+        assertNull(spool.peek(1));
+        return msgs;
+    }
+
+    private void corruptLatestIndexSlot() throws Exception {
+        RandomAccessFile raf = new RandomAccessFile(
+                new File(SPOOL_DIR, NAME + AuditSpool.INDEX_SUFFIX), "rw");
+        try {
+            long gen0 = raf.readLong();
+            raf.seek(48);
+            long gen1 = raf.readLong();
+            raf.seek(gen0 > gen1 ? 8 : 56);
+            raf.writeLong(-1L);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static List<DatagramPacket> messages(int from, int to) {
+        List<DatagramPacket> msgs = new ArrayList<DatagramPacket>();
+        for (int i = from; i < to; i++) {
+            byte[] b = message(i).getBytes();
+            msgs.add(new DatagramPacket(b, b.length));
+        }
+        return msgs;
+    }
+
+    private static List<String> expected(int from, int to) {
+        List<String> msgs = new ArrayList<String>();
+        for (int i = from; i < to; i++)
+            msgs.add(message(i));
+        return msgs;
+    }
+
+    private static String message(int i) {
+        return String.format("audit message %06d", i);
+    }
+
+    private static String toString(DatagramPacket msg) {
+        return new String(msg.getData(), msg.getOffset(), msg.getLength());
+    }
+
+    private static void deleteSpoolDir() {
+        File[] files = SPOOL_DIR.listFiles();
+        if (files != null)
+            for (File f : files)
+                f.delete();
+        SPOOL_DIR.delete();
+    }
+}
@@ -103,6 +103,9 @@ public class HL7Application implements Serializable {
             new HashMap<Class<? extends HL7ApplicationExtension>, HL7ApplicationExtension>();
 
     private transient HL7MessageListener hl7MessageListener;
+    private transient int maxOutboundConnections = 1;
+    private transient int outboundPipelineDepth = 1;
+    private transient Map<Connection, Map<String, MLLPSender>> mllpSenders;
 
     public HL7Application() {
     }
@@ -286,6 +289,104 @@ public class HL7Application implements Serializable {
         return new MLLPConnection(sock);
     }
 
+    public final int getMaxOutboundConnections() {
+        return maxOutboundConnections;
+    }
+
+    /**
+     * Limit the number of connections kept open by each {@link MLLPSender}
+     * subsequently created by {@link #getMLLPSender}.
+     */
+    public final void setMaxOutboundConnections(int maxOutboundConnections) {
+        if (maxOutboundConnections < 1)
+            throw new IllegalArgumentException("maxOutboundConnections: "
+                    + maxOutboundConnections);
+        this.maxOutboundConnections = maxOutboundConnections;
+    }
+
+    public final int getOutboundPipelineDepth() {
+        return outboundPipelineDepth;
+    }
+
+    /**
+     * Limit the number of messages sent on one connection by each
+     * {@link MLLPSender} subsequently created by {@link #getMLLPSender}
+     * without awaiting their acknowledgments.
+     */
+    public final void setOutboundPipelineDepth(int outboundPipelineDepth) {
+        if (outboundPipelineDepth < 1)
+            throw new IllegalArgumentException("outboundPipelineDepth: "
+                    + outboundPipelineDepth);
+        this.outboundPipelineDepth = outboundPipelineDepth;
+    }
+
+    public MLLPSender getMLLPSender(Connection remote)
+            throws IncompatibleConnectionException {
+        return getMLLPSender(findCompatibelConnection(remote), remote);
+    }
+
+    public MLLPSender getMLLPSender(HL7Application remote)
+            throws IncompatibleConnectionException {
+        CompatibleConnection cc = findCompatibelConnection(remote);
+        return getMLLPSender(cc.getLocalConnection(), cc.getRemoteConnection());
+    }
+
+    /**
+     * Returns the sender which keeps connections from the specified local
+     * to the specified remote connection open for subsequent messages.
+     */
+    public synchronized MLLPSender getMLLPSender(Connection local, Connection remote) {
+        checkDevice();
+        checkInstalled();
+        if (mllpSenders == null)
+            mllpSenders = new HashMap<Connection, Map<String, MLLPSender>>();
+        Map<String, MLLPSender> sendersOfLocal = mllpSenders.get(local);
+        if (sendersOfLocal == null)
+            mllpSenders.put(local,
+                    sendersOfLocal = new HashMap<String, MLLPSender>());
+        String key = keyOf(remote);
+        MLLPSender sender = sendersOfLocal.get(key);
+        if (sender == null)
+            sendersOfLocal.put(key, sender = new MLLPSender(this, local, remote,
+                    maxOutboundConnections, outboundPipelineDepth));
+        return sender;
+    }
+
+    private static String keyOf(Connection remote) {
+        return remote.getHostname() + ':' + remote.getPort()
+                + (remote.isTls() ? "/tls" : "");
+    }
+
+    synchronized void removeMLLPSender(MLLPSender sender) {
+        if (mllpSenders == null)
+            return;
+
+        Map<String, MLLPSender> sendersOfLocal =
+                mllpSenders.get(sender.getLocalConnection());
+        if (sendersOfLocal == null)
+            return;
+
+        String key = keyOf(sender.getRemoteConnection());
+        if (sendersOfLocal.get(key) == sender) {
+            sendersOfLocal.remove(key);
+            if (sendersOfLocal.isEmpty())
+                mllpSenders.remove(sender.getLocalConnection());
+        }
+    }
+
+    public synchronized Collection<MLLPSender> getMLLPSenders() {
+        ArrayList<MLLPSender> senders = new ArrayList<MLLPSender>();
+        if (mllpSenders != null)
+            for (Map<String, MLLPSender> sendersOfLocal : mllpSenders.values())
+                senders.addAll(sendersOfLocal.values());
+        return senders;
+    }
+
+    public void closeMLLPSenders() {
+        for (MLLPSender sender : getMLLPSenders())
+            sender.close();
+    }
+
     public CompatibleConnection findCompatibelConnection(HL7Application remote)
             throws IncompatibleConnectionException {
         for (Connection remoteConn : remote.conns)
@@ -0,0 +1,306 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.hl7;
+
+import java.util.ArrayList;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.hl7.HL7Charset;
+import org.dcm4che3.hl7.HL7MessageView;
+
+/**
+ * Maps fields of HL7 messages directly to DICOM attributes, without
+ * converting the HL7 message to XML and applying a XSL style sheet.
+ * 
+ * Fields are specified as {@code SEG-field[.component[.subcomponent]]},
+ * e.g. {@code PID-3.4.1}, with field indices as in the HL7 standard. Only
+ * the first occurrence of a segment and the first repetition of a field is
+ * mapped. If several rules map to the same attribute, the first non-empty
+ * value is used.
+ * 
+ * @author agent <agent@local>
+ */
+public class HL7AttributesMapper {
+
+    private final ArrayList<Rule> rules = new ArrayList<Rule>();
+
+    private static final class Rule {
+        final String segment;
+        final int field;
+        final int component;
+        final int subcomponent;
+        final VR vr;
+        final boolean xcn;
+        final int[] tagPath;
+
+        Rule(String path, VR vr, boolean xcn, int[] tagPath) {
+            int dash = path.indexOf('-');
+            if (dash <= 0 || tagPath.length == 0)
+                throw new IllegalArgumentException(path);
+            String[] ss = path.substring(dash + 1).split("\\.");
+            if (ss.length > 3)
+                throw new IllegalArgumentException(path);
+            try {
+                this.segment = path.substring(0, dash);
+                this.field = Integer.parseInt(ss[0]);
+                this.component = ss.length > 1 ? Integer.parseInt(ss[1]) : 0;
+                this.subcomponent = ss.length > 2 ? Integer.parseInt(ss[2]) : 0;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(path);
+            }
+            if (field <= 0 || ss.length > 1 && component <= 0
+                    || ss.length > 2 && subcomponent <= 0)
+                throw new IllegalArgumentException(path);
+            this.vr = vr;
+            this.xcn = xcn;
+            this.tagPath = tagPath.clone();
+        }
+    }
+
+    /**
+     * Returns a new mapping of ORM^O01 messages to Modality Worklist Items
+     * according to IHE Radiology Scheduled Workflow, which may be extended
+     * by further rules.
+     */
+    public static HL7AttributesMapper getORMToMWL() {
+        return new HL7AttributesMapper()
+            .add("PID-3.1", VR.LO, Tag.PatientID)
+            .add("PID-3.4.1", VR.LO, Tag.IssuerOfPatientID)
+            .add("PID-5", VR.PN, Tag.PatientName)
+            .add("PID-7", VR.DA, Tag.PatientBirthDate)
+            .add("PID-8", VR.CS, Tag.PatientSex)
+            .addXCN("PV1-8", Tag.ReferringPhysicianName)
+            .add("ORC-2.1", VR.LO, Tag.PlacerOrderNumberImagingServiceRequest)
+            .add("OBR-2.1", VR.LO, Tag.PlacerOrderNumberImagingServiceRequest)
+            .add("ORC-3.1", VR.LO, Tag.FillerOrderNumberImagingServiceRequest)
+            .add("OBR-3.1", VR.LO, Tag.FillerOrderNumberImagingServiceRequest)
+            .add("OBR-18", VR.SH, Tag.AccessionNumber)
+            .add("OBR-19", VR.SH, Tag.RequestedProcedureID)
+            .add("OBR-4.2", VR.LO, Tag.RequestedProcedureDescription)
+            .add("OBR-4.1", VR.SH,
+                    Tag.RequestedProcedureCodeSequence, Tag.CodeValue)
+            .add("OBR-4.3", VR.SH,
+                    Tag.RequestedProcedureCodeSequence, Tag.CodingSchemeDesignator)
+            .add("OBR-4.2", VR.LO,
+                    Tag.RequestedProcedureCodeSequence, Tag.CodeMeaning)
+            .addXCN("OBR-16", Tag.RequestingPhysician)
+            .add("OBR-31.2", VR.LO, Tag.ReasonForTheRequestedProcedure)
+            .add("OBR-31.1", VR.LO, Tag.ReasonForTheRequestedProcedure)
+            .add("ZDS-1.1", VR.UI, Tag.StudyInstanceUID)
+            .add("OBR-20", VR.SH,
+                    Tag.ScheduledProcedureStepSequence, Tag.ScheduledProcedureStepID)
+            .add("OBR-24", VR.CS,
+                    Tag.ScheduledProcedureStepSequence, Tag.Modality)
+            .add("OBR-4.2", VR.LO,
+                    Tag.ScheduledProcedureStepSequence, Tag.ScheduledProcedureStepDescription)
+            .add("ORC-7.4", VR.DA,
+                    Tag.ScheduledProcedureStepSequence, Tag.ScheduledProcedureStepStartDate)
+            .add("OBR-27.4", VR.DA,
+                    Tag.ScheduledProcedureStepSequence, Tag.ScheduledProcedureStepStartDate)
+            .add("ORC-7.4", VR.TM,
+                    Tag.ScheduledProcedureStepSequence, Tag.ScheduledProcedureStepStartTime)
+            .add("OBR-27.4", VR.TM,
+                    Tag.ScheduledProcedureStepSequence, Tag.ScheduledProcedureStepStartTime)
+            .addXCN("OBR-34",
+                    Tag.ScheduledProcedureStepSequence, Tag.ScheduledPerformingPhysicianName);
+    }
+
+    /**
+     * Adds a rule mapping the specified field to the attribute specified by
+     * {@code tagPath}, where all but the last tag refer to the first item of
+     * sequences. Time stamps are converted to dates for {@code VR.DA}, and to
+     * times for {@code VR.TM}. For {@code VR.PN}, a whole field is converted
+     * from Extended Person Name (XPN).
+     */
+    public HL7AttributesMapper add(String field, VR vr, int... tagPath) {
+        rules.add(new Rule(field, vr, false, tagPath));
+        return this;
+    }
+
+    /**
+     * Adds a rule mapping the specified Extended Composite ID Number and Name
+     * (XCN) field to the Person Name attribute specified by {@code tagPath}.
+     */
+    public HL7AttributesMapper addXCN(String field, int... tagPath) {
+        rules.add(new Rule(field, VR.PN, true, tagPath));
+        return this;
+    }
+
+    public Attributes map(HL7MessageView msg) {
+        return map(msg, new Attributes());
+    }
+
+    /**
+     * Adds the mapped attributes of the specified message to {@code attrs}.
+     * Attributes which already contain a value are not overwritten.
+     */
+    public Attributes map(HL7MessageView msg, Attributes attrs) {
+        String cs = HL7Charset.toDicomCharacterSetCode(msg.getField(0, 17, null));
+        if (cs != null && !attrs.containsValue(Tag.SpecificCharacterSet))
+            attrs.setString(Tag.SpecificCharacterSet, VR.CS, cs);
+
+        String delimiters = msg.getFieldSeparator() + msg.getEncodingCharacters();
+        for (Rule rule : rules) {
+            int seg = msg.indexOf(rule.segment);
+            if (seg < 0)
+                continue;
+
+            String value = msg.getField(seg, seg == 0 ? rule.field - 1 : rule.field, null);
+            if (value == null)
+                continue;
+
+            value = convert(rule, firstRepetition(value, delimiters), delimiters);
+            if (value == null || value.isEmpty())
+                continue;
+
+            Attributes item = attrs;
+            int last = rule.tagPath.length - 1;
+            for (int i = 0; i < last; i++)
+                item = firstItem(item, rule.tagPath[i]);
+            if (!item.containsValue(rule.tagPath[last]))
+                item.setString(rule.tagPath[last], rule.vr, value);
+        }
+        return attrs;
+    }
+
+    private static Attributes firstItem(Attributes attrs, int seqTag) {
+        Sequence seq = attrs.getSequence(seqTag);
+        if (seq == null)
+            seq = attrs.newSequence(seqTag, 1);
+        if (seq.isEmpty())
+            seq.add(new Attributes());
+        return seq.get(0);
+    }
+
+    private static String firstRepetition(String value, String delimiters) {
+        int end = value.indexOf(delimiters.charAt(2));
+        return end < 0 ? value : value.substring(0, end);
+    }
+
+    private static String convert(Rule rule, String value, String delimiters) {
+        if (rule.component > 0) {
+            value = part(value, delimiters.charAt(1), rule.component);
+            if (rule.subcomponent > 0)
+                value = part(value, delimiters.charAt(4), rule.subcomponent);
+        } else if (rule.vr == VR.PN) {
+            return toPersonName(value, delimiters, rule.xcn ? 1 : 0);
+        }
+        value = unescape(value, delimiters);
+        switch (rule.vr) {
+        case DA:
+            return value.length() > 8 ? value.substring(0, 8) : value;
+        case TM:
+            return value.length() > 8 ? toTime(value.substring(8)) : null;
+        default:
+            return value;
+        }
+    }
+
+    private static String toTime(String s) {
+        int end = 0;
+        while (end < s.length()
+                && (Character.isDigit(s.charAt(end)) || s.charAt(end) == '.'))
+            end++;
+        return s.substring(0, end);
+    }
+
+    private static String part(String value, char delim, int index) {
+        int start = 0;
+        for (int i = 1; i < index; i++) {
+            start = value.indexOf(delim, start) + 1;
+            if (start == 0)
+                return "";
+        }
+        int end = value.indexOf(delim, start);
+        return end < 0 ? value.substring(start) : value.substring(start, end);
+    }
+
+    /**
+     * Converts family name, given name, middle name, suffix and prefix of a
+     * XPN field, or of a XCN field following the ID number, to DICOM order.
+     */
+    private static String toPersonName(String value, String delimiters,
+            int offset) {
+        String[] pn = new String[5];
+        int n = 0;
+        for (int i = 0; i < 5; i++) {
+            String s = part(value, delimiters.charAt(1), offset + i + 1);
+            if (i == 0)
+                s = part(s, delimiters.charAt(4), 1);
+            s = unescape(s, delimiters);
+            pn[i < 3 ? i : 7 - i] = s;
+            if (!s.isEmpty())
+                n = Math.max(n, i < 3 ? i + 1 : 8 - i);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0)
+                sb.append('^');
+            sb.append(pn[i]);
+        }
+        return sb.toString();
+    }
+
+    private static String unescape(String value, String delimiters) {
+        char escape = delimiters.charAt(3);
+        int start = value.indexOf(escape);
+        if (start < 0)
+            return value;
+
+        StringBuilder sb = new StringBuilder(value.length());
+        int pos = 0;
+        while (start >= 0) {
+            int end = value.indexOf(escape, start + 1);
+            if (end < 0)
+                break;
+
+            sb.append(value, pos, start);
+            String seq = value.substring(start + 1, end);
+            int index = seq.length() == 1 ? "FSRET".indexOf(seq.charAt(0)) : -1;
+            if (index >= 0)
+                sb.append(delimiters.charAt(index));
+            pos = end + 1;
+            start = value.indexOf(escape, pos);
+        }
+        return sb.append(value, pos, value.length()).toString();
+    }
+}
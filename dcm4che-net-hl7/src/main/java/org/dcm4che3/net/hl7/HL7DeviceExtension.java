@@ -61,6 +61,8 @@ public class HL7DeviceExtension extends DeviceExtension {
 
     private static final long serialVersionUID = -411853996726542266L;
 
+    public static final int DEFAULT_MAX_PIPELINED_MESSAGES = 16;
+
     static {
         Connection.registerTCPProtocolHandler(
                 Connection.Protocol.HL7, HL7ProtocolHandler.INSTANCE);
@@ -71,7 +73,8 @@ public class HL7DeviceExtension extends DeviceExtension {
     private Map<String, HL7Application> hl7apps = new TreeMap<String, HL7Application>();
 
     private transient HL7MessageListener hl7MessageListener;
-
+    private transient boolean nonBlockingMLLP;
+    private transient int maxPipelinedMessages = DEFAULT_MAX_PIPELINED_MESSAGES;
 
     public Map<String, HL7Application> getHl7apps() {
         return hl7apps;
@@ -137,6 +140,36 @@ public class HL7DeviceExtension extends DeviceExtension {
         this.hl7MessageListener = listener;
     }
 
+    public final boolean isNonBlockingMLLP() {
+        return nonBlockingMLLP;
+    }
+
+    /**
+     * Serve MLLP connections bound after this call by one selector thread,
+     * instead of by one thread per connection, and process received
+     * messages by the executor of the device. Not supported with TLS.
+     */
+    public final void setNonBlockingMLLP(boolean nonBlockingMLLP) {
+        this.nonBlockingMLLP = nonBlockingMLLP;
+    }
+
+    public final int getMaxPipelinedMessages() {
+        return maxPipelinedMessages;
+    }
+
+    /**
+     * Limit the number of messages per non-blocking MLLP connection which
+     * are received but not yet acknowledged. Further messages are not read
+     * from the connection until the pending acknowledgments were sent, in
+     * the order of the received messages.
+     */
+    public final void setMaxPipelinedMessages(int maxPipelinedMessages) {
+        if (maxPipelinedMessages < 1)
+            throw new IllegalArgumentException("maxPipelinedMessages: "
+                    + maxPipelinedMessages);
+        this.maxPipelinedMessages = maxPipelinedMessages;
+    }
+
     byte[] onMessage(HL7Segment msh, byte[] msg, int off, int len, int mshlen,
             Connection conn, Socket s) throws HL7Exception {
         HL7Application hl7App = getHL7Application(msh.getReceivingApplicationWithFacility());
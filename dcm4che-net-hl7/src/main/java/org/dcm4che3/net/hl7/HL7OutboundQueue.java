@@ -0,0 +1,691 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.hl7;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import org.dcm4che3.hl7.HL7MessageView;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent store-and-forward queue of outbound HL7 messages.
+ * 
+ * Messages are appended to segment files in a directory, which are forced
+ * to disk before a message is sent; concurrently enqueued messages share
+ * one force. Messages are partitioned by destination and by PID-3 of the
+ * message: messages of one partition are sent in the order they were
+ * enqueued, while up to {@link #getMaxParallelDrains()} partitions are
+ * drained concurrently. A message which was not acknowledged by AA or CA is
+ * sent again after an exponentially increasing delay, blocking subsequent
+ * messages of its partition.
+ * 
+ * Acknowledgments are also recorded in the segment files, so
+ * {@link #open()} only replays messages which were not acknowledged.
+ * Acknowledgment records are not forced to disk individually, but together
+ * with the next enqueued message, on rotation of the segment file and by
+ * {@link #close()}. Therefore delivery is at-least-once: after a crash,
+ * messages whose acknowledgment was not yet on disk are sent again.
+ * Segment files are deleted as soon as all messages in it and in all
+ * preceding segments are acknowledged.
+ * 
+ * @author agent <agent@local>
+ */
+public class HL7OutboundQueue {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HL7OutboundQueue.class);
+
+    public static final long DEFAULT_MAX_SEGMENT_SIZE = 64L << 20;
+    public static final int DEFAULT_MAX_PARALLEL_DRAINS = 4;
+    public static final long DEFAULT_INITIAL_RETRY_DELAY = 1000L;
+    public static final long DEFAULT_MAX_RETRY_DELAY = 300000L;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final byte ENQUEUE = 1;
+    private static final byte ACK = 2;
+    private static final int HEADER_LENGTH = 8;
+
+    /**
+     * Sends a message to a destination.
+     */
+    public interface Sender {
+
+        /**
+         * @return the acknowledgment message
+         */
+        byte[] send(String destination, byte[] msg) throws Exception;
+    }
+
+    private final File dir;
+    private final Sender sender;
+    private final TreeMap<Long, Segment> segments = new TreeMap<Long, Segment>();
+    private final HashMap<String, Partition> partitions = new HashMap<String, Partition>();
+    private final ArrayDeque<Partition> ready = new ArrayDeque<Partition>();
+    private final Object syncLock = new Object();
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong acknowledged = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong forces = new AtomicLong();
+    private long maxSegmentSize = DEFAULT_MAX_SEGMENT_SIZE;
+    private int maxParallelDrains = DEFAULT_MAX_PARALLEL_DRAINS;
+    private long initialRetryDelay = DEFAULT_INITIAL_RETRY_DELAY;
+    private long maxRetryDelay = DEFAULT_MAX_RETRY_DELAY;
+    private int maxRetries = -1;
+    private Executor executor;
+    private ScheduledExecutorService scheduler;
+    private Segment current;
+    private long nextId = 1;
+    private int pending;
+    private int activeDrains;
+    private boolean opened;
+    private boolean closed;
+
+    private static final class Segment {
+        final long seq;
+        final File file;
+        final RandomAccessFile raf;
+        final FileChannel ch;
+        volatile long size;
+        int live;
+        volatile long synced;
+
+        Segment(File dir, long seq) throws IOException {
+            this.seq = seq;
+            this.file = new File(dir, String.format("%016x", seq) + SEGMENT_SUFFIX);
+            this.raf = new RandomAccessFile(file, "rw");
+            this.ch = raf.getChannel();
+        }
+
+        void close() {
+            try {
+                raf.close();
+            } catch (IOException ignore) {}
+        }
+
+        @Override
+        public String toString() {
+            return file.getName();
+        }
+    }
+
+    private static final class Entry {
+        final long id;
+        final String destination;
+        final Segment segment;
+        final long msgPos;
+        final int msgLen;
+        int attempts;
+
+        Entry(long id, String destination, Segment segment, long msgPos, int msgLen) {
+            this.id = id;
+            this.destination = destination;
+            this.segment = segment;
+            this.msgPos = msgPos;
+            this.msgLen = msgLen;
+        }
+    }
+
+    private static final class Partition {
+        final String key;
+        final ArrayDeque<Entry> entries = new ArrayDeque<Entry>();
+        boolean queued;
+        boolean active;
+        boolean delayed;
+
+        Partition(String key) {
+            this.key = key;
+        }
+    }
+
+    private final Runnable drain = new Runnable() {
+
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    public HL7OutboundQueue(File dir, Sender sender) {
+        if (sender == null)
+            throw new NullPointerException("sender");
+        this.dir = dir;
+        this.sender = sender;
+    }
+
+    public final File getDirectory() {
+        return dir;
+    }
+
+    public final long getMaxSegmentSize() {
+        return maxSegmentSize;
+    }
+
+    public final void setMaxSegmentSize(long maxSegmentSize) {
+        if (maxSegmentSize <= 0)
+            throw new IllegalArgumentException("maxSegmentSize: " + maxSegmentSize);
+        this.maxSegmentSize = maxSegmentSize;
+    }
+
+    public final int getMaxParallelDrains() {
+        return maxParallelDrains;
+    }
+
+    public final void setMaxParallelDrains(int maxParallelDrains) {
+        if (maxParallelDrains < 1)
+            throw new IllegalArgumentException("maxParallelDrains: " + maxParallelDrains);
+        this.maxParallelDrains = maxParallelDrains;
+    }
+
+    public final long getInitialRetryDelay() {
+        return initialRetryDelay;
+    }
+
+    public final long getMaxRetryDelay() {
+        return maxRetryDelay;
+    }
+
+    /**
+     * Set the delay in ms before a message is sent again after the first
+     * failure; the delay is doubled with each further failure up to
+     * {@code maxRetryDelay}.
+     */
+    public final void setRetryDelay(long initialRetryDelay, long maxRetryDelay) {
+        if (initialRetryDelay <= 0)
+            throw new IllegalArgumentException("initialRetryDelay: " + initialRetryDelay);
+        if (maxRetryDelay < initialRetryDelay)
+            throw new IllegalArgumentException("maxRetryDelay: " + maxRetryDelay);
+        this.initialRetryDelay = initialRetryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    public final int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Limit the number of retries after which a message is discarded;
+     * {@code -1} retries infinitely.
+     */
+    public final void setMaxRetries(int maxRetries) {
+        if (maxRetries < -1)
+            throw new IllegalArgumentException("maxRetries: " + maxRetries);
+        this.maxRetries = maxRetries;
+    }
+
+    public long getEnqueued() {
+        return enqueued.get();
+    }
+
+    public long getAcknowledged() {
+        return acknowledged.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    public long getDiscarded() {
+        return discarded.get();
+    }
+
+    /**
+     * Returns the number of forces of segment files to disk, which may be
+     * less than the number of enqueued messages.
+     */
+    public long getForces() {
+        return forces.get();
+    }
+
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Reads existing segment files and queues all messages which were not
+     * acknowledged. The messages are only sent after {@link #start}.
+     */
+    public synchronized void open() throws IOException {
+        if (opened)
+            throw new IllegalStateException("Already opened");
+
+        dir.mkdirs();
+        if (!dir.isDirectory())
+            throw new IOException("Not a directory: " + dir);
+
+        String[] names = dir.list(new FilenameFilter() {
+
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        Arrays.sort(names);
+        LinkedHashMap<Long, Entry> unacked = new LinkedHashMap<Long, Entry>();
+        long seq = 0;
+        for (String name : names) {
+            try {
+                seq = Long.parseLong(
+                        name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16);
+            } catch (NumberFormatException e) {
+                LOG.warn("{}: ignore {}", this, name);
+                continue;
+            }
+            Segment seg = new Segment(dir, seq);
+            segments.put(seq, seg);
+            replay(seg, unacked);
+        }
+        for (Entry entry : unacked.values()) {
+            entry.segment.live++;
+            addToPartition(entry);
+        }
+        pending = unacked.size();
+        current = new Segment(dir, seq + 1);
+        segments.put(current.seq, current);
+        deleteAcknowledgedSegments();
+        opened = true;
+        LOG.info("{}: {} unacknowledged messages in {} segments", this,
+                pending, segments.size() - 1);
+    }
+
+    private void replay(Segment seg, Map<Long, Entry> unacked) throws IOException {
+        long size = seg.ch.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        CRC32 crc = new CRC32();
+        long pos = 0;
+        while (pos + HEADER_LENGTH <= size) {
+            header.clear();
+            readFully(seg.ch, header, pos);
+            header.flip();
+            int len = header.getInt();
+            int checksum = header.getInt();
+            if (len < 9 || pos + HEADER_LENGTH + len > size)
+                break;
+
+            ByteBuffer rec = ByteBuffer.allocate(len);
+            readFully(seg.ch, rec, pos + HEADER_LENGTH);
+            crc.reset();
+            crc.update(rec.array(), 0, len);
+            if ((int) crc.getValue() != checksum)
+                break;
+
+            rec.flip();
+            byte type = rec.get();
+            long id = rec.getLong();
+            nextId = Math.max(nextId, id + 1);
+            if (type == ENQUEUE) {
+                String destination = getString(rec);
+                int msgLen = rec.getInt();
+                unacked.put(id, new Entry(id, destination, seg,
+                        pos + HEADER_LENGTH + rec.position(), msgLen));
+            } else {
+                unacked.remove(id);
+            }
+            pos += HEADER_LENGTH + len;
+        }
+        if (pos < size) {
+            LOG.warn("{}: truncate incomplete record at {} of {}", this, pos, seg);
+            seg.ch.truncate(pos);
+        }
+        seg.size = seg.synced = pos;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer dst, long pos)
+            throws IOException {
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, pos);
+            if (n < 0)
+                throw new IOException("Unexpected end of file");
+            pos += n;
+        }
+    }
+
+    private static String getString(ByteBuffer rec) {
+        byte[] b = new byte[rec.getShort() & 0xffff];
+        rec.get(b);
+        try {
+            return new String(b, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static byte[] toBytes(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Start sending queued messages using the specified executor, and
+     * schedule retries of failed messages by the specified scheduler.
+     */
+    public synchronized void start(Executor executor,
+            ScheduledExecutorService scheduler) {
+        if (executor == null)
+            throw new NullPointerException("executor");
+        if (scheduler == null)
+            throw new NullPointerException("scheduler");
+        if (!opened)
+            throw new IllegalStateException("Not opened");
+        if (this.executor != null)
+            throw new IllegalStateException("Already started");
+
+        this.executor = executor;
+        this.scheduler = scheduler;
+        for (Partition partition : partitions.values())
+            schedule(partition);
+    }
+
+    /**
+     * Stops sending messages, forces recorded acknowledgments to disk and
+     * closes all segment files. Messages which are sent concurrently are
+     * replayed by the next {@link #open()}.
+     */
+    public synchronized void close() {
+        closed = true;
+        ready.clear();
+        if (current != null) {
+            try {
+                forceCurrent();
+            } catch (IOException e) {
+                LOG.warn("{}: failed to force {} to disk:", this, current, e);
+            }
+        }
+        for (Segment seg : segments.values())
+            seg.close();
+        segments.clear();
+    }
+
+    /**
+     * Appends the message to the queue, and returns after it was forced to
+     * disk.
+     * 
+     * @return the id of the queued message
+     */
+    public long enqueue(String destination, byte[] msg) throws IOException {
+        String pid = new HL7MessageView(msg, null).getField("PID", 3, "");
+        Entry entry;
+        synchronized (this) {
+            checkOpen();
+            byte[] dest = toBytes(destination);
+            ByteBuffer rec = ByteBuffer.allocate(
+                    HEADER_LENGTH + 1 + 8 + 2 + dest.length + 4 + msg.length);
+            rec.position(HEADER_LENGTH);
+            rec.put(ENQUEUE).putLong(nextId)
+                    .putShort((short) dest.length).put(dest)
+                    .putInt(msg.length);
+            long msgOffset = rec.position();
+            rec.put(msg);
+            if (current.size > 0 && current.size + rec.capacity() > maxSegmentSize)
+                rotate();
+            long pos = append(rec);
+            entry = new Entry(nextId++, destination, current,
+                    pos + msgOffset, msg.length);
+            current.live++;
+            pending++;
+            addToPartition(entry, pid);
+        }
+        enqueued.incrementAndGet();
+        force(entry);
+        return entry.id;
+    }
+
+    private void checkOpen() {
+        if (!opened || closed)
+            throw new IllegalStateException(closed ? "Closed" : "Not opened");
+    }
+
+    private long append(ByteBuffer rec) throws IOException {
+        int len = rec.capacity() - HEADER_LENGTH;
+        CRC32 crc = new CRC32();
+        crc.update(rec.array(), HEADER_LENGTH, len);
+        rec.putInt(0, len);
+        rec.putInt(4, (int) crc.getValue());
+        rec.clear();
+        long pos = current.size;
+        while (rec.hasRemaining())
+            current.ch.write(rec, pos + rec.position());
+        current.size = pos + rec.capacity();
+        return pos;
+    }
+
+    private void rotate() throws IOException {
+        forceCurrent();
+        current = new Segment(dir, current.seq + 1);
+        segments.put(current.seq, current);
+        deleteAcknowledgedSegments();
+    }
+
+    private void forceCurrent() throws IOException {
+        synchronized (syncLock) {
+            if (current.synced < current.size) {
+                current.ch.force(false);
+                forces.incrementAndGet();
+                current.synced = current.size;
+            }
+        }
+    }
+
+    private void force(Entry entry) throws IOException {
+        Segment seg = entry.segment;
+        long end = entry.msgPos + entry.msgLen;
+        if (seg.synced >= end)
+            return;
+
+        synchronized (syncLock) {
+            if (seg.synced >= end)
+                return;
+
+            long size = seg.size;
+            seg.ch.force(false);
+            forces.incrementAndGet();
+            seg.synced = size;
+        }
+    }
+
+    private void addToPartition(Entry entry) throws IOException {
+        ByteBuffer msg = ByteBuffer.allocate(entry.msgLen);
+        readFully(entry.segment.ch, msg, entry.msgPos);
+        addToPartition(entry,
+                new HL7MessageView(msg.array(), null).getField("PID", 3, ""));
+    }
+
+    private void addToPartition(Entry entry, String pid) {
+        String key = entry.destination + '|' + pid;
+        Partition partition = partitions.get(key);
+        if (partition == null)
+            partitions.put(key, partition = new Partition(key));
+        partition.entries.add(entry);
+        schedule(partition);
+    }
+
+    private void schedule(Partition partition) {
+        if (executor == null || closed || partition.queued || partition.active
+                || partition.delayed || partition.entries.isEmpty())
+            return;
+
+        partition.queued = true;
+        ready.add(partition);
+        if (activeDrains < maxParallelDrains) {
+            activeDrains++;
+            executor.execute(drain);
+        }
+    }
+
+    private void drain() {
+        for (;;) {
+            Partition partition;
+            Entry entry;
+            synchronized (this) {
+                partition = ready.poll();
+                if (partition == null || closed) {
+                    activeDrains--;
+                    return;
+                }
+                partition.queued = false;
+                partition.active = true;
+                entry = partition.entries.peek();
+            }
+            boolean success = send(entry);
+            synchronized (this) {
+                partition.active = false;
+                if (closed)
+                    continue;
+
+                if (success || maxRetries >= 0 && entry.attempts > maxRetries) {
+                    if (!success) {
+                        discarded.incrementAndGet();
+                        LOG.error("{}: discard message #{} to {} after {} attempts",
+                                this, entry.id, entry.destination, entry.attempts);
+                    }
+                    partition.entries.poll();
+                    if (partition.entries.isEmpty())
+                        partitions.remove(partition.key);
+                    acknowledge(entry);
+                    schedule(partition);
+                } else {
+                    retry(partition, entry);
+                }
+            }
+        }
+    }
+
+    private boolean send(Entry entry) {
+        entry.attempts++;
+        try {
+            force(entry);
+            ByteBuffer msg = ByteBuffer.allocate(entry.msgLen);
+            readFully(entry.segment.ch, msg, entry.msgPos);
+            byte[] rsp = sender.send(entry.destination, msg.array());
+            String ackCode = new HL7MessageView(rsp, null).getField("MSA", 1, null);
+            if ("AA".equals(ackCode) || "CA".equals(ackCode))
+                return true;
+
+            LOG.info("{}: message #{} to {} not accepted - MSA-1: {}",
+                    this, entry.id, entry.destination, ackCode);
+        } catch (Exception e) {
+            LOG.info("{}: failed to send message #{} to {} - {}",
+                    this, entry.id, entry.destination, e.toString());
+            LOG.debug("Exception:", e);
+        }
+        return false;
+    }
+
+    private void retry(final Partition partition, Entry entry) {
+        retries.incrementAndGet();
+        long delay = initialRetryDelay << Math.min(entry.attempts - 1, 30);
+        if (delay <= 0 || delay > maxRetryDelay)
+            delay = maxRetryDelay;
+        partition.delayed = true;
+        scheduler.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (HL7OutboundQueue.this) {
+                    partition.delayed = false;
+                    schedule(partition);
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void acknowledge(Entry entry) {
+        acknowledged.incrementAndGet();
+        pending--;
+        entry.segment.live--;
+        ByteBuffer rec = ByteBuffer.allocate(HEADER_LENGTH + 1 + 8);
+        rec.position(HEADER_LENGTH);
+        rec.put(ACK).putLong(entry.id);
+        try {
+            if (current.size > 0 && current.size + rec.capacity() > maxSegmentSize)
+                rotate();
+            append(rec);
+            deleteAcknowledgedSegments();
+        } catch (IOException e) {
+            LOG.warn("{}: failed to record acknowledgment of message #{}:",
+                    this, entry.id, e);
+        }
+    }
+
+    private void deleteAcknowledgedSegments() {
+        Iterator<Segment> iter = segments.values().iterator();
+        while (iter.hasNext()) {
+            Segment seg = iter.next();
+            if (seg == current || seg.live > 0)
+                return;
+
+            iter.remove();
+            seg.close();
+            if (seg.file.delete())
+                LOG.debug("{}: deleted {}", this, seg);
+            else
+                LOG.warn("{}: failed to delete {}", this, seg);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HL7OutboundQueue[" + dir + "]";
+    }
+}
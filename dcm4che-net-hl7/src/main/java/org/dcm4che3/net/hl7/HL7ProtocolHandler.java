@@ -40,6 +40,7 @@ package org.dcm4che3.net.hl7;
 
 import java.io.IOException;
 import java.net.Socket;
+import java.security.GeneralSecurityException;
 import java.text.ParsePosition;
 
 import org.dcm4che3.hl7.HL7Exception;
@@ -47,32 +48,52 @@ import org.dcm4che3.hl7.HL7Message;
 import org.dcm4che3.hl7.HL7Segment;
 import org.dcm4che3.hl7.MLLPConnection;
 import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Listener;
+import org.dcm4che3.net.TCPListenerFactory;
 import org.dcm4che3.net.TCPProtocolHandler;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
  *
  */
-enum HL7ProtocolHandler implements TCPProtocolHandler {
+enum HL7ProtocolHandler implements TCPProtocolHandler, TCPListenerFactory {
     INSTANCE;
 
+    @Override
+    public Listener createListener(Connection conn)
+            throws IOException, GeneralSecurityException {
+        HL7DeviceExtension hl7Ext =
+                conn.getDevice().getDeviceExtension(HL7DeviceExtension.class);
+        if (hl7Ext == null || !hl7Ext.isNonBlockingMLLP())
+            return null;
+
+        if (conn.isTls()) {
+            Connection.LOG.info("Non-blocking MLLP not supported with TLS"
+                    + " - use blocking MLLP listener for {}", conn);
+            return null;
+        }
+        return new MLLPSelectorListener(conn, hl7Ext);
+    }
+
     @Override
     public void onAccept(Connection conn, Socket s) throws IOException {
         s.setSoTimeout(conn.getIdleTimeout());
         MLLPConnection mllp = new MLLPConnection(s);
         byte[] msg;
-        while ((msg = mllp.readMessage()) != null) {
-            ParsePosition pos = new ParsePosition(0);
-            HL7Segment msh = HL7Segment.parseMSH(msg, msg.length, pos);
-            try {
-                msg = conn.getDevice().getDeviceExtension(HL7DeviceExtension.class)
-                        .onMessage(msh, msg, 0, msg.length, pos.getIndex(), conn, s);
-            } catch (HL7Exception e) {
-                msg = HL7Message.makeACK(msh, e.getAcknowledgmentCode(), e.getErrorMessage())
-                        .getBytes(null);
-            }
-            mllp.writeMessage(msg);
-        }
+        while ((msg = mllp.readMessage()) != null)
+            mllp.writeMessage(onMessage(conn, s, msg));
         conn.close(s);
     }
+
+    static byte[] onMessage(Connection conn, Socket s, byte[] msg) {
+        ParsePosition pos = new ParsePosition(0);
+        HL7Segment msh = HL7Segment.parseMSH(msg, msg.length, pos);
+        try {
+            return conn.getDevice().getDeviceExtension(HL7DeviceExtension.class)
+                    .onMessage(msh, msg, 0, msg.length, pos.getIndex(), conn, s);
+        } catch (HL7Exception e) {
+            return HL7Message.makeACK(msh, e.getAcknowledgmentCode(), e.getErrorMessage())
+                    .getBytes(null);
+        }
+    }
 }
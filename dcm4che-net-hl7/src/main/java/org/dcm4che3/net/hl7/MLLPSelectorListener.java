@@ -0,0 +1,404 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.hl7;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.dcm4che3.hl7.MLLPDecoder;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.ConnectionMonitor;
+import org.dcm4che3.net.Listener;
+
+/**
+ * Serves all MLLP connections accepted on a network connection by one
+ * selector thread. Received messages are processed by the executor of the
+ * device, while further messages are read from the connection, up to
+ * {@link HL7DeviceExtension#getMaxPipelinedMessages()}. Acknowledgments are
+ * sent in the order of the received messages.
+ * 
+ * @author agent <agent@local>
+ */
+class MLLPSelectorListener implements Listener {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_IDLE_BUFFERS = 64;
+
+    private final Connection conn;
+    private final HL7DeviceExtension hl7Ext;
+    private final ServerSocketChannel ssc;
+    private final Selector selector;
+    private final ArrayDeque<ByteBuffer> idleBuffers = new ArrayDeque<ByteBuffer>();
+    private final ConcurrentLinkedQueue<Client> completed =
+            new ConcurrentLinkedQueue<Client>();
+    private volatile boolean closed;
+
+    public MLLPSelectorListener(Connection conn, HL7DeviceExtension hl7Ext)
+            throws IOException {
+        this.conn = conn;
+        this.hl7Ext = hl7Ext;
+        ServerSocketChannel ssc = null;
+        Selector selector = null;
+        try {
+            ssc = ServerSocketChannel.open();
+            selector = Selector.open();
+            conn.setReceiveBufferSize(ssc.socket());
+            ssc.socket().bind(conn.getBindPoint(), conn.getBacklog());
+            ssc.configureBlocking(false);
+            ssc.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            closeQuietly(ssc);
+            closeQuietly(selector);
+            throw new IOException("Unable to start MLLPSelectorListener on "
+                    + conn.getHostname() + ":" + conn.getPort(), e);
+        }
+        this.ssc = ssc;
+        this.selector = selector;
+        conn.getDevice().execute(new Runnable() {
+
+            @Override
+            public void run() { listen(); }
+        });
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c != null)
+            try {
+                c.close();
+            } catch (IOException ignore) {}
+    }
+
+    private static void closeQuietly(Selector selector) {
+        if (selector != null)
+            try {
+                selector.close();
+            } catch (IOException ignore) {}
+    }
+
+    private void listen() {
+        SocketAddress sockAddr = getEndPoint();
+        Connection.LOG.info("Start MLLP Selector Listener on {}", sockAddr);
+        try {
+            while (!closed) {
+                int idleTimeout = conn.getIdleTimeout();
+                selector.select(idleTimeout > 0 ? idleTimeout : 0);
+                Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+                while (iter.hasNext()) {
+                    SelectionKey key = iter.next();
+                    iter.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Client client = (Client) key.attachment();
+                    if (key.isReadable())
+                        client.onReadable();
+                    if (key.isValid() && key.isWritable())
+                        client.flush();
+                }
+                Client client;
+                while ((client = completed.poll()) != null)
+                    client.flush();
+                if (idleTimeout > 0)
+                    closeIdleClients(idleTimeout);
+            }
+        } catch (Throwable e) {
+            if (!closed) // ignore exception caused by close()
+                Connection.LOG.error("Exception on listing on {}:", sockAddr, e);
+        } finally {
+            closeQuietly(ssc);
+            for (SelectionKey key : selector.keys())
+                if (key.attachment() != null)
+                    ((Client) key.attachment()).close();
+            closeQuietly(selector);
+        }
+        Connection.LOG.info("Stop MLLP Selector Listener on {}", sockAddr);
+    }
+
+    private void accept() throws IOException {
+        SocketChannel ch;
+        while ((ch = ssc.accept()) != null) {
+            Socket s = ch.socket();
+            ConnectionMonitor monitor = conn.getDevice().getConnectionMonitor();
+            if (conn.isBlackListed(s.getInetAddress())) {
+                if (monitor != null)
+                    monitor.onConnectionRejectedBlacklisted(conn, s);
+                Connection.LOG.info("Reject blacklisted connection {}", s);
+                conn.close(s);
+                continue;
+            }
+            try {
+                conn.setSocketSendOptions(s);
+                ch.configureBlocking(false);
+                ch.register(selector, SelectionKey.OP_READ, new Client(ch));
+            } catch (Throwable e) {
+                if (monitor != null)
+                    monitor.onConnectionRejected(conn, s, e);
+                Connection.LOG.warn("Reject connection {}:", s, e);
+                conn.close(s);
+                continue;
+            }
+            if (monitor != null)
+                monitor.onConnectionAccepted(conn, s);
+            Connection.LOG.info("Accept connection {}", s);
+        }
+    }
+
+    private void closeIdleClients(int idleTimeout) {
+        long now = System.currentTimeMillis();
+        ArrayList<Client> idle = new ArrayList<Client>();
+        for (SelectionKey key : selector.keys()) {
+            Client client = (Client) key.attachment();
+            if (client != null && client.isIdle(now, idleTimeout))
+                idle.add(client);
+        }
+        for (Client client : idle) {
+            Connection.LOG.info("Idle timeout on connection {} expired",
+                    client.s);
+            client.close();
+        }
+    }
+
+    private ByteBuffer borrowBuffer() {
+        ByteBuffer buf = idleBuffers.poll();
+        return buf != null ? buf : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void releaseBuffer(ByteBuffer buf) {
+        if (buf.isDirect() && buf.capacity() == BUFFER_SIZE
+                && idleBuffers.size() < MAX_IDLE_BUFFERS) {
+            buf.clear();
+            idleBuffers.push(buf);
+        }
+    }
+
+    @Override
+    public SocketAddress getEndPoint() {
+        return ssc.socket().getLocalSocketAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        closeQuietly(ssc);
+        selector.wakeup();
+    }
+
+    /**
+     * Processes one received message by the executor of the device and
+     * notifies the selector thread on completion.
+     */
+    private final class Response extends FutureTask<byte[]> {
+
+        private final Client client;
+
+        Response(final Client client, final byte[] msg) {
+            super(new Callable<byte[]>() {
+
+                @Override
+                public byte[] call() throws Exception {
+                    return HL7ProtocolHandler.onMessage(conn, client.s, msg);
+                }
+            });
+            this.client = client;
+        }
+
+        @Override
+        protected void done() {
+            completed.offer(client);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * State of one accepted connection, only accessed by the selector thread.
+     */
+    private final class Client {
+
+        final SocketChannel ch;
+        final Socket s;
+        final MLLPDecoder decoder = new MLLPDecoder();
+        final ArrayDeque<Response> pending = new ArrayDeque<Response>();
+        ByteBuffer in;
+        ByteBuffer out;
+        boolean eof;
+        boolean closed;
+        long lastActivity = System.currentTimeMillis();
+
+        Client(SocketChannel ch) {
+            this.ch = ch;
+            this.s = ch.socket();
+        }
+
+        boolean isIdle(long now, int idleTimeout) {
+            return pending.isEmpty() && out == null
+                    && now - lastActivity > idleTimeout;
+        }
+
+        void onReadable() {
+            if (in == null)
+                in = borrowBuffer();
+            else
+                in.compact();
+            try {
+                int n = ch.read(in);
+                if (n < 0)
+                    eof = true;
+                else
+                    lastActivity = System.currentTimeMillis();
+            } catch (IOException e) {
+                Connection.LOG.info("Failed to read from connection {}:", s, e);
+                close();
+                return;
+            } finally {
+                in.flip();
+            }
+            flush();
+        }
+
+        void flush() {
+            if (closed)
+                return;
+            try {
+                do {
+                    if (out != null) {
+                        ch.write(out);
+                        if (out.hasRemaining())
+                            break;
+                        releaseBuffer(out);
+                        out = null;
+                        lastActivity = System.currentTimeMillis();
+                    }
+                } while (encodeCompleted());
+                dispatch();
+            } catch (ExecutionException e) {
+                Connection.LOG.warn("Exception on accepted connection {}:",
+                        s, e.getCause());
+                close();
+                return;
+            } catch (Exception e) {
+                Connection.LOG.info("Failed to process connection {}:", s, e);
+                close();
+                return;
+            }
+            if (eof && pending.isEmpty() && out == null) {
+                if (decoder.isPartial())
+                    Connection.LOG.info("Connection {} closed within message", s);
+                close();
+                return;
+            }
+            int ops = out != null ? SelectionKey.OP_WRITE : 0;
+            if (!eof && pending.size() < hl7Ext.getMaxPipelinedMessages())
+                ops |= SelectionKey.OP_READ;
+            ch.keyFor(selector).interestOps(ops);
+        }
+
+        private void dispatch() throws IOException {
+            int maxPipelined = hl7Ext.getMaxPipelinedMessages();
+            byte[] msg;
+            while (in != null && pending.size() < maxPipelined
+                    && (msg = decoder.decode(in)) != null) {
+                Response rsp = new Response(this, msg);
+                pending.add(rsp);
+                conn.getDevice().execute(rsp);
+            }
+            if (in != null && !in.hasRemaining()) {
+                releaseBuffer(in);
+                in = null;
+            }
+        }
+
+        private boolean encodeCompleted()
+                throws InterruptedException, ExecutionException {
+            Response rsp = pending.peek();
+            if (rsp == null || !rsp.isDone())
+                return false;
+
+            out = borrowBuffer();
+            do {
+                byte[] msg = rsp.get();
+                if (!MLLPDecoder.encode(msg, out)) {
+                    if (out.position() > 0)
+                        break;
+                    releaseBuffer(out);
+                    out = MLLPDecoder.encode(msg);
+                    pending.poll();
+                    return true;
+                }
+                pending.poll();
+            } while ((rsp = pending.peek()) != null && rsp.isDone());
+            out.flip();
+            return true;
+        }
+
+        void close() {
+            if (closed)
+                return;
+            closed = true;
+            SelectionKey key = ch.keyFor(selector);
+            if (key != null)
+                key.cancel();
+            for (Response rsp : pending)
+                rsp.cancel(false);
+            pending.clear();
+            if (in != null)
+                releaseBuffer(in);
+            if (out != null)
+                releaseBuffer(out);
+            in = out = null;
+            conn.close(s);
+        }
+    }
+}
@@ -0,0 +1,494 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.hl7;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dcm4che3.hl7.HL7MessageView;
+import org.dcm4che3.hl7.HL7Segment;
+import org.dcm4che3.hl7.MLLPConnection;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.IncompatibleConnectionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends HL7 messages to one remote connection over up to
+ * {@link #getMaxConnections()} kept-alive MLLP connections. On each
+ * connection, up to {@link #getPipelineDepth()} messages are sent without
+ * awaiting their acknowledgments, which are correlated with the sent
+ * messages by their Message Control ID in MSA-2.
+ * 
+ * Failed connections are closed and replaced by new connections on
+ * subsequent sends. A message is only sent again on a new connection if
+ * writing it to a reused connection failed; messages which were written to
+ * a failed connection are reported as failed, because they may have been
+ * received.
+ * 
+ * @author agent <agent@local>
+ */
+public class MLLPSender {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MLLPSender.class);
+
+    private static final Callable<byte[]> NOOP = new Callable<byte[]>() {
+
+        @Override
+        public byte[] call() {
+            return null;
+        }
+    };
+
+    private final HL7Application hl7App;
+    private final Connection local;
+    private final Connection remote;
+    private final int maxConnections;
+    private final int pipelineDepth;
+    private final Semaphore permits;
+    private final ArrayList<Channel> channels = new ArrayList<Channel>();
+    private int connecting;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private volatile boolean closed;
+
+    public MLLPSender(HL7Application hl7App, Connection local, Connection remote,
+            int maxConnections, int pipelineDepth) {
+        if (maxConnections < 1)
+            throw new IllegalArgumentException("maxConnections: " + maxConnections);
+        if (pipelineDepth < 1)
+            throw new IllegalArgumentException("pipelineDepth: " + pipelineDepth);
+        this.hl7App = hl7App;
+        this.local = local;
+        this.remote = remote;
+        this.maxConnections = maxConnections;
+        this.pipelineDepth = pipelineDepth;
+        this.permits = new Semaphore(maxConnections * pipelineDepth, true);
+    }
+
+    public final Connection getLocalConnection() {
+        return local;
+    }
+
+    public final Connection getRemoteConnection() {
+        return remote;
+    }
+
+    public final int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public final int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    public long getMessagesSent() {
+        return sent.get();
+    }
+
+    public long getResponsesReceived() {
+        return received.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public long getReconnects() {
+        return reconnects.get();
+    }
+
+    /**
+     * Returns the average time in ms between sending a message and
+     * receiving its acknowledgment.
+     */
+    public double getAverageLatency() {
+        long n = received.get();
+        return n > 0 ? totalLatency.get() / (n * 1e6) : 0.;
+    }
+
+    /**
+     * Returns the maximal time in ms between sending a message and
+     * receiving its acknowledgment.
+     */
+    public double getMaxLatency() {
+        return maxLatency.get() / 1e6;
+    }
+
+    public synchronized int getOpenConnections() {
+        return channels.size();
+    }
+
+    public int getPendingMessages() {
+        return maxConnections * pipelineDepth - permits.availablePermits();
+    }
+
+    /**
+     * Sends the message and waits for its acknowledgment.
+     * 
+     * @return the acknowledgment message
+     */
+    public byte[] send(byte[] msg) throws IOException, InterruptedException,
+            IncompatibleConnectionException, GeneralSecurityException {
+        Future<byte[]> rsp = sendAsync(msg);
+        try {
+            return rsp.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Sends the message and returns without waiting for its acknowledgment.
+     * Blocks while {@link #getPendingMessages()} messages are not yet
+     * acknowledged on all {@link #getMaxConnections()} connections.
+     * 
+     * @return the future acknowledgment message
+     */
+    public Future<byte[]> sendAsync(byte[] msg) throws IOException,
+            InterruptedException, IncompatibleConnectionException,
+            GeneralSecurityException {
+        String msgControlID = HL7Segment.parseMSH(msg, msg.length).getField(9, null);
+        if (msgControlID == null)
+            throw new IllegalArgumentException("Missing Message Control ID");
+
+        permits.acquire();
+        Response rsp = new Response(msgControlID);
+        try {
+            Channel channel = selectChannel(false);
+            if (!channel.write(msg, rsp)) {
+                reconnects.incrementAndGet();
+                if (!selectChannel(true).write(msg, rsp))
+                    throw new IOException("Failed to send message to " + remote);
+            }
+        } catch (IOException e) {
+            rsp.fail(e);
+            throw e;
+        } catch (RuntimeException e) {
+            rsp.fail(e);
+            throw e;
+        } catch (IncompatibleConnectionException e) {
+            rsp.fail(e);
+            throw e;
+        } catch (GeneralSecurityException e) {
+            rsp.fail(e);
+            throw e;
+        }
+        sent.incrementAndGet();
+        return rsp;
+    }
+
+    private Channel selectChannel(boolean connect)
+            throws IOException, IncompatibleConnectionException,
+            GeneralSecurityException {
+        synchronized (this) {
+            for (;;) {
+                checkNotClosed();
+                Channel best = null;
+                for (int i = channels.size(); --i >= 0;) {
+                    Channel channel = channels.get(i);
+                    if (channel.closed)
+                        channels.remove(i);
+                    else if (best == null || channel.pending() < best.pending())
+                        best = channel;
+                }
+                int opened = channels.size() + connecting;
+                if (best != null && (opened >= maxConnections
+                        || !connect && best.pending() == 0))
+                    return best;
+
+                if (opened < maxConnections)
+                    break;
+
+                // wait for connections opened by other threads
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+            connecting++;
+        }
+        // connect without holding the lock, so other threads may continue
+        // to send messages on already open connections
+        Channel channel = null;
+        try {
+            MLLPConnection mllp = hl7App.connect(local, remote);
+            try {
+                channel = new Channel(mllp);
+            } catch (IOException e) {
+                local.close(mllp.getSocket());
+                throw e;
+            }
+        } finally {
+            synchronized (this) {
+                connecting--;
+                if (channel != null && !closed)
+                    channels.add(channel);
+                notifyAll();
+            }
+        }
+        if (closed) {
+            channel.close();
+            checkNotClosed();
+        }
+        hl7App.getDevice().execute(channel);
+        return channel;
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed)
+            throw new IOException("MLLP Sender to " + remote + " closed");
+    }
+
+    /**
+     * Closes all connections and removes this sender from its
+     * {@link HL7Application}. Pending messages are reported as failed.
+     */
+    public void close() {
+        ArrayList<Channel> tmp;
+        synchronized (this) {
+            closed = true;
+            tmp = new ArrayList<Channel>(channels);
+            channels.clear();
+            notifyAll();
+        }
+        hl7App.removeMLLPSender(this);
+        for (Channel channel : tmp)
+            channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "MLLPSender[" + remote.getHostname() + ":" + remote.getPort()
+                + ", connections=" + getOpenConnections()
+                + ", pending=" + getPendingMessages()
+                + ", sent=" + sent
+                + ", received=" + received
+                + ", failures=" + failures
+                + ", reconnects=" + reconnects
+                + String.format(", avgLatency=%.3fms, maxLatency=%.3fms]",
+                        getAverageLatency(), getMaxLatency());
+    }
+
+    private final class Response extends FutureTask<byte[]> {
+
+        final String msgControlID;
+        long sentTime;
+        private boolean released;
+
+        Response(String msgControlID) {
+            super(NOOP);
+            this.msgControlID = msgControlID;
+        }
+
+        void complete(byte[] rsp) {
+            long latency = System.nanoTime() - sentTime;
+            totalLatency.addAndGet(latency);
+            long max;
+            while (latency > (max = maxLatency.get())
+                    && !maxLatency.compareAndSet(max, latency));
+            received.incrementAndGet();
+            release();
+            set(rsp);
+        }
+
+        void fail(Throwable e) {
+            failures.incrementAndGet();
+            release();
+            setException(e);
+        }
+
+        private synchronized void release() {
+            if (!released) {
+                released = true;
+                permits.release();
+            }
+        }
+    }
+
+    private final class Channel implements Runnable {
+
+        final MLLPConnection mllp;
+        final Socket sock;
+        final ConcurrentHashMap<String, Response> pending =
+                new ConcurrentHashMap<String, Response>();
+        final int idleTimeout = local.getIdleTimeout();
+        final int responseTimeout = local.getResponseTimeout();
+        volatile long lastUsed = System.currentTimeMillis();
+        volatile boolean closed;
+        private boolean used;
+
+        Channel(MLLPConnection mllp) throws IOException {
+            this.mllp = mllp;
+            this.sock = mllp.getSocket();
+            int soTimeout = responseTimeout > 0 ? responseTimeout : idleTimeout;
+            if (idleTimeout > 0)
+                soTimeout = Math.min(soTimeout, idleTimeout);
+            sock.setSoTimeout(soTimeout);
+        }
+
+        int pending() {
+            return pending.size();
+        }
+
+        /**
+         * Returns {@code false}, if the connection was already closed by the
+         * remote application before the message was written.
+         */
+        synchronized boolean write(byte[] msg, Response rsp) throws IOException {
+            rsp.sentTime = System.nanoTime();
+            if (pending.putIfAbsent(rsp.msgControlID, rsp) != null)
+                throw new IllegalArgumentException("Message Control ID "
+                        + rsp.msgControlID + " already pending");
+            boolean reused = used;
+            used = true;
+            lastUsed = System.currentTimeMillis();
+            try {
+                mllp.writeMessage(msg);
+            } catch (IOException e) {
+                pending.remove(rsp.msgControlID);
+                close(e);
+                if (reused && !(e instanceof InterruptedIOException))
+                    return false;
+                throw e;
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (;;) {
+                    byte[] msg;
+                    try {
+                        msg = mllp.readMessage();
+                    } catch (SocketTimeoutException e) {
+                        if (checkTimeout())
+                            continue;
+                        throw e;
+                    }
+                    if (msg == null) {
+                        if (!pending.isEmpty())
+                            throw new EOFException(
+                                    "Connection closed by " + remote);
+                        close();
+                        return;
+                    }
+                    onResponse(msg);
+                }
+            } catch (IOException e) {
+                close(e);
+            } catch (RuntimeException e) {
+                close(e);
+            }
+        }
+
+        private boolean checkTimeout() {
+            if (closed)
+                return false;
+
+            if (pending.isEmpty()) {
+                if (idleTimeout > 0
+                        && System.currentTimeMillis() - lastUsed > idleTimeout) {
+                    LOG.debug("Close idle connection {}", sock);
+                    close();
+                    return false;
+                }
+                return true;
+            }
+            if (responseTimeout <= 0)
+                return true;
+
+            long now = System.nanoTime();
+            for (Response rsp : pending.values())
+                if (now - rsp.sentTime > TimeUnit.MILLISECONDS.toNanos(responseTimeout))
+                    return false;
+            return true;
+        }
+
+        private void onResponse(byte[] msg) {
+            String msgControlID = new HL7MessageView(msg, null).getField("MSA", 2, null);
+            Response rsp = msgControlID != null ? pending.remove(msgControlID) : null;
+            if (rsp == null) {
+                LOG.warn("Discard response from {} with unexpected MSA-2: {}",
+                        sock, msgControlID);
+                return;
+            }
+            lastUsed = System.currentTimeMillis();
+            rsp.complete(msg);
+        }
+
+        void close() {
+            close(new IOException("Connection to " + remote + " closed"));
+        }
+
+        void close(Exception e) {
+            if (!closed) {
+                closed = true;
+                if (!pending.isEmpty())
+                    LOG.info("Failed to receive response on {}:", sock, e);
+                local.close(sock);
+            }
+            for (Response rsp : pending.values())
+                if (pending.remove(rsp.msgControlID) != null)
+                    rsp.fail(e);
+        }
+    }
+}
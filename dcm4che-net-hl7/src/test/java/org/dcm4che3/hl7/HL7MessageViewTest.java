@@ -0,0 +1,115 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.hl7;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class HL7MessageViewTest {
+
+    private static final String MSG =
+            "MSH|^~\\&|SND|F|RCV|F|20150101||ADT^A08^ADT_A01|MSG1|P|2.5\r"
+            + "EVN||20150101\r\n"
+            + "PID|1||123^^^HOSP||Doe^John|\n"
+            + "PV1\r"
+            + "PID|2||456\r";
+
+    private final HL7MessageView view = new HL7MessageView(MSG.getBytes(), null);
+
+    @Test
+    public void testSegments() {
+        assertEquals(5, view.getSegmentCount());
+        assertEquals("MSH", view.getSegmentName(0));
+        assertEquals("PV1", view.getSegmentName(3));
+        assertEquals(2, view.indexOf("PID"));
+        assertEquals(4, view.indexOf("PID", 3));
+        assertEquals(-1, view.indexOf("PI"));
+        assertEquals(-1, view.indexOf("OBR"));
+    }
+
+    @Test
+    public void testFieldsMatchHL7Segment() {
+        HL7Message msg = HL7Message.parse(MSG.getBytes(), null);
+        assertEquals(msg.size(), view.getSegmentCount());
+        for (int seg = 0; seg < msg.size(); seg++) {
+            HL7Segment segment = msg.get(seg);
+            assertEquals(segment.size(), view.getFieldCount(seg));
+            for (int field = 0; field <= segment.size(); field++)
+                assertEquals("seg: " + seg + ", field: " + field,
+                        segment.getField(field, "?"),
+                        view.getField(seg, field, "?"));
+        }
+    }
+
+    @Test
+    public void testMSHFieldIndex() {
+        assertEquals("^~\\&", view.getField(0, 1, null));
+        assertEquals("SND", view.getField(0, 2, null));
+        assertEquals("MSG1", view.getField("MSH", 9, null));
+        assertEquals("ADT^A08", view.getMessageType());
+        assertEquals('|', view.getFieldSeparator());
+        assertEquals("^~\\&", view.getEncodingCharacters());
+    }
+
+    @Test
+    public void testEmptyAndMissingFields() {
+        assertNull(view.getField("EVN", 1, null));
+        assertEquals("20150101", view.getField("EVN", 2, null));
+        assertNull(view.getField("PID", 6, null));
+        assertNull(view.getField("PID", 7, null));
+        assertNull(view.getField("PV1", 1, null));
+        assertNull(view.getField("OBR", 1, null));
+        assertEquals("456", view.getField(4, 3, null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMSH() {
+        new HL7MessageView("PID|1||123".getBytes(), null);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testInvalidSegmentIndex() {
+        view.getField(5, 0, null);
+    }
+}
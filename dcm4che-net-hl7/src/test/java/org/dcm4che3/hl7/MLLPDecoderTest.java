@@ -0,0 +1,150 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.hl7;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class MLLPDecoderTest {
+
+    private static final byte[] MSG1 = "MSH|^~\\&|A\rPID|1".getBytes();
+    private static final byte[] MSG2 = "MSH|^~\\&|B".getBytes();
+
+    private static ByteBuffer frames(byte[]... msgs) {
+        int len = 0;
+        for (byte[] msg : msgs)
+            len += msg.length + 3;
+        ByteBuffer bb = ByteBuffer.allocate(len);
+        for (byte[] msg : msgs)
+            assertTrue(MLLPDecoder.encode(msg, bb));
+        bb.flip();
+        return bb;
+    }
+
+    @Test
+    public void testDecodeSingleMessage() throws IOException {
+        MLLPDecoder decoder = new MLLPDecoder();
+        ByteBuffer src = frames(MSG1);
+        assertArrayEquals(MSG1, decoder.decode(src));
+        assertFalse(src.hasRemaining());
+        assertFalse(decoder.isPartial());
+        assertNull(decoder.decode(src));
+    }
+
+    @Test
+    public void testDecodePipelinedMessages() throws IOException {
+        MLLPDecoder decoder = new MLLPDecoder();
+        ByteBuffer src = frames(MSG1, MSG2);
+        assertArrayEquals(MSG1, decoder.decode(src));
+        assertArrayEquals(MSG2, decoder.decode(src));
+        assertNull(decoder.decode(src));
+    }
+
+    @Test
+    public void testDecodeByteByByte() throws IOException {
+        MLLPDecoder decoder = new MLLPDecoder(4);
+        ByteBuffer src = frames(MSG1, MSG2);
+        byte[] msg1 = null;
+        byte[] msg2 = null;
+        while (src.hasRemaining()) {
+            ByteBuffer b = ByteBuffer.allocateDirect(1);
+            b.put(src.get()).flip();
+            byte[] msg = decoder.decode(b);
+            if (msg == null)
+                continue;
+            if (msg1 == null)
+                msg1 = msg;
+            else
+                msg2 = msg;
+            assertFalse(decoder.isPartial());
+        }
+        assertArrayEquals(MSG1, msg1);
+        assertArrayEquals(MSG2, msg2);
+    }
+
+    @Test
+    public void testDecodeSplitBetweenEndBlockAndCarriageReturn()
+            throws IOException {
+        MLLPDecoder decoder = new MLLPDecoder();
+        ByteBuffer src = frames(MSG1);
+        ByteBuffer head = src.duplicate();
+        head.limit(src.limit() - 1);
+        assertNull(decoder.decode(head));
+        assertTrue(decoder.isPartial());
+        src.position(src.limit() - 1);
+        assertArrayEquals(MSG1, decoder.decode(src));
+    }
+
+    @Test
+    public void testDecodeSlice() throws IOException {
+        ByteBuffer src = frames(MSG2, MSG1);
+        src.position(MSG2.length + 3);
+        assertArrayEquals(MSG1, new MLLPDecoder().decode(src.slice()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingStartBlock() throws IOException {
+        new MLLPDecoder().decode(ByteBuffer.wrap(MSG1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingCarriageReturn() throws IOException {
+        ByteBuffer src = frames(MSG1);
+        src.put(src.limit() - 1, (byte) 'X');
+        new MLLPDecoder().decode(src);
+    }
+
+    @Test
+    public void testEncodeInsufficientSpace() {
+        ByteBuffer dst = ByteBuffer.allocate(MSG1.length + 2);
+        assertFalse(MLLPDecoder.encode(MSG1, dst));
+        assertEquals(0, dst.position());
+    }
+}
@@ -0,0 +1,129 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.hl7;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.hl7.HL7MessageView;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class HL7AttributesMapperTest {
+
+    private static final String ORM =
+            "MSH|^~\\&|SND|F|RCV|F|20150101||ORM^O01|MSG1|P|2.5||||||8859/1\r"
+            + "PID|||123^^^HOSP\\T\\A~456^^^OTHER||Doe^John^M^Jr^Dr||19700101|M\r"
+            + "PV1||||||||1234^Smith^Ann^^^Dr\r"
+            + "ORC|NW|P1|F1||||^^^20150102103045.5+0100\r"
+            + "OBR||P1|F1|CODE^Desc \\S\\ \\F\\ \\E\\^LOCAL\r";
+
+    private static HL7MessageView msg() {
+        return new HL7MessageView(ORM.getBytes(), null);
+    }
+
+    @Test
+    public void testMapXPN() {
+        Attributes attrs = HL7AttributesMapper.getORMToMWL().map(msg());
+        assertEquals("Doe^John^M^Dr^Jr", attrs.getString(Tag.PatientName));
+    }
+
+    @Test
+    public void testMapXCN() {
+        Attributes attrs = HL7AttributesMapper.getORMToMWL().map(msg());
+        assertEquals("Smith^Ann^^Dr",
+                attrs.getString(Tag.ReferringPhysicianName));
+    }
+
+    @Test
+    public void testMapTimeStamp() {
+        Attributes attrs = HL7AttributesMapper.getORMToMWL().map(msg());
+        Attributes sps = attrs.getNestedDataset(
+                Tag.ScheduledProcedureStepSequence);
+        assertEquals("20150102",
+                sps.getString(Tag.ScheduledProcedureStepStartDate));
+        assertEquals("103045.5",
+                sps.getString(Tag.ScheduledProcedureStepStartTime));
+        assertEquals("19700101", attrs.getString(Tag.PatientBirthDate));
+    }
+
+    @Test
+    public void testMapDateWithoutTime() {
+        Attributes attrs = new HL7AttributesMapper()
+            .add("PID-7", VR.TM, Tag.PatientBirthTime)
+            .map(msg());
+        assertFalse(attrs.contains(Tag.PatientBirthTime));
+    }
+
+    @Test
+    public void testUnescape() {
+        Attributes attrs = HL7AttributesMapper.getORMToMWL().map(msg());
+        assertEquals("123", attrs.getString(Tag.PatientID));
+        assertEquals("HOSP&A", attrs.getString(Tag.IssuerOfPatientID));
+        assertEquals("Desc ^ | \\",
+                attrs.getString(Tag.RequestedProcedureDescription));
+    }
+
+    @Test
+    public void testMapMSH() {
+        Attributes attrs = new HL7AttributesMapper()
+            .add("MSH-3", VR.LO, Tag.InstitutionName)
+            .add("MSH-10", VR.SH, Tag.AccessionNumber)
+            .map(msg());
+        assertEquals("SND", attrs.getString(Tag.InstitutionName));
+        assertEquals("MSG1", attrs.getString(Tag.AccessionNumber));
+        assertEquals("ISO_IR 100", attrs.getString(Tag.SpecificCharacterSet));
+    }
+
+    @Test
+    public void testGetORMToMWLReturnsNewMapping() {
+        HL7AttributesMapper mapper = HL7AttributesMapper.getORMToMWL();
+        assertNotSame(mapper, HL7AttributesMapper.getORMToMWL());
+        mapper.add("MSH-10", VR.SH, Tag.AdmissionID);
+        assertNull(HL7AttributesMapper.getORMToMWL().map(msg())
+                .getString(Tag.AdmissionID));
+    }
+}
@@ -0,0 +1,210 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.hl7;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.dcm4che3.hl7.HL7MessageView;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class HL7OutboundQueueTest {
+
+    private static final File QUEUE_DIR = new File("target/hl7queue");
+    private static final String DEST = "RCV|F";
+    private static final long TIMEOUT = 5000L;
+
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> reject = Collections.synchronizedList(new ArrayList<String>());
+    private final HL7OutboundQueue.Sender sender = new HL7OutboundQueue.Sender() {
+
+        @Override
+        public byte[] send(String destination, byte[] msg) {
+            String msgControlID = new HL7MessageView(msg, null).getField("MSH", 9, null);
+            sent.add(msgControlID);
+            String ackCode = reject.remove(msgControlID) ? "AE" : "AA";
+            return ("MSH|^~\\&|RCV|F|SND|F|20150101||ACK|" + msgControlID
+                    + "|P|2.5\rMSA|" + ackCode + '|' + msgControlID + '\r').getBytes();
+        }
+    };
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduler;
+    private HL7OutboundQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        deleteDir(QUEUE_DIR);
+        executor = Executors.newCachedThreadPool();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (queue != null)
+            queue.close();
+        executor.shutdown();
+        scheduler.shutdown();
+        deleteDir(QUEUE_DIR);
+    }
+
+    @Test
+    public void testReplayAfterCrash() throws Exception {
+        queue = openQueue();
+        queue.enqueue(DEST, msg("1", "P1"));
+        queue.enqueue(DEST, msg("2", "P2"));
+        // crash before start - no acknowledgments recorded
+        queue = openQueue();
+        assertEquals(2, queue.getPending());
+        start();
+        awaitAcknowledged(2);
+        queue.enqueue(DEST, msg("3", "P1"));
+        awaitAcknowledged(3);
+        queue.close();
+        sent.clear();
+        queue = openQueue();
+        assertEquals(0, queue.getPending());
+        start();
+        queue.enqueue(DEST, msg("4", "P1"));
+        awaitAcknowledged(1);
+        assertEquals(Arrays.asList("4"), sent);
+    }
+
+    @Test
+    public void testTruncateTornRecord() throws Exception {
+        queue = openQueue();
+        queue.enqueue(DEST, msg("1", "P1"));
+        File segment = onlySegment();
+        long validLength = segment.length();
+        queue.enqueue(DEST, msg("2", "P1"));
+        queue.close();
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+        queue = openQueue();
+        assertEquals(1, queue.getPending());
+        assertEquals(validLength, segment.length());
+        start();
+        awaitAcknowledged(1);
+        assertEquals(Arrays.asList("1"), sent);
+    }
+
+    @Test
+    public void testOrderPerPatient() throws Exception {
+        queue = openQueue();
+        queue.setRetryDelay(10, 10);
+        start();
+        reject.add("1");
+        queue.enqueue(DEST, msg("1", "P1"));
+        queue.enqueue(DEST, msg("2", "P1"));
+        queue.enqueue(DEST, msg("3", "P2"));
+        awaitAcknowledged(3);
+        List<String> sentOfP1 = new ArrayList<String>(sent);
+        sentOfP1.remove("3");
+        assertEquals(Arrays.asList("1", "1", "2"), sentOfP1);
+        assertEquals(1, queue.getRetries());
+    }
+
+    @Test
+    public void testDeleteAcknowledgedSegments() throws Exception {
+        queue = openQueue();
+        queue.setMaxSegmentSize(100);
+        for (int i = 0; i < 5; i++)
+            queue.enqueue(DEST, msg(Integer.toString(i), "P1"));
+        assertEquals(5, queue.getSegmentCount());
+        start();
+        awaitAcknowledged(5);
+        assertEquals(1, queue.getSegmentCount());
+        assertEquals(1, QUEUE_DIR.list().length);
+    }
+
+    private HL7OutboundQueue openQueue() throws Exception {
+        HL7OutboundQueue queue = new HL7OutboundQueue(QUEUE_DIR, sender);
+        queue.open();
+        return queue;
+    }
+
+    private void start() {
+        queue.start(executor, scheduler);
+    }
+
+    private void awaitAcknowledged(int expected) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT;
+        while (queue.getAcknowledged() < expected
+                && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertEquals(expected, queue.getAcknowledged());
+    }
+
+    private File onlySegment() {
+        File[] files = QUEUE_DIR.listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private static byte[] msg(String msgControlID, String pid) {
+        return ("MSH|^~\\&|SND|F|RCV|F|20150101||ADT^A08|" + msgControlID
+                + "|P|2.5\rPID|||" + pid + '\r').getBytes();
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File file : files)
+                assertTrue(file.delete());
+        dir.delete();
+    }
+}
@@ -0,0 +1,192 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.hl7;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.hl7.HL7Exception;
+import org.dcm4che3.hl7.HL7Message;
+import org.dcm4che3.hl7.HL7MessageView;
+import org.dcm4che3.hl7.HL7Segment;
+import org.dcm4che3.hl7.MLLPConnection;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class MLLPSelectorListenerTest {
+
+    private static final int MAX_PIPELINED = 2;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private ExecutorService executor;
+    private Device device;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocket ss = new ServerSocket(0);
+        port = ss.getLocalPort();
+        ss.close();
+        executor = Executors.newCachedThreadPool();
+        device = new Device("hl7rcv");
+        device.setExecutor(executor);
+        HL7DeviceExtension hl7Ext = new HL7DeviceExtension();
+        hl7Ext.setNonBlockingMLLP(true);
+        hl7Ext.setMaxPipelinedMessages(MAX_PIPELINED);
+        device.addDeviceExtension(hl7Ext);
+        Connection conn = new Connection("hl7", "127.0.0.1", port);
+        conn.setProtocol(Connection.Protocol.HL7);
+        device.addConnection(conn);
+        HL7Application hl7App = new HL7Application("RCV|F");
+        hl7App.addConnection(conn);
+        hl7App.setAcceptedMessageTypes("*");
+        hl7App.setHL7MessageListener(new HL7MessageListener() {
+
+            @Override
+            public byte[] onMessage(HL7Application hl7App, Connection conn,
+                    Socket s, HL7Segment msh, byte[] msg, int off, int len,
+                    int mshlen) throws HL7Exception {
+                int n = active.incrementAndGet();
+                int max;
+                while (n > (max = maxActive.get())
+                        && !maxActive.compareAndSet(max, n));
+                try {
+                    // complete the first message of each pipeline last
+                    if (msh.getField(9, "").endsWith("-1"))
+                        Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    active.decrementAndGet();
+                }
+                return HL7Message.makeACK(msh, HL7Exception.AA, null)
+                        .getBytes(null);
+            }
+        });
+        hl7Ext.addHL7Application(hl7App);
+        device.bindConnections();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        device.unbindConnections();
+        executor.shutdownNow();
+    }
+
+    private static byte[] message(String msgControlID) {
+        return ("MSH|^~\\&|SND|F|RCV|F|20150101||ADT^A08|" + msgControlID
+                + "|P|2.5\rPID|||123\r").getBytes();
+    }
+
+    private static String msgControlIDOfACK(byte[] ack) {
+        return new HL7MessageView(ack, null).getField("MSA", 2, null);
+    }
+
+    @Ignore("Test needs a MLLP listener and may therefore fail in some environments.")
+    @Test
+    public void testPipelinedMessagesAcknowledgedInOrder() throws Exception {
+        int n = 6;
+        MLLPConnection mllp = new MLLPConnection(new Socket("127.0.0.1", port));
+        try {
+            mllp.getSocket().setSoTimeout(5000);
+            for (int i = 1; i <= n; i++)
+                mllp.writeMessage(message("A-" + i));
+            for (int i = 1; i <= n; i++)
+                assertEquals("A-" + i, msgControlIDOfACK(mllp.readMessage()));
+        } finally {
+            mllp.close();
+        }
+        assertTrue("maxActive: " + maxActive.get(),
+                maxActive.get() <= MAX_PIPELINED);
+    }
+
+    @Ignore("Test needs a MLLP listener and may therefore fail in some environments.")
+    @Test
+    public void testConcurrentConnections() throws Exception {
+        MLLPConnection mllp1 = new MLLPConnection(new Socket("127.0.0.1", port));
+        MLLPConnection mllp2 = new MLLPConnection(new Socket("127.0.0.1", port));
+        try {
+            mllp1.getSocket().setSoTimeout(5000);
+            mllp2.getSocket().setSoTimeout(5000);
+            mllp1.writeMessage(message("A-1"));
+            mllp2.writeMessage(message("B-2"));
+            assertEquals("B-2", msgControlIDOfACK(mllp2.readMessage()));
+            assertEquals("A-1", msgControlIDOfACK(mllp1.readMessage()));
+        } finally {
+            mllp1.close();
+            mllp2.close();
+        }
+    }
+
+    @Ignore("Test needs a MLLP listener and may therefore fail in some environments.")
+    @Test
+    public void testCloseOnInvalidFraming() throws Exception {
+        Socket s = new Socket("127.0.0.1", port);
+        try {
+            s.setSoTimeout(5000);
+            s.getOutputStream().write(message("A-1"));
+            assertEquals(-1, s.getInputStream().read());
+        } finally {
+            s.close();
+        }
+        MLLPConnection mllp = new MLLPConnection(new Socket("127.0.0.1", port));
+        try {
+            mllp.getSocket().setSoTimeout(5000);
+            mllp.getSocket().shutdownOutput();
+            assertNull(mllp.readMessage());
+        } finally {
+            mllp.close();
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2012
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.hl7;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che3.hl7.HL7Exception;
+import org.dcm4che3.hl7.HL7Message;
+import org.dcm4che3.hl7.HL7MessageView;
+import org.dcm4che3.hl7.HL7Segment;
+import org.dcm4che3.hl7.MLLPConnection;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class MLLPSenderTest {
+
+    private static final long TIMEOUT = 5000L;
+
+    private ExecutorService executor;
+    private ServerSocket ss;
+    private HL7Application hl7App;
+    private Connection local;
+    private Connection remote;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        ss = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Device device = new Device("hl7snd");
+        device.setExecutor(executor);
+        HL7DeviceExtension hl7Ext = new HL7DeviceExtension();
+        device.addDeviceExtension(hl7Ext);
+        local = new Connection("hl7", "127.0.0.1");
+        local.setProtocol(Connection.Protocol.HL7);
+        local.setResponseTimeout((int) TIMEOUT);
+        device.addConnection(local);
+        hl7App = new HL7Application("SND|F");
+        hl7App.addConnection(local);
+        hl7Ext.addHL7Application(hl7App);
+        remote = new Connection("hl7", "127.0.0.1", ss.getLocalPort());
+        remote.setProtocol(Connection.Protocol.HL7);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        hl7App.closeMLLPSenders();
+        ss.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Accepts connections and acknowledges each {@code batch} messages
+     * received on one connection in reverse order, or never acknowledges
+     * messages, if {@code batch} is 0.
+     */
+    private void startServer(final int batch) {
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    for (;;)
+                        serve(new MLLPConnection(ss.accept()), batch);
+                } catch (IOException e) {
+                    // ServerSocket closed by tearDown
+                }
+            }
+        });
+    }
+
+    private void serve(final MLLPConnection mllp, final int batch) {
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    List<byte[]> msgs = new ArrayList<byte[]>();
+                    byte[] msg;
+                    while ((msg = mllp.readMessage()) != null) {
+                        msgs.add(msg);
+                        if (msgs.size() == batch) {
+                            for (int i = batch; --i >= 0;)
+                                mllp.writeMessage(ack(msgs.get(i)));
+                            msgs.clear();
+                        }
+                    }
+                } catch (IOException e) {
+                } finally {
+                    try {
+                        mllp.close();
+                    } catch (IOException ignore) {}
+                }
+            }
+        });
+    }
+
+    private static byte[] ack(byte[] msg) {
+        return HL7Message.makeACK(HL7Segment.parseMSH(msg, msg.length),
+                HL7Exception.AA, null).getBytes(null);
+    }
+
+    private static byte[] message(String msgControlID) {
+        return ("MSH|^~\\&|SND|F|RCV|F|20150101||ADT^A08|" + msgControlID
+                + "|P|2.5\rPID|||123\r").getBytes();
+    }
+
+    private static String msgControlIDOfACK(byte[] ack) {
+        return new HL7MessageView(ack, null).getField("MSA", 2, null);
+    }
+
+    @Test
+    public void testSend() throws Exception {
+        startServer(1);
+        MLLPSender sender = hl7App.getMLLPSender(local, remote);
+        assertEquals("1", msgControlIDOfACK(sender.send(message("1"))));
+        assertEquals("2", msgControlIDOfACK(sender.send(message("2"))));
+        assertEquals(1, sender.getOpenConnections());
+        assertEquals(2, sender.getMessagesSent());
+        assertEquals(2, sender.getResponsesReceived());
+        assertEquals(0, sender.getPendingMessages());
+        assertEquals(0, sender.getReconnects());
+    }
+
+    @Test
+    public void testCorrelatePipelinedAcknowledgments() throws Exception {
+        int n = 4;
+        startServer(n);
+        hl7App.setMaxOutboundConnections(1);
+        hl7App.setOutboundPipelineDepth(n);
+        MLLPSender sender = hl7App.getMLLPSender(local, remote);
+        List<Future<byte[]>> rsps = new ArrayList<Future<byte[]>>();
+        for (int i = 0; i < n; i++)
+            rsps.add(sender.sendAsync(message("P" + i)));
+        for (int i = 0; i < n; i++)
+            assertEquals("P" + i, msgControlIDOfACK(
+                    rsps.get(i).get(TIMEOUT, TimeUnit.MILLISECONDS)));
+        assertEquals(1, sender.getOpenConnections());
+        assertEquals(n, sender.getResponsesReceived());
+    }
+
+    @Test
+    public void testCloseFailsPendingMessages() throws Exception {
+        startServer(0);
+        hl7App.setMaxOutboundConnections(2);
+        hl7App.setOutboundPipelineDepth(1);
+        MLLPSender sender = hl7App.getMLLPSender(local, remote);
+        Future<byte[]> rsp1 = sender.sendAsync(message("1"));
+        Future<byte[]> rsp2 = sender.sendAsync(message("2"));
+        assertEquals(2, sender.getOpenConnections());
+        assertEquals(2, sender.getPendingMessages());
+        sender.close();
+        assertFailed(rsp1);
+        assertFailed(rsp2);
+        assertEquals(2, sender.getFailures());
+        assertEquals(0, sender.getPendingMessages());
+        assertTrue(hl7App.getMLLPSenders().isEmpty());
+        try {
+            sender.sendAsync(message("3"));
+            fail("IOException expected");
+        } catch (IOException expected) {}
+    }
+
+    private static void assertFailed(Future<byte[]> rsp) throws Exception {
+        try {
+            rsp.get(TIMEOUT, TimeUnit.MILLISECONDS);
+            fail("ExecutionException expected");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testSendersKeyedByLocalConnection() throws Exception {
+        MLLPSender sender = hl7App.getMLLPSender(local, remote);
+        Connection remote2 = new Connection("hl7", "127.0.0.1",
+                ss.getLocalPort());
+        remote2.setProtocol(Connection.Protocol.HL7);
+        assertTrue(sender == hl7App.getMLLPSender(local, remote2));
+        Connection local2 = new Connection("hl7-2", "127.0.0.1");
+        local2.setProtocol(Connection.Protocol.HL7);
+        hl7App.getDevice().addConnection(local2);
+        hl7App.addConnection(local2);
+        assertTrue(sender != hl7App.getMLLPSender(local2, remote));
+        assertEquals(2, hl7App.getMLLPSenders().size());
+    }
+}
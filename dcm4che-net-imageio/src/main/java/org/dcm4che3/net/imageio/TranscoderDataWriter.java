@@ -0,0 +1,312 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.imageio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.imageio.codec.Transcoder;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.net.DataWriter;
+import org.dcm4che3.net.PDVOutputStream;
+import org.dcm4che3.util.Property;
+import org.dcm4che3.util.SafeClose;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes a DICOM file with a different Transfer Syntax than it is encoded
+ * with, streaming it through a {@link Transcoder} which decompresses or
+ * compresses its pixel data frame by frame while it is written to the
+ * {@link PDVOutputStream}. If an {@link Executor} is set, the
+ * transcoding runs on one of its threads - typically a fixed size pool which
+ * bounds the number of concurrent transcodings - and at most
+ * {@link #getMaxBufferedChunks()} chunks of the encoded data set are buffered
+ * until the association thread has written them.
+ * 
+ * @author agent <agent@local>
+ *
+ */
+public class TranscoderDataWriter implements DataWriter {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(TranscoderDataWriter.class);
+
+    private static final byte[] EOF = {};
+
+    private final File file;
+    private final String tsuid;
+    private Property[] compressParams = {};
+    private Executor executor;
+    private int chunkSize = 0x10000;
+    private int maxBufferedChunks = 16;
+
+    public TranscoderDataWriter(File file, String tsuid) {
+        if (file == null)
+            throw new NullPointerException("file");
+        if (tsuid == null)
+            throw new NullPointerException("tsuid");
+
+        this.file = file;
+        this.tsuid = tsuid;
+    }
+
+    /**
+     * Returns {@code true} if a data set encoded with Transfer Syntax
+     * {@code tsuid} can be transcoded to Transfer Syntax {@code destTsuid}
+     * with the available image readers and writers.
+     */
+    public static boolean isSupported(String tsuid, String destTsuid) {
+        return Transcoder.isSupported(tsuid, destTsuid);
+    }
+
+    public final File getFile() {
+        return file;
+    }
+
+    public final String getTransferSyntax() {
+        return tsuid;
+    }
+
+    public final Property[] getCompressParams() {
+        return compressParams;
+    }
+
+    public final void setCompressParams(Property... compressParams) {
+        this.compressParams = compressParams;
+    }
+
+    public final Executor getExecutor() {
+        return executor;
+    }
+
+    public final void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public final int getChunkSize() {
+        return chunkSize;
+    }
+
+    public final void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize: " + chunkSize);
+        this.chunkSize = chunkSize;
+    }
+
+    public final int getMaxBufferedChunks() {
+        return maxBufferedChunks;
+    }
+
+    public final void setMaxBufferedChunks(int maxBufferedChunks) {
+        if (maxBufferedChunks <= 0)
+            throw new IllegalArgumentException(
+                    "maxBufferedChunks: " + maxBufferedChunks);
+        this.maxBufferedChunks = maxBufferedChunks;
+    }
+
+    @Override
+    public void writeTo(PDVOutputStream out, String destTsuid)
+            throws IOException {
+        if (tsuid.equals(destTsuid) || executor == null) {
+            transcode(out, destTsuid);
+            return;
+        }
+
+        ChunkPipe pipe = new ChunkPipe();
+        executor.execute(new Transcode(pipe, destTsuid));
+        try {
+            pipe.drainTo(out);
+        } finally {
+            pipe.close();
+        }
+    }
+
+    private void transcode(OutputStream out, final String destTsuid)
+            throws IOException {
+        long start = System.currentTimeMillis();
+        DicomInputStream in = new DicomInputStream(file);
+        try {
+            Transcoder transcoder = new Transcoder(in);
+            try {
+                transcoder.setDestinationTransferSyntax(destTsuid);
+                transcoder.setCompressParams(compressParams);
+                transcoder.transcode(new OutputStreamHandler(out));
+            } finally {
+                transcoder.close();
+            }
+        } finally {
+            SafeClose.close(in);
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Transcoded {} from {} to {} in {} ms", new Object[] {
+                    file, tsuid, destTsuid, System.currentTimeMillis() - start });
+    }
+
+    private static final class OutputStreamHandler
+            implements Transcoder.Handler {
+
+        private final OutputStream out;
+
+        OutputStreamHandler(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public DicomOutputStream newDicomOutputStream(Transcoder transcoder,
+                Attributes dataset) throws IOException {
+            return new DicomOutputStream(out,
+                    transcoder.getDestinationTransferSyntax());
+        }
+    }
+
+    private final class Transcode implements Runnable {
+
+        private final ChunkPipe pipe;
+        private final String destTsuid;
+
+        Transcode(ChunkPipe pipe, String destTsuid) {
+            this.pipe = pipe;
+            this.destTsuid = destTsuid;
+        }
+
+        @Override
+        public void run() {
+            try {
+                transcode(pipe, destTsuid);
+                pipe.finish();
+            } catch (Throwable e) {
+                pipe.fail(e);
+            }
+        }
+    }
+
+    /**
+     * Passes the encoded data set in chunks from the transcoding thread to
+     * the association thread.
+     */
+    private final class ChunkPipe extends OutputStream {
+
+        private final BlockingQueue<byte[]> queue =
+                new ArrayBlockingQueue<byte[]>(maxBufferedChunks);
+        private byte[] buf = new byte[chunkSize];
+        private int count;
+        private volatile boolean closed;
+        private volatile Throwable failure;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buf.length)
+                flushChunk();
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buf.length)
+                    flushChunk();
+                int n = Math.min(len, buf.length - count);
+                System.arraycopy(b, off, buf, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            put(count == buf.length ? buf : Arrays.copyOf(buf, count));
+            buf = new byte[chunkSize];
+            count = 0;
+        }
+
+        void finish() throws IOException {
+            if (count > 0)
+                flushChunk();
+            put(EOF);
+        }
+
+        void fail(Throwable e) {
+            failure = e;
+            try {
+                put(EOF);
+            } catch (IOException ignore) {}
+        }
+
+        private void put(byte[] chunk) throws IOException {
+            try {
+                while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS))
+                    if (closed)
+                        throw new IOException("Receiver of transcoded data closed");
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+        }
+
+        void drainTo(PDVOutputStream out) throws IOException {
+            try {
+                byte[] chunk;
+                while ((chunk = queue.take()) != EOF)
+                    out.write(chunk);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            if (failure != null) {
+                if (failure instanceof IOException)
+                    throw (IOException) failure;
+                throw new IOException("Transcoding failed", failure);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2013
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.imageio;
+
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import org.dcm4che3.data.UID;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.DataWriter;
+import org.dcm4che3.net.service.BasicCStoreSCU;
+import org.dcm4che3.net.service.InstanceLocator;
+
+/**
+ * C-STORE SCU which transcodes instances on the fly, if the destination did
+ * not accept the Transfer Syntax they are stored with.
+ * 
+ * If no Transfer Syntax was accepted for the stored one, Explicit VR Little
+ * Endian, Implicit VR Little Endian or any other accepted Transfer Syntax
+ * supported by the available image readers and writers is selected, in that
+ * order. The instance is then streamed from its file by a
+ * {@link TranscoderDataWriter}, which transcodes its pixel data frame by
+ * frame.
+ * 
+ * @param <T>
+ *            instance locator type
+ * 
+ * @author agent <agent@local>
+ */
+public class TranscodingCStoreSCU<T extends InstanceLocator>
+        extends BasicCStoreSCU<T> {
+
+    private Executor transcoderExecutor;
+
+    public final Executor getTranscoderExecutor() {
+        return transcoderExecutor;
+    }
+
+    /**
+     * Sets the executor - typically a fixed size thread pool shared by all
+     * associations - on which instances are transcoded. If {@code null}
+     * (= default), instances are transcoded by the association thread.
+     */
+    public final void setTranscoderExecutor(Executor transcoderExecutor) {
+        this.transcoderExecutor = transcoderExecutor;
+    }
+
+    @Override
+    protected String selectTransferSyntaxFor(Association storeas, T inst)
+            throws Exception {
+        Set<String> tss = storeas.getTransferSyntaxesFor(inst.cuid);
+        if (tss.isEmpty() || tss.contains(inst.tsuid))
+            return inst.tsuid;
+
+        if (tss.contains(UID.ExplicitVRLittleEndian)
+                && TranscoderDataWriter.isSupported(inst.tsuid,
+                        UID.ExplicitVRLittleEndian))
+            return UID.ExplicitVRLittleEndian;
+
+        if (tss.contains(UID.ImplicitVRLittleEndian)
+                && TranscoderDataWriter.isSupported(inst.tsuid,
+                        UID.ImplicitVRLittleEndian))
+            return UID.ImplicitVRLittleEndian;
+
+        for (String ts : tss)
+            if (TranscoderDataWriter.isSupported(inst.tsuid, ts))
+                return ts;
+
+        return inst.tsuid;
+    }
+
+    @Override
+    protected DataWriter createDataWriter(T inst, String tsuid)
+            throws Exception {
+        if (tsuid.equals(inst.tsuid))
+            return super.createDataWriter(inst, tsuid);
+
+        TranscoderDataWriter writer =
+                new TranscoderDataWriter(inst.getFile(), inst.tsuid);
+        writer.setExecutor(transcoderExecutor);
+        return writer;
+    }
+}
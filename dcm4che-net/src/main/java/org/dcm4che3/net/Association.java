@@ -330,6 +330,7 @@ public class Association {
     }
 
     void writeAReleaseRQ() throws IOException {
+        encoder.flushDIMSE();
         LOG.info("{} << A-RELEASE-RQ", name);
         enterState(State.Sta7);
         stopTimeout();
@@ -570,6 +571,7 @@ public class Association {
     void handleAReleaseRQ() throws IOException {
         enterState(State.Sta8);
         waitForPerformingOps();
+        encoder.flushDIMSE();
         LOG.info("{} << A-RELEASE-RP", name);
         encoder.writeAReleaseRP();
         closeSocketDelayed();
@@ -742,6 +744,19 @@ public class Association {
 
     public void writeDimseRSP(PresentationContext pc, Attributes cmd,
             Attributes data) throws IOException {
+        writeDimseRSP(pc, cmd, data, true);
+    }
+
+    /**
+     * Writes a DIMSE response. With {@code flush = false}, a pending response
+     * is not sent immediately, but packed together with subsequent responses
+     * into one P-DATA-TF PDU, as far as the max PDU length permits.
+     * Non-pending responses are always sent immediately, together with
+     * previously packed ones. Use {@link #flushDimseRSP()} to send packed
+     * responses without writing a further response.
+     */
+    public void writeDimseRSP(PresentationContext pc, Attributes cmd,
+            Attributes data, boolean flush) throws IOException {
         DataWriter writer = null;
         int datasetType = Commands.NO_DATASET;
         if (data != null) {
@@ -749,13 +764,18 @@ public class Association {
             datasetType = Commands.getWithDatasetType();
         }
         cmd.setInt(Tag.CommandDataSetType, VR.US, datasetType);
-        encoder.writeDIMSE(pc, cmd, writer);
-        if (!Status.isPending(cmd.getInt(Tag.Status, 0))) {
+        boolean pending = Status.isPending(cmd.getInt(Tag.Status, 0));
+        encoder.writeDIMSE(pc, cmd, writer, flush || !pending);
+        if (!pending) {
             decPerforming();
             startIdleTimeout();
         }
     }
 
+    public void flushDimseRSP() throws IOException {
+        encoder.flushDIMSE();
+    }
+
     void onCancelRQ(Attributes cmd) throws IOException {
         int msgId = cmd.getInt(Tag.MessageIDBeingRespondedTo, -1);
         CancelRQHandler handler = removeCancelRQHandler(msgId);
@@ -921,7 +921,7 @@ public class Connection implements Serializable {
         return sb.append(indent).append(']');
     }
 
-    void setSocketSendOptions(Socket s) throws SocketException {
+    public void setSocketSendOptions(Socket s) throws SocketException {
         int size = s.getSendBufferSize();
         if (sendBufferSize == 0) {
             sendBufferSize = size;
@@ -944,7 +944,7 @@ public class Connection implements Serializable {
         }
     }
 
-    void setReceiveBufferSize(ServerSocket ss) throws SocketException {
+    public void setReceiveBufferSize(ServerSocket ss) throws SocketException {
         int size = ss.getReceiveBufferSize();
         if (receiveBufferSize == 0) {
             receiveBufferSize = size;
@@ -1049,7 +1049,10 @@ public class Connection implements Serializable {
             TCPProtocolHandler handler = tcpHandlers.get(protocol);
             if (handler == null)
                 throw new IllegalStateException("No TCP Protocol Handler for protocol " + protocol);
-            listener = new TCPListener(this, handler);
+            Listener l = handler instanceof TCPListenerFactory
+                    ? ((TCPListenerFactory) handler).createListener(this)
+                    : null;
+            listener = l != null ? l : new TCPListener(this, handler);
         } else {
             UDPProtocolHandler handler = udpHandlers.get(protocol);
             if (handler == null)
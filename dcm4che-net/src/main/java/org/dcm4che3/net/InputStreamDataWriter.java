@@ -38,6 +38,7 @@
 
 package org.dcm4che3.net;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -45,7 +46,7 @@ import java.io.InputStream;
  * @author Gunter Zeilinger <gunterze@gmail.com>
  *
  */
-public class InputStreamDataWriter implements DataWriter {
+public class InputStreamDataWriter implements DataWriter, Closeable {
 
     private final InputStream in;
 
@@ -61,4 +62,9 @@ public class InputStreamDataWriter implements DataWriter {
         in.close();
     }
 
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
 }
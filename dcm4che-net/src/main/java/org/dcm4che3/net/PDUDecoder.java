@@ -423,6 +423,13 @@ class PDUDecoder extends PDVInputStream {
         if (pcid != - 1)
             return; // already inside decodeDIMSE
 
+        // P-DATA-TF may contain PDVs of several DIMSE messages
+        do {
+            decodeNextDIMSE();
+        } while (hasRemaining());
+    }
+
+    private void decodeNextDIMSE() throws IOException {
         nextPDV(PDVType.COMMAND, -1);
 
         PresentationContext pc = as.getPresentationContext(pcid);
@@ -66,6 +66,8 @@ import org.dcm4che3.net.pdu.UserIdentityRQ;
  */
 class PDUEncoder extends PDVOutputStream {
 
+    private static final int MIN_DEFERRED_PDV_SPACE = 256;
+
     private Association as;
     private OutputStream out;
     private byte[] buf = new byte[Connection.DEF_MAX_PDU_LENGTH + 6];
@@ -75,6 +77,7 @@ class PDUEncoder extends PDVOutputStream {
     private int pdvpos;
     private int maxpdulen;
     private Thread th;
+    private boolean deferred;
     private Object dimseLock = new Object();
 
     public PDUEncoder(Association as, OutputStream out) {
@@ -397,6 +400,17 @@ class PDUEncoder extends PDVOutputStream {
 
     public void writeDIMSE(PresentationContext pc, Attributes cmd,
             DataWriter dataWriter) throws IOException {
+        writeDIMSE(pc, cmd, dataWriter, true);
+    }
+
+    /**
+     * Encodes a DIMSE message. If {@code flush} is {@code false}, the last
+     * P-DATA-TF is only sent, if there is no space left for further PDVs.
+     * Otherwise the encoded PDVs stay buffered and get sent together with
+     * PDVs of subsequent DIMSE messages, or by {@link #flushDIMSE()}.
+     */
+    public void writeDIMSE(PresentationContext pc, Attributes cmd,
+            DataWriter dataWriter, boolean flush) throws IOException {
         synchronized (dimseLock) {
             int pcid = pc.getPCID();
             String tsuid = pc.getTransferSyntax();
@@ -430,8 +444,24 @@ class PDUEncoder extends PDVOutputStream {
                 dataWriter.writeTo(this, tsuid);
                 close();
             }
-            as.writePDataTF();
+            deferred = !flush && free() > MIN_DEFERRED_PDV_SPACE;
+            if (deferred) {
+                pdvpos = pos;
+                pos += 6;
+            } else {
+                as.writePDataTF();
+            }
             this.th = null;
         }
     }
+
+    public void flushDIMSE() throws IOException {
+        synchronized (dimseLock) {
+            if (deferred) {
+                deferred = false;
+                pos = pdvpos;
+                as.writePDataTF();
+            }
+        }
+    }
 }
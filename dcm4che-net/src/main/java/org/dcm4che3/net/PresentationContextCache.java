@@ -0,0 +1,244 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.dcm4che3.net.pdu.AAssociateAC;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+
+/**
+ * Remembers which presentation contexts were accepted or rejected by remote
+ * Application Entities, so later associations to the same destination only
+ * propose transfer syntaxes with a chance of being accepted.
+ * 
+ * Entries are kept per SOP Class and expire after {@link #getTimeToLive()}
+ * milliseconds, so configuration changes at the remote side are picked up
+ * eventually.
+ * 
+ * @author agent <agent@local>
+ *
+ */
+public class PresentationContextCache {
+
+    public static final long DEFAULT_TIME_TO_LIVE = 300000L;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Negotiated>> cache =
+            new ConcurrentHashMap<String, ConcurrentMap<String, Negotiated>>();
+
+    private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+
+    private static final class Negotiated {
+        final long expires;
+        final boolean abstractSyntaxRejected;
+        final Set<String> accepted;
+        final Set<String> rejected;
+
+        Negotiated(long expires, boolean abstractSyntaxRejected,
+                Set<String> accepted, Set<String> rejected) {
+            this.expires = expires;
+            this.abstractSyntaxRejected = abstractSyntaxRejected;
+            this.accepted = accepted;
+            this.rejected = rejected;
+        }
+    }
+
+    public final long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public final void setTimeToLive(long timeToLive) {
+        if (timeToLive <= 0)
+            throw new IllegalArgumentException("timeToLive: " + timeToLive);
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Records the outcome of the presentation context negotiation of an
+     * established association to {@code remote}.
+     */
+    public void update(Connection remote, Association as) {
+        update(remote, as.getAAssociateRQ(), as.getAAssociateAC());
+    }
+
+    void update(Connection remote, AAssociateRQ rq, AAssociateAC ac) {
+        if (rq == null || ac == null)
+            return;
+
+        ConcurrentMap<String, Negotiated> map = mapFor(rq.getCalledAET(), remote);
+        ArrayList<String> cuids = new ArrayList<String>();
+        ArrayList<Set<String>> accepted = new ArrayList<Set<String>>();
+        ArrayList<Set<String>> rejected = new ArrayList<Set<String>>();
+        HashSet<String> abstractSyntaxRejected = new HashSet<String>();
+        for (PresentationContext rqpc : rq.getPresentationContexts()) {
+            PresentationContext acpc = ac.getPresentationContext(rqpc.getPCID());
+            if (acpc == null)
+                continue;
+
+            String cuid = rqpc.getAbstractSyntax();
+            int i = cuids.indexOf(cuid);
+            if (i < 0) {
+                i = cuids.size();
+                cuids.add(cuid);
+                accepted.add(new LinkedHashSet<String>());
+                rejected.add(new HashSet<String>());
+            }
+            switch (acpc.getResult()) {
+            case PresentationContext.ACCEPTANCE:
+                accepted.get(i).add(acpc.getTransferSyntax());
+                break;
+            case PresentationContext.ABSTRACT_SYNTAX_NOT_SUPPORTED:
+                abstractSyntaxRejected.add(cuid);
+                break;
+            case PresentationContext.TRANSFER_SYNTAX_NOT_SUPPORTED:
+                for (String ts : rqpc.getTransferSyntaxes())
+                    rejected.get(i).add(ts);
+                break;
+            }
+        }
+        long expires = System.currentTimeMillis() + timeToLive;
+        for (int i = 0; i < cuids.size(); i++) {
+            Set<String> acceptedTSs = accepted.get(i);
+            Set<String> rejectedTSs = rejected.get(i);
+            rejectedTSs.removeAll(acceptedTSs);
+            String cuid = cuids.get(i);
+            boolean asRejected = acceptedTSs.isEmpty()
+                    && abstractSyntaxRejected.contains(cuid);
+            if (acceptedTSs.isEmpty() && rejectedTSs.isEmpty() && !asRejected)
+                map.remove(cuid);
+            else
+                map.put(cuid, new Negotiated(expires, asRejected,
+                    Collections.unmodifiableSet(acceptedTSs),
+                    Collections.unmodifiableSet(rejectedTSs)));
+        }
+    }
+
+    /**
+     * Forgets all negotiation outcomes for the specified destination, e.g.
+     * after the association request was rejected.
+     */
+    public void remove(String aet, Connection remote) {
+        cache.remove(keyFor(aet, remote));
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Adds presentation contexts for storing an object of SOP Class
+     * {@code cuid}, encoded with Transfer Syntax {@code tsuid}, to the
+     * association request. If the previous negotiation with the called AE
+     * accepted {@code tsuid}, only that transfer syntax is proposed. Otherwise
+     * the candidate transfer syntaxes known to be accepted are proposed first,
+     * followed by the ones without known outcome; transfer syntaxes known to
+     * be rejected are omitted. Nothing is proposed if the SOP Class was
+     * rejected.
+     * 
+     * @return {@code false} if nothing was added because the SOP Class is
+     *         known to be rejected, otherwise {@code true}
+     */
+    public boolean addPresentationContextFor(AAssociateRQ aarq,
+            Connection remote, String cuid, String tsuid, String... fallbackTSs) {
+        Negotiated negotiated = get(aarq.getCalledAET(), remote, cuid);
+        if (negotiated == null) {
+            aarq.addPresentationContextFor(cuid, tsuid);
+            for (String ts : fallbackTSs)
+                aarq.addPresentationContextFor(cuid, ts);
+            return true;
+        }
+        if (negotiated.abstractSyntaxRejected)
+            return false;
+
+        if (negotiated.accepted.contains(tsuid)) {
+            aarq.addPresentationContextFor(cuid, tsuid);
+            return true;
+        }
+        for (String ts : fallbackTSs)
+            if (negotiated.accepted.contains(ts))
+                aarq.addPresentationContextFor(cuid, ts);
+        if (!negotiated.rejected.contains(tsuid))
+            aarq.addPresentationContextFor(cuid, tsuid);
+        for (String ts : fallbackTSs)
+            if (!negotiated.accepted.contains(ts)
+                    && !negotiated.rejected.contains(ts))
+                aarq.addPresentationContextFor(cuid, ts);
+        return true;
+    }
+
+    private Negotiated get(String aet, Connection remote, String cuid) {
+        ConcurrentMap<String, Negotiated> map = cache.get(keyFor(aet, remote));
+        if (map == null)
+            return null;
+
+        Negotiated negotiated = map.get(cuid);
+        if (negotiated == null)
+            return null;
+
+        if (negotiated.expires - System.currentTimeMillis() < 0) {
+            map.remove(cuid, negotiated);
+            return null;
+        }
+        return negotiated;
+    }
+
+    private ConcurrentMap<String, Negotiated> mapFor(String aet,
+            Connection remote) {
+        String key = keyFor(aet, remote);
+        ConcurrentMap<String, Negotiated> map = cache.get(key);
+        if (map == null) {
+            ConcurrentMap<String, Negotiated> prev = cache.putIfAbsent(key,
+                    map = new ConcurrentHashMap<String, Negotiated>());
+            if (prev != null)
+                map = prev;
+        }
+        return map;
+    }
+
+    private static String keyFor(String aet, Connection remote) {
+        return aet + '@' + remote.getHostname() + ':' + remote.getPort();
+    }
+}
@@ -38,12 +38,21 @@
 
 package org.dcm4che3.net.service;
 
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Observable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
@@ -54,6 +63,7 @@ import org.dcm4che3.net.DataWriter;
 import org.dcm4che3.net.DimseRSPHandler;
 import org.dcm4che3.net.InputStreamDataWriter;
 import org.dcm4che3.net.Status;
+import org.dcm4che3.util.SafeClose;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -69,6 +79,8 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
     protected static final Logger LOG = LoggerFactory
             .getLogger(BasicCStoreSCU.class);
 
+    private static final int READ_BUFFER_SIZE = 65536;
+
     protected volatile int status = Status.Pending;
     protected int priority = 0;
     protected int nr_instances;
@@ -77,6 +89,30 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
     protected List<T> failed = Collections.synchronizedList(new ArrayList<T>());
     protected int outstandingRSP = 0;
     protected Object outstandingRSPLock = new Object();
+    private Executor readAheadExecutor;
+    private int readAhead;
+    private ReadAhead current;
+
+    public int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Select the Transfer Syntax and open and parse the header of up to
+     * {@code readAhead} instances ahead of the instance currently sent,
+     * using threads of the specified executor. So the disk latency of
+     * following instances overlaps with the network transfer of the current
+     * instance. {@code readAhead = 0} (= default) opens each instance just
+     * before sending it.
+     */
+    public void setReadAhead(Executor executor, int readAhead) {
+        if (readAhead < 0)
+            throw new IllegalArgumentException("readAhead: " + readAhead);
+        if (readAhead > 0 && executor == null)
+            throw new NullPointerException("executor");
+        this.readAheadExecutor = executor;
+        this.readAhead = readAhead;
+    }
 
     @Override
     public int getStatus() {
@@ -130,6 +166,9 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
 
         nr_instances = instances.size();
 
+        if (readAhead > 0)
+            return cstoreWithReadAhead(instances, storeas);
+
         try {
             for (Iterator<T> iter = instances.iterator(); iter.hasNext();) {
                 T inst = iter.next();
@@ -163,21 +202,139 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
         }
     }
 
+    private BasicCStoreSCUResp cstoreWithReadAhead(List<T> instances,
+            Association storeas) {
+        LinkedList<ReadAhead> prepared = new LinkedList<ReadAhead>();
+        try {
+            Iterator<T> iter = instances.iterator();
+            for (;;) {
+                while (prepared.size() <= readAhead && iter.hasNext())
+                    prepared.add(new ReadAhead(storeas, iter.next()));
+
+                ReadAhead next = prepared.poll();
+                if (next == null || status == Status.Cancel)
+                    break;
+
+                current = next;
+                try {
+                    storeInstance(storeas, next.inst);
+                } catch (Throwable e) {
+                    current = null;
+                    LOG.warn(
+                            "Unable to perform sub-operation on association to {}",
+                            storeas.getRemoteAET(), e);
+                    failed.add(next.discard());
+                    for (ReadAhead task : prepared)
+                        failed.add(task.discard());
+                    prepared.clear();
+                    while (iter.hasNext())
+                        failed.add(iter.next());
+                }
+                if (current != null) { // not used by overridden storeInstance
+                    current.discard();
+                    current = null;
+                }
+            }
+            waitForOutstandingCStoreRSP(storeas);
+
+            setFinalStatus();
+
+            return makeRSP(status);
+        } finally {
+            current = null;
+            for (ReadAhead task : prepared)
+                task.discard();
+            try {
+                close();
+            } catch (Throwable e) {
+                LOG.warn("Exception thrown by {}.close()",
+                        getClass().getName(), e);
+            }
+        }
+    }
+
     protected void storeInstance(Association storeas, T inst) throws IOException, InterruptedException {
-        String tsuid;
-        DataWriter dataWriter;
+        store(storeas, prepared(storeas, inst));
+    }
+
+    private PreparedInstance prepared(Association storeas, T inst)
+            throws IOException, InterruptedException {
+        ReadAhead readAhead = current;
+        if (readAhead == null || readAhead.inst != inst)
+            return prepare(storeas, inst);
+
+        current = null;
+        try {
+            return readAhead.get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private PreparedInstance prepare(Association storeas, T inst) {
+        PreparedInstance prepared = new PreparedInstance(inst);
         try {
-            tsuid = selectTransferSyntaxFor(storeas, inst);
-            dataWriter = createDataWriter(inst, tsuid);
+            prepared.tsuid = selectTransferSyntaxFor(storeas, inst);
+            prepared.dataWriter = createDataWriter(inst, prepared.tsuid);
         } catch (Exception e) {
+            prepared.exception = e;
+        }
+        return prepared;
+    }
+
+    private void store(Association storeas, PreparedInstance prepared)
+            throws IOException, InterruptedException {
+        T inst = prepared.inst;
+        if (prepared.exception != null) {
             LOG.info("Unable to store {}/{} to {}",
                     UID.nameOf(inst.cuid), UID.nameOf(inst.tsuid),
-                    storeas.getRemoteAET(), e);
+                    storeas.getRemoteAET(), prepared.exception);
             failed.add(inst);
             return;
         }
 
-        cstore(storeas, inst, tsuid, dataWriter);
+        cstore(storeas, inst, prepared.tsuid, prepared.dataWriter);
+    }
+
+    private final class ReadAhead extends FutureTask<PreparedInstance> {
+
+        final T inst;
+
+        ReadAhead(final Association storeas, final T inst) {
+            super(new Callable<PreparedInstance>() {
+
+                @Override
+                public PreparedInstance call() {
+                    return prepare(storeas, inst);
+                }
+            });
+            this.inst = inst;
+            readAheadExecutor.execute(this);
+        }
+
+        T discard() {
+            try {
+                DataWriter dataWriter = get().dataWriter;
+                if (dataWriter instanceof Closeable)
+                    SafeClose.close((Closeable) dataWriter);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException ignore) {
+            }
+            return inst;
+        }
+    }
+
+    private final class PreparedInstance {
+
+        final T inst;
+        String tsuid;
+        DataWriter dataWriter;
+        Exception exception;
+
+        PreparedInstance(T inst) {
+            this.inst = inst;
+        }
     }
 
     private void setFinalStatus() {
@@ -274,8 +431,16 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
 
     protected DataWriter createDataWriter(T inst, String tsuid)
             throws Exception {
-        DicomInputStream in = new DicomInputStream(inst.getFile());
-        in.readFileMetaInformation();
+        File file = inst.getFile();
+        DicomInputStream in = new DicomInputStream(new BufferedInputStream(
+                new FileInputStream(file), READ_BUFFER_SIZE));
+        try {
+            in.setURI(file.toURI().toString());
+            in.readFileMetaInformation();
+        } catch (IOException e) {
+            SafeClose.close(in);
+            throw e;
+        }
         return new InputStreamDataWriter(in);
     }
 
@@ -40,6 +40,8 @@ package org.dcm4che3.net.service;
 
 import java.io.IOException;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
@@ -56,6 +58,8 @@ import org.slf4j.LoggerFactory;
  */
 public class BasicQueryTask implements QueryTask {
 
+    public static final int DEFAULT_PENDING_RSP_FLUSH_INTERVAL = 100;
+
     private static Logger log = LoggerFactory.getLogger(BasicQueryTask.class);
 
     protected final Association as;
@@ -64,6 +68,12 @@ public class BasicQueryTask implements QueryTask {
     protected final Attributes keys;
     protected volatile boolean canceled;
     protected boolean optionalKeysNotSupported = false;
+    private int pendingRSPBatchSize = 1;
+    private int pendingRSPFlushInterval = DEFAULT_PENDING_RSP_FLUSH_INTERVAL;
+    private ScheduledFuture<?> flushPendingRSP;
+    private int maxMatches;
+    private long maxQueryTime;
+    private QueryStatistics statistics;
 
     public BasicQueryTask(Association as, PresentationContext pc,
             Attributes rq, Attributes keys) {
@@ -81,6 +91,73 @@ public class BasicQueryTask implements QueryTask {
         this.optionalKeysNotSupported = optionalKeysNotSupported;
     }
 
+    public int getPendingRSPBatchSize() {
+        return pendingRSPBatchSize;
+    }
+
+    /**
+     * Set maximal number of pending C-FIND RSPs packed into one P-DATA-TF
+     * PDU, as far as the max PDU length permits. {@code 1} (= default) sends
+     * each pending C-FIND RSP separately.
+     */
+    public void setPendingRSPBatchSize(int pendingRSPBatchSize) {
+        if (pendingRSPBatchSize <= 0)
+            throw new IllegalArgumentException("pendingRSPBatchSize: "
+                    + pendingRSPBatchSize);
+        this.pendingRSPBatchSize = pendingRSPBatchSize;
+    }
+
+    public int getPendingRSPFlushInterval() {
+        return pendingRSPFlushInterval;
+    }
+
+    /**
+     * Set interval in ms in which packed pending C-FIND RSPs are sent, even
+     * if the batch is not yet complete, so already returned matches are not
+     * held back while fetching further matches is slow. {@code 0} only sends
+     * complete batches and the final C-FIND RSP.
+     */
+    public void setPendingRSPFlushInterval(int pendingRSPFlushInterval) {
+        if (pendingRSPFlushInterval < 0)
+            throw new IllegalArgumentException("pendingRSPFlushInterval: "
+                    + pendingRSPFlushInterval);
+        this.pendingRSPFlushInterval = pendingRSPFlushInterval;
+    }
+
+    public int getMaxMatches() {
+        return maxMatches;
+    }
+
+    /**
+     * Set maximal number of returned matches. If the query returns more
+     * matches, it is terminated with status {@link Status#OutOfResources}.
+     * {@code 0} (= default) does not limit the number of matches.
+     */
+    public void setMaxMatches(int maxMatches) {
+        this.maxMatches = maxMatches;
+    }
+
+    public long getMaxQueryTime() {
+        return maxQueryTime;
+    }
+
+    /**
+     * Set maximal time in ms for returning the matches. If the query takes
+     * longer, it is terminated with status {@link Status#OutOfResources}.
+     * {@code 0} (= default) does not limit the query time.
+     */
+    public void setMaxQueryTime(long maxQueryTime) {
+        this.maxQueryTime = maxQueryTime;
+    }
+
+    public QueryStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void setStatistics(QueryStatistics statistics) {
+        this.statistics = statistics;
+    }
+
     @Override
     public void onCancelRQ(Association as) {
         canceled = true;
@@ -88,17 +165,26 @@ public class BasicQueryTask implements QueryTask {
 
     @Override
     public void run() {
+        long startTime = System.currentTimeMillis();
+        int numMatches = 0;
         try {
             int msgId = rq.getInt(Tag.MessageID, -1);
             as.addCancelRQHandler(msgId, this);
             try {
+                if (pendingRSPBatchSize > 1 && pendingRSPFlushInterval > 0)
+                    startFlushingPendingRSP();
                 while (!canceled && hasMoreMatches()) {
+                    // also if no match is returned for a while
+                    checkMaxQueryTime(startTime);
                     Attributes match = adjust(nextMatch());
                     if (match != null) {
+                        checkMaxMatches(numMatches);
+                        numMatches++;
                         int status = optionalKeysNotSupported
                                 ? Status.PendingWarning
                                 : Status.Pending;
-                        as.writeDimseRSP(pc, Commands.mkCFindRSP(rq, status), match);
+                        as.writeDimseRSP(pc, Commands.mkCFindRSP(rq, status), match,
+                                numMatches % pendingRSPBatchSize == 0);
                     }
                 }
                 int status = canceled ? Status.Cancel : Status.Success;
@@ -108,14 +194,56 @@ public class BasicQueryTask implements QueryTask {
                 Attributes rsp = e.mkRSP(0x8020, msgId);
                 as.writeDimseRSP(pc, rsp, e.getDataset());
             } finally {
+                stopFlushingPendingRSP();
                 as.removeCancelRQHandler(msgId);
                 close();
             }
         } catch (IOException e) {
             // handled by Association
+        } finally {
+            if (statistics != null)
+                statistics.onQueryCompleted(
+                        System.currentTimeMillis() - startTime, numMatches);
         }
     }
 
+    private void startFlushingPendingRSP() {
+        flushPendingRSP = as.getApplicationEntity().getDevice()
+                .scheduleAtFixedRate(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            as.flushDimseRSP();
+                        } catch (IOException e) {
+                            // handled by Association
+                        }
+                    }
+                }, pendingRSPFlushInterval, pendingRSPFlushInterval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void stopFlushingPendingRSP() {
+        if (flushPendingRSP != null) {
+            flushPendingRSP.cancel(false);
+            flushPendingRSP = null;
+        }
+    }
+
+    private void checkMaxMatches(int numMatches)
+            throws DicomServiceException {
+        if (maxMatches > 0 && numMatches >= maxMatches)
+            throw new DicomServiceException(Status.OutOfResources,
+                    "Number of matches exceeds limit of " + maxMatches);
+    }
+
+    private void checkMaxQueryTime(long startTime)
+            throws DicomServiceException {
+        if (maxQueryTime > 0
+                && System.currentTimeMillis() - startTime > maxQueryTime)
+            throw new DicomServiceException(Status.OutOfResources,
+                    "Query exceeds time limit of " + maxQueryTime + "ms");
+    }
+
     protected void close() {
     }
 
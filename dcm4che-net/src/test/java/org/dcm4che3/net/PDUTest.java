@@ -38,12 +38,21 @@
 package org.dcm4che3.net;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
@@ -53,6 +62,8 @@ import org.dcm4che3.net.TransferCapability.Role;
 import org.dcm4che3.net.pdu.AAssociateRQ;
 import org.dcm4che3.net.pdu.PresentationContext;
 import org.dcm4che3.net.service.AbstractDicomService;
+import org.dcm4che3.net.service.BasicQueryTask;
+import org.dcm4che3.net.service.DicomServiceException;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -138,6 +149,210 @@ public class PDUTest {
         Thread.sleep(300);
     }
 
+    @Test
+    @Ignore("Test needs a DICOM listener and may therefore fail in some environments.")
+    public void testPackPendingCFindRSPs() throws Exception {
+        final int numMatches = 10;
+        ApplicationEntity aeScp = createAE("FIND_SCP", TransferCapability.Role.SCP);
+        aeScp.setAssociationAcceptor(true);
+        Connection connScp = new Connection("dicom", "localhost", freePort());
+        Device deviceScp = createDevice("findSCP", aeScp, connScp);
+        deviceScp.setDimseRQHandler(new AbstractDicomService(UID.PatientRootQueryRetrieveInformationModelFIND) {
+            @Override
+            protected void onDimseRQ(Association as, PresentationContext pc, Dimse dimse, Attributes cmd, Attributes data) throws IOException {
+                for (int i = 0; i < numMatches; i++)
+                    as.writeDimseRSP(pc, Commands.mkCFindRSP(cmd, Status.Pending), match(i), false);
+                as.writeDimseRSP(pc, Commands.mkCFindRSP(cmd, Status.Success));
+            }
+        });
+        deviceScp.bindConnections();
+        PDUCountingProxy proxy = new PDUCountingProxy(connScp.getPort());
+        try {
+            int[] rsps = cfind(proxy.getPort(), aeScp, null);
+            assertEquals("Pending RSPs", numMatches, rsps[0]);
+            assertEquals("Status SUCCESS", 0, rsps[1]);
+            assertEquals("P-DATA-TF PDUs", 1, proxy.getPDataTFCount());
+        } finally {
+            proxy.close();
+            deviceScp.unbindConnections();
+        }
+    }
+
+    @Test
+    @Ignore("Test needs a DICOM listener and may therefore fail in some environments.")
+    public void testFlushPendingCFindRSPsWhileQueryBlocks() throws Exception {
+        final int numMatches = 3;
+        final CountDownLatch received = new CountDownLatch(numMatches);
+        ApplicationEntity aeScp = createAE("FIND_SCP", TransferCapability.Role.SCP);
+        aeScp.setAssociationAcceptor(true);
+        Connection connScp = new Connection("dicom", "localhost", freePort());
+        Device deviceScp = createDevice("findSCP", aeScp, connScp);
+        deviceScp.setDimseRQHandler(new AbstractDicomService(UID.PatientRootQueryRetrieveInformationModelFIND) {
+            @Override
+            protected void onDimseRQ(Association as, PresentationContext pc, Dimse dimse, Attributes cmd, Attributes data) throws IOException {
+                BasicQueryTask task = new BasicQueryTask(as, pc, cmd, data) {
+                    int count;
+
+                    @Override
+                    protected boolean hasMoreMatches() throws DicomServiceException {
+                        if (count < numMatches)
+                            return true;
+                        try {
+                            // blocks until the already returned matches were received
+                            received.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return false;
+                    }
+
+                    @Override
+                    protected Attributes nextMatch() throws DicomServiceException {
+                        return match(count++);
+                    }
+                };
+                task.setPendingRSPBatchSize(100);
+                task.setPendingRSPFlushInterval(50);
+                as.getApplicationEntity().getDevice().execute(task);
+            }
+        });
+        deviceScp.bindConnections();
+        try {
+            long start = System.currentTimeMillis();
+            int[] rsps = cfind(connScp.getPort(), aeScp, received);
+            assertEquals("Pending RSPs", numMatches, rsps[0]);
+            assertEquals("Status SUCCESS", 0, rsps[1]);
+            assertTrue("Pending RSPs held back until query completed",
+                    System.currentTimeMillis() - start < 4000);
+        } finally {
+            deviceScp.unbindConnections();
+        }
+    }
+
+    private static Attributes match(int i) {
+        Attributes match = new Attributes();
+        match.setString(Tag.QueryRetrieveLevel, VR.CS, "STUDY");
+        match.setString(Tag.PatientName, VR.PN, "TEST^" + i);
+        return match;
+    }
+
+    private int[] cfind(int port, ApplicationEntity aeScp,
+            final CountDownLatch pendingReceived) throws Exception {
+        Connection connScu = new Connection("dicom-scu", "localhost", 0);
+        ApplicationEntity aeScu = createAE("FIND_SCU", TransferCapability.Role.SCU);
+        createDevice("FindSCU", aeScu, connScu);
+        Association as = aeScu.connect(new Connection("dicom", "localhost", port),
+                getAssocReq(aeScp));
+        final int[] rsps = { 0, -1 };
+        Attributes keys = new Attributes();
+        keys.setString(Tag.QueryRetrieveLevel, VR.CS, "STUDY");
+        keys.setNull(Tag.PatientName, VR.PN);
+        as.cfind(UID.PatientRootQueryRetrieveInformationModelFIND, 0, keys,
+                UID.ImplicitVRLittleEndian,
+                new DimseRSPHandler(as.nextMessageID()) {
+                    @Override
+                    public void onDimseRSP(Association as, Attributes cmd,
+                            Attributes data) {
+                        int status = cmd.getInt(Tag.Status, -1);
+                        if (Status.isPending(status)) {
+                            rsps[0]++;
+                            if (pendingReceived != null)
+                                pendingReceived.countDown();
+                        } else {
+                            rsps[1] = status;
+                        }
+                        super.onDimseRSP(as, cmd, data);
+                    }
+                });
+        as.waitForOutstandingRSP();
+        as.release();
+        as.waitForSocketClose();
+        return rsps;
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket ss = new ServerSocket(0);
+        try {
+            return ss.getLocalPort();
+        } finally {
+            ss.close();
+        }
+    }
+
+    /**
+     * Forwards one connection and counts the P-DATA-TF PDUs sent back by the
+     * server.
+     */
+    private static class PDUCountingProxy {
+        final ServerSocket ss;
+        final AtomicInteger pDataTFCount = new AtomicInteger();
+
+        PDUCountingProxy(final int serverPort) throws IOException {
+            ss = new ServerSocket(0);
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Socket client = ss.accept();
+                        Socket server = new Socket("localhost", serverPort);
+                        pump(client.getInputStream(), server.getOutputStream(), false);
+                        pump(server.getInputStream(), client.getOutputStream(), true);
+                    } catch (IOException e) {
+                        // closed
+                    }
+                }
+            }.start();
+        }
+
+        int getPort() {
+            return ss.getLocalPort();
+        }
+
+        int getPDataTFCount() {
+            return pDataTFCount.get();
+        }
+
+        void close() throws IOException {
+            ss.close();
+        }
+
+        void pump(final InputStream in, final OutputStream out, final boolean count) {
+            new Thread() {
+                @Override
+                public void run() {
+                    DataInputStream din = new DataInputStream(in);
+                    byte[] header = new byte[6];
+                    byte[] buf = new byte[8192];
+                    try {
+                        for (;;) {
+                            din.readFully(header);
+                            if (count && header[0] == 4)
+                                pDataTFCount.incrementAndGet();
+                            out.write(header);
+                            int len = ((header[2] & 0xff) << 24) | ((header[3] & 0xff) << 16)
+                                    | ((header[4] & 0xff) << 8) | (header[5] & 0xff);
+                            while (len > 0) {
+                                int n = din.read(buf, 0, Math.min(len, buf.length));
+                                if (n < 0)
+                                    return;
+                                out.write(buf, 0, n);
+                                len -= n;
+                            }
+                            out.flush();
+                        }
+                    } catch (IOException e) {
+                        // closed
+                    } finally {
+                        try {
+                            out.close();
+                        } catch (IOException e) {
+                        }
+                    }
+                }
+            }.start();
+        }
+    }
+
     public AAssociateRQ getAssocReq(ApplicationEntity aeScp) {
         AAssociateRQ rq = new AAssociateRQ();
         rq.addPresentationContext(new PresentationContext(1, UID.PatientRootQueryRetrieveInformationModelFIND, 
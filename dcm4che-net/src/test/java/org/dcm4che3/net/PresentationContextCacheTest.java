@@ -0,0 +1,190 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.dcm4che3.data.UID;
+import org.dcm4che3.net.pdu.AAssociateAC;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class PresentationContextCacheTest {
+
+    private static final String CT = UID.CTImageStorage;
+    private static final String MR = UID.MRImageStorage;
+    private static final String JPEG = UID.JPEGLossless;
+    private static final String[] FALLBACK = {
+        UID.ExplicitVRLittleEndian, UID.ImplicitVRLittleEndian };
+
+    private final Connection remote = new Connection("dicom", "localhost", 11112);
+    private PresentationContextCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new PresentationContextCache();
+    }
+
+    private static AAssociateRQ rq(String calledAET) {
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCalledAET(calledAET);
+        return rq;
+    }
+
+    /**
+     * Negotiates one presentation context per transfer syntax for
+     * {@code cuid}, accepting the transfer syntaxes in {@code accepted} and
+     * rejecting the others with {@code result}.
+     */
+    private void negotiate(String calledAET, String cuid, int result,
+            List<String> accepted, String... tsuids) {
+        AAssociateRQ rq = rq(calledAET);
+        AAssociateAC ac = new AAssociateAC();
+        for (String tsuid : tsuids) {
+            int pcid = rq.getNumberOfPresentationContexts() * 2 + 1;
+            rq.addPresentationContext(new PresentationContext(pcid, cuid, tsuid));
+            ac.addPresentationContext(accepted.contains(tsuid)
+                    ? new PresentationContext(pcid,
+                            PresentationContext.ACCEPTANCE, tsuid)
+                    : new PresentationContext(pcid, result, tsuid));
+        }
+        cache.update(remote, rq, ac);
+    }
+
+    private List<String> propose(String calledAET, String cuid) {
+        AAssociateRQ rq = rq(calledAET);
+        assertTrue(cache.addPresentationContextFor(rq, remote, cuid, JPEG,
+                FALLBACK));
+        List<String> tss = new ArrayList<String>();
+        for (PresentationContext pc : rq.getPresentationContexts()) {
+            assertEquals(cuid, pc.getAbstractSyntax());
+            tss.add(pc.getTransferSyntax());
+        }
+        return tss;
+    }
+
+    private static List<String> tss(String... tss) {
+        return Arrays.asList(tss);
+    }
+
+    @Test
+    public void testProposeAllWithoutPreviousNegotiation() {
+        assertEquals(tss(JPEG, FALLBACK[0], FALLBACK[1]),
+                propose("STORESCP", CT));
+    }
+
+    @Test
+    public void testProposeOnlyAcceptedTransferSyntax() {
+        negotiate("STORESCP", CT,
+                PresentationContext.TRANSFER_SYNTAX_NOT_SUPPORTED,
+                tss(JPEG, FALLBACK[0]), JPEG, FALLBACK[0], FALLBACK[1]);
+        assertEquals(tss(JPEG), propose("STORESCP", CT));
+    }
+
+    @Test
+    public void testOmitRejectedTransferSyntax() {
+        negotiate("STORESCP", CT,
+                PresentationContext.TRANSFER_SYNTAX_NOT_SUPPORTED,
+                tss(FALLBACK[1]), JPEG, FALLBACK[1]);
+        assertEquals(tss(FALLBACK[1], FALLBACK[0]), propose("STORESCP", CT));
+    }
+
+    @Test
+    public void testRejectedAbstractSyntax() {
+        negotiate("STORESCP", MR,
+                PresentationContext.ABSTRACT_SYNTAX_NOT_SUPPORTED,
+                tss(), JPEG, FALLBACK[0]);
+        AAssociateRQ rq = rq("STORESCP");
+        assertFalse(cache.addPresentationContextFor(rq, remote, MR, JPEG,
+                FALLBACK));
+        assertEquals(0, rq.getNumberOfPresentationContexts());
+        assertEquals(tss(JPEG, FALLBACK[0], FALLBACK[1]),
+                propose("STORESCP", CT));
+    }
+
+    @Test
+    public void testKeyedByCalledAETAndConnection() {
+        negotiate("STORESCP", CT,
+                PresentationContext.TRANSFER_SYNTAX_NOT_SUPPORTED,
+                tss(JPEG), JPEG);
+        assertEquals(tss(JPEG, FALLBACK[0], FALLBACK[1]),
+                propose("OTHERSCP", CT));
+        Connection other = new Connection("dicom", "localhost", 104);
+        AAssociateRQ rq = rq("STORESCP");
+        cache.addPresentationContextFor(rq, other, CT, JPEG, FALLBACK);
+        assertEquals(3, rq.getNumberOfPresentationContexts());
+    }
+
+    @Test
+    public void testRemove() {
+        negotiate("STORESCP", CT,
+                PresentationContext.TRANSFER_SYNTAX_NOT_SUPPORTED,
+                tss(JPEG), JPEG);
+        cache.remove("STORESCP", remote);
+        assertEquals(tss(JPEG, FALLBACK[0], FALLBACK[1]),
+                propose("STORESCP", CT));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        cache.setTimeToLive(1);
+        negotiate("STORESCP", CT,
+                PresentationContext.TRANSFER_SYNTAX_NOT_SUPPORTED,
+                tss(JPEG), JPEG);
+        Thread.sleep(10);
+        assertEquals(tss(JPEG, FALLBACK[0], FALLBACK[1]),
+                propose("STORESCP", CT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTimeToLive() {
+        cache.setTimeToLive(0);
+    }
+}
@@ -38,12 +38,16 @@
 
 package org.dcm4che3.tool.dcm2dcm;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.OptionBuilder;
@@ -59,6 +63,7 @@ import org.dcm4che3.data.VR;
 import org.dcm4che3.imageio.codec.Compressor;
 import org.dcm4che3.imageio.codec.Decompressor;
 import org.dcm4che3.imageio.codec.TransferSyntaxType;
+import org.dcm4che3.imageio.codec.Transcoder;
 import org.dcm4che3.io.DicomEncodingOptions;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.DicomOutputStream;
@@ -81,6 +86,8 @@ public class Dcm2Dcm {
     private boolean nofmi;
     private DicomEncodingOptions encOpts = DicomEncodingOptions.DEFAULT;
     private final List<Property> params = new ArrayList<Property>();
+    private ExecutorService executor;
+    private int threads = 1;
 
     public final void setTransferSyntax(String uid) {
         this.tsuid = uid;
@@ -103,6 +110,28 @@ public class Dcm2Dcm {
         this.encOpts = encOpts;
     }
 
+    /**
+     * Use up to {@code threads} threads to compress or decompress frames of
+     * multi-frame images concurrently.
+     */
+    public final void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads: " + threads);
+        if (executor != null)
+            executor.shutdown();
+        this.threads = threads;
+        this.executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    }
+
+    public final int getThreads() {
+        return threads;
+    }
+
+    public void shutdown() {
+        if (executor != null)
+            executor.shutdown();
+    }
+
     public void addCompressionParam(String name, Object value) {
         params.add(new Property(name, value));
     }
@@ -150,6 +179,10 @@ public class Dcm2Dcm {
                 .withLongOpt("j2ki")
                 .withDescription(rb.getString("j2ki"))
                 .create());
+        tsGroup.addOption(OptionBuilder
+                .withLongOpt("rle")
+                .withDescription(rb.getString("rle"))
+                .create());
         opts.addOptionGroup(tsGroup);
         OptionGroup fmiGroup = new OptionGroup();
         fmiGroup.addOption(OptionBuilder
@@ -193,6 +226,13 @@ public class Dcm2Dcm {
                 .withValueSeparator()
                 .withDescription(rb.getString("compression-param"))
                 .create("C"));
+        opts.addOption(OptionBuilder
+                .hasArg()
+                .withArgName("no")
+                .withType(PatternOptionBuilder.NUMBER_VALUE)
+                .withDescription(rb.getString("threads"))
+                .withLongOpt("threads")
+                .create());
         CommandLine cl = CLIUtils.parseComandLine(args, opts, rb, Dcm2Dcm.class);
         return cl;
     }
@@ -228,6 +268,10 @@ public class Dcm2Dcm {
                 main.addCompressionParam("encodingRate",
                         cl.getParsedOptionValue("Q"));
 
+            if (cl.hasOption("threads"))
+                main.setThreads(((Number) cl.getParsedOptionValue("threads"))
+                        .intValue());
+
             String[] cparams = cl.getOptionValues("C");
             if (cparams != null)
                 for (int i = 0; i < cparams.length;)
@@ -243,8 +287,12 @@ public class Dcm2Dcm {
                     && !dest.isDirectory())
                 throw new ParseException(
                         MessageFormat.format(rb.getString("nodestdir"), dest));
-            for (String src : argList.subList(0, argc-1))
-                main.mtranscode(new File(src), dest);
+            try {
+                for (String src : argList.subList(0, argc-1))
+                    main.mtranscode(new File(src), dest);
+            } finally {
+                main.shutdown();
+            }
         } catch (ParseException e) {
             System.err.println("dcm2dcm: " + e.getMessage());
             System.err.println(rb.getString("try"));
@@ -265,6 +313,7 @@ public class Dcm2Dcm {
                 : cl.hasOption("jpls") ? UID.JPEGLSLossless
                 : cl.hasOption("j2kr") ? UID.JPEG2000LosslessOnly
                 : cl.hasOption("j2ki") ? UID.JPEG2000
+                : cl.hasOption("rle") ? UID.RLELossless
                 : cl.getOptionValue("t", def);
     }
 
@@ -290,7 +339,71 @@ public class Dcm2Dcm {
          }
      }
 
-     public void transcode(File src, File dest) throws IOException {
+    /**
+     * Transcodes {@code src} frame by frame in a single pass, or - if more
+     * than one thread is configured - with the pixel data of all frames
+     * held in memory.
+     */
+    public void transcode(File src, File dest) throws IOException {
+        if (executor != null) {
+            transcodeInMemory(src, dest);
+            return;
+        }
+        DicomInputStream dis = new DicomInputStream(src);
+        FileHandler handler = new FileHandler(dest);
+        try {
+            Transcoder transcoder = new Transcoder(dis);
+            try {
+                transcoder.setDestinationTransferSyntax(tsuid);
+                transcoder.setCompressParams(
+                        params.toArray(new Property[params.size()]));
+                transcoder.transcode(handler);
+            } finally {
+                transcoder.close();
+            }
+        } finally {
+            SafeClose.close(dis);
+            SafeClose.close(handler.dos);
+        }
+    }
+
+    private final class FileHandler implements Transcoder.Handler {
+
+        private final File dest;
+        private DicomOutputStream dos;
+
+        FileHandler(File dest) {
+            this.dest = dest;
+        }
+
+        @Override
+        public DicomOutputStream newDicomOutputStream(Transcoder transcoder,
+                Attributes dataset) throws IOException {
+            String tsuid = transcoder.getDestinationTransferSyntax();
+            if (tstype.isPixeldataEncapsulated()
+                    && dataset.containsValue(Tag.BitsStored)) {
+                tsuid = adjustTransferSyntax(tsuid,
+                        dataset.getInt(Tag.BitsStored, 8));
+                transcoder.setDestinationTransferSyntax(tsuid);
+            }
+            Attributes fmi = transcoder.getFileMetaInformation();
+            if (nofmi)
+                fmi = null;
+            else if (retainfmi && fmi != null)
+                fmi.setString(Tag.TransferSyntaxUID, VR.UI, tsuid);
+            else
+                fmi = dataset.createFileMetaInformation(tsuid);
+            dos = new DicomOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(dest)),
+                    fmi != null ? UID.ExplicitVRLittleEndian : tsuid);
+            dos.setEncodingOptions(encOpts);
+            if (fmi != null)
+                dos.writeFileMetaInformation(fmi);
+            return dos;
+        }
+    }
+
+    private void transcodeInMemory(File src, File dest) throws IOException {
         Attributes fmi;
         Attributes dataset;
         DicomInputStream dis = new DicomInputStream(src);
@@ -312,9 +425,16 @@ public class Dcm2Dcm {
                             dataset.getInt(Tag.BitsStored, 8));
                     compressor = new Compressor(dataset, dis.getTransferSyntax(),
                             tsuid, params.toArray(new Property[params.size()]));
+                    if (executor != null)
+                        compressor.setParallelCompression(executor, threads);
                     compressor.compress();
-                } else if (pixeldata instanceof Fragments)
-                    Decompressor.decompress(dataset, dis.getTransferSyntax());
+                } else if (pixeldata instanceof Fragments) {
+                    Decompressor decompressor =
+                            new Decompressor(dataset, dis.getTransferSyntax());
+                    if (executor != null)
+                        decompressor.setParallelDecompression(executor, threads);
+                    decompressor.decompress();
+                }
             }
             if (nofmi)
                 fmi = null;
@@ -46,6 +46,7 @@ import java.util.Random;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.VR;
+import org.dcm4che3.imageio.codec.Transcoder;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
 import org.dcm4che3.io.DicomOutputStream;
@@ -71,6 +72,7 @@ public class CStoreSCPImpl extends BasicCStoreSCP {
     private final DicomDirWriter dicomDirWriter;
     private final RecordFactory recordFactory;
     private final AttributesFormat filePathFormat;
+    private String storageTransferSyntax;
 
     public CStoreSCPImpl(DicomDirWriter dicomDirWriter, AttributesFormat filePathFormat, RecordFactory recordFactory) {
         super("*");
@@ -80,6 +82,19 @@ public class CStoreSCPImpl extends BasicCStoreSCP {
         this.recordFactory = recordFactory;
     }
 
+    public final String getStorageTransferSyntax() {
+        return storageTransferSyntax;
+    }
+
+    /**
+     * Sets the Transfer Syntax to which received objects are transcoded
+     * frame by frame, while they are stored. If {@code null} (= default),
+     * objects are stored with the Transfer Syntax they were received with.
+     */
+    public final void setStorageTransferSyntax(String storageTransferSyntax) {
+        this.storageTransferSyntax = storageTransferSyntax;
+    }
+
     @Override
     protected void store(Association as, PresentationContext pc, Attributes rq,
             PDVInputStream data, Attributes rsp) throws IOException {
@@ -89,7 +104,12 @@ public class CStoreSCPImpl extends BasicCStoreSCP {
         File file = new File(storageDir, iuid);
         try {
             Attributes fmi = as.createFileMetaInformation(iuid, cuid, tsuid);
-            storeTo(as, fmi, data, file);
+            if (storageTransferSyntax != null
+                    && !storageTransferSyntax.equals(tsuid)
+                    && Transcoder.isSupported(tsuid, storageTransferSyntax))
+                transcodeTo(as, fmi, data, file, storageTransferSyntax);
+            else
+                storeTo(as, fmi, data, file);
             Attributes attrs = parse(file);
             File dest = getDestinationFile(attrs);
             renameTo(as, file, dest);
@@ -120,6 +140,38 @@ public class CStoreSCPImpl extends BasicCStoreSCP {
         }
     }
 
+    private static void transcodeTo(Association as, final Attributes fmi,
+            PDVInputStream data, File file, String destTsuid)
+            throws IOException {
+        LOG.info("{}: M-WRITE {} with Transfer Syntax {}",
+                new Object[] { as, file, destTsuid });
+        file.getParentFile().mkdirs();
+        final DicomOutputStream out = new DicomOutputStream(file);
+        try {
+            Transcoder transcoder = new Transcoder(new DicomInputStream(data,
+                    fmi.getString(Tag.TransferSyntaxUID)));
+            try {
+                transcoder.setDestinationTransferSyntax(destTsuid);
+                transcoder.transcode(new Transcoder.Handler() {
+
+                    @Override
+                    public DicomOutputStream newDicomOutputStream(
+                            Transcoder transcoder, Attributes dataset)
+                            throws IOException {
+                        fmi.setString(Tag.TransferSyntaxUID, VR.UI,
+                                transcoder.getDestinationTransferSyntax());
+                        out.writeFileMetaInformation(fmi);
+                        return out;
+                    }
+                });
+            } finally {
+                transcoder.close();
+            }
+        } finally {
+            SafeClose.close(out);
+        }
+    }
+
     private File getDestinationFile(Attributes attrs) {
         File file = new File(storageDir, filePathFormat.format(attrs));
         while (file.exists())
@@ -38,15 +38,13 @@
 
 package org.dcm4che3.tool.dcmqrscp;
 
-import java.io.IOException;
-
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
 import org.dcm4che3.net.DataWriter;
 import org.dcm4che3.net.DataWriterAdapter;
-import org.dcm4che3.net.service.BasicCStoreSCU;
+import org.dcm4che3.net.imageio.TranscodingCStoreSCU;
 import org.dcm4che3.net.service.InstanceLocator;
 import org.dcm4che3.util.SafeClose;
 
@@ -54,7 +52,7 @@ import org.dcm4che3.util.SafeClose;
  * @author Gunter Zeilinger <gunterze@gmail.com>
  * @author Umberto Cappellini <umberto.cappellini@agfa.com>
  */
-class CStoreSCUImpl<T extends InstanceLocator>  extends BasicCStoreSCU<T> {
+class CStoreSCUImpl<T extends InstanceLocator>  extends TranscodingCStoreSCU<T> {
 
     private final boolean withoutBulkData;
 
@@ -64,8 +62,11 @@ class CStoreSCUImpl<T extends InstanceLocator>  extends BasicCStoreSCU<T> {
     }
 
     @Override
-    protected DataWriter createDataWriter(InstanceLocator inst, String tsuid)
-            throws IOException {
+    protected DataWriter createDataWriter(T inst, String tsuid)
+            throws Exception {
+        if (!withoutBulkData && !tsuid.equals(inst.tsuid))
+            return super.createDataWriter(inst, tsuid);
+
         Attributes attrs;
         DicomInputStream in = new DicomInputStream(inst.getFile());
         try {
@@ -47,6 +47,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -67,9 +68,11 @@ import org.dcm4che3.net.Association;
 import org.dcm4che3.net.Connection;
 import org.dcm4che3.net.Device;
 import org.dcm4che3.net.Dimse;
+import org.dcm4che3.net.PresentationContextCache;
 import org.dcm4che3.net.QueryOption;
 import org.dcm4che3.net.Status;
 import org.dcm4che3.net.TransferCapability;
+import org.dcm4che3.net.imageio.TranscodingCStoreSCU;
 import org.dcm4che3.net.pdu.AAssociateRQ;
 import org.dcm4che3.net.pdu.ExtendedNegotiation;
 import org.dcm4che3.net.pdu.PresentationContext;
@@ -77,13 +80,12 @@ import org.dcm4che3.net.service.BasicCEchoSCP;
 import org.dcm4che3.net.service.BasicCFindSCP;
 import org.dcm4che3.net.service.BasicCGetSCP;
 import org.dcm4che3.net.service.BasicCMoveSCP;
-import org.dcm4che3.net.service.BasicCStoreSCU;
 import org.dcm4che3.net.service.BasicRetrieveTask;
-import org.dcm4che3.net.service.CStoreSCU;
 import org.dcm4che3.net.service.DicomServiceException;
 import org.dcm4che3.net.service.DicomServiceRegistry;
 import org.dcm4che3.net.service.InstanceLocator;
 import org.dcm4che3.net.service.QueryRetrieveLevel;
+import org.dcm4che3.net.service.QueryStatistics;
 import org.dcm4che3.net.service.QueryTask;
 import org.dcm4che3.net.service.RetrieveTask;
 import org.dcm4che3.tool.common.CLIUtils;
@@ -123,6 +125,15 @@ public class DcmQRSCP<T extends InstanceLocator> {
     private boolean stgCmtOnSameAssoc;
     private boolean sendPendingCGet;
     private int sendPendingCMoveInterval;
+    private int readAhead;
+    private PresentationContextCache pcCache;
+    private Executor transcoderExecutor;
+    private String storageTransferSyntax;
+    private int queryPrefetch;
+    private int pendingCFindBatchSize = 1;
+    private int maxMatches;
+    private long maxQueryTime;
+    private final QueryStatistics queryStatistics = new QueryStatistics();
     private final FilesetInfo fsInfo = new FilesetInfo();
     private DicomDirReader ddReader;
     private DicomDirWriter ddWriter;
@@ -147,6 +158,19 @@ public class DcmQRSCP<T extends InstanceLocator> {
                     qrLevels);
             level.validateQueryKeys(keys, rootLevel,
                     rootLevel == QueryRetrieveLevel.IMAGE || relational(as, rq));
+            PatientQueryTask queryTask = createQueryTask(as, pc, rq, keys, level);
+            queryTask.setPendingRSPBatchSize(pendingCFindBatchSize);
+            queryTask.setMaxMatches(maxMatches);
+            queryTask.setMaxQueryTime(maxQueryTime);
+            queryTask.setStatistics(queryStatistics);
+            if (queryPrefetch > 0)
+                queryTask.prefetch(device.getExecutor(), queryPrefetch);
+            return queryTask;
+        }
+
+        private PatientQueryTask createQueryTask(Association as,
+                PresentationContext pc, Attributes rq, Attributes keys,
+                QueryRetrieveLevel level) throws DicomServiceException {
             DicomDirReader ddr = getDicomDirReader();
             String availability = getInstanceAvailability();
             switch (level) {
@@ -200,7 +224,12 @@ public class DcmQRSCP<T extends InstanceLocator> {
             if (matches.isEmpty())
                 return null;
 
-            CStoreSCU<T> storescu = new CStoreSCUImpl<T>(withoutBulkData);
+            // sub-operations use the presentation contexts proposed by the
+            // C-GET SCU, so pcCache does not apply here
+            CStoreSCUImpl<T> storescu = new CStoreSCUImpl<T>(withoutBulkData);
+            if (readAhead > 0)
+                storescu.setReadAhead(device.getExecutor(), readAhead);
+            storescu.setTranscoderExecutor(transcoderExecutor);
 
             BasicRetrieveTask<T> retrieveTask = new BasicRetrieveTask<T>(
                     Dimse.C_GET_RQ, as, pc, rq, matches, as, storescu);
@@ -246,12 +275,15 @@ public class DcmQRSCP<T extends InstanceLocator> {
                 return null;
 
             AAssociateRQ aarq = makeAAssociateRQ(as.getLocalAET(), moveDest,
-                    matches);
+                    remote, matches);
             Association storeas = openStoreAssociation(as, remote, aarq);
 
+            TranscodingCStoreSCU<T> storescu = new TranscodingCStoreSCU<T>();
+            if (readAhead > 0)
+                storescu.setReadAhead(device.getExecutor(), readAhead);
+            storescu.setTranscoderExecutor(transcoderExecutor);
             BasicRetrieveTask<T> retrieveTask = new BasicRetrieveTask<T>(
-                    Dimse.C_MOVE_RQ, as, pc, rq, matches, storeas,
-                    new BasicCStoreSCU<T>());
+                    Dimse.C_MOVE_RQ, as, pc, rq, matches, storeas, storescu);
             retrieveTask
                     .setSendPendingRSPInterval(getSendPendingCMoveInterval());
             return retrieveTask;
@@ -261,32 +293,50 @@ public class DcmQRSCP<T extends InstanceLocator> {
                 Connection remote, AAssociateRQ aarq)
                 throws DicomServiceException {
             try {
-                return as.getApplicationEntity().connect(as.getConnection(),
-                        remote, aarq);
+                Association storeas = as.getApplicationEntity().connect(
+                        as.getConnection(), remote, aarq);
+                if (pcCache != null)
+                    pcCache.update(remote, storeas);
+                return storeas;
             } catch (Exception e) {
+                if (pcCache != null)
+                    pcCache.remove(aarq.getCalledAET(), remote);
                 throw new DicomServiceException(
                         Status.UnableToPerformSubOperations, e);
             }
         }
 
         private AAssociateRQ makeAAssociateRQ(String callingAET,
-                String calledAET, List<T> matches) {
+                String calledAET, Connection remote, List<T> matches) {
             AAssociateRQ aarq = new AAssociateRQ();
             aarq.setCalledAET(calledAET);
             aarq.setCallingAET(callingAET);
             for (InstanceLocator match : matches) {
-                if (aarq.addPresentationContextFor(match.cuid, match.tsuid)) {
-                    if (!UID.ExplicitVRLittleEndian.equals(match.tsuid))
-                        aarq.addPresentationContextFor(match.cuid,
-                                UID.ExplicitVRLittleEndian);
-                    if (!UID.ImplicitVRLittleEndian.equals(match.tsuid))
-                        aarq.addPresentationContextFor(match.cuid,
-                                UID.ImplicitVRLittleEndian);
+                if (pcCache != null) {
+                    pcCache.addPresentationContextFor(aarq, remote,
+                            match.cuid, match.tsuid, fallbackTSs(match.tsuid));
+                } else if (aarq.addPresentationContextFor(match.cuid, match.tsuid)) {
+                    for (String ts : fallbackTSs(match.tsuid))
+                        aarq.addPresentationContextFor(match.cuid, ts);
                 }
             }
+            if (aarq.getNumberOfPresentationContexts() == 0) {
+                // all SOP Classes were rejected recently - try again
+                pcCache.remove(calledAET, remote);
+                return makeAAssociateRQ(callingAET, calledAET, remote, matches);
+            }
             return aarq;
         }
 
+        private String[] fallbackTSs(String tsuid) {
+            return UID.ExplicitVRLittleEndian.equals(tsuid)
+                    ? new String[] { UID.ImplicitVRLittleEndian }
+                    : UID.ImplicitVRLittleEndian.equals(tsuid)
+                    ? new String[] { UID.ExplicitVRLittleEndian }
+                    : new String[] { UID.ExplicitVRLittleEndian,
+                            UID.ImplicitVRLittleEndian };
+        }
+
         private boolean relational(Association as, Attributes rq) {
             String cuid = rq.getString(Tag.AffectedSOPClassUID);
             ExtendedNegotiation extNeg = as.getAAssociateAC()
@@ -308,7 +358,9 @@ public class DcmQRSCP<T extends InstanceLocator> {
     }
     
     protected void addCStoreSCPService(DicomServiceRegistry serviceRegistry ) {
-        serviceRegistry.addDicomService(new CStoreSCPImpl(ddWriter, filePathFormat, recFact));
+        CStoreSCPImpl cstoreSCP = new CStoreSCPImpl(ddWriter, filePathFormat, recFact);
+        cstoreSCP.setStorageTransferSyntax(storageTransferSyntax);
+        serviceRegistry.addDicomService(cstoreSCP);
     }
     
     protected void addStgCmtSCPService(DicomServiceRegistry serviceRegistry ) {
@@ -426,6 +478,89 @@ public class DcmQRSCP<T extends InstanceLocator> {
         return sendPendingCMoveInterval;
     }
 
+    public final void setReadAhead(int readAhead) {
+        this.readAhead = readAhead;
+    }
+
+    public final int getReadAhead() {
+        return readAhead;
+    }
+
+    /**
+     * Sets the executor on which instances are transcoded, if the C-GET or
+     * C-MOVE destination does not support their Transfer Syntax; typically a
+     * fixed size thread pool to bound the number of concurrent transcodings.
+     */
+    public final void setTranscoderExecutor(Executor transcoderExecutor) {
+        this.transcoderExecutor = transcoderExecutor;
+    }
+
+    public final Executor getTranscoderExecutor() {
+        return transcoderExecutor;
+    }
+
+    /**
+     * Sets the Transfer Syntax to which received objects are transcoded
+     * before they are stored; {@code null} (= default) stores them as
+     * received.
+     */
+    public final void setStorageTransferSyntax(String storageTransferSyntax) {
+        this.storageTransferSyntax = storageTransferSyntax;
+    }
+
+    public final String getStorageTransferSyntax() {
+        return storageTransferSyntax;
+    }
+
+    public final void setPresentationContextCacheTimeToLive(long ms) {
+        if (ms > 0) {
+            if (pcCache == null)
+                pcCache = new PresentationContextCache();
+            pcCache.setTimeToLive(ms);
+        } else
+            pcCache = null;
+    }
+
+    public final long getPresentationContextCacheTimeToLive() {
+        return pcCache != null ? pcCache.getTimeToLive() : 0L;
+    }
+
+    public final void setQueryPrefetch(int queryPrefetch) {
+        this.queryPrefetch = queryPrefetch;
+    }
+
+    public final int getQueryPrefetch() {
+        return queryPrefetch;
+    }
+
+    public final void setPendingCFindBatchSize(int pendingCFindBatchSize) {
+        this.pendingCFindBatchSize = pendingCFindBatchSize;
+    }
+
+    public final int getPendingCFindBatchSize() {
+        return pendingCFindBatchSize;
+    }
+
+    public final void setMaxMatches(int maxMatches) {
+        this.maxMatches = maxMatches;
+    }
+
+    public final int getMaxMatches() {
+        return maxMatches;
+    }
+
+    public final void setMaxQueryTime(long maxQueryTime) {
+        this.maxQueryTime = maxQueryTime;
+    }
+
+    public final long getMaxQueryTime() {
+        return maxQueryTime;
+    }
+
+    public final QueryStatistics getQueryStatistics() {
+        return queryStatistics;
+    }
+
     public final void setRecordFactory(RecordFactory recFact) {
         this.recFact = recFact;
     }
@@ -449,6 +584,12 @@ public class DcmQRSCP<T extends InstanceLocator> {
         addInstanceAvailabilityOption(opts);
         addStgCmtOptions(opts);
         addSendingPendingOptions(opts);
+        addReadAheadOption(opts);
+        addPresentationContextCacheOption(opts);
+        addTranscoderThreadsOption(opts);
+        addStorageTransferSyntaxOption(opts);
+        addQueryPrefetchOption(opts);
+        addQueryLimitOptions(opts);
         addRemoteConnectionsOption(opts);
         return CLIUtils.parseComandLine(args, opts, rb, DcmQRSCP.class);
     }
@@ -474,6 +615,54 @@ public class DcmQRSCP<T extends InstanceLocator> {
                 .withLongOpt("pending-cmove").create());
     }
 
+    @SuppressWarnings("static-access")
+    private static void addReadAheadOption(Options opts) {
+        opts.addOption(OptionBuilder.hasArg().withArgName("no")
+                .withDescription(rb.getString("read-ahead"))
+                .withLongOpt("read-ahead").create());
+    }
+
+    @SuppressWarnings("static-access")
+    private static void addTranscoderThreadsOption(Options opts) {
+        opts.addOption(OptionBuilder.hasArg().withArgName("no")
+                .withDescription(rb.getString("transcoder-threads"))
+                .withLongOpt("transcoder-threads").create());
+    }
+
+    @SuppressWarnings("static-access")
+    private static void addStorageTransferSyntaxOption(Options opts) {
+        opts.addOption(OptionBuilder.hasArg().withArgName("uid")
+                .withDescription(rb.getString("store-ts"))
+                .withLongOpt("store-ts").create());
+    }
+
+    @SuppressWarnings("static-access")
+    private static void addPresentationContextCacheOption(Options opts) {
+        opts.addOption(OptionBuilder.hasArg().withArgName("s")
+                .withDescription(rb.getString("pc-cache"))
+                .withLongOpt("pc-cache").create());
+    }
+
+    @SuppressWarnings("static-access")
+    private static void addQueryPrefetchOption(Options opts) {
+        opts.addOption(OptionBuilder.hasArg().withArgName("no")
+                .withDescription(rb.getString("query-prefetch"))
+                .withLongOpt("query-prefetch").create());
+    }
+
+    @SuppressWarnings("static-access")
+    private static void addQueryLimitOptions(Options opts) {
+        opts.addOption(OptionBuilder.hasArg().withArgName("no")
+                .withDescription(rb.getString("pending-cfind-batch"))
+                .withLongOpt("pending-cfind-batch").create());
+        opts.addOption(OptionBuilder.hasArg().withArgName("no")
+                .withDescription(rb.getString("max-matches"))
+                .withLongOpt("max-matches").create());
+        opts.addOption(OptionBuilder.hasArg().withArgName("ms")
+                .withDescription(rb.getString("max-query-time"))
+                .withLongOpt("max-query-time").create());
+    }
+
     @SuppressWarnings("static-access")
     private static void addDicomDirOption(Options opts) {
         opts.addOption(OptionBuilder.hasArg().withArgName("file")
@@ -521,6 +710,12 @@ public class DcmQRSCP<T extends InstanceLocator> {
             configureInstanceAvailability(main, cl);
             configureStgCmt(main, cl);
             configureSendPending(main, cl);
+            configureReadAhead(main, cl);
+            configurePresentationContextCache(main, cl);
+            configureTranscoderThreads(main, cl);
+            configureStorageTransferSyntax(main, cl);
+            configureQueryPrefetch(main, cl);
+            configureQueryLimits(main, cl);
             configureRemoteConnections(main, cl);
             ExecutorService executorService = Executors.newCachedThreadPool();
             ScheduledExecutorService scheduledExecutorService = Executors
@@ -566,6 +761,48 @@ public class DcmQRSCP<T extends InstanceLocator> {
                     .getOptionValue("pending-cmove")));
     }
 
+    private static void configureReadAhead(DcmQRSCP<InstanceLocator> main, CommandLine cl) {
+        if (cl.hasOption("read-ahead"))
+            main.setReadAhead(Integer.parseInt(cl.getOptionValue("read-ahead")));
+    }
+
+    private static void configureTranscoderThreads(
+            DcmQRSCP<InstanceLocator> main, CommandLine cl) {
+        if (cl.hasOption("transcoder-threads"))
+            main.setTranscoderExecutor(Executors.newFixedThreadPool(
+                    Integer.parseInt(cl.getOptionValue("transcoder-threads"))));
+    }
+
+    private static void configureStorageTransferSyntax(
+            DcmQRSCP<InstanceLocator> main, CommandLine cl) {
+        main.setStorageTransferSyntax(cl.getOptionValue("store-ts"));
+    }
+
+    private static void configurePresentationContextCache(
+            DcmQRSCP<InstanceLocator> main, CommandLine cl) {
+        if (cl.hasOption("pc-cache"))
+            main.setPresentationContextCacheTimeToLive(Long.parseLong(cl
+                    .getOptionValue("pc-cache")) * 1000L);
+    }
+
+    private static void configureQueryPrefetch(DcmQRSCP<InstanceLocator> main, CommandLine cl) {
+        if (cl.hasOption("query-prefetch"))
+            main.setQueryPrefetch(Integer.parseInt(cl
+                    .getOptionValue("query-prefetch")));
+    }
+
+    private static void configureQueryLimits(DcmQRSCP<InstanceLocator> main, CommandLine cl) {
+        if (cl.hasOption("pending-cfind-batch"))
+            main.setPendingCFindBatchSize(Integer.parseInt(cl
+                    .getOptionValue("pending-cfind-batch")));
+        if (cl.hasOption("max-matches"))
+            main.setMaxMatches(Integer.parseInt(cl
+                    .getOptionValue("max-matches")));
+        if (cl.hasOption("max-query-time"))
+            main.setMaxQueryTime(Long.parseLong(cl
+                    .getOptionValue("max-query-time")));
+    }
+
     private static void configureTransferCapability(DcmQRSCP<InstanceLocator> main,
             CommandLine cl) throws IOException {
         ApplicationEntity ae = main.ae;
@@ -62,12 +62,12 @@ class InstanceQueryTask extends SeriesQueryTask {
     }
 
     @Override
-    public boolean hasMoreMatches() throws DicomServiceException {
+    protected boolean hasMoreRecords() throws DicomServiceException {
         return instRec != null;
     }
 
     @Override
-    public Attributes nextMatch() throws DicomServiceException {
+    protected Attributes nextRecord() throws DicomServiceException {
         Attributes ret = new Attributes(patRec.size()
                 + studyRec.size()
                 + seriesRec.size()
@@ -39,6 +39,10 @@
 package org.dcm4che3.tool.dcmqrscp;
 
 import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
@@ -52,10 +56,16 @@ import org.dcm4che3.net.service.DicomServiceException;
 
 class PatientQueryTask extends BasicQueryTask {
 
+    private static final Attributes END_OF_MATCHES = new Attributes(0);
+
     protected final DicomDirReader ddr;
     protected final String availability;
     protected final String[] patIDs;
     protected Attributes patRec;
+    private BlockingQueue<Attributes> prefetched;
+    private Attributes nextPrefetched;
+    private volatile DicomServiceException prefetchFailure;
+    private volatile boolean closed;
 
     public PatientQueryTask(Association as, PresentationContext pc, Attributes rq, Attributes keys,
             DicomDirReader ddr, String availability) throws DicomServiceException {
@@ -66,20 +76,100 @@ class PatientQueryTask extends BasicQueryTask {
         wrappedFindNextPatient();
     }
 
+    /**
+     * Walk the DICOMDIR on a separate thread ahead of the association writing
+     * the pending C-FIND responses. Up to {@code capacity} adjusted matches
+     * are buffered, so the writer is not blocked on DICOMDIR I/O and record
+     * matching between pending responses.
+     */
+    public void prefetch(Executor executor, int capacity) {
+        prefetched = new ArrayBlockingQueue<Attributes>(capacity);
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                prefetchMatches();
+            }
+        });
+    }
+
     @Override
     public boolean hasMoreMatches() throws DicomServiceException {
-        return patRec != null;
+        if (prefetched == null)
+            return hasMoreRecords();
+
+        if (nextPrefetched == null)
+            try {
+                nextPrefetched = prefetched.take();
+            } catch (InterruptedException e) {
+                throw new DicomServiceException(Status.UnableToProcess, e);
+            }
+        if (nextPrefetched != END_OF_MATCHES)
+            return true;
+
+        if (prefetchFailure != null)
+            throw prefetchFailure;
+
+        return false;
     }
 
     @Override
     public Attributes nextMatch() throws DicomServiceException {
-        Attributes tmp = patRec;
-        wrappedFindNextPatient();
+        if (prefetched == null)
+            return nextRecord();
+
+        Attributes tmp = nextPrefetched;
+        nextPrefetched = null;
         return tmp;
     }
 
     @Override
     protected Attributes adjust(Attributes match) throws DicomServiceException {
+        return prefetched == null ? adjustRecord(match) : match;
+    }
+
+    @Override
+    protected void close() {
+        closed = true;
+    }
+
+    private void prefetchMatches() {
+        try {
+            while (!closed && !canceled && hasMoreRecords()) {
+                Attributes match = adjustRecord(nextRecord());
+                if (match != null && !offer(match))
+                    return;
+            }
+        } catch (DicomServiceException e) {
+            prefetchFailure = e;
+        } catch (InterruptedException e) {
+            prefetchFailure = new DicomServiceException(Status.UnableToProcess, e);
+        }
+        try {
+            offer(END_OF_MATCHES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean offer(Attributes match) throws InterruptedException {
+        while (!closed)
+            if (prefetched.offer(match, 100, TimeUnit.MILLISECONDS))
+                return true;
+        return false;
+    }
+
+    protected boolean hasMoreRecords() throws DicomServiceException {
+        return patRec != null;
+    }
+
+    protected Attributes nextRecord() throws DicomServiceException {
+        Attributes tmp = patRec;
+        wrappedFindNextPatient();
+        return tmp;
+    }
+
+    protected Attributes adjustRecord(Attributes match) throws DicomServiceException {
         Attributes adjust = super.adjust(match);
         adjust.remove(Tag.DirectoryRecordType);
         if (keys.contains(Tag.SOPClassUID))
@@ -63,12 +63,12 @@ class SeriesQueryTask extends StudyQueryTask {
    }
 
     @Override
-    public boolean hasMoreMatches() throws DicomServiceException {
+    protected boolean hasMoreRecords() throws DicomServiceException {
         return seriesRec != null;
     }
 
     @Override
-    public Attributes nextMatch() throws DicomServiceException {
+    protected Attributes nextRecord() throws DicomServiceException {
         Attributes ret = new Attributes(patRec.size()
                 + studyRec.size()
                 + seriesRec.size());
@@ -62,12 +62,12 @@ class StudyQueryTask extends PatientQueryTask {
     }
 
     @Override
-    public boolean hasMoreMatches() throws DicomServiceException {
+    protected boolean hasMoreRecords() throws DicomServiceException {
         return studyRec != null;
     }
 
     @Override
-    public Attributes nextMatch() throws DicomServiceException {
+    protected Attributes nextRecord() throws DicomServiceException {
         Attributes ret = new Attributes(patRec.size() + studyRec.size());
         ret.addAll(patRec);
         ret.addAll(studyRec);
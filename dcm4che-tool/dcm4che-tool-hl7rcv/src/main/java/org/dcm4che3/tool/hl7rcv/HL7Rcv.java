@@ -55,13 +55,9 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
-import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.sax.SAXResult;
-import javax.xml.transform.sax.SAXTransformerFactory;
-import javax.xml.transform.sax.TransformerHandler;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.transform.sax.SAXSource;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.MissingOptionException;
@@ -72,9 +68,9 @@ import org.dcm4che3.hl7.HL7Charset;
 import org.dcm4che3.hl7.HL7ContentHandler;
 import org.dcm4che3.hl7.HL7Exception;
 import org.dcm4che3.hl7.HL7Message;
-import org.dcm4che3.hl7.HL7Parser;
 import org.dcm4che3.hl7.HL7Segment;
-import org.dcm4che3.io.SAXTransformer;
+import org.dcm4che3.hl7.HL7XMLReader;
+import org.dcm4che3.io.TemplatesCache;
 import org.dcm4che3.net.Connection;
 import org.dcm4che3.net.Device;
 import org.dcm4che3.net.Connection.Protocol;
@@ -83,6 +79,7 @@ import org.dcm4che3.net.hl7.HL7DeviceExtension;
 import org.dcm4che3.net.hl7.HL7MessageListener;
 import org.dcm4che3.tool.common.CLIUtils;
 import org.dcm4che3.util.StringUtils;
+import org.xml.sax.InputSource;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -92,8 +89,6 @@ public class HL7Rcv {
 
     private static final ResourceBundle rb =
             ResourceBundle.getBundle("org.dcm4che3.tool.hl7rcv.messages");
-    private static SAXTransformerFactory factory =
-            (SAXTransformerFactory) TransformerFactory.newInstance();
 
     private final Device device = new Device("hl7rcv");
     private final HL7DeviceExtension hl7Ext = new HL7DeviceExtension();
@@ -101,7 +96,7 @@ public class HL7Rcv {
     private final Connection conn = new Connection();
     private String storageDir;
     private String charset;
-    private Templates tpls;
+    private String xsltURI;
     private String[] xsltParams;
     private final HL7MessageListener handler = new HL7MessageListener() {
 
@@ -132,8 +127,9 @@ public class HL7Rcv {
     }
 
     public void setXSLT(URL xslt) throws Exception {
-        tpls = SAXTransformer.newTemplates(
-                new StreamSource(xslt.openStream(), xslt.toExternalForm()));
+        String uri = xslt.toExternalForm();
+        TemplatesCache.getDefault().get(uri);
+        xsltURI = uri;
     }
 
     public void setXSLTParameters(String[] xsltParams) {
@@ -254,7 +250,7 @@ public class HL7Rcv {
                         new File(
                             new File(storageDir, msh.getMessageType()),
                             msh.getField(9, "_NULL_")));
-            return (tpls == null)
+            return (xsltURI == null)
                 ? HL7Message.makeACK(msh, HL7Exception.AA, null).getBytes(null)
                 : xslt(msh, msg, off, len);
     }
@@ -275,18 +271,17 @@ public class HL7Rcv {
             throws Exception {
         String charsetName = HL7Charset.toCharsetName(msh.getField(17, charset));
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        TransformerHandler th = factory.newTransformerHandler(tpls);
-        Transformer t = th.getTransformer();
+        Transformer t = TemplatesCache.getDefault().getTransformer(xsltURI);
         t.setParameter("MessageControlID", HL7Segment.nextMessageControlID());
         t.setParameter("DateTimeOfMessage", HL7Segment.timeStamp(new Date()));
         if (xsltParams != null)
             for (int i = 1; i < xsltParams.length; i++, i++)
                 t.setParameter(xsltParams[i-1], xsltParams[i]);
-        th.setResult(new SAXResult(new HL7ContentHandler(
-                new OutputStreamWriter(out, charsetName))));
-        new HL7Parser(th).parse(new InputStreamReader(
-                new ByteArrayInputStream(msg, off, len),
-                charsetName));
+        t.transform(new SAXSource(new HL7XMLReader(), new InputSource(
+                new InputStreamReader(
+                        new ByteArrayInputStream(msg, off, len), charsetName))),
+                new SAXResult(new HL7ContentHandler(
+                        new OutputStreamWriter(out, charsetName))));
         return out.toByteArray();
     }
 